@@ -76,6 +76,7 @@ public class AdminDashboardController {
             stage.setTitle("Inventaire Complet - FreshMarket Pro");
             stage.setMinWidth(1000);
             stage.setMinHeight(700);
+            stage.setOnHidden(e -> inventoryController.dispose());
             stage.show();
             
         } catch (Exception e) {
@@ -128,6 +129,7 @@ public class AdminDashboardController {
             stage.setTitle("📊 Rapports et Analytiques - FreshMarket Pro");
             stage.setMinWidth(1000);
             stage.setMinHeight(700);
+            stage.setOnHidden(e -> controller.dispose());
             stage.show();
         } catch (Exception e) {
             showError("Erreur lors de l'ouverture des rapports: " + e.getMessage());
@@ -151,6 +153,7 @@ public class AdminDashboardController {
             stage.setTitle("💰 Ventes du Jour - FreshMarket Pro");
             stage.setMinWidth(1000);
             stage.setMinHeight(700);
+            stage.setOnHidden(e -> controller.dispose());
             stage.show();
         } catch (Exception e) {
             showError("Erreur lors de l'ouverture des ventes: " + e.getMessage());
@@ -189,6 +192,7 @@ public class AdminDashboardController {
             Stage stage = new Stage();
             stage.setScene(new Scene(root));
             stage.setTitle("Gestion des ventes");
+            stage.setOnHidden(e -> controller.dispose());
             stage.show();
         } catch (Exception e) {
             showError("Erreur: " + e.getMessage());
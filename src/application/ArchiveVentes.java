@@ -0,0 +1,742 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Columnar, compressed archive of past sales, one file per month.
+ *
+ * Each day is a block of seven columns, each deflated on its own: sale ids,
+ * timestamps (delta-encoded), line counts and totals per sale, then article
+ * codes, quantities and unit prices per line. Article ids are dictionary
+ * encoded once per file; integers are varints, amounts are in cents.
+ *
+ * Layout: [magic int][version int], the day blocks, then a footer with the
+ * article dictionary and the block index (day, position, sale/line counts,
+ * revenue), and finally [footer position long][magic int]. A block starts
+ * with a fixed header giving the size of each column, followed by the sorted
+ * article codes it contains and the columns.
+ *
+ * Queries push their predicates down: the date range selects blocks through
+ * the index, an article filter skips the blocks that do not contain it, and
+ * only the columns the query needs are read and inflated. Range totals come
+ * from the index alone.
+ */
+public class ArchiveVentes implements AutoCloseable {
+
+    public static final Path REPERTOIRE_PAR_DEFAUT =
+        Paths.get(System.getProperty("user.home"), ".groco", "archives");
+    public static final String EXTENSION = ".gca";
+
+    private static final int MAGIC = 0x47524341; // "GRCA"
+    private static final int VERSION = 1;
+
+    static final int COL_IDS = 0;
+    static final int COL_HORODATAGES = 1;
+    static final int COL_NOMBRE_LIGNES = 2;
+    static final int COL_TOTAUX = 3;
+    static final int COL_ARTICLES = 4;
+    static final int COL_QUANTITES = 5;
+    static final int COL_PRIX = 6;
+    private static final int NOMBRE_COLONNES = 7;
+    // Column count, compressed and raw size per column, article set size
+    private static final int TAILLE_ENTETE_BLOC = 4 + NOMBRE_COLONNES * 8 + 4;
+
+    /**
+     * Receives the lines of a scan.
+     */
+    public interface VisiteurLigne {
+        void ligne(LocalDate jour, String idArticle, int quantite, long prixCentimes);
+    }
+
+    /**
+     * Receives the sales of a scan, without their lines.
+     */
+    public interface VisiteurVente {
+        void vente(LocalDate jour, String idVente, long horodatage, int nombreLignes, long totalCentimes);
+    }
+
+    private static class EntreeIndex {
+        long jour;
+        long position;
+        int longueur;
+        int nombreVentes;
+        long nombreLignes;
+        long chiffreAffairesCentimes;
+    }
+
+    private final Path fichier;
+    private final FileChannel canal;
+    private final String[] articles;
+    private final Map<String, Integer> codesArticles = new HashMap<>();
+    private final EntreeIndex[] index;
+    private long octetsLus;
+
+    private ArchiveVentes(Path fichier) throws IOException {
+        this.fichier = fichier;
+        this.canal = FileChannel.open(fichier, StandardOpenOption.READ);
+        try {
+            long taille = canal.size();
+            ByteBuffer fin = lire(taille - 12, 12);
+            long positionPied = fin.getLong();
+            if (taille < 20 || fin.getInt() != MAGIC || lire(0, 8).getInt(0) != MAGIC) {
+                throw new IOException("Archive de ventes invalide: " + fichier);
+            }
+            if (lire(4, 4).getInt() != VERSION) {
+                throw new IOException("Version d'archive non supportée: " + fichier);
+            }
+
+            ByteBuffer pied = lire(positionPied, (int) (taille - 12 - positionPied));
+            articles = new String[(int) lireVarint(pied)];
+            for (int i = 0; i < articles.length; i++) {
+                articles[i] = lireChaine(pied);
+                codesArticles.put(articles[i], i);
+            }
+            index = new EntreeIndex[(int) lireVarint(pied)];
+            for (int i = 0; i < index.length; i++) {
+                EntreeIndex entree = new EntreeIndex();
+                entree.jour = pied.getLong();
+                entree.position = pied.getLong();
+                entree.longueur = pied.getInt();
+                entree.nombreVentes = pied.getInt();
+                entree.nombreLignes = pied.getLong();
+                entree.chiffreAffairesCentimes = pied.getLong();
+                index[i] = entree;
+            }
+            octetsLus = 0;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e instanceof IOException io ? io : new IOException("Archive de ventes illisible: " + fichier, e);
+        }
+    }
+
+    public static ArchiveVentes ouvrir(Path fichier) throws IOException {
+        return new ArchiveVentes(fichier);
+    }
+
+    /**
+     * Opens every archive of {@code repertoire}, oldest month first.
+     */
+    public static List<ArchiveVentes> ouvrirRepertoire(Path repertoire) throws IOException {
+        List<ArchiveVentes> archives = new ArrayList<>();
+        if (!Files.isDirectory(repertoire)) return archives;
+        List<Path> fichiers = new ArrayList<>();
+        try (DirectoryStream<Path> contenu = Files.newDirectoryStream(repertoire, "*" + EXTENSION)) {
+            contenu.forEach(fichiers::add);
+        }
+        fichiers.sort(null);
+        for (Path fichier : fichiers) {
+            archives.add(ouvrir(fichier));
+        }
+        return archives;
+    }
+
+    public static Path fichierDuMois(Path repertoire, YearMonth mois) {
+        return repertoire.resolve(mois + EXTENSION);
+    }
+
+    /**
+     * Archives the journals of {@code mois} into {@code repertoire}, one day
+     * after the other. The journals themselves are left in place.
+     *
+     * @return the number of sales archived
+     */
+    public static long archiverMois(YearMonth mois, Path repertoire) throws IOException {
+        long[] ventes = new long[1];
+        try (Ecrivain ecrivain = new Ecrivain(fichierDuMois(repertoire, mois))) {
+            try {
+                for (LocalDate jour = mois.atDay(1); !jour.isAfter(mois.atEndOfMonth()); jour = jour.plusDays(1)) {
+                    LocalDate jourLu = jour;
+                    JournalVentes.relire(JournalVentes.repertoireDuJour(jour), enregistrement -> {
+                        try {
+                            ecrivain.ajouter(jourLu, enregistrement);
+                            ventes[0]++;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            } catch (UncheckedIOException e) {
+                ecrivain.abandonner();
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                // A partial month must not be taken for a complete archive
+                ecrivain.abandonner();
+                throw e;
+            }
+        }
+        return ventes[0];
+    }
+
+    /**
+     * Archives every month before the current one that has journals but no
+     * archive yet.
+     *
+     * @return the months archived
+     */
+    public static List<YearMonth> archiverMoisTermines(Path repertoire) throws IOException {
+        List<YearMonth> archives = new ArrayList<>();
+        if (!Files.isDirectory(JournalVentes.REPERTOIRE_RACINE)) return archives;
+
+        YearMonth moisCourant = YearMonth.now();
+        TreeSet<YearMonth> mois = new TreeSet<>();
+        try (DirectoryStream<Path> jours = Files.newDirectoryStream(JournalVentes.REPERTOIRE_RACINE, Files::isDirectory)) {
+            for (Path jour : jours) {
+                try {
+                    YearMonth moisDuJour = YearMonth.from(LocalDate.parse(jour.getFileName().toString()));
+                    if (moisDuJour.isBefore(moisCourant)) {
+                        mois.add(moisDuJour);
+                    }
+                } catch (DateTimeParseException e) {
+                    // Not a day directory
+                }
+            }
+        }
+        for (YearMonth m : mois) {
+            if (!Files.exists(fichierDuMois(repertoire, m))) {
+                archiverMois(m, repertoire);
+                archives.add(m);
+            }
+        }
+        return archives;
+    }
+
+    public Path getFichier() {
+        return fichier;
+    }
+
+    public LocalDate getPremierJour() {
+        return index.length == 0 ? null : LocalDate.ofEpochDay(index[0].jour);
+    }
+
+    public LocalDate getDernierJour() {
+        return index.length == 0 ? null : LocalDate.ofEpochDay(index[index.length - 1].jour);
+    }
+
+    /**
+     * Bytes read from the day blocks so far, to check what a query touched.
+     */
+    public long getOctetsLus() {
+        return octetsLus;
+    }
+
+    /**
+     * Totals of a date range, from the block index only.
+     */
+    public IndexVentesParJour.Totaux totauxEntre(LocalDate debut, LocalDate fin) {
+        long[] totaux = new long[3];
+        cumulerTotaux(debut, fin, totaux);
+        return new IndexVentesParJour.Totaux(totaux[0], (int) totaux[1], totaux[2]);
+    }
+
+    /**
+     * Totals of a date range over the monthly archives of {@code repertoire};
+     * only the archives of the months in range are opened. A month with no
+     * archive yet, such as the current one, is summed from its day journals.
+     */
+    public static IndexVentesParJour.Totaux totauxEntre(Path repertoire, LocalDate debut, LocalDate fin) throws IOException {
+        long[] totaux = new long[3];
+        for (YearMonth mois = YearMonth.from(debut); !mois.isAfter(YearMonth.from(fin)); mois = mois.plusMonths(1)) {
+            Path fichier = fichierDuMois(repertoire, mois);
+            if (!Files.exists(fichier)) {
+                cumulerJournaux(mois, debut, fin, totaux);
+                continue;
+            }
+            try (ArchiveVentes archive = ouvrir(fichier)) {
+                archive.cumulerTotaux(debut, fin, totaux);
+            }
+        }
+        return new IndexVentesParJour.Totaux(totaux[0], (int) totaux[1], totaux[2]);
+    }
+
+    // Adds the journaled sales of the days of mois within the range to totaux
+    private static void cumulerJournaux(YearMonth mois, LocalDate debut, LocalDate fin, long[] totaux) throws IOException {
+        LocalDate premier = debut.isAfter(mois.atDay(1)) ? debut : mois.atDay(1);
+        LocalDate dernier = fin.isBefore(mois.atEndOfMonth()) ? fin : mois.atEndOfMonth();
+        for (LocalDate jour = premier; !jour.isAfter(dernier); jour = jour.plusDays(1)) {
+            JournalVentes.relire(JournalVentes.repertoireDuJour(jour), enregistrement -> {
+                for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+                    totaux[0] += ligne.getPrixCentimes() * ligne.getQuantite();
+                }
+                totaux[1]++;
+                totaux[2] += enregistrement.getLignes().size();
+            });
+        }
+    }
+
+    // Adds revenue in cents, sales and lines of the range to totaux
+    private void cumulerTotaux(LocalDate debut, LocalDate fin, long[] totaux) {
+        for (int i = premierBloc(debut); i < index.length && index[i].jour <= fin.toEpochDay(); i++) {
+            totaux[0] += index[i].chiffreAffairesCentimes;
+            totaux[1] += index[i].nombreVentes;
+            totaux[2] += index[i].nombreLignes;
+        }
+    }
+
+    /**
+     * Lines from {@code debut} to {@code fin}, restricted to {@code idsArticles}
+     * when not null. Only the article, quantity and price columns are read.
+     */
+    public void parcourirLignes(LocalDate debut, LocalDate fin, Set<String> idsArticles,
+                                VisiteurLigne visiteur) throws IOException {
+        int[] codes = codes(idsArticles);
+        if (codes != null && codes.length == 0) return;
+
+        for (int i = premierBloc(debut); i < index.length && index[i].jour <= fin.toEpochDay(); i++) {
+            EntreeIndex entree = index[i];
+            ByteBuffer entete = lire(entree.position, TAILLE_ENTETE_BLOC);
+            if (codes != null && !contientUnDe(entree, entete, codes)) continue;
+
+            LocalDate jour = LocalDate.ofEpochDay(entree.jour);
+            ByteBuffer articlesBloc = colonne(entree, entete, COL_ARTICLES);
+            ByteBuffer quantites = colonne(entree, entete, COL_QUANTITES);
+            ByteBuffer prix = colonne(entree, entete, COL_PRIX);
+            for (long l = 0; l < entree.nombreLignes; l++) {
+                int code = (int) lireVarint(articlesBloc);
+                int quantite = (int) lireVarint(quantites);
+                long prixCentimes = lireVarint(prix);
+                if (codes == null || Arrays.binarySearch(codes, code) >= 0) {
+                    visiteur.ligne(jour, articles[code], quantite, prixCentimes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sales from {@code debut} to {@code fin}; the line columns are not read.
+     */
+    public void parcourirVentes(LocalDate debut, LocalDate fin, VisiteurVente visiteur) throws IOException {
+        for (int i = premierBloc(debut); i < index.length && index[i].jour <= fin.toEpochDay(); i++) {
+            EntreeIndex entree = index[i];
+            ByteBuffer entete = lire(entree.position, TAILLE_ENTETE_BLOC);
+            LocalDate jour = LocalDate.ofEpochDay(entree.jour);
+            ByteBuffer ids = colonne(entree, entete, COL_IDS);
+            ByteBuffer horodatages = colonne(entree, entete, COL_HORODATAGES);
+            ByteBuffer nombresLignes = colonne(entree, entete, COL_NOMBRE_LIGNES);
+            ByteBuffer totaux = colonne(entree, entete, COL_TOTAUX);
+            long horodatage = debutDuJour(jour);
+            for (int v = 0; v < entree.nombreVentes; v++) {
+                horodatage += dezigzag(lireVarint(horodatages));
+                visiteur.vente(jour, lireChaine(ids), horodatage, (int) lireVarint(nombresLignes), lireVarint(totaux));
+            }
+        }
+    }
+
+    /**
+     * Per-article quantity and revenue of a range; reads three columns.
+     */
+    public Collection<IndexVentesParJour.CumulArticle> cumulsArticlesEntre(LocalDate debut, LocalDate fin,
+                                                                          Set<String> idsArticles) throws IOException {
+        Map<String, IndexVentesParJour.CumulArticle> cumuls = new HashMap<>();
+        parcourirLignes(debut, fin, idsArticles, (jour, idArticle, quantite, prixCentimes) ->
+            cumuls.computeIfAbsent(idArticle, id -> new IndexVentesParJour.CumulArticle(id, id))
+                  .ajouter(quantite, prixCentimes * quantite));
+        return cumuls.values();
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private int premierBloc(LocalDate debut) {
+        long jour = debut.toEpochDay();
+        int bas = 0;
+        int haut = index.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (index[milieu].jour < jour) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    private int[] codes(Set<String> idsArticles) {
+        if (idsArticles == null) return null;
+        int[] codes = new int[idsArticles.size()];
+        int n = 0;
+        for (String id : idsArticles) {
+            Integer code = codesArticles.get(id);
+            if (code != null) {
+                codes[n++] = code;
+            }
+        }
+        codes = Arrays.copyOf(codes, n);
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    private boolean contientUnDe(EntreeIndex entree, ByteBuffer entete, int[] codes) throws IOException {
+        ByteBuffer ensemble = lire(entree.position + TAILLE_ENTETE_BLOC, entete.getInt(4 + NOMBRE_COLONNES * 8));
+        int code = 0;
+        while (ensemble.hasRemaining()) {
+            code += (int) lireVarint(ensemble);
+            if (Arrays.binarySearch(codes, code) >= 0) return true;
+        }
+        return false;
+    }
+
+    private ByteBuffer colonne(EntreeIndex entree, ByteBuffer entete, int colonne) throws IOException {
+        long position = entree.position + TAILLE_ENTETE_BLOC + entete.getInt(4 + NOMBRE_COLONNES * 8);
+        for (int c = 0; c < colonne; c++) {
+            position += entete.getInt(4 + c * 8);
+        }
+        int longueurCompressee = entete.getInt(4 + colonne * 8);
+        int longueurBrute = entete.getInt(4 + colonne * 8 + 4);
+        ByteBuffer compresse = lire(position, longueurCompressee);
+        byte[] brut = new byte[longueurBrute];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compresse);
+            int n = 0;
+            while (n < longueurBrute) {
+                int lus = inflater.inflate(brut, n, longueurBrute - n);
+                if (lus == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Colonne tronquée dans " + fichier);
+                }
+                n += lus;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Colonne corrompue dans " + fichier, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(brut);
+    }
+
+    private ByteBuffer lire(long position, int longueur) throws IOException {
+        ByteBuffer tampon = ByteBuffer.allocate(longueur);
+        while (tampon.hasRemaining()) {
+            if (canal.read(tampon, position + tampon.position()) < 0) {
+                throw new IOException("Fin de fichier inattendue dans " + fichier);
+            }
+        }
+        octetsLus += longueur;
+        return tampon.flip();
+    }
+
+    private static long debutDuJour(LocalDate jour) {
+        return jour.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static long lireVarint(ByteBuffer tampon) {
+        long valeur = 0;
+        int decalage = 0;
+        while (true) {
+            byte octet = tampon.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if (octet >= 0) return valeur;
+            decalage += 7;
+        }
+    }
+
+    private static long dezigzag(long valeur) {
+        return (valeur >>> 1) ^ -(valeur & 1);
+    }
+
+    private static String lireChaine(ByteBuffer tampon) {
+        int longueur = (int) lireVarint(tampon);
+        String valeur = new String(tampon.array(), tampon.arrayOffset() + tampon.position(), longueur, StandardCharsets.UTF_8);
+        tampon.position(tampon.position() + longueur);
+        return valeur;
+    }
+
+    /**
+     * Writes an archive, one day after the other. Sales must come in
+     * non-decreasing day order; each day is buffered, then compressed and
+     * written when the next day starts. The file is written next to the target
+     * and moved into place on {@link #close()}.
+     */
+    public static class Ecrivain implements AutoCloseable {
+
+        private final Path fichier;
+        private final Path temporaire;
+        private final FileChannel canal;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> articles = new ArrayList<>();
+        private final List<EntreeIndex> index = new ArrayList<>();
+        private final Colonne[] colonnes = new Colonne[NOMBRE_COLONNES];
+        private final Colonne tamponBloc = new Colonne();
+        private long jourCourant = Long.MIN_VALUE;
+        private long horodatagePrecedent;
+        private EntreeIndex blocCourant;
+        private int[] articlesDuJour = new int[64];
+        private int nombreArticlesDuJour;
+        private boolean[] articleVuDuJour = new boolean[64];
+        private long position;
+        // Sale being added
+        private long totalVente;
+        private int lignesVente;
+        private boolean abandonne;
+
+        public Ecrivain(Path fichier) throws IOException {
+            this.fichier = fichier;
+            Path parent = fichier.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            this.temporaire = Files.createTempFile(parent, "archive", ".tmp");
+            this.canal = FileChannel.open(temporaire, StandardOpenOption.WRITE);
+            for (int c = 0; c < NOMBRE_COLONNES; c++) {
+                colonnes[c] = new Colonne();
+            }
+            Colonne entete = new Colonne();
+            entete.entier(MAGIC);
+            entete.entier(VERSION);
+            ecrire(entete);
+        }
+
+        public void ajouter(Vente vente) throws IOException {
+            LocalDate jour = vente.getDate();
+            debutVente(jour, vente.getIdVente(), debutDuJour(jour));
+            for (LigneVente ligne : vente.getArticles()) {
+                ligne(ligne.getArticle().getId(), ligne.getQuantite(), VenteRejouee.prixCentimes(vente, ligne));
+            }
+            finVente();
+        }
+
+        public void ajouter(LocalDate jour, JournalVentes.EnregistrementVente enregistrement) throws IOException {
+            debutVente(jour, String.valueOf(enregistrement.getSequence()), enregistrement.getHorodatage());
+            for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+                ligne(ligne.getIdArticle(), ligne.getQuantite(), ligne.getPrixCentimes());
+            }
+            finVente();
+        }
+
+        private void debutVente(LocalDate jour, String idVente, long horodatage) throws IOException {
+            long epoque = jour.toEpochDay();
+            if (epoque < jourCourant) {
+                throw new IllegalArgumentException("Ventes hors ordre: " + jour + " après " + LocalDate.ofEpochDay(jourCourant));
+            }
+            if (epoque != jourCourant) {
+                terminerBloc();
+                jourCourant = epoque;
+                horodatagePrecedent = debutDuJour(jour);
+                blocCourant = new EntreeIndex();
+                blocCourant.jour = epoque;
+            }
+            colonnes[COL_IDS].chaine(idVente);
+            colonnes[COL_HORODATAGES].varint(zigzag(horodatage - horodatagePrecedent));
+            horodatagePrecedent = horodatage;
+            totalVente = 0;
+            lignesVente = 0;
+        }
+
+        private void ligne(String idArticle, int quantite, long prixCentimes) {
+            Integer code = codes.get(idArticle);
+            if (code == null) {
+                code = articles.size();
+                codes.put(idArticle, code);
+                articles.add(idArticle);
+            }
+            colonnes[COL_ARTICLES].varint(code);
+            colonnes[COL_QUANTITES].varint(quantite);
+            colonnes[COL_PRIX].varint(prixCentimes);
+            noterArticle(code);
+            totalVente += prixCentimes * quantite;
+            lignesVente++;
+        }
+
+        private void finVente() {
+            colonnes[COL_NOMBRE_LIGNES].varint(lignesVente);
+            colonnes[COL_TOTAUX].varint(totalVente);
+            blocCourant.nombreVentes++;
+            blocCourant.nombreLignes += lignesVente;
+            blocCourant.chiffreAffairesCentimes += totalVente;
+        }
+
+        private void noterArticle(int code) {
+            if (code >= articleVuDuJour.length) {
+                articleVuDuJour = Arrays.copyOf(articleVuDuJour, Math.max(code + 1, articleVuDuJour.length * 2));
+            }
+            if (articleVuDuJour[code]) return;
+            articleVuDuJour[code] = true;
+            if (nombreArticlesDuJour == articlesDuJour.length) {
+                articlesDuJour = Arrays.copyOf(articlesDuJour, articlesDuJour.length * 2);
+            }
+            articlesDuJour[nombreArticlesDuJour++] = code;
+        }
+
+        private void terminerBloc() throws IOException {
+            if (blocCourant == null) return;
+
+            // Sorted article codes of the day, delta-encoded
+            Colonne ensemble = new Colonne();
+            Arrays.sort(articlesDuJour, 0, nombreArticlesDuJour);
+            int precedent = 0;
+            for (int i = 0; i < nombreArticlesDuJour; i++) {
+                ensemble.varint(articlesDuJour[i] - precedent);
+                precedent = articlesDuJour[i];
+                articleVuDuJour[articlesDuJour[i]] = false;
+            }
+            nombreArticlesDuJour = 0;
+
+            Colonne[] compressees = new Colonne[NOMBRE_COLONNES];
+            for (int c = 0; c < NOMBRE_COLONNES; c++) {
+                compressees[c] = compresser(colonnes[c]);
+            }
+            tamponBloc.vider();
+            tamponBloc.entier(NOMBRE_COLONNES);
+            for (int c = 0; c < NOMBRE_COLONNES; c++) {
+                tamponBloc.entier(compressees[c].taille);
+                tamponBloc.entier(colonnes[c].taille);
+                colonnes[c].vider();
+            }
+            tamponBloc.entier(ensemble.taille);
+
+            blocCourant.position = position;
+            ecrire(tamponBloc);
+            ecrire(ensemble);
+            for (Colonne compressee : compressees) {
+                ecrire(compressee);
+            }
+            blocCourant.longueur = (int) (position - blocCourant.position);
+            index.add(blocCourant);
+            blocCourant = null;
+        }
+
+        private Colonne compresser(Colonne brute) {
+            deflater.reset();
+            deflater.setInput(brute.octets, 0, brute.taille);
+            deflater.finish();
+            Colonne compressee = new Colonne();
+            while (!deflater.finished()) {
+                compressee.reserver(Math.max(64, brute.taille / 4));
+                compressee.taille += deflater.deflate(compressee.octets, compressee.taille,
+                    compressee.octets.length - compressee.taille);
+            }
+            return compressee;
+        }
+
+        /**
+         * Makes {@link #close()} discard the file instead of moving it into place.
+         */
+        public void abandonner() {
+            abandonne = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean termine = false;
+            try {
+                if (abandonne) return;
+                terminerBloc();
+                long positionPied = position;
+                Colonne pied = new Colonne();
+                pied.varint(articles.size());
+                for (String article : articles) {
+                    pied.chaine(article);
+                }
+                pied.varint(index.size());
+                for (EntreeIndex entree : index) {
+                    pied.long64(entree.jour);
+                    pied.long64(entree.position);
+                    pied.entier(entree.longueur);
+                    pied.entier(entree.nombreVentes);
+                    pied.long64(entree.nombreLignes);
+                    pied.long64(entree.chiffreAffairesCentimes);
+                }
+                pied.long64(positionPied);
+                pied.entier(MAGIC);
+                ecrire(pied);
+                canal.force(true);
+                canal.close();
+                Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                EcritureAtomique.forcerRepertoire(fichier.toAbsolutePath().getParent());
+                termine = true;
+            } finally {
+                deflater.end();
+                if (!termine) {
+                    canal.close();
+                    Files.deleteIfExists(temporaire);
+                }
+            }
+        }
+
+        private void ecrire(Colonne colonne) throws IOException {
+            ByteBuffer tampon = ByteBuffer.wrap(colonne.octets, 0, colonne.taille);
+            while (tampon.hasRemaining()) {
+                position += canal.write(tampon);
+            }
+        }
+
+        private static long zigzag(long valeur) {
+            return (valeur << 1) ^ (valeur >> 63);
+        }
+    }
+
+    // Growable byte buffer with the encodings of the format
+    private static class Colonne {
+        byte[] octets = new byte[256];
+        int taille;
+
+        void reserver(int n) {
+            if (taille + n > octets.length) {
+                octets = Arrays.copyOf(octets, Math.max(taille + n, octets.length * 2));
+            }
+        }
+
+        void vider() {
+            taille = 0;
+        }
+
+        void varint(long valeur) {
+            reserver(10);
+            while ((valeur & ~0x7FL) != 0) {
+                octets[taille++] = (byte) ((valeur & 0x7F) | 0x80);
+                valeur >>>= 7;
+            }
+            octets[taille++] = (byte) valeur;
+        }
+
+        void entier(int valeur) {
+            reserver(4);
+            octets[taille++] = (byte) (valeur >>> 24);
+            octets[taille++] = (byte) (valeur >>> 16);
+            octets[taille++] = (byte) (valeur >>> 8);
+            octets[taille++] = (byte) valeur;
+        }
+
+        void long64(long valeur) {
+            entier((int) (valeur >>> 32));
+            entier((int) valeur);
+        }
+
+        void chaine(String valeur) {
+            byte[] utf8 = valeur.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            reserver(utf8.length);
+            System.arraycopy(utf8, 0, octets, taille, utf8.length);
+            taille += utf8.length;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import java.io.IOException;
 import java.time.LocalDate;
 
 import InventaireArticle.ArticleEpicerie;
@@ -35,6 +36,12 @@ public class ArticleFormController {
     @FXML
     private TextField categoryField;
 
+    @FXML
+    private TextField reorderPointField;
+
+    @FXML
+    private TextField safetyStockField;
+
     @FXML
     private DatePicker expiryDateField;
 
@@ -123,7 +130,12 @@ public class ArticleFormController {
             }
 
             if (article != null) {
+                // Set before adding, so the article is indexed against its own reorder point
+                boolean reorderSet = applyReorderSettings(id);
                 admin.ajouterArticle(inventaire, article);
+                if (reorderSet) {
+                    saveReorderSettings();
+                }
                 showSuccess("Article ajouté avec succès!");
                 closeWindow();
             }
@@ -148,7 +160,14 @@ public class ArticleFormController {
             int stock = quantityField.getText().isEmpty() ? article.getQuantiteStock() : Integer.parseInt(quantityField.getText());
             String categorie = categoryField.getText().isEmpty() ? article.getCategorie() : categoryField.getText();
 
+            boolean reorderSet = applyReorderSettings(id);
             admin.modifierArticle(inventaire, id, nom, prix, stock, categorie);
+            if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+                inventaireIndexe.articleModifie(id);
+            }
+            if (reorderSet) {
+                saveReorderSettings();
+            }
             showSuccess("Article modifié avec succès!");
             closeWindow();
         } catch (Exception e) {
@@ -156,6 +175,34 @@ public class ArticleFormController {
         }
     }
 
+    /**
+     * Records the reorder point and safety stock typed in the form; an empty
+     * field keeps the article's current value. Returns false if both are empty
+     * or the inventory has no reorder points.
+     */
+    private boolean applyReorderSettings(String id) {
+        if (!(inventaire instanceof InventaireIndexe inventaireIndexe)) return false;
+        String reorderPoint = reorderPointField.getText().trim();
+        String safetyStock = safetyStockField.getText().trim();
+        if (reorderPoint.isEmpty() && safetyStock.isEmpty()) return false;
+
+        PointsCommande pointsCommande = inventaireIndexe.getPointsCommande();
+        PointsCommande.Seuils current = pointsCommande.get(id);
+        pointsCommande.definir(id, new PointsCommande.Seuils(
+            reorderPoint.isEmpty() ? current.getPointCommande() : Integer.parseInt(reorderPoint),
+            safetyStock.isEmpty() ? current.getStockSecurite() : Integer.parseInt(safetyStock)));
+        return true;
+    }
+
+    private void saveReorderSettings() {
+        try {
+            ((InventaireIndexe) inventaire).getPointsCommande().sauvegarder(PointsCommande.FICHIER_PAR_DEFAUT);
+        } catch (IOException e) {
+            showError("Impossible d'enregistrer les points de commande: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     private void deleteArticle() {
         // Your exact logic from main
         String id = idField.getText();
@@ -223,6 +270,8 @@ public class ArticleFormController {
             nonPerishableRadio.setDisable(true);
             expiryDateField.setDisable(true);
             shelfLifeField.setDisable(true);
+            reorderPointField.setDisable(true);
+            safetyStockField.setDisable(true);
             saveButton.setText("🗑️ Supprimer");
         } else if (mode.equals("edit")) {
             saveButton.setText("✏️ Modifier");
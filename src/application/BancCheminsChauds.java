@@ -0,0 +1,287 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticleNonPerissable;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.Caisse;
+import InventaireArticle.Inventaire;
+import InventaireArticle.Panier;
+import InventaireArticle.Vente;
+
+/**
+ * Headless benchmark of the interactive hot paths, as a baseline for later
+ * performance work.
+ *
+ * For each catalog size, times what the windows do on every keystroke or
+ * refresh: the cashier search (scan and trigram index), the inventory name and
+ * category lookups, the top products ranking, the inventory statistics and
+ * the CSV export of a report. The controllers' own code needs a JavaFX
+ * toolkit, so each case runs the same calls they make on the same data.
+ *
+ * Measurement follows the usual harness rules: a timed warm-up, then at least
+ * {@value #MESURES_MIN} measured operations over the measurement time, every
+ * result consumed so the JIT cannot drop the work. Reported per case: median
+ * and 90th percentile time per operation, bytes allocated per operation by the
+ * calling thread, and the resulting allocation rate.
+ *
+ * Usage: {@code java -Xmx6g application.BancCheminsChauds [sizes] [case filter]}
+ * (defaults: 1000,100000,1000000 and every case; the filter matches case names)
+ */
+public class BancCheminsChauds {
+
+    private static final long ECHAUFFEMENT_NANOS = 1_000_000_000L;
+    private static final long MESURE_NANOS = 2_000_000_000L;
+    private static final int MESURES_MIN = 5;
+
+    private static final String[] CATEGORIES = {
+        "Produits laitiers", "Boulangerie", "Fruits et légumes", "Boucherie", "Épicerie salée",
+        "Épicerie sucrée", "Boissons", "Surgelés", "Hygiène", "Entretien"
+    };
+    private static final String[] NOMS = {
+        "Lait demi-écrémé", "Baguette tradition", "Pommes Golden", "Steak haché", "Pâtes penne",
+        "Confiture d'abricot", "Eau gazeuse", "Épinards surgelés", "Savon doux", "Liquide vaisselle",
+        "Crème fraîche", "Croissant", "Tomates grappe", "Jambon blanc", "Riz basmati", "Chocolat noir",
+        "Jus d'orange", "Glace vanille", "Shampoing", "Éponges"
+    };
+
+    // Consumes every result
+    private static volatile long puits;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int[] tailles = Arrays.stream((args.length > 0 ? args[0] : "1000,100000,1000000").split(","))
+            .mapToInt(t -> Integer.parseInt(t.trim())).toArray();
+        String filtre = args.length > 1 ? args[1] : null;
+
+        System.out.println(String.format("%d cœur(s), échauffement %d ms, mesure %d ms par cas",
+            Runtime.getRuntime().availableProcessors(), ECHAUFFEMENT_NANOS / 1_000_000, MESURE_NANOS / 1_000_000));
+        for (int taille : tailles) {
+            System.out.println();
+            System.out.println(String.format("== %,d articles", taille));
+            System.out.println(String.format("%-36s %12s %12s %14s %12s", "cas", "médiane", "p90", "alloc/op", "alloc/s"));
+            for (Map.Entry<String, Supplier<Object>> cas : preparerCas(taille).entrySet()) {
+                if (filtre == null || cas.getKey().contains(filtre)) {
+                    mesurer(cas.getKey(), cas.getValue());
+                }
+            }
+            System.gc();
+        }
+    }
+
+    private static Map<String, Supplier<Object>> preparerCas(int taille) {
+        Random aleatoire = new Random(42);
+        LocalDate aujourdHui = LocalDate.now();
+        Inventaire inventaire = new Inventaire();
+        InventaireIndexe inventaireIndexe = new InventaireIndexe();
+        List<ArticleEpicerie> articles = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            String id = String.format("H%07d", i);
+            String nom = NOMS[aleatoire.nextInt(NOMS.length)] + " " + i;
+            String categorie = CATEGORIES[aleatoire.nextInt(CATEGORIES.length)];
+            double prix = 0.5 + aleatoire.nextInt(2000) / 100.0;
+            // One article in twenty is low or out of stock
+            int stock = i % 20 == 0 ? aleatoire.nextInt(12) : 1_000_000;
+            ArticleEpicerie article = i % 3 == 0
+                ? new ArticlePerissable(id, nom, prix, stock, categorie, aujourdHui.plusDays(aleatoire.nextInt(40) - 10))
+                : new ArticleNonPerissable(id, nom, prix, stock, categorie, 365);
+            inventaire.ajouterArticle(article);
+            inventaireIndexe.ajouterArticle(article);
+            articles.add(article);
+        }
+
+        // Two sale lines per article, popularity skewed towards the first articles
+        Caisse caisse = new Caisse(0.0);
+        IndexVentesParJour indexVentes = new IndexVentesParJour();
+        long lignes = 0;
+        while (lignes < 2L * taille) {
+            Panier panier = new Panier();
+            int lignesPanier = 1 + aleatoire.nextInt(7);
+            for (int l = 0; l < lignesPanier; l++) {
+                double u = aleatoire.nextDouble();
+                ArticleEpicerie article = articles.get((int) (u * u * u * taille));
+                if (article.getQuantiteStock() > 1000) {
+                    panier.ajouterArticle(article, 1 + aleatoire.nextInt(3));
+                }
+            }
+            if (panier.estVide()) continue;
+            Vente vente = caisse.enregistrerVente(panier, inventaireIndexe);
+            if (vente != null) {
+                indexVentes.ajouter(vente);
+                lignes += vente.getArticles().size();
+            }
+        }
+
+        String terme = "confiture";
+        String categorie = CATEGORIES[1];
+        List<ReportsController.InventoryTableItem> lignesRapport =
+            new CalculRapports(1).rapportInventaire(articles).getLignes();
+
+        Map<String, Supplier<Object>> cas = new LinkedHashMap<>();
+        cas.put("recherche caisse, parcours", () -> rechercheCaisse(articles, terme, categorie));
+        cas.put("recherche caisse, trigrammes", () -> rechercheCaisse(inventaireIndexe.rechercher(terme), null, categorie));
+        cas.put("rechercherParNom, Inventaire", () -> inventaire.rechercherParNom(terme));
+        cas.put("rechercherParNom, indexé", () -> inventaireIndexe.rechercherParNom(terme));
+        cas.put("rechercherParCategorie, Inventaire", () -> inventaire.rechercherParCategorie(categorie));
+        cas.put("filtrer catégorie, indexé", () -> inventaireIndexe.filtrer(categorie, null));
+        cas.put("top 10 articles du jour", () -> indexVentes.meilleursArticles(aujourdHui, aujourdHui, 10));
+        cas.put("statistiques inventaire, parcours", () -> statistiques(articles));
+        cas.put("statistiques inventaire, indexé", () -> statistiques(articles, inventaireIndexe));
+        cas.put("export CSV rapport d'inventaire", () -> exporterCsv(lignesRapport));
+        return cas;
+    }
+
+    /**
+     * Same filter as the cashier search: term in the name or id, category and
+     * stock; {@code terme} null when the candidates already match the term.
+     */
+    private static List<ArticleEpicerie> rechercheCaisse(List<ArticleEpicerie> candidats, String terme, String categorie) {
+        char[] termeReplie = terme != null ? IndexTrigrammes.replier(terme) : null;
+        List<ArticleEpicerie> resultats = new ArrayList<>();
+        for (ArticleEpicerie article : candidats) {
+            boolean correspond = termeReplie == null
+                || IndexTrigrammes.contient(article.getNom(), termeReplie)
+                || IndexTrigrammes.contient(article.getId(), termeReplie);
+            if (correspond && article.getCategorie().equals(categorie) && article.getQuantiteStock() > 0) {
+                resultats.add(article);
+            }
+        }
+        return resultats;
+    }
+
+    // Inventory view statistics without the indexes
+    private static long statistiques(List<ArticleEpicerie> articles) {
+        double valeur = 0;
+        int faible = 0;
+        int rupture = 0;
+        for (ArticleEpicerie article : articles) {
+            valeur += article.getPrix() * article.getQuantiteStock();
+            IndexFiltres.EtatStock etat = IndexFiltres.EtatStock.de(article.getQuantiteStock(), PointsCommande.POINT_COMMANDE_PAR_DEFAUT);
+            if (etat == IndexFiltres.EtatStock.RUPTURE) {
+                rupture++;
+            } else if (etat == IndexFiltres.EtatStock.FAIBLE) {
+                faible++;
+            }
+        }
+        return (long) valeur + faible + rupture;
+    }
+
+    private static long statistiques(List<ArticleEpicerie> articles, InventaireIndexe inventaire) {
+        double valeur = 0;
+        for (ArticleEpicerie article : articles) {
+            valeur += article.getPrix() * article.getQuantiteStock();
+        }
+        return (long) valeur + inventaire.compter(null, IndexFiltres.EtatStock.FAIBLE)
+            + inventaire.compter(null, IndexFiltres.EtatStock.RUPTURE);
+    }
+
+    // Encodes the rows as the report export does, into a channel that only counts bytes
+    private static long exporterCsv(List<ReportsController.InventoryTableItem> lignes) {
+        CanalComptant canal = new CanalComptant();
+        try (EncodeurLignes encodeur = FormatExport.CSV.ouvrir(canal,
+                new String[] {"idArticle", "nom", "quantite", "prix", "valeurTotale"},
+                new String[] {"ID Article", "Nom", "Quantité", "Prix", "Valeur Totale"}, null)) {
+            for (ReportsController.InventoryTableItem item : lignes) {
+                encodeur.champ(item.getId())
+                        .champ(item.getName())
+                        .champ(item.getQuantity())
+                        .champMontant(item.getPrice())
+                        .champMontant(item.getTotalValue());
+                encodeur.finLigne();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return canal.octets;
+    }
+
+    private static void mesurer(String nom, Supplier<Object> cas) {
+        long finEchauffement = System.nanoTime() + ECHAUFFEMENT_NANOS;
+        int echauffement = 0;
+        while (System.nanoTime() < finEchauffement || echauffement < 2) {
+            consommer(cas.get());
+            echauffement++;
+        }
+
+        long[] durees = new long[16];
+        int mesures = 0;
+        long alloueAvant = THREADS.getCurrentThreadAllocatedBytes();
+        long debutMesure = System.nanoTime();
+        long finMesure = debutMesure + MESURE_NANOS;
+        while (System.nanoTime() < finMesure || mesures < MESURES_MIN) {
+            long debut = System.nanoTime();
+            consommer(cas.get());
+            if (mesures == durees.length) {
+                durees = Arrays.copyOf(durees, mesures * 2);
+            }
+            durees[mesures++] = System.nanoTime() - debut;
+        }
+        long dureeTotale = System.nanoTime() - debutMesure;
+        long alloue = THREADS.getCurrentThreadAllocatedBytes() - alloueAvant;
+
+        Arrays.sort(durees, 0, mesures);
+        double octetsParOperation = (double) alloue / mesures;
+        double octetsParSeconde = alloue / (dureeTotale / 1e9);
+        System.out.println(String.format("%-36s %12s %12s %14s %10.1fMB",
+            nom, duree(durees[mesures / 2]), duree(durees[(int) (mesures * 0.9)]),
+            octets(octetsParOperation), octetsParSeconde / (1 << 20)));
+    }
+
+    private static void consommer(Object resultat) {
+        if (resultat instanceof List<?> liste) {
+            puits += liste.size();
+        } else if (resultat instanceof Long nombre) {
+            puits += nombre;
+        } else {
+            puits += System.identityHashCode(resultat);
+        }
+    }
+
+    private static String duree(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return String.format("%.1fµs", nanos / 1e3);
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    private static String octets(double octets) {
+        if (octets < 10_000) return String.format("%.0fB", octets);
+        if (octets < 10_000_000) return String.format("%.1fKB", octets / 1024);
+        return String.format("%.1fMB", octets / (1 << 20));
+    }
+
+    private static class CanalComptant implements WritableByteChannel {
+        long octets;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int n = source.remaining();
+            source.position(source.limit());
+            octets += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
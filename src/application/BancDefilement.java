@@ -0,0 +1,294 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiFunction;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.scene.Scene;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.stage.Stage;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticlePerissable;
+
+/**
+ * Scroll benchmark of the inventory table: the cells the windows used to
+ * build (String.format and an inline style per updateItem) against
+ * {@link CellulesTableau}.
+ *
+ * Two parts:
+ * <ul>
+ * <li>the text and colour work of one row (price, stock, state, expiry) over
+ * a generated catalog, page by page as a scroll shows them: time and bytes
+ * allocated per row. Needs no display.</li>
+ * <li>with a display, a real TableView scrolled one page per frame with
+ * {@code javafx.animation.fullspeed} so frames are not capped at 60 Hz:
+ * frame time percentiles and bytes allocated on the FX thread per row shown.
+ * Layout and CSS are included; the render thread is not.</li>
+ * </ul>
+ *
+ * Usage: {@code java application.BancDefilement [articles] [frames]}
+ * (defaults: 100,000 articles, 600 measured frames per configuration)
+ */
+public class BancDefilement {
+
+    private static final int LIGNES_PAR_PAGE = 30;
+    private static final int PASSES_ECHAUFFEMENT = 3;
+    private static final int PASSES_MESURE = 5;
+    private static final int IMAGES_ECHAUFFEMENT = 120;
+
+    private static final String STYLE_ROUGE = "-fx-text-fill: #e74c3c; -fx-font-weight: bold;";
+    private static final String STYLE_JAUNE = "-fx-text-fill: #ecc94b; -fx-font-weight: bold;";
+    private static final String STYLE_VERT = "-fx-text-fill: #27ae60; -fx-font-weight: bold;";
+
+    // Consumes every result
+    private static volatile long puits;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException {
+        int nombreArticles = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int images = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+        List<ArticleEpicerie> articles = new GenerateurDonnees(42).catalogue(nombreArticles, LocalDate.now());
+        InventaireIndexe inventaire = new InventaireIndexe();
+        for (ArticleEpicerie article : articles) {
+            inventaire.ajouterArticle(article);
+        }
+        ServiceCatalogue serviceCatalogue = new ServiceCatalogue(inventaire);
+        IndexPeremption indexPeremption = inventaire.getIndexPeremption();
+
+        System.out.println(String.format("%,d articles, %d lignes par page, %d cœur(s)",
+            nombreArticles, LIGNES_PAR_PAGE, Runtime.getRuntime().availableProcessors()));
+        System.out.println();
+        System.out.println("== Texte et couleur d'une ligne, page par page");
+        System.out.println(String.format("%-28s %12s %12s", "cellules", "temps/ligne", "alloc/ligne"));
+        for (int tour = 0; tour < 2; tour++) {
+            // The first round warms both up; only the second is meaningful
+            boolean afficher = tour == 1;
+            mesurerLignes("String.format + setStyle", articles, afficher, article -> {
+                String prix = String.format("%.2f€", article.getPrix());
+                int quantite = article.getQuantiteStock();
+                String stock = Integer.toString(quantite);
+                IndexFiltres.EtatStock etat = serviceCatalogue.etatStock(article, quantite);
+                String style = etat == IndexFiltres.EtatStock.RUPTURE ? STYLE_ROUGE
+                    : etat == IndexFiltres.EtatStock.FAIBLE ? STYLE_JAUNE : STYLE_VERT;
+                String peremption = article instanceof ArticlePerissable perissable
+                    ? perissable.getDateExpiration().toString() : "N/A";
+                return prix.length() + stock.length() + style.length() + peremption.length();
+            });
+            mesurerLignes("CellulesTableau", articles, afficher, article -> {
+                String prix = CellulesTableau.montant(article.getPrix());
+                int quantite = article.getQuantiteStock();
+                String stock = CellulesTableau.entier(quantite);
+                IndexFiltres.EtatStock etat = serviceCatalogue.etatStock(article, quantite);
+                String peremption = article instanceof ArticlePerissable perissable
+                    ? CellulesTableau.date(perissable.getDateExpiration()) : "N/A";
+                return prix.length() + stock.length() + etat.ordinal() + peremption.length();
+            });
+        }
+
+        System.out.println();
+        System.out.println("== Défilement d'une TableView, une page par image");
+        System.setProperty("javafx.animation.fullspeed", "true");
+        try {
+            CountDownLatch demarre = new CountDownLatch(1);
+            Platform.startup(demarre::countDown);
+            demarre.await();
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            System.out.println("Pas d'affichage disponible (" + e.getMessage() + "): partie ignorée");
+            return;
+        }
+
+        System.out.println(String.format("%-28s %10s %10s %10s %12s", "cellules", "p50", "p95", "p99", "alloc/ligne"));
+        defiler("String.format + setStyle", articles, images, colonnes -> installerAnciennesCellules(colonnes, serviceCatalogue));
+        defiler("CellulesTableau", articles, images, colonnes -> installerCellulesPartagees(colonnes, serviceCatalogue, indexPeremption));
+        Platform.exit();
+    }
+
+    private interface TravailLigne {
+        int executer(ArticleEpicerie article);
+    }
+
+    private static void mesurerLignes(String nom, List<ArticleEpicerie> articles, boolean afficher, TravailLigne travail) {
+        for (int passe = 0; passe < PASSES_ECHAUFFEMENT; passe++) {
+            parcourir(articles, travail);
+        }
+        long thread = Thread.currentThread().getId();
+        long allocDebut = THREADS.getThreadAllocatedBytes(thread);
+        long debut = System.nanoTime();
+        for (int passe = 0; passe < PASSES_MESURE; passe++) {
+            parcourir(articles, travail);
+        }
+        long duree = System.nanoTime() - debut;
+        long alloue = THREADS.getThreadAllocatedBytes(thread) - allocDebut;
+        long lignes = (long) PASSES_MESURE * articles.size();
+        if (afficher) {
+            System.out.println(String.format("%-28s %10.1fns %10.1f o", nom, (double) duree / lignes, (double) alloue / lignes));
+        }
+    }
+
+    // Page by page from the top, as the table asks for its visible rows
+    private static void parcourir(List<ArticleEpicerie> articles, TravailLigne travail) {
+        long total = 0;
+        for (int page = 0; page < articles.size(); page += LIGNES_PAR_PAGE) {
+            int fin = Math.min(articles.size(), page + LIGNES_PAR_PAGE);
+            for (int i = page; i < fin; i++) {
+                total += travail.executer(articles.get(i));
+            }
+        }
+        puits += total;
+    }
+
+    /**
+     * Columns of the inventory table for which the configuration installs cells.
+     */
+    private static class Colonnes {
+        final TableColumn<ArticleEpicerie, String> nom = new TableColumn<>("Nom");
+        final TableColumn<ArticleEpicerie, Double> prix = new TableColumn<>("Prix");
+        final TableColumn<ArticleEpicerie, Integer> stock = new TableColumn<>("Stock");
+        final TableColumn<ArticleEpicerie, String> statut = new TableColumn<>("Statut");
+        final TableColumn<ArticleEpicerie, String> peremption = new TableColumn<>("Péremption");
+    }
+
+    private interface Installation {
+        void installer(Colonnes colonnes);
+    }
+
+    private static void defiler(String nom, List<ArticleEpicerie> articles, int images, Installation installation)
+            throws InterruptedException {
+        long[] durees = new long[images];
+        long[] alloue = new long[1];
+        CountDownLatch termine = new CountDownLatch(1);
+
+        Platform.runLater(() -> {
+            Colonnes colonnes = new Colonnes();
+            colonnes.nom.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getNom()));
+            colonnes.prix.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getPrix()));
+            colonnes.stock.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getQuantiteStock()));
+            installation.installer(colonnes);
+
+            TableView<ArticleEpicerie> table = new TableView<>(FXCollections.observableArrayList(articles));
+            table.getColumns().addAll(Arrays.asList(colonnes.nom, colonnes.prix, colonnes.stock, colonnes.statut, colonnes.peremption));
+            Scene scene = new Scene(table, 900, 26 * LIGNES_PAR_PAGE);
+            scene.getStylesheets().add(BancDefilement.class.getResource("/application/application.css").toExternalForm());
+            Stage stage = new Stage();
+            stage.setScene(scene);
+            stage.show();
+
+            long thread = Thread.currentThread().getId();
+            new AnimationTimer() {
+                private int image = -IMAGES_ECHAUFFEMENT;
+                private int position;
+                private long precedente;
+                private long allocDebut;
+
+                @Override
+                public void handle(long maintenant) {
+                    if (image == 0) {
+                        allocDebut = THREADS.getThreadAllocatedBytes(thread);
+                    } else if (image > 0) {
+                        durees[image - 1] = maintenant - precedente;
+                    }
+                    precedente = maintenant;
+                    if (image == images) {
+                        alloue[0] = THREADS.getThreadAllocatedBytes(thread) - allocDebut;
+                        stop();
+                        stage.close();
+                        termine.countDown();
+                        return;
+                    }
+                    image++;
+                    position = (position + LIGNES_PAR_PAGE) % Math.max(1, articles.size() - LIGNES_PAR_PAGE);
+                    table.scrollTo(position);
+                }
+            }.start();
+        });
+        termine.await();
+
+        Arrays.sort(durees);
+        long lignes = (long) images * LIGNES_PAR_PAGE;
+        System.out.println(String.format("%-28s %8.2fms %8.2fms %8.2fms %10.0f o", nom,
+            durees[images / 2] / 1e6, durees[(int) (images * 0.95)] / 1e6, durees[(int) (images * 0.99)] / 1e6,
+            (double) alloue[0] / lignes));
+    }
+
+    // The cells the windows built before CellulesTableau
+    private static void installerAnciennesCellules(Colonnes colonnes, ServiceCatalogue serviceCatalogue) {
+        colonnes.prix.setCellFactory(column -> new TableCell<ArticleEpicerie, Double>() {
+            @Override
+            protected void updateItem(Double price, boolean empty) {
+                super.updateItem(price, empty);
+                setText(empty || price == null ? null : String.format("%.2f€", price));
+            }
+        });
+        colonnes.stock.setCellFactory(column -> new TableCell<ArticleEpicerie, Integer>() {
+            @Override
+            protected void updateItem(Integer quantity, boolean empty) {
+                super.updateItem(quantity, empty);
+                if (empty || quantity == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(quantity.toString());
+                    setStyle(style(serviceCatalogue.etatStock(getTableView().getItems().get(getIndex()), quantity)));
+                }
+            }
+        });
+        colonnes.statut.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    ArticleEpicerie article = getTableView().getItems().get(getIndex());
+                    IndexFiltres.EtatStock state = serviceCatalogue.etatStock(article, article.getQuantiteStock());
+                    setText(state == IndexFiltres.EtatStock.RUPTURE ? "RUPTURE" : state == IndexFiltres.EtatStock.FAIBLE ? "FAIBLE" : "OK");
+                    setStyle(style(state));
+                }
+            }
+        });
+        colonnes.peremption.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty) {
+                    setText(null);
+                    setStyle("");
+                } else if (getTableView().getItems().get(getIndex()) instanceof ArticlePerissable perissable) {
+                    setText(perissable.getDateExpiration().toString());
+                    setStyle(perissable.estPerime() ? STYLE_ROUGE
+                        : perissable.getJoursRestants() <= 3 ? STYLE_JAUNE : "-fx-text-fill: #27ae60;");
+                } else {
+                    setText("N/A");
+                    setStyle("-fx-text-fill: #718096;");
+                }
+            }
+        });
+    }
+
+    private static String style(IndexFiltres.EtatStock etat) {
+        return etat == IndexFiltres.EtatStock.RUPTURE ? STYLE_ROUGE : etat == IndexFiltres.EtatStock.FAIBLE ? STYLE_JAUNE : STYLE_VERT;
+    }
+
+    private static void installerCellulesPartagees(Colonnes colonnes, ServiceCatalogue serviceCatalogue,
+                                                   IndexPeremption indexPeremption) {
+        BiFunction<ArticleEpicerie, Integer, IndexFiltres.EtatStock> etat = serviceCatalogue::etatStock;
+        colonnes.prix.setCellFactory(CellulesTableau.montants());
+        colonnes.stock.setCellFactory(CellulesTableau.stocks(etat));
+        colonnes.statut.setCellFactory(CellulesTableau.etatsStock(article -> etat.apply(article, article.getQuantiteStock())));
+        colonnes.peremption.setCellFactory(CellulesTableau.peremptions(perissable -> indexPeremption.etat(perissable, 3)));
+    }
+}
@@ -0,0 +1,119 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticleNonPerissable;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.Caisse;
+import InventaireArticle.Inventaire;
+import InventaireArticle.Panier;
+import InventaireArticle.Vente;
+
+/**
+ * Headless scaling benchmark of the parallel reports, from 1 to N threads.
+ *
+ * Builds a synthetic catalog and sales history, then times each report of
+ * {@link CalculRapports} alone and the four reports started together, for
+ * every pool size. Each figure is the median of several runs after warm-up;
+ * the totals are checked to be identical whatever the number of threads.
+ *
+ * Usage: {@code java -Xmx4g application.BancRapports [articles] [sale lines] [max threads]}
+ * (defaults: 1,000,000 articles, 10,000,000 lines, all cores)
+ */
+public class BancRapports {
+
+    private static final int ESSAIS = 5;
+    private static final int ECHAUFFEMENT = 2;
+
+    public static void main(String[] args) {
+        int nombreArticles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long nombreLignes = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Random aleatoire = new Random(42);
+        LocalDate aujourdHui = LocalDate.now();
+        Inventaire inventaire = new Inventaire();
+        List<ArticleEpicerie> articles = new ArrayList<>(nombreArticles);
+        for (int i = 0; i < nombreArticles; i++) {
+            String id = String.format("B%07d", i);
+            double prix = 0.5 + aleatoire.nextInt(2000) / 100.0;
+            // Large stock so the history can be recorded; a few articles end up low
+            int stock = i % 20 == 0 ? aleatoire.nextInt(12) : 1_000_000;
+            ArticleEpicerie article = i % 3 == 0
+                ? new ArticlePerissable(id, "Article " + i, prix, stock, "Frais", aujourdHui.plusDays(aleatoire.nextInt(40) - 10))
+                : new ArticleNonPerissable(id, "Article " + i, prix, stock, "Épicerie", 365);
+            inventaire.ajouterArticle(article);
+            articles.add(article);
+        }
+
+        Caisse caisse = new Caisse(0.0);
+        long lignes = 0;
+        while (lignes < nombreLignes) {
+            Panier panier = new Panier();
+            int lignesPanier = 1 + aleatoire.nextInt(7);
+            for (int l = 0; l < lignesPanier; l++) {
+                ArticleEpicerie article = articles.get(aleatoire.nextInt(nombreArticles));
+                if (article.getQuantiteStock() > 1000) {
+                    panier.ajouterArticle(article, 1 + aleatoire.nextInt(3));
+                }
+            }
+            if (panier.estVide()) continue;
+            Vente vente = caisse.enregistrerVente(panier, inventaire);
+            if (vente != null) {
+                lignes += vente.getArticles().size();
+            }
+        }
+        List<Vente> ventes = new ArrayList<>(caisse.getVentesJournalieres());
+        System.out.println(String.format("%,d articles, %,d ventes, %,d lignes, %d cœur(s)",
+            nombreArticles, ventes.size(), lignes, Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("%8s %12s %12s %12s %12s %12s %9s",
+            "threads", "inventaire", "périmés", "stock faible", "ventes", "les 4", "accél."));
+
+        double referenceTous = 0;
+        String empreinteReference = null;
+        for (int threads = 1; threads <= maxThreads; threads = threads == maxThreads ? maxThreads + 1 : Math.min(threads * 2, maxThreads)) {
+            CalculRapports calcul = new CalculRapports(threads);
+            String[] empreinte = new String[2];
+            double inventaireMs = mesurer(() -> empreinte[0] = "inventaire " + calcul.rapportInventaire(articles).getValeur());
+            double perimesMs = mesurer(() -> calcul.rapportPerimes(articles));
+            double stockFaibleMs = mesurer(() -> calcul.rapportStockFaible(articles));
+            double ventesMs = mesurer(() -> empreinte[1] = "ventes " + calcul.rapportVentes(ventes, null, null).getChiffreAffaires());
+            double tousMs = mesurer(() -> CompletableFuture.allOf(
+                calcul.lancer(() -> calcul.rapportInventaire(articles)),
+                calcul.lancer(() -> calcul.rapportPerimes(articles)),
+                calcul.lancer(() -> calcul.rapportStockFaible(articles)),
+                calcul.lancer(() -> calcul.rapportVentes(ventes, null, null))).join());
+            calcul.arreter();
+
+            if (threads == 1) {
+                referenceTous = tousMs;
+                empreinteReference = String.join(", ", empreinte);
+            } else if (!String.join(", ", empreinte).equals(empreinteReference)) {
+                System.err.println("Résultats différents avec " + threads + " threads: " + String.join(", ", empreinte));
+            }
+            System.out.println(String.format("%8d %10.1fms %10.1fms %10.1fms %10.1fms %10.1fms %8.2fx",
+                threads, inventaireMs, perimesMs, stockFaibleMs, ventesMs, tousMs, referenceTous / tousMs));
+        }
+    }
+
+    // Median duration in milliseconds, after warm-up
+    private static double mesurer(Runnable calcul) {
+        for (int i = 0; i < ECHAUFFEMENT; i++) {
+            calcul.run();
+        }
+        double[] durees = new double[ESSAIS];
+        for (int i = 0; i < ESSAIS; i++) {
+            long debut = System.nanoTime();
+            calcul.run();
+            durees[i] = (System.nanoTime() - debut) / 1e6;
+        }
+        Arrays.sort(durees);
+        return durees[ESSAIS / 2];
+    }
+}
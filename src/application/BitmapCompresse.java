@@ -0,0 +1,272 @@
+package application;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints, in the spirit of Roaring bitmaps.
+ *
+ * Values are grouped by their high 16 bits. Each group is stored either as a
+ * sorted array of its low 16 bits (sparse groups) or as a 65,536-bit word
+ * array (dense groups), switching representation as the group fills up or
+ * empties. Intersections work container by container.
+ */
+public class BitmapCompresse {
+
+    // Above this many values a group is cheaper as a bit array (8 KB either way)
+    private static final int SEUIL_TABLEAU = 4096;
+
+    private char[] cles = new char[4];
+    private Conteneur[] conteneurs = new Conteneur[4];
+    private int taille;
+
+    public void ajouter(int valeur) {
+        char cle = (char) (valeur >>> 16);
+        int i = chercher(cle);
+        if (i < 0) {
+            i = -i - 1;
+            inserer(i, cle, new ConteneurTableau());
+        }
+        conteneurs[i] = conteneurs[i].ajouter((char) valeur);
+    }
+
+    public void retirer(int valeur) {
+        int i = chercher((char) (valeur >>> 16));
+        if (i < 0) return;
+
+        Conteneur conteneur = conteneurs[i].retirer((char) valeur);
+        if (conteneur.cardinalite() == 0) {
+            System.arraycopy(cles, i + 1, cles, i, taille - i - 1);
+            System.arraycopy(conteneurs, i + 1, conteneurs, i, taille - i - 1);
+            conteneurs[--taille] = null;
+        } else {
+            conteneurs[i] = conteneur;
+        }
+    }
+
+    public boolean contient(int valeur) {
+        int i = chercher((char) (valeur >>> 16));
+        return i >= 0 && conteneurs[i].contient((char) valeur);
+    }
+
+    public int cardinalite() {
+        int total = 0;
+        for (int i = 0; i < taille; i++) {
+            total += conteneurs[i].cardinalite();
+        }
+        return total;
+    }
+
+    /**
+     * Returns a new bitmap holding the values present in both bitmaps.
+     */
+    public BitmapCompresse et(BitmapCompresse autre) {
+        BitmapCompresse resultat = new BitmapCompresse();
+        int i = 0;
+        int j = 0;
+        while (i < taille && j < autre.taille) {
+            if (cles[i] < autre.cles[j]) {
+                i++;
+            } else if (cles[i] > autre.cles[j]) {
+                j++;
+            } else {
+                Conteneur intersection = conteneurs[i].et(autre.conteneurs[j]);
+                if (intersection.cardinalite() > 0) {
+                    resultat.inserer(resultat.taille, cles[i], intersection);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Visits every value in increasing order.
+     */
+    public void pourChaque(IntConsumer action) {
+        for (int i = 0; i < taille; i++) {
+            conteneurs[i].pourChaque(cles[i] << 16, action);
+        }
+    }
+
+    private int chercher(char cle) {
+        return Arrays.binarySearch(cles, 0, taille, cle);
+    }
+
+    private void inserer(int position, char cle, Conteneur conteneur) {
+        if (taille == cles.length) {
+            cles = Arrays.copyOf(cles, taille * 2);
+            conteneurs = Arrays.copyOf(conteneurs, taille * 2);
+        }
+        System.arraycopy(cles, position, cles, position + 1, taille - position);
+        System.arraycopy(conteneurs, position, conteneurs, position + 1, taille - position);
+        cles[position] = cle;
+        conteneurs[position] = conteneur;
+        taille++;
+    }
+
+    private abstract static class Conteneur {
+        abstract Conteneur ajouter(char valeur);
+        abstract Conteneur retirer(char valeur);
+        abstract boolean contient(char valeur);
+        abstract int cardinalite();
+        abstract Conteneur et(Conteneur autre);
+        abstract void pourChaque(int base, IntConsumer action);
+    }
+
+    // Sparse group: sorted low 16 bits
+    private static class ConteneurTableau extends Conteneur {
+        private char[] valeurs = new char[4];
+        private int nombre;
+
+        @Override
+        Conteneur ajouter(char valeur) {
+            int position = Arrays.binarySearch(valeurs, 0, nombre, valeur);
+            if (position >= 0) return this;
+            if (nombre >= SEUIL_TABLEAU) {
+                return versBits().ajouter(valeur);
+            }
+            position = -position - 1;
+            if (nombre == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.min(nombre * 2, SEUIL_TABLEAU));
+            }
+            System.arraycopy(valeurs, position, valeurs, position + 1, nombre - position);
+            valeurs[position] = valeur;
+            nombre++;
+            return this;
+        }
+
+        @Override
+        Conteneur retirer(char valeur) {
+            int position = Arrays.binarySearch(valeurs, 0, nombre, valeur);
+            if (position >= 0) {
+                System.arraycopy(valeurs, position + 1, valeurs, position, nombre - position - 1);
+                nombre--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contient(char valeur) {
+            return Arrays.binarySearch(valeurs, 0, nombre, valeur) >= 0;
+        }
+
+        @Override
+        int cardinalite() {
+            return nombre;
+        }
+
+        @Override
+        Conteneur et(Conteneur autre) {
+            ConteneurTableau resultat = new ConteneurTableau();
+            resultat.valeurs = new char[Math.max(nombre, 1)];
+            if (autre instanceof ConteneurTableau tableau) {
+                int i = 0;
+                int j = 0;
+                while (i < nombre && j < tableau.nombre) {
+                    if (valeurs[i] < tableau.valeurs[j]) {
+                        i++;
+                    } else if (valeurs[i] > tableau.valeurs[j]) {
+                        j++;
+                    } else {
+                        resultat.valeurs[resultat.nombre++] = valeurs[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < nombre; i++) {
+                    if (autre.contient(valeurs[i])) {
+                        resultat.valeurs[resultat.nombre++] = valeurs[i];
+                    }
+                }
+            }
+            return resultat;
+        }
+
+        @Override
+        void pourChaque(int base, IntConsumer action) {
+            for (int i = 0; i < nombre; i++) {
+                action.accept(base | valeurs[i]);
+            }
+        }
+
+        private ConteneurBits versBits() {
+            ConteneurBits bits = new ConteneurBits();
+            for (int i = 0; i < nombre; i++) {
+                bits.ajouter(valeurs[i]);
+            }
+            return bits;
+        }
+    }
+
+    // Dense group: one bit per low 16-bit value
+    private static class ConteneurBits extends Conteneur {
+        private final long[] mots = new long[1024];
+        private int nombre;
+
+        @Override
+        Conteneur ajouter(char valeur) {
+            long masque = 1L << valeur;
+            if ((mots[valeur >>> 6] & masque) == 0) {
+                mots[valeur >>> 6] |= masque;
+                nombre++;
+            }
+            return this;
+        }
+
+        @Override
+        Conteneur retirer(char valeur) {
+            long masque = 1L << valeur;
+            if ((mots[valeur >>> 6] & masque) != 0) {
+                mots[valeur >>> 6] &= ~masque;
+                nombre--;
+            }
+            // Switch back only well below the threshold to avoid flip-flopping
+            return nombre < SEUIL_TABLEAU / 2 ? versTableau() : this;
+        }
+
+        @Override
+        boolean contient(char valeur) {
+            return (mots[valeur >>> 6] & (1L << valeur)) != 0;
+        }
+
+        @Override
+        int cardinalite() {
+            return nombre;
+        }
+
+        @Override
+        Conteneur et(Conteneur autre) {
+            if (autre instanceof ConteneurTableau) {
+                return autre.et(this);
+            }
+            ConteneurBits bits = (ConteneurBits) autre;
+            ConteneurBits resultat = new ConteneurBits();
+            for (int i = 0; i < mots.length; i++) {
+                resultat.mots[i] = mots[i] & bits.mots[i];
+                resultat.nombre += Long.bitCount(resultat.mots[i]);
+            }
+            return resultat.nombre < SEUIL_TABLEAU ? resultat.versTableau() : resultat;
+        }
+
+        @Override
+        void pourChaque(int base, IntConsumer action) {
+            for (int i = 0; i < mots.length; i++) {
+                long mot = mots[i];
+                while (mot != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(mot));
+                    mot &= mot - 1;
+                }
+            }
+        }
+
+        private ConteneurTableau versTableau() {
+            ConteneurTableau tableau = new ConteneurTableau();
+            tableau.valeurs = new char[Math.max(nombre, 4)];
+            pourChaque(0, valeur -> tableau.valeurs[tableau.nombre++] = (char) valeur);
+            return tableau;
+        }
+    }
+}
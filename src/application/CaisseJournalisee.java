@@ -0,0 +1,393 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Caisse;
+import InventaireArticle.Inventaire;
+import InventaireArticle.LignePanier;
+import InventaireArticle.LigneVente;
+import InventaireArticle.Panier;
+import InventaireArticle.Vente;
+
+/**
+ * Caisse that also writes every recorded sale to a {@link JournalVentes}.
+ * At startup, {@link #rejouerJournal(Inventaire)} re-applies the day's sales
+ * to the caisse and to the inventory stock.
+ *
+ * Several registers can share one instance: a sale checks and takes the stock
+ * of all its lines atomically, so the same article is never oversold.
+ *
+ * A journal opened for a day is swapped for the next day's journal by the
+ * first sale or checkpoint after midnight.
+ */
+public class CaisseJournalisee extends Caisse {
+
+    private static final int NOMBRE_VERROUS = 64;
+
+    private volatile JournalVentes journal;
+    // Start of the day after the journal's day, in epoch ms; Long.MAX_VALUE when it never rolls over
+    private volatile long basculeJournalMillis;
+    private final FluxEvenements fluxEvenements;
+    private final VerrousArticles verrous = new VerrousArticles(NOMBRE_VERROUS);
+    private final ReservationsStock reservations;
+    private final IndexVentesParJour indexVentes = new IndexVentesParJour();
+    private final PrevisionDemande prevision = new PrevisionDemande();
+    private final ReentrantReadWriteLock verrouPointDeControle = new ReentrantReadWriteLock();
+    // Recorded and replayed sales; replayed ones keep their journaled day and prices
+    private final List<Vente> ventes = new ArrayList<>();
+    private final List<Long> sequencesRejetees = Collections.synchronizedList(new ArrayList<>());
+
+    public CaisseJournalisee(double fondDeCaisse, JournalVentes journal) {
+        this(fondDeCaisse, journal, new FluxEvenements(Runnable::run));
+    }
+
+    public CaisseJournalisee(double fondDeCaisse, JournalVentes journal, FluxEvenements fluxEvenements) {
+        super(fondDeCaisse);
+        this.journal = journal;
+        this.basculeJournalMillis = basculeJournal(journal);
+        this.fluxEvenements = fluxEvenements;
+        this.reservations = new ReservationsStock(fluxEvenements);
+    }
+
+    /**
+     * Records the sale only if every line is in stock, as one atomic step.
+     * Quantities held by other carts count as unavailable; the basket's own
+     * holds are released once the sale is recorded.
+     *
+     * @throws StockInsuffisantException listing every failing line; nothing is
+     *         committed in that case
+     */
+    @Override
+    public Vente enregistrerVente(Panier panier, Inventaire inventaire) {
+        return enregistrerVente(panier, inventaire, panier);
+    }
+
+    /**
+     * Same as {@link #enregistrerVente(Panier, Inventaire)} for a basket whose
+     * stock is held by {@code proprietaire}, e.g. the {@link PanierCaisse} it
+     * was built from.
+     */
+    public Vente enregistrerVente(Panier panier, Inventaire inventaire, Object proprietaire) {
+        Map<String, Integer> quantites = new LinkedHashMap<>();
+        for (LignePanier ligne : panier.getLignes()) {
+            quantites.merge(ligne.getArticle().getId(), ligne.getQuantite(), Integer::sum);
+        }
+
+        if (System.currentTimeMillis() >= basculeJournalMillis) {
+            changerDeJour();
+        }
+
+        Vente vente;
+        // Sales run in parallel, a checkpoint waits for those in flight
+        verrouPointDeControle.readLock().lock();
+        try {
+            // The stripes make the stock check, the decrement and the journal append atomic per article
+            VerrousArticles.Verrouillage verrouillage = verrous.verrouiller(quantites.keySet());
+            try {
+                List<StockInsuffisantException.Manque> manques = new ArrayList<>();
+                for (Map.Entry<String, Integer> entree : quantites.entrySet()) {
+                    ArticleEpicerie article = inventaire.getArticle(entree.getKey());
+                    if (article == null) {
+                        manques.add(new StockInsuffisantException.Manque(entree.getKey(), null, entree.getValue(), 0));
+                    } else {
+                        int disponible = reservations.getDisponible(proprietaire, article);
+                        if (disponible < entree.getValue()) {
+                            manques.add(new StockInsuffisantException.Manque(
+                                article.getId(), article.getNom(), entree.getValue(), disponible));
+                        }
+                    }
+                }
+                if (!manques.isEmpty()) {
+                    throw new StockInsuffisantException(manques);
+                }
+
+                // The base caisse keeps its sales in a plain list
+                synchronized (this) {
+                    vente = super.enregistrerVente(panier, inventaire);
+                    if (vente != null) {
+                        ventes.add(vente);
+                    }
+                }
+                if (vente != null) {
+                    journaliser(vente);
+                    // Still under the stripes: the stock events carry the stock this sale left
+                    signalerStocks(vente, inventaire);
+                }
+            } finally {
+                verrouillage.close();
+            }
+
+            if (vente != null) {
+                reservations.libererTout(proprietaire);
+                indexVentes.ajouter(vente);
+                prevision.enregistrer(vente);
+                fluxEvenements.publier(EvenementMagasin.venteEnregistree(vente));
+            }
+        } finally {
+            verrouPointDeControle.readLock().unlock();
+        }
+        return vente;
+    }
+
+    /**
+     * Sales recorded by this caisse, including the replayed ones.
+     */
+    @Override
+    public List<Vente> getVentesJournalieres() {
+        return ventes;
+    }
+
+    private void journaliser(Vente vente) {
+        JournalVentes journal = this.journal;
+        if (journal == null) return;
+        try {
+            journal.ajouter(vente);
+        } catch (IOException e) {
+            // The sale is still recorded in memory, only the journal failed
+            System.err.println("Impossible de journaliser la vente " + vente.getIdVente() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a checkpoint tagged with the journal position it includes.
+     */
+    public interface PointDeControle {
+        void ecrire(LocalDate jourJournal, long sequenceJournal) throws IOException;
+    }
+
+    /**
+     * Runs {@code pointDeControle} while no sale is being recorded, so the
+     * stock and forecast it saves contain exactly the sales journaled up to the
+     * sequence it is given. Sales wait until it returns.
+     */
+    public void pointDeControle(PointDeControle pointDeControle) throws IOException {
+        if (System.currentTimeMillis() >= basculeJournalMillis) {
+            changerDeJour();
+        }
+        verrouPointDeControle.writeLock().lock();
+        try {
+            JournalVentes journal = this.journal;
+            pointDeControle.ecrire(journal != null ? journal.getJour() : null,
+                journal != null ? journal.getDerniereSequence() : 0);
+        } finally {
+            verrouPointDeControle.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves to today's journal once the day of the current one is over. It
+     * runs while no sale is in flight, so a sale is journaled on the day it
+     * was made and a checkpoint never straddles two journals.
+     */
+    private void changerDeJour() {
+        verrouPointDeControle.writeLock().lock();
+        try {
+            JournalVentes ancien = journal;
+            if (ancien == null || System.currentTimeMillis() < basculeJournalMillis) return;
+            LocalDate aujourdhui = LocalDate.now();
+            try {
+                JournalVentes nouveau = JournalVentes.ouvrir(ancien.getRepertoire().resolveSibling(aujourdhui.toString()));
+                journal = nouveau;
+                basculeJournalMillis = basculeJournal(nouveau);
+                ancien.close();
+            } catch (IOException e) {
+                // Keep writing to the previous day rather than losing the sales, retry with the next one
+                System.err.println("Impossible d'ouvrir le journal des ventes du " + aujourdhui + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        } finally {
+            verrouPointDeControle.writeLock().unlock();
+        }
+    }
+
+    private static long basculeJournal(JournalVentes journal) {
+        if (journal == null || journal.getJour() == null) return Long.MAX_VALUE;
+        return journal.getJour().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Replays the journaled sales into this caisse. Inventory stock is
+     * decremented just like during the original sale.
+     *
+     * @return the number of sales replayed
+     */
+    public int rejouerJournal(Inventaire inventaire) {
+        return rejouerJournal(inventaire, 0);
+    }
+
+    /**
+     * Replays the journaled sales into this caisse. Sales up to
+     * {@code sequenceDejaAppliquee} are already reflected in the stock (for
+     * instance by a catalog snapshot): they are only added to the caisse, and
+     * not to the demand forecast, which was saved along with the snapshot.
+     *
+     * @return the number of sales replayed
+     */
+    public int rejouerJournal(Inventaire inventaire, long sequenceDejaAppliquee) {
+        JournalVentes journal = this.journal;
+        if (journal == null) return 0;
+
+        int[] ventesRejouees = {0};
+        try {
+            journal.rejouer(enregistrement -> {
+                boolean stockDejaApplique = enregistrement.getSequence() <= sequenceDejaAppliquee;
+                Panier panier = new Panier();
+                for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+                    ArticleEpicerie article = inventaire.getArticle(ligne.getIdArticle());
+                    if (article == null) {
+                        System.err.println("Journal des ventes: article " + ligne.getIdArticle() + " introuvable, ligne ignorée");
+                        continue;
+                    }
+                    if (stockDejaApplique) {
+                        // Give the quantity back first, recording the sale takes it again
+                        article.setQuantiteStock(article.getQuantiteStock() + ligne.getQuantite());
+                    }
+                    panier.ajouterArticle(article, ligne.getQuantite());
+                }
+
+                // Call the base caisse directly: the sale is already journaled
+                if (!panier.estVide()) {
+                    Vente vente;
+                    synchronized (this) {
+                        Vente enregistree = super.enregistrerVente(panier, inventaire);
+                        vente = enregistree != null ? new VenteRejouee(enregistree, enregistrement) : null;
+                        if (vente != null) {
+                            ventes.add(vente);
+                        }
+                    }
+                    if (vente != null) {
+                        signalerStocks(vente, inventaire);
+                        indexVentes.ajouter(vente);
+                        if (!stockDejaApplique) {
+                            prevision.enregistrer(vente);
+                        }
+                        fluxEvenements.publier(EvenementMagasin.venteEnregistree(vente));
+                        ventesRejouees[0]++;
+                    } else {
+                        // The stock was edited below what the sale took: it is journaled but not in the caisse
+                        sequencesRejetees.add(enregistrement.getSequence());
+                        System.err.println("Journal des ventes: vente " + enregistrement.getSequence()
+                            + " refusée au rejeu, stock insuffisant pour " + decrire(enregistrement));
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la relecture du journal des ventes: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        System.out.println("Journal des ventes: " + ventesRejouees[0] + " vente(s) rejouée(s)");
+        if (!sequencesRejetees.isEmpty()) {
+            System.err.println("Journal des ventes: " + sequencesRejetees.size() + " vente(s) refusée(s) au rejeu");
+        }
+        return ventesRejouees[0];
+    }
+
+    /**
+     * Sequences of the journaled sales the last replays could not record,
+     * because the stock no longer covered them.
+     */
+    public List<Long> getSequencesRejetees() {
+        synchronized (sequencesRejetees) {
+            return new ArrayList<>(sequencesRejetees);
+        }
+    }
+
+    private static String decrire(JournalVentes.EnregistrementVente enregistrement) {
+        StringBuilder lignes = new StringBuilder();
+        for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+            if (lignes.length() > 0) lignes.append(", ");
+            lignes.append(ligne.getIdArticle()).append(" x").append(ligne.getQuantite());
+        }
+        return lignes.toString();
+    }
+
+    /**
+     * Applies to the stock the sales of a previous day's journal written after
+     * {@code sequenceDejaAppliquee}. Those sales belong to another day, so they
+     * are not added to this caisse.
+     */
+    public static void rattraperStocks(Path repertoireJournal, Inventaire inventaire, long sequenceDejaAppliquee) {
+        rattraperStocks(repertoireJournal, inventaire, sequenceDejaAppliquee, null);
+    }
+
+    /**
+     * Same as {@link #rattraperStocks(Path, Inventaire, long)}, also feeding
+     * those sales to {@code prevision} on the day they were made.
+     */
+    public static void rattraperStocks(Path repertoireJournal, Inventaire inventaire, long sequenceDejaAppliquee,
+                                       PrevisionDemande prevision) {
+        try {
+            JournalVentes.relire(repertoireJournal, enregistrement -> {
+                if (enregistrement.getSequence() <= sequenceDejaAppliquee) return;
+                for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+                    ArticleEpicerie article = inventaire.getArticle(ligne.getIdArticle());
+                    if (article != null) {
+                        article.setQuantiteStock(Math.max(0, article.getQuantiteStock() - ligne.getQuantite()));
+                        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+                            inventaireIndexe.stockModifie(article.getId(), -ligne.getQuantite());
+                        }
+                        if (prevision != null) {
+                            prevision.enregistrer(article, ligne.getQuantite(),
+                                PrevisionDemande.jourDe(enregistrement.getHorodatage()));
+                        }
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la relecture du journal " + repertoireJournal + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets an indexed inventory move the sold articles between its stock bitmaps.
+     */
+    private static void signalerStocks(Vente vente, Inventaire inventaire) {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            for (LigneVente ligne : vente.getArticles()) {
+                inventaireIndexe.stockModifie(ligne.getArticle().getId(), -ligne.getQuantite());
+            }
+        }
+    }
+
+    public FluxEvenements getFluxEvenements() {
+        return fluxEvenements;
+    }
+
+    /**
+     * Stock holds of the carts selling through this caisse.
+     */
+    public ReservationsStock getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Sales recorded by this caisse, partitioned by day for range reports.
+     */
+    public IndexVentesParJour getIndexVentes() {
+        return indexVentes;
+    }
+
+    /**
+     * Demand forecast fed by the sales of this caisse.
+     */
+    public PrevisionDemande getPrevision() {
+        return prevision;
+    }
+
+    public JournalVentes getJournal() {
+        return journal;
+    }
+}
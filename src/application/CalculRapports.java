@@ -0,0 +1,342 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Report aggregations run as parallel reductions on a fork-join pool.
+ *
+ * The input (a snapshot of the articles or sales) is split in halves until
+ * the slices are small enough, each slice is reduced into its own partial
+ * result, and the partial results are merged left to right, so the rows of a
+ * report keep the order of the input. Amounts are summed in cents, so the
+ * totals do not depend on how the work was split.
+ *
+ * Several reports may be started at once with {@link #lancer(Supplier)}; they
+ * share the pool and together keep every core busy.
+ */
+public class CalculRapports {
+
+    public static final int SEUIL_STOCK_FAIBLE = PointsCommande.POINT_COMMANDE_PAR_DEFAUT;
+    public static final int JOURS_AVANT_PEREMPTION = 7;
+
+    // Below this size a slice is reduced sequentially
+    private static final int TAILLE_TRANCHE_MIN = 4096;
+
+    private static CalculRapports commun;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Pool shared by the report windows, sized to the number of cores.
+     */
+    public static synchronized CalculRapports commun() {
+        if (commun == null) {
+            commun = new CalculRapports();
+        }
+        return commun;
+    }
+
+    public CalculRapports() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CalculRapports(int parallelisme) {
+        this.pool = new ForkJoinPool(parallelisme, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("calcul-rapports-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public int getParallelisme() {
+        return pool.getParallelism();
+    }
+
+    public void arreter() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Runs {@code calcul} on the pool, off the calling thread.
+     */
+    public <R> CompletableFuture<R> lancer(Supplier<R> calcul) {
+        return CompletableFuture.supplyAsync(calcul, pool);
+    }
+
+    /**
+     * Reduces {@code elements} in parallel: each slice is folded into a fresh
+     * partial result with {@code accumuler}, then the right partial result of
+     * each split is merged into the left one with {@code fusionner}.
+     */
+    public <T, A> A reduire(List<T> elements, Supplier<A> nouveau,
+                            BiConsumer<A, T> accumuler, BiConsumer<A, A> fusionner) {
+        // About four slices per worker: enough for work stealing to even out,
+        // few enough that merging the partial rollups stays cheap
+        int tailleTranche = Math.max(TAILLE_TRANCHE_MIN, elements.size() / (pool.getParallelism() * 4));
+        return pool.invoke(new Reduction<>(elements, 0, elements.size(), tailleTranche, nouveau, accumuler, fusionner));
+    }
+
+    private static final class Reduction<T, A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> elements;
+        private final int debut;
+        private final int fin;
+        private final int tailleTranche;
+        private final Supplier<A> nouveau;
+        private final BiConsumer<A, T> accumuler;
+        private final BiConsumer<A, A> fusionner;
+
+        Reduction(List<T> elements, int debut, int fin, int tailleTranche, Supplier<A> nouveau,
+                  BiConsumer<A, T> accumuler, BiConsumer<A, A> fusionner) {
+            this.elements = elements;
+            this.debut = debut;
+            this.fin = fin;
+            this.tailleTranche = tailleTranche;
+            this.nouveau = nouveau;
+            this.accumuler = accumuler;
+            this.fusionner = fusionner;
+        }
+
+        @Override
+        protected A compute() {
+            if (fin - debut <= tailleTranche) {
+                A resultat = nouveau.get();
+                for (int i = debut; i < fin; i++) {
+                    accumuler.accept(resultat, elements.get(i));
+                }
+                return resultat;
+            }
+            int milieu = (debut + fin) >>> 1;
+            Reduction<T, A> gauche = new Reduction<>(elements, debut, milieu, tailleTranche, nouveau, accumuler, fusionner);
+            gauche.fork();
+            A droite = new Reduction<>(elements, milieu, fin, tailleTranche, nouveau, accumuler, fusionner).compute();
+            A resultat = gauche.join();
+            fusionner.accept(resultat, droite);
+            return resultat;
+        }
+    }
+
+    /**
+     * Rows and value of an article report.
+     */
+    public static class RapportArticles {
+        private final List<ReportsController.InventoryTableItem> lignes = new ArrayList<>();
+        private long valeurCentimes;
+
+        void ajouterLigne(ArticleEpicerie article, String libelle) {
+            long valeur = Math.round(article.getPrix() * 100) * article.getQuantiteStock();
+            lignes.add(new ReportsController.InventoryTableItem(
+                article.getId(), libelle, article.getQuantiteStock(), article.getPrix(), valeur / 100.0));
+        }
+
+        void ajouterValeur(ArticleEpicerie article) {
+            valeurCentimes += Math.round(article.getPrix() * 100) * article.getQuantiteStock();
+        }
+
+        void fusionner(RapportArticles droite) {
+            lignes.addAll(droite.lignes);
+            valeurCentimes += droite.valeurCentimes;
+        }
+
+        public List<ReportsController.InventoryTableItem> getLignes() { return lignes; }
+        public double getValeur() { return valeurCentimes / 100.0; }
+    }
+
+    public static class RapportInventaire extends RapportArticles {
+        private int nombreStockFaible;
+
+        public int getNombreArticles() { return getLignes().size(); }
+        public int getNombreStockFaible() { return nombreStockFaible; }
+    }
+
+    public static class RapportPerimes extends RapportArticles {
+        private int nombrePerimes;
+        private int nombreBientotPerimes;
+
+        public int getNombrePerimes() { return nombrePerimes; }
+        public int getNombreBientotPerimes() { return nombreBientotPerimes; }
+    }
+
+    public static class RapportStockFaible extends RapportArticles {
+        private int nombreStockFaible;
+        private int nombreRuptures;
+
+        void ajouterStockFaible(ArticleEpicerie article, PointsCommande.Seuils seuils) {
+            int stock = article.getQuantiteStock();
+            if (stock <= 0) {
+                nombreRuptures++;
+                ajouterLigne(article, article.getNom() + " (RUPTURE DE STOCK)");
+                return;
+            }
+            nombreStockFaible++;
+            String detail = seuils.estSousStockSecurite(stock)
+                ? " (Sous le stock de sécurité: " + stock + " / " + seuils.getStockSecurite() + ")"
+                : " (Stock faible: " + stock + " / " + seuils.getPointCommande() + ")";
+            ajouterLigne(article, article.getNom() + detail);
+            ajouterValeur(article);
+        }
+
+        public int getNombreStockFaible() { return nombreStockFaible; }
+        public int getNombreRuptures() { return nombreRuptures; }
+    }
+
+    /**
+     * Sales of a date range with their totals and per-article rollup.
+     */
+    public static class RapportVentes {
+        private final List<Vente> ventes = new ArrayList<>();
+        private Map<String, IndexVentesParJour.CumulArticle> parArticle = new HashMap<>();
+        private long chiffreAffairesCentimes;
+        private long nombreLignes;
+
+        public List<Vente> getVentes() { return ventes; }
+        public int getNombreVentes() { return ventes.size(); }
+        public double getChiffreAffaires() { return chiffreAffairesCentimes / 100.0; }
+        public long getNombreLignes() { return nombreLignes; }
+        public Iterable<IndexVentesParJour.CumulArticle> getCumulsArticles() { return parArticle.values(); }
+
+        public double getPanierMoyen() {
+            return ventes.isEmpty() ? 0.0 : getChiffreAffaires() / ventes.size();
+        }
+    }
+
+    public RapportInventaire rapportInventaire(List<ArticleEpicerie> articles) {
+        return rapportInventaire(articles, new PointsCommande());
+    }
+
+    public RapportInventaire rapportInventaire(List<ArticleEpicerie> articles, PointsCommande pointsCommande) {
+        return reduire(articles, RapportInventaire::new, (rapport, article) -> {
+            rapport.ajouterLigne(article, article.getNom());
+            rapport.ajouterValeur(article);
+            if (article.getQuantiteStock() <= pointsCommande.get(article.getId()).getPointCommande()) {
+                rapport.nombreStockFaible++;
+            }
+        }, (gauche, droite) -> {
+            gauche.fusionner(droite);
+            gauche.nombreStockFaible += droite.nombreStockFaible;
+        });
+    }
+
+    public RapportPerimes rapportPerimes(List<ArticleEpicerie> articles) {
+        return reduire(articles, RapportPerimes::new, (rapport, article) -> {
+            if (!(article instanceof ArticlePerissable perissable)) return;
+            if (perissable.estPerime()) {
+                rapport.nombrePerimes++;
+                rapport.ajouterLigne(article, article.getNom() + " (Expiré: " + perissable.getDateExpiration() + ")");
+                rapport.ajouterValeur(article);
+            } else if (perissable.getJoursRestants() <= JOURS_AVANT_PEREMPTION) {
+                rapport.nombreBientotPerimes++;
+            }
+        }, (gauche, droite) -> {
+            gauche.fusionner(droite);
+            gauche.nombrePerimes += droite.nombrePerimes;
+            gauche.nombreBientotPerimes += droite.nombreBientotPerimes;
+        });
+    }
+
+    /**
+     * Expired report read from the expiry index: costs the number of expired
+     * articles instead of a pass over the catalog.
+     */
+    public static RapportPerimes rapportPerimes(IndexPeremption index) {
+        RapportPerimes rapport = new RapportPerimes();
+        for (ArticlePerissable perissable : index.perimes()) {
+            rapport.nombrePerimes++;
+            rapport.ajouterLigne(perissable, perissable.getNom() + " (Expiré: " + perissable.getDateExpiration() + ")");
+            rapport.ajouterValeur(perissable);
+        }
+        rapport.nombreBientotPerimes = index.compterBientotPerimes();
+        return rapport;
+    }
+
+    public RapportStockFaible rapportStockFaible(List<ArticleEpicerie> articles) {
+        return rapportStockFaible(articles, new PointsCommande());
+    }
+
+    public RapportStockFaible rapportStockFaible(List<ArticleEpicerie> articles, PointsCommande pointsCommande) {
+        return reduire(articles, RapportStockFaible::new, (rapport, article) -> {
+            PointsCommande.Seuils seuils = pointsCommande.get(article.getId());
+            if (seuils.etat(article.getQuantiteStock()) != IndexFiltres.EtatStock.EN_STOCK) {
+                rapport.ajouterStockFaible(article, seuils);
+            }
+        }, (gauche, droite) -> {
+            gauche.fusionner(droite);
+            gauche.nombreStockFaible += droite.nombreStockFaible;
+            gauche.nombreRuptures += droite.nombreRuptures;
+        });
+    }
+
+    /**
+     * Low stock report read from the stock state bitmaps of the inventory,
+     * which hold the at-risk and out-of-stock articles already: costs the
+     * number of such articles instead of a pass over the catalog.
+     */
+    public static RapportStockFaible rapportStockFaible(InventaireIndexe inventaire) {
+        RapportStockFaible rapport = new RapportStockFaible();
+        PointsCommande pointsCommande = inventaire.getPointsCommande();
+        for (ArticleEpicerie article : inventaire.filtrer(null, IndexFiltres.EtatStock.RUPTURE)) {
+            rapport.ajouterStockFaible(article, pointsCommande.get(article.getId()));
+        }
+        for (ArticleEpicerie article : inventaire.filtrer(null, IndexFiltres.EtatStock.FAIBLE)) {
+            rapport.ajouterStockFaible(article, pointsCommande.get(article.getId()));
+        }
+        return rapport;
+    }
+
+    /**
+     * Sales dated from {@code debut} to {@code fin} inclusive; a null bound
+     * leaves that side open.
+     */
+    public RapportVentes rapportVentes(List<Vente> ventes, LocalDate debut, LocalDate fin) {
+        return reduire(ventes, RapportVentes::new, (rapport, vente) -> {
+            LocalDate date = vente.getDate();
+            if ((debut != null && date.isBefore(debut)) || (fin != null && date.isAfter(fin))) return;
+            rapport.ventes.add(vente);
+            rapport.chiffreAffairesCentimes += Math.round(vente.getTotal() * 100);
+            for (LigneVente ligne : vente.getArticles()) {
+                ArticleEpicerie article = ligne.getArticle();
+                IndexVentesParJour.CumulArticle cumul = rapport.parArticle.computeIfAbsent(
+                    article.getId(), id -> new IndexVentesParJour.CumulArticle(id, article.getNom()));
+                cumul.ajouter(ligne.getQuantite(), VenteRejouee.montantCentimes(vente, ligne));
+                rapport.nombreLignes++;
+            }
+        }, (gauche, droite) -> {
+            gauche.ventes.addAll(droite.ventes);
+            gauche.chiffreAffairesCentimes += droite.chiffreAffairesCentimes;
+            gauche.nombreLignes += droite.nombreLignes;
+            // Merge the smaller rollup into the larger one
+            Map<String, IndexVentesParJour.CumulArticle> grand = gauche.parArticle;
+            Map<String, IndexVentesParJour.CumulArticle> petit = droite.parArticle;
+            if (petit.size() > grand.size()) {
+                grand = droite.parArticle;
+                petit = gauche.parArticle;
+            }
+            for (IndexVentesParJour.CumulArticle cumul : petit.values()) {
+                IndexVentesParJour.CumulArticle existant = grand.get(cumul.getIdArticle());
+                if (existant == null) {
+                    grand.put(cumul.getIdArticle(), cumul);
+                } else {
+                    existant.ajouter(cumul.getQuantite(), cumul.getChiffreAffairesCentimes());
+                }
+            }
+            gauche.parArticle = grand;
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Channel that gzip-compresses what is written to it, one chunk at a time.
+ *
+ * Each chunk of {@link #TAILLE_MORCEAU} bytes becomes a complete gzip member;
+ * members are written one after the other, which is a valid gzip file that
+ * gzip and {@link java.util.zip.GZIPInputStream} read as a single stream.
+ * Given a {@link CalculRapports}, chunks are compressed in parallel on its
+ * pool while the caller keeps producing; a bounded number of chunks are in
+ * flight so memory stays flat, and members are written in order.
+ */
+public class CanalGzip implements WritableByteChannel {
+
+    public static final int TAILLE_MORCEAU = 1 << 20;
+
+    private final WritableByteChannel sortie;
+    private final CalculRapports calcul;
+    private final int maxEnVol;
+    private final ArrayDeque<CompletableFuture<byte[]>> enVol = new ArrayDeque<>();
+    private byte[] morceau = new byte[TAILLE_MORCEAU];
+    private int taille;
+    private boolean ouvert = true;
+
+    /**
+     * @param calcul pool compressing the chunks, or null to compress on the
+     *               calling thread
+     */
+    public CanalGzip(WritableByteChannel sortie, CalculRapports calcul) {
+        this.sortie = sortie;
+        // With a single worker, handing chunks over only adds overhead
+        this.calcul = calcul != null && calcul.getParallelisme() > 1 ? calcul : null;
+        this.maxEnVol = this.calcul != null ? this.calcul.getParallelisme() * 2 : 0;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        int ecrits = source.remaining();
+        while (source.hasRemaining()) {
+            int n = Math.min(source.remaining(), morceau.length - taille);
+            source.get(morceau, taille, n);
+            taille += n;
+            if (taille == morceau.length) {
+                soumettre();
+            }
+        }
+        return ecrits;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return ouvert;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!ouvert) return;
+        ouvert = false;
+        try {
+            if (taille > 0) {
+                soumettre();
+            }
+            while (!enVol.isEmpty()) {
+                ecrireMembre(attendre(enVol.poll()));
+            }
+        } finally {
+            sortie.close();
+        }
+    }
+
+    private void soumettre() throws IOException {
+        byte[] donnees = morceau;
+        int longueur = taille;
+        morceau = new byte[TAILLE_MORCEAU];
+        taille = 0;
+        if (calcul == null) {
+            ecrireMembre(compresser(donnees, longueur));
+            return;
+        }
+        enVol.add(calcul.lancer(() -> compresser(donnees, longueur)));
+        // Keep the pool busy without letting finished chunks pile up
+        while (enVol.size() > maxEnVol || (!enVol.isEmpty() && enVol.peek().isDone())) {
+            ecrireMembre(attendre(enVol.poll()));
+        }
+    }
+
+    private void ecrireMembre(byte[] membre) throws IOException {
+        ByteBuffer tampon = ByteBuffer.wrap(membre);
+        while (tampon.hasRemaining()) {
+            sortie.write(tampon);
+        }
+    }
+
+    private static byte[] attendre(CompletableFuture<byte[]> membre) throws IOException {
+        try {
+            return membre.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] compresser(byte[] donnees, int longueur) {
+        ByteArrayOutputStream membre = new ByteArrayOutputStream(longueur / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(membre, 1 << 16) {
+            {
+                // Favor throughput: exports are written once and read rarely
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }) {
+            gzip.write(donnees, 0, longueur);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return membre.toByteArray();
+    }
+}
@@ -0,0 +1,311 @@
+package application;
+
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javafx.css.PseudoClass;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.Callback;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticlePerissable;
+
+/**
+ * Cell factories shared by the tables of the sales, inventory and report windows.
+ *
+ * Scrolling calls updateItem for every row that comes into view. These cells
+ * remember the row item and value they show and do nothing when neither has
+ * changed, i.e. while the item's version is the same. Amounts, quantities and
+ * dates are formatted once into small caches shared by every table, so
+ * scrolling over rows already seen allocates nothing.
+ *
+ * Colours are pseudo-classes of the {@code cellule-etat} style class, defined
+ * in application.css, rather than inline styles that JavaFX parses again on
+ * every call.
+ */
+public final class CellulesTableau {
+
+    public static final String STYLE_ETAT = "cellule-etat";
+    /** Bold green, for totals. */
+    public static final String STYLE_MONTANT_FORT = "cellule-montant-fort";
+    /** Bold blue, for sold quantities. */
+    public static final String STYLE_QUANTITE_FORTE = "cellule-quantite-forte";
+    public static final String STYLE_FORT = "cellule-forte";
+
+    public static final PseudoClass RUPTURE = PseudoClass.getPseudoClass("rupture");
+    public static final PseudoClass FAIBLE = PseudoClass.getPseudoClass("faible");
+    public static final PseudoClass EN_STOCK = PseudoClass.getPseudoClass("en-stock");
+    public static final PseudoClass PERIME = PseudoClass.getPseudoClass("perime");
+    public static final PseudoClass BIENTOT_PERIME = PseudoClass.getPseudoClass("bientot-perime");
+    public static final PseudoClass FRAIS = PseudoClass.getPseudoClass("frais");
+    public static final PseudoClass SANS_DATE = PseudoClass.getPseudoClass("sans-date");
+
+    // Direct-mapped caches: an entry is replaced as a whole, so a reader on another thread sees a consistent one
+    private static final class Entree {
+        final long cle;
+        final String texte;
+
+        Entree(long cle, String texte) {
+            this.cle = cle;
+            this.texte = texte;
+        }
+    }
+
+    private static final int TAILLE_CACHE_MONTANTS = 1 << 13;
+    private static final int TAILLE_CACHE_DATES = 1 << 10;
+    private static final int ENTIERS_EN_CACHE = 1 << 14;
+
+    private static final Entree[] MONTANTS = new Entree[TAILLE_CACHE_MONTANTS];
+    private static final Entree[] DATES = new Entree[TAILLE_CACHE_DATES];
+    private static final String[] ENTIERS = new String[ENTIERS_EN_CACHE];
+
+    // Same output as String.format("%.2f€"), which uses the format locale
+    private static final DecimalFormatSymbols SYMBOLES = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+    private static final char SEPARATEUR = SYMBOLES.getDecimalSeparator();
+    private static final boolean CHIFFRES_LATINS = SYMBOLES.getZeroDigit() == '0';
+
+    private CellulesTableau() {
+    }
+
+    /**
+     * An amount in euros with two decimals, e.g. {@code 12.50€}.
+     */
+    public static String montant(double valeur) {
+        if (!CHIFFRES_LATINS || Double.isNaN(valeur) || Double.isInfinite(valeur) || Math.abs(valeur) >= 1e15) {
+            return String.format("%.2f€", valeur);
+        }
+        double enCentimes = valeur * 100;
+        if (Math.abs(enCentimes - Math.floor(enCentimes) - 0.5) < 1e-6) {
+            // Half a cent: only the exact decimal value tells which way the formatter rounds
+            return String.format("%.2f€", valeur);
+        }
+        long centimes = Math.round(enCentimes);
+        if (centimes == 0 && Double.doubleToRawLongBits(valeur) < 0) {
+            // The formatter keeps the sign: -0.00€
+            return String.format("%.2f€", valeur);
+        }
+        int position = (int) (centimes ^ (centimes >>> 32)) & (TAILLE_CACHE_MONTANTS - 1);
+        Entree entree = MONTANTS[position];
+        if (entree != null && entree.cle == centimes) {
+            return entree.texte;
+        }
+
+        long absolu = Math.abs(centimes);
+        long reste = absolu % 100;
+        StringBuilder texte = new StringBuilder(16);
+        if (centimes < 0) {
+            texte.append('-');
+        }
+        texte.append(absolu / 100).append(SEPARATEUR);
+        if (reste < 10) {
+            texte.append('0');
+        }
+        String resultat = texte.append(reste).append('€').toString();
+        MONTANTS[position] = new Entree(centimes, resultat);
+        return resultat;
+    }
+
+    public static String entier(int valeur) {
+        if (valeur < 0 || valeur >= ENTIERS_EN_CACHE) {
+            return Integer.toString(valeur);
+        }
+        String texte = ENTIERS[valeur];
+        if (texte == null) {
+            texte = Integer.toString(valeur);
+            ENTIERS[valeur] = texte;
+        }
+        return texte;
+    }
+
+    /**
+     * A date as yyyy-MM-dd.
+     */
+    public static String date(LocalDate date) {
+        long jour = date.toEpochDay();
+        int position = (int) jour & (TAILLE_CACHE_DATES - 1);
+        Entree entree = DATES[position];
+        if (entree != null && entree.cle == jour) {
+            return entree.texte;
+        }
+        String texte = date.toString();
+        DATES[position] = new Entree(jour, texte);
+        return texte;
+    }
+
+    /**
+     * Text cell that formats only when the row item or the value changes.
+     */
+    private abstract static class CelluleTexte<S, T> extends TableCell<S, T> {
+        private Object dernierItem;
+        private T derniereValeur;
+        private boolean affichee;
+
+        CelluleTexte(String... classesStyle) {
+            getStyleClass().addAll(classesStyle);
+        }
+
+        @Override
+        protected void updateItem(T valeur, boolean empty) {
+            super.updateItem(valeur, empty);
+            if (empty || valeur == null) {
+                affichee = false;
+                dernierItem = null;
+                derniereValeur = null;
+                setText(null);
+                vider();
+                return;
+            }
+            S ligne = ligne(this);
+            if (affichee && ligne == dernierItem && valeur.equals(derniereValeur)) {
+                return;
+            }
+            affichee = true;
+            dernierItem = ligne;
+            derniereValeur = valeur;
+            setText(texte(valeur));
+            afficher(ligne, valeur);
+        }
+
+        abstract String texte(T valeur);
+
+        void afficher(S ligne, T valeur) {
+        }
+
+        void vider() {
+        }
+    }
+
+    private static <S> S ligne(TableCell<S, ?> cellule) {
+        TableView<S> table = cellule.getTableView();
+        int index = cellule.getIndex();
+        return table != null && index >= 0 && index < table.getItems().size() ? table.getItems().get(index) : null;
+    }
+
+    private static void etatStock(TableCell<?, ?> cellule, IndexFiltres.EtatStock etat) {
+        cellule.pseudoClassStateChanged(RUPTURE, etat == IndexFiltres.EtatStock.RUPTURE);
+        cellule.pseudoClassStateChanged(FAIBLE, etat == IndexFiltres.EtatStock.FAIBLE);
+        cellule.pseudoClassStateChanged(EN_STOCK, etat == IndexFiltres.EtatStock.EN_STOCK);
+    }
+
+    private static void etatPeremption(TableCell<?, ?> cellule, IndexPeremption.Etat etat, boolean sansDate) {
+        cellule.pseudoClassStateChanged(PERIME, etat == IndexPeremption.Etat.PERIME);
+        cellule.pseudoClassStateChanged(BIENTOT_PERIME, etat == IndexPeremption.Etat.BIENTOT_PERIME);
+        cellule.pseudoClassStateChanged(FRAIS, etat != null
+            && etat != IndexPeremption.Etat.PERIME && etat != IndexPeremption.Etat.BIENTOT_PERIME);
+        cellule.pseudoClassStateChanged(SANS_DATE, sansDate);
+    }
+
+    public static <S> Callback<TableColumn<S, Double>, TableCell<S, Double>> montants(String... classesStyle) {
+        return colonne -> new CelluleTexte<S, Double>(classesStyle) {
+            @Override
+            String texte(Double valeur) {
+                return montant(valeur);
+            }
+        };
+    }
+
+    public static <S> Callback<TableColumn<S, Integer>, TableCell<S, Integer>> entiers(String... classesStyle) {
+        return colonne -> new CelluleTexte<S, Integer>(classesStyle) {
+            @Override
+            String texte(Integer valeur) {
+                return entier(valeur);
+            }
+        };
+    }
+
+    public static <S> Callback<TableColumn<S, LocalDate>, TableCell<S, LocalDate>> dates(String... classesStyle) {
+        return colonne -> new CelluleTexte<S, LocalDate>(classesStyle) {
+            @Override
+            String texte(LocalDate valeur) {
+                return date(valeur);
+            }
+        };
+    }
+
+    /**
+     * Stock quantities coloured by the state {@code etat} gives for the row
+     * item and that quantity.
+     */
+    public static <S> Callback<TableColumn<S, Integer>, TableCell<S, Integer>> stocks(
+            BiFunction<S, Integer, IndexFiltres.EtatStock> etat) {
+        return colonne -> new CelluleTexte<S, Integer>(STYLE_ETAT) {
+            @Override
+            String texte(Integer valeur) {
+                return entier(valeur);
+            }
+
+            @Override
+            void afficher(S ligne, Integer valeur) {
+                etatStock(this, ligne != null ? etat.apply(ligne, valeur) : null);
+            }
+
+            @Override
+            void vider() {
+                etatStock(this, null);
+            }
+        };
+    }
+
+    /**
+     * Stock state of the row item as RUPTURE, FAIBLE or OK, for a column without a value.
+     */
+    public static <S, T> Callback<TableColumn<S, T>, TableCell<S, T>> etatsStock(Function<S, IndexFiltres.EtatStock> etat) {
+        return colonne -> new TableCell<S, T>() {
+            {
+                getStyleClass().add(STYLE_ETAT);
+            }
+
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                S ligne = empty ? null : ligne(this);
+                IndexFiltres.EtatStock etatLigne = ligne != null ? etat.apply(ligne) : null;
+                etatStock(this, etatLigne);
+                if (etatLigne == null) {
+                    setText(null);
+                } else if (etatLigne == IndexFiltres.EtatStock.RUPTURE) {
+                    setText("RUPTURE");
+                } else if (etatLigne == IndexFiltres.EtatStock.FAIBLE) {
+                    setText("FAIBLE");
+                } else {
+                    setText("OK");
+                }
+            }
+        };
+    }
+
+    /**
+     * Expiry date of the row article, coloured by {@code etat}; N/A for
+     * articles that do not expire.
+     */
+    public static <S extends ArticleEpicerie, T> Callback<TableColumn<S, T>, TableCell<S, T>> peremptions(
+            Function<ArticlePerissable, IndexPeremption.Etat> etat) {
+        return colonne -> new TableCell<S, T>() {
+            {
+                getStyleClass().add(STYLE_ETAT);
+            }
+
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                S ligne = empty ? null : ligne(this);
+                if (ligne instanceof ArticlePerissable perissable) {
+                    setText(date(perissable.getDateExpiration()));
+                    // The state is read from the expiry index rather than recomputed from the date
+                    etatPeremption(this, etat.apply(perissable), false);
+                } else if (ligne != null) {
+                    setText("N/A");
+                    etatPeremption(this, null, true);
+                } else {
+                    setText(null);
+                    etatPeremption(this, null, false);
+                }
+            }
+        };
+    }
+}
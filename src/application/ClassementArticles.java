@@ -0,0 +1,231 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Top-K articles by revenue, keyed by article id.
+ *
+ * {@link #meilleurs(Iterable, int)} is exact: it keeps a min-heap of K entries
+ * while streaming the per-article totals, so nothing is sorted beyond K.
+ *
+ * {@link Esquisse} is the approximate mode for very long ranges. It streams
+ * weighted updates into a Space-Saving summary (revenue) and a Count-Min
+ * sketch (quantity), both of fixed size, so memory does not depend on the
+ * number of distinct articles:
+ * <ul>
+ * <li>Space-Saving with m counters: every reported revenue overestimates the
+ * true revenue by at most the smallest counter, itself at most N/m where N is
+ * the total revenue streamed; any article whose revenue exceeds N/m is
+ * guaranteed to be reported.</li>
+ * <li>Count-Min with width w and depth d: a reported quantity overestimates
+ * the true quantity by at most (e/w)·Q with probability at least 1 - e^-d,
+ * where Q is the total quantity streamed.</li>
+ * </ul>
+ */
+public class ClassementArticles {
+
+    private static final Comparator<IndexVentesParJour.CumulArticle> PAR_CHIFFRE_AFFAIRES =
+        Comparator.comparingLong(IndexVentesParJour.CumulArticle::getChiffreAffairesCentimes)
+                  .thenComparing(IndexVentesParJour.CumulArticle::getIdArticle, Comparator.reverseOrder());
+
+    /**
+     * A ranking, best first, with its error bounds (zero when exact).
+     */
+    public static class Classement {
+        private final List<IndexVentesParJour.CumulArticle> articles;
+        private final boolean approche;
+        private final long erreurChiffreAffairesCentimes;
+        private final long erreurQuantite;
+        private final double confianceQuantite;
+
+        Classement(List<IndexVentesParJour.CumulArticle> articles, boolean approche,
+                   long erreurChiffreAffairesCentimes, long erreurQuantite, double confianceQuantite) {
+            this.articles = articles;
+            this.approche = approche;
+            this.erreurChiffreAffairesCentimes = erreurChiffreAffairesCentimes;
+            this.erreurQuantite = erreurQuantite;
+            this.confianceQuantite = confianceQuantite;
+        }
+
+        public List<IndexVentesParJour.CumulArticle> getArticles() { return articles; }
+        public boolean isApproche() { return approche; }
+
+        /**
+         * Upper bound of the overestimate of any reported revenue.
+         */
+        public double getErreurChiffreAffaires() { return erreurChiffreAffairesCentimes / 100.0; }
+
+        /**
+         * Bound of the overestimate of any reported quantity, holding with
+         * probability {@link #getConfianceQuantite()}.
+         */
+        public long getErreurQuantite() { return erreurQuantite; }
+        public double getConfianceQuantite() { return confianceQuantite; }
+    }
+
+    /**
+     * Exact top {@code k} by revenue, using a bounded min-heap.
+     */
+    public static Classement meilleurs(Iterable<IndexVentesParJour.CumulArticle> cumuls, int k) {
+        PriorityQueue<IndexVentesParJour.CumulArticle> tas = new PriorityQueue<>(k + 1, PAR_CHIFFRE_AFFAIRES);
+        for (IndexVentesParJour.CumulArticle cumul : cumuls) {
+            if (tas.size() < k) {
+                tas.add(cumul);
+            } else if (PAR_CHIFFRE_AFFAIRES.compare(cumul, tas.peek()) > 0) {
+                tas.poll();
+                tas.add(cumul);
+            }
+        }
+        return new Classement(trierDecroissant(tas), false, 0, 0, 1.0);
+    }
+
+    private static List<IndexVentesParJour.CumulArticle> trierDecroissant(PriorityQueue<IndexVentesParJour.CumulArticle> tas) {
+        List<IndexVentesParJour.CumulArticle> resultat = new ArrayList<>(tas.size());
+        while (!tas.isEmpty()) {
+            resultat.add(tas.poll());
+        }
+        Collections.reverse(resultat);
+        return resultat;
+    }
+
+    /**
+     * Fixed-size summary of a stream of (article, quantity, revenue) updates.
+     */
+    public static class Esquisse {
+
+        // Space-Saving counters, kept in a min-heap on the estimated revenue
+        private final String[] ids;
+        private final String[] noms;
+        private final long[] estimations;
+        private final Map<String, Integer> positionParId;
+        private int taille;
+
+        // Count-Min sketch of quantities
+        private final long[][] quantites;
+        private final int largeur;
+
+        private long chiffreAffairesTotal;
+        private long quantiteTotale;
+
+        public Esquisse() {
+            this(256, 2048, 4);
+        }
+
+        /**
+         * @param compteurs Space-Saving counters (m)
+         * @param largeur Count-Min width (w)
+         * @param profondeur Count-Min depth (d)
+         */
+        public Esquisse(int compteurs, int largeur, int profondeur) {
+            ids = new String[compteurs];
+            noms = new String[compteurs];
+            estimations = new long[compteurs];
+            positionParId = new HashMap<>(compteurs * 2);
+            this.largeur = largeur;
+            quantites = new long[profondeur][largeur];
+        }
+
+        public void ajouter(String idArticle, String nom, int quantite, long chiffreAffairesCentimes) {
+            chiffreAffairesTotal += chiffreAffairesCentimes;
+            quantiteTotale += quantite;
+            for (int ligne = 0; ligne < quantites.length; ligne++) {
+                quantites[ligne][colonne(idArticle, ligne)] += quantite;
+            }
+
+            Integer position = positionParId.get(idArticle);
+            if (position != null) {
+                estimations[position] += chiffreAffairesCentimes;
+                descendre(position);
+            } else if (taille < ids.length) {
+                placer(taille, idArticle, nom, chiffreAffairesCentimes);
+                taille++;
+                monter(taille - 1);
+            } else {
+                // Evict the smallest counter; the newcomer inherits its count as error
+                long minimum = estimations[0];
+                positionParId.remove(ids[0]);
+                placer(0, idArticle, nom, minimum + chiffreAffairesCentimes);
+                descendre(0);
+            }
+        }
+
+        public void ajouter(IndexVentesParJour.CumulArticle cumul) {
+            ajouter(cumul.getIdArticle(), cumul.getNom(), cumul.getQuantite(), cumul.getChiffreAffairesCentimes());
+        }
+
+        public long estimerQuantite(String idArticle) {
+            long estimation = Long.MAX_VALUE;
+            for (int ligne = 0; ligne < quantites.length; ligne++) {
+                estimation = Math.min(estimation, quantites[ligne][colonne(idArticle, ligne)]);
+            }
+            return estimation;
+        }
+
+        /**
+         * Top {@code k} by estimated revenue, with the sketch's error bounds.
+         */
+        public Classement classement(int k) {
+            List<IndexVentesParJour.CumulArticle> candidats = new ArrayList<>(taille);
+            for (int i = 0; i < taille; i++) {
+                candidats.add(new IndexVentesParJour.CumulArticle(
+                    ids[i], noms[i], (int) estimerQuantite(ids[i]), estimations[i]));
+            }
+            List<IndexVentesParJour.CumulArticle> articles = meilleurs(candidats, k).getArticles();
+
+            // Each counter's error is at most the smallest count, itself at most N/m
+            long erreurChiffreAffaires = taille < ids.length ? 0 : Math.min(estimations[0], chiffreAffairesTotal / ids.length);
+            long erreurQuantite = (long) Math.ceil(Math.E / largeur * quantiteTotale);
+            double confiance = 1 - Math.exp(-quantites.length);
+            return new Classement(articles, true, erreurChiffreAffaires, erreurQuantite, confiance);
+        }
+
+        private int colonne(String idArticle, int ligne) {
+            long h = idArticle.hashCode() * 0x9E3779B97F4A7C15L + (ligne + 1) * 0xC2B2AE3D27D4EB4FL;
+            h ^= h >>> 29;
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 32;
+            return (int) ((h & Long.MAX_VALUE) % largeur);
+        }
+
+        private void placer(int position, String id, String nom, long estimation) {
+            ids[position] = id;
+            noms[position] = nom;
+            estimations[position] = estimation;
+            positionParId.put(id, position);
+        }
+
+        private void monter(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (estimations[parent] <= estimations[position]) break;
+                echanger(parent, position);
+                position = parent;
+            }
+        }
+
+        private void descendre(int position) {
+            while (true) {
+                int gauche = 2 * position + 1;
+                if (gauche >= taille) break;
+                int plusPetit = gauche + 1 < taille && estimations[gauche + 1] < estimations[gauche] ? gauche + 1 : gauche;
+                if (estimations[position] <= estimations[plusPetit]) break;
+                echanger(position, plusPetit);
+                position = plusPetit;
+            }
+        }
+
+        private void echanger(int a, int b) {
+            String id = ids[a]; ids[a] = ids[b]; ids[b] = id;
+            String nom = noms[a]; noms[a] = noms[b]; noms[b] = nom;
+            long estimation = estimations[a]; estimations[a] = estimations[b]; estimations[b] = estimation;
+            positionParId.put(ids[a], a);
+            positionParId.put(ids[b], b);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package application;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window throughput counter (events per second).
+ *
+ * Events are counted in fixed-width time slices kept in a ring; the rate is
+ * the number of events in the slices of the window divided by the window
+ * length. Recording is O(1) and the counter never allocates.
+ */
+public class CompteurDebit {
+
+    private final long largeurTrancheNanos;
+    private final long[] comptes;
+    private final long[] numeros;
+    private boolean demarre;
+    private long premierEvenement;
+    private long total;
+    private double pic;
+
+    /**
+     * @param nombreTranches number of slices in the window
+     * @param largeurTrancheMillis width of one slice
+     */
+    public CompteurDebit(int nombreTranches, long largeurTrancheMillis) {
+        this.largeurTrancheNanos = largeurTrancheMillis * 1_000_000L;
+        this.comptes = new long[nombreTranches];
+        this.numeros = new long[nombreTranches];
+        Arrays.fill(numeros, Long.MIN_VALUE);
+    }
+
+    public synchronized void enregistrer(int nombre) {
+        enregistrer(System.nanoTime(), nombre);
+    }
+
+    synchronized void enregistrer(long instantNanos, int nombre) {
+        if (nombre <= 0) return;
+        if (!demarre) {
+            demarre = true;
+            premierEvenement = instantNanos;
+        }
+        long numero = Math.floorDiv(instantNanos, largeurTrancheNanos);
+        int i = (int) Math.floorMod(numero, (long) comptes.length);
+        if (numeros[i] != numero) {
+            numeros[i] = numero;
+            comptes[i] = 0;
+        }
+        comptes[i] += nombre;
+        total += nombre;
+    }
+
+    /**
+     * Rate over the window ending now. Before a full window has elapsed the
+     * rate is taken over the time since the first event.
+     */
+    public synchronized double parSeconde() {
+        return parSeconde(System.nanoTime());
+    }
+
+    synchronized double parSeconde(long instantNanos) {
+        if (!demarre) return 0;
+
+        long courant = Math.floorDiv(instantNanos, largeurTrancheNanos);
+        long somme = 0;
+        for (int i = 0; i < comptes.length; i++) {
+            if (numeros[i] > courant - comptes.length && numeros[i] <= courant) {
+                somme += comptes[i];
+            }
+        }
+        long fenetre = comptes.length * largeurTrancheNanos;
+        long duree = Math.max(largeurTrancheNanos, Math.min(fenetre, instantNanos - premierEvenement));
+        double debit = somme * 1e9 / duree;
+        pic = Math.max(pic, debit);
+        return debit;
+    }
+
+    /**
+     * Highest rate returned by {@link #parSeconde()} so far.
+     */
+    public synchronized double getPic() {
+        return pic;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized void reinitialiser() {
+        Arrays.fill(comptes, 0);
+        Arrays.fill(numeros, Long.MIN_VALUE);
+        demarre = false;
+        total = 0;
+        pic = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package application;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Puts a fully written temporary file in place of the target. The content is
+ * forced to disk before the rename and the rename itself after it, so after a
+ * crash, even of the OS, the target is either the old file or the new one.
+ */
+public final class EcritureAtomique {
+
+    private EcritureAtomique() {
+    }
+
+    /**
+     * Replaces {@code fichier} by {@code temporaire}, which must be closed and
+     * in the same directory.
+     */
+    public static void remplacer(Path temporaire, Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forcerRepertoire(fichier.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Makes the entries of a directory, e.g. a rename, durable.
+     */
+    public static void forcerRepertoire(Path repertoire) {
+        try (FileChannel canal = FileChannel.open(repertoire, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Some platforms (Windows) cannot open a directory; the rename is still atomic there
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package application;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * CSV rows with a header line. Text fields are quoted only when they contain
+ * a separator, a quote or a line break (RFC 4180).
+ */
+public class EncodeurCsv extends EncodeurLignes {
+
+    public EncodeurCsv(WritableByteChannel canal, String[] cles, String[] libelles) throws IOException {
+        super(canal, cles);
+        for (String libelle : libelles) {
+            champ(libelle);
+        }
+        finLigne();
+    }
+
+    @Override
+    protected void ouvrirChamp() {
+        if (colonne > 0) {
+            ligne.append(',');
+        }
+    }
+
+    @Override
+    protected void valeurNulle() {
+    }
+
+    @Override
+    protected void texte(String valeur) {
+        if (!doitEtreEntreGuillemets(valeur)) {
+            ligne.append(valeur);
+            return;
+        }
+        ligne.append('"');
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            if (c == '"') {
+                ligne.append('"');
+            }
+            ligne.append(c);
+        }
+        ligne.append('"');
+    }
+
+    private static boolean doitEtreEntreGuillemets(String valeur) {
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
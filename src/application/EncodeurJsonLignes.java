@@ -0,0 +1,58 @@
+package application;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * JSON Lines: one object per row, keyed by the column keys.
+ */
+public class EncodeurJsonLignes extends EncodeurLignes {
+
+    private static final char[] HEXA = "0123456789abcdef".toCharArray();
+
+    public EncodeurJsonLignes(WritableByteChannel canal, String[] cles) {
+        super(canal, cles);
+    }
+
+    @Override
+    protected void ouvrirChamp() {
+        ligne.append(colonne == 0 ? '{' : ',');
+        ligne.append('"').append(cles[colonne]).append("\":");
+    }
+
+    @Override
+    protected void fermerLigne() {
+        ligne.append('}');
+    }
+
+    @Override
+    protected void valeurNulle() {
+        ligne.append("null");
+    }
+
+    @Override
+    protected void delimiterTexte() {
+        ligne.append('"');
+    }
+
+    @Override
+    protected void texte(String valeur) {
+        ligne.append('"');
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            switch (c) {
+                case '"': ligne.append("\\\""); break;
+                case '\\': ligne.append("\\\\"); break;
+                case '\n': ligne.append("\\n"); break;
+                case '\r': ligne.append("\\r"); break;
+                case '\t': ligne.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        ligne.append("\\u00").append(HEXA[c >> 4]).append(HEXA[c & 0xF]);
+                    } else {
+                        ligne.append(c);
+                    }
+            }
+        }
+        ligne.append('"');
+    }
+}
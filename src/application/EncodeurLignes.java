@@ -0,0 +1,187 @@
+package application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Reusable row encoder writing UTF-8 text rows to a channel; the subclasses
+ * provide the format (CSV, JSON Lines).
+ *
+ * Fields are appended to one row buffer that is reused for every row, then
+ * copied into a character buffer that is encoded and written in large blocks,
+ * so the cost per row is a few appends and no formatting objects. Amounts are
+ * written from cents with a dot as decimal separator, whatever the default
+ * locale.
+ */
+public abstract class EncodeurLignes implements Closeable {
+
+    private static final int TAILLE_TAMPON = 1 << 16;
+
+    private final WritableByteChannel canal;
+    private final CharsetEncoder encodeur = StandardCharsets.UTF_8.newEncoder();
+    private final CharBuffer caracteres = CharBuffer.allocate(TAILLE_TAMPON);
+    private final ByteBuffer octets = ByteBuffer.allocateDirect(TAILLE_TAMPON * 2);
+
+    protected final StringBuilder ligne = new StringBuilder(256);
+    // Keys of the columns, in order, and the index of the next field
+    protected final String[] cles;
+    protected int colonne;
+
+    protected EncodeurLignes(WritableByteChannel canal, String[] cles) {
+        this.canal = canal;
+        this.cles = cles;
+    }
+
+    /**
+     * Writes {@code valeur} as text, escaped as the format requires.
+     */
+    protected abstract void texte(String valeur);
+
+    /**
+     * Starts the field of column {@link #colonne}.
+     */
+    protected abstract void ouvrirChamp();
+
+    protected abstract void valeurNulle();
+
+    /**
+     * Opens or closes a text value that needs no escaping, such as a date.
+     */
+    protected void delimiterTexte() {
+    }
+
+    /**
+     * Closes the row before its line break.
+     */
+    protected void fermerLigne() {
+    }
+
+    public EncodeurLignes champ(String valeur) {
+        ouvrirChamp();
+        if (valeur == null) {
+            valeurNulle();
+        } else {
+            texte(valeur);
+        }
+        colonne++;
+        return this;
+    }
+
+    public EncodeurLignes champ(long valeur) {
+        ouvrirChamp();
+        ligne.append(valeur);
+        colonne++;
+        return this;
+    }
+
+    /**
+     * ISO date, e.g. 2024-03-01.
+     */
+    public EncodeurLignes champ(LocalDate date) {
+        if (date == null) {
+            return champ((String) null);
+        }
+        ouvrirChamp();
+        delimiterTexte();
+        ligne.append(date.getYear()).append('-');
+        deuxChiffres(ligne, date.getMonthValue());
+        ligne.append('-');
+        deuxChiffres(ligne, date.getDayOfMonth());
+        delimiterTexte();
+        colonne++;
+        return this;
+    }
+
+    /**
+     * Amount given in cents, written as a number with two decimals.
+     */
+    public EncodeurLignes champMontant(long centimes) {
+        ouvrirChamp();
+        if (centimes < 0) {
+            ligne.append('-');
+            centimes = -centimes;
+        }
+        ligne.append(centimes / 100).append('.');
+        deuxChiffres(ligne, (int) (centimes % 100));
+        colonne++;
+        return this;
+    }
+
+    public EncodeurLignes champMontant(double montant) {
+        return champMontant(Math.round(montant * 100));
+    }
+
+    /**
+     * Ends the current row and hands it to the output buffer.
+     */
+    public void finLigne() throws IOException {
+        fermerLigne();
+        ligne.append('\n');
+        int longueur = ligne.length();
+        if (longueur > caracteres.remaining()) {
+            vider(false);
+        }
+        if (longueur > caracteres.remaining()) {
+            // Row larger than the buffer: encode it on its own
+            encoder(CharBuffer.wrap(ligne), false);
+        } else {
+            ligne.getChars(0, longueur, caracteres.array(), caracteres.position());
+            caracteres.position(caracteres.position() + longueur);
+        }
+        ligne.setLength(0);
+        colonne = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vider(true);
+            encodeur.flush(octets);
+            ecrire();
+        } finally {
+            canal.close();
+        }
+    }
+
+    private static void deuxChiffres(StringBuilder destination, int valeur) {
+        if (valeur < 10) {
+            destination.append('0');
+        }
+        destination.append(valeur);
+    }
+
+    private void vider(boolean finEntree) throws IOException {
+        caracteres.flip();
+        encoder(caracteres, finEntree);
+        caracteres.clear();
+    }
+
+    private void encoder(CharBuffer source, boolean finEntree) throws IOException {
+        while (true) {
+            CoderResult resultat = encodeur.encode(source, octets, finEntree);
+            if (resultat.isOverflow()) {
+                ecrire();
+            } else if (resultat.isError()) {
+                resultat.throwException();
+            } else {
+                break;
+            }
+        }
+        ecrire();
+    }
+
+    private void ecrire() throws IOException {
+        octets.flip();
+        while (octets.hasRemaining()) {
+            canal.write(octets);
+        }
+        octets.clear();
+    }
+}
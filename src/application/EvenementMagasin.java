@@ -0,0 +1,92 @@
+package application;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Vente;
+
+/**
+ * A change published by the inventory or the caisse through {@link FluxEvenements}.
+ */
+public class EvenementMagasin {
+
+    public enum Type {
+        ARTICLE_AJOUTE,
+        ARTICLE_MODIFIE,
+        ARTICLE_SUPPRIME,
+        STOCK_MODIFIE,
+        VENTE_ENREGISTREE,
+        // A cart took or released a hold; the stock itself did not change
+        RESERVATION_MODIFIEE,
+        // Published by the expiry sweep when the day changes
+        ARTICLE_PERIME,
+        PEREMPTION_PROCHE
+    }
+
+    private final Type type;
+    private final ArticleEpicerie article;
+    private final int deltaStock;
+    private final int stockApres;
+    private final Vente vente;
+
+    private EvenementMagasin(Type type, ArticleEpicerie article, int deltaStock, Vente vente) {
+        this(type, article, deltaStock, 0, vente);
+    }
+
+    private EvenementMagasin(Type type, ArticleEpicerie article, int deltaStock, int stockApres, Vente vente) {
+        this.type = type;
+        this.article = article;
+        this.deltaStock = deltaStock;
+        this.stockApres = stockApres;
+        this.vente = vente;
+    }
+
+    public static EvenementMagasin articleAjoute(ArticleEpicerie article) {
+        return new EvenementMagasin(Type.ARTICLE_AJOUTE, article, 0, null);
+    }
+
+    public static EvenementMagasin articleModifie(ArticleEpicerie article) {
+        return new EvenementMagasin(Type.ARTICLE_MODIFIE, article, 0, null);
+    }
+
+    public static EvenementMagasin articleSupprime(ArticleEpicerie article) {
+        return new EvenementMagasin(Type.ARTICLE_SUPPRIME, article, 0, null);
+    }
+
+    /**
+     * @param stockApres the article's stock right after this change; the live
+     *        stock may already include later changes still on their way
+     */
+    public static EvenementMagasin stockModifie(ArticleEpicerie article, int deltaStock, int stockApres) {
+        return new EvenementMagasin(Type.STOCK_MODIFIE, article, deltaStock, stockApres, null);
+    }
+
+    public static EvenementMagasin reservationModifiee(ArticleEpicerie article, int deltaReserve) {
+        return new EvenementMagasin(Type.RESERVATION_MODIFIEE, article, deltaReserve, null);
+    }
+
+    public static EvenementMagasin articlePerime(ArticleEpicerie article) {
+        return new EvenementMagasin(Type.ARTICLE_PERIME, article, 0, null);
+    }
+
+    public static EvenementMagasin peremptionProche(ArticleEpicerie article) {
+        return new EvenementMagasin(Type.PEREMPTION_PROCHE, article, 0, null);
+    }
+
+    public static EvenementMagasin venteEnregistree(Vente vente) {
+        return new EvenementMagasin(Type.VENTE_ENREGISTREE, null, 0, vente);
+    }
+
+    public Type getType() { return type; }
+    public ArticleEpicerie getArticle() { return article; }
+    // For RESERVATION_MODIFIEE, the change of the quantity held by carts
+    public int getDeltaStock() { return deltaStock; }
+    /** For STOCK_MODIFIE, the stock right after the change. */
+    public int getStockApres() { return stockApres; }
+    public Vente getVente() { return vente; }
+
+    /**
+     * True for every event that changes an article or its stock.
+     */
+    public boolean concerneArticle() {
+        return type != Type.VENTE_ENREGISTREE && type != Type.RESERVATION_MODIFIEE;
+    }
+}
@@ -0,0 +1,196 @@
+package application;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javafx.concurrent.Task;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.Vente;
+
+/**
+ * Background export of a report or view to a file, in any {@link FormatExport}.
+ *
+ * Rows are streamed from the source data (the day partitions of the sales,
+ * the articles, or the rows of an article report) through a reusable
+ * {@link EncodeurLignes} to a file channel, so memory does not grow with the
+ * number of rows; compressed formats compress their chunks on the report
+ * pool. The task reports its progress, checks for cancellation between rows,
+ * and writes to a temporary file that replaces the target only once
+ * complete; a cancelled or failed export leaves no partial file behind.
+ *
+ * The value of the task is the number of data rows written.
+ */
+public abstract class ExportRapport extends Task<Long> {
+
+    // Progress and cancellation are checked once per block of rows
+    private static final int LIGNES_PAR_ETAPE = 4096;
+
+    private static final String[] CLES_VENTES = {"idVente", "date", "nombreArticles", "total"};
+    private static final String[] LIBELLES_VENTES = {"ID Vente", "Date", "Nombre Articles", "Total"};
+    private static final String[] CLES_LIGNES = {"idArticle", "nom", "quantite", "prix", "valeurTotale"};
+    private static final String[] LIBELLES_LIGNES = {"ID Article", "Nom", "Quantité", "Prix", "Valeur Totale"};
+    private static final String[] CLES_ARTICLES =
+        {"idArticle", "nom", "categorie", "prix", "quantiteStock", "type", "dateExpiration"};
+    private static final String[] LIBELLES_ARTICLES =
+        {"ID Article", "Nom", "Catégorie", "Prix", "Stock", "Type", "Date d'expiration"};
+
+    private final Path fichier;
+    private final FormatExport format;
+    private final String[] cles;
+    private final String[] libelles;
+    private long total;
+    private long ecrites;
+
+    protected ExportRapport(Path fichier, FormatExport format, String[] cles, String[] libelles) {
+        this.fichier = fichier;
+        this.format = format;
+        this.cles = cles;
+        this.libelles = libelles;
+    }
+
+    public Path getFichier() {
+        return fichier;
+    }
+
+    /**
+     * Writes the rows; called on the background thread.
+     */
+    protected abstract void ecrire(EncodeurLignes encodeur) throws IOException;
+
+    @Override
+    protected Long call() throws IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".part");
+        boolean termine = false;
+        try {
+            try (EncodeurLignes encodeur = format.ouvrir(FileChannel.open(temporaire,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                    cles, libelles, CalculRapports.commun())) {
+                ecrire(encodeur);
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING);
+            termine = true;
+            updateProgress(ecrites, Math.max(total, ecrites));
+            updateMessage(ecrites + " ligne(s) exportée(s)");
+            return ecrites;
+        } finally {
+            if (!termine) {
+                Files.deleteIfExists(temporaire);
+            }
+        }
+    }
+
+    protected void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Ends a data row; every few thousand rows, publishes the progress and
+     * stops if the export was cancelled.
+     */
+    protected void ligneEcrite(EncodeurLignes encodeur) throws IOException {
+        encodeur.finLigne();
+        ecrites++;
+        if (ecrites % LIGNES_PAR_ETAPE == 0) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            updateProgress(ecrites, Math.max(total, ecrites));
+            updateMessage(ecrites + " / " + total + " lignes");
+        }
+    }
+
+    /**
+     * Sales from {@code debut} to {@code fin}, read one day at a time from the
+     * index when there is one, otherwise from {@code ventes}.
+     */
+    public static ExportRapport ventes(Path fichier, FormatExport format, IndexVentesParJour index,
+                                       List<Vente> ventes, LocalDate debut, LocalDate fin) {
+        return new ExportRapport(fichier, format, CLES_VENTES, LIBELLES_VENTES) {
+            @Override
+            protected void ecrire(EncodeurLignes encodeur) throws IOException {
+                if (index != null) {
+                    setTotal(index.totauxEntre(debut, fin).getNombreVentes());
+                    LocalDate premier = index.getPremierJour();
+                    LocalDate dernier = index.getDernierJour();
+                    if (premier == null) return;
+                    LocalDate jour = debut.isBefore(premier) ? premier : debut;
+                    LocalDate dernierJour = fin.isAfter(dernier) ? dernier : fin;
+                    for (; !jour.isAfter(dernierJour); jour = jour.plusDays(1)) {
+                        for (Vente vente : index.ventesDuJour(jour)) {
+                            ecrireVente(encodeur, vente);
+                        }
+                    }
+                } else {
+                    setTotal(ventes.size());
+                    for (Vente vente : ventes) {
+                        LocalDate date = vente.getDate();
+                        if (!date.isBefore(debut) && !date.isAfter(fin)) {
+                            ecrireVente(encodeur, vente);
+                        }
+                    }
+                }
+            }
+
+            private void ecrireVente(EncodeurLignes encodeur, Vente vente) throws IOException {
+                encodeur.champ(vente.getIdVente())
+                        .champ(vente.getDate())
+                        .champ(vente.getNombreArticles())
+                        .champMontant(vente.getTotal());
+                ligneEcrite(encodeur);
+            }
+        };
+    }
+
+    /**
+     * Rows of an inventory, expired or low stock report.
+     */
+    public static ExportRapport lignesRapport(Path fichier, FormatExport format,
+                                              List<ReportsController.InventoryTableItem> lignes) {
+        return new ExportRapport(fichier, format, CLES_LIGNES, LIBELLES_LIGNES) {
+            @Override
+            protected void ecrire(EncodeurLignes encodeur) throws IOException {
+                setTotal(lignes.size());
+                for (ReportsController.InventoryTableItem item : lignes) {
+                    encodeur.champ(item.getId())
+                            .champ(item.getName())
+                            .champ(item.getQuantity())
+                            .champMontant(item.getPrice())
+                            .champMontant(item.getTotalValue());
+                    ligneEcrite(encodeur);
+                }
+            }
+        };
+    }
+
+    /**
+     * Articles of the inventory, with their type and expiry date.
+     */
+    public static ExportRapport articles(Path fichier, FormatExport format, List<ArticleEpicerie> articles) {
+        return new ExportRapport(fichier, format, CLES_ARTICLES, LIBELLES_ARTICLES) {
+            @Override
+            protected void ecrire(EncodeurLignes encodeur) throws IOException {
+                setTotal(articles.size());
+                for (ArticleEpicerie article : articles) {
+                    ArticlePerissable perissable = article instanceof ArticlePerissable p ? p : null;
+                    encodeur.champ(article.getId())
+                            .champ(article.getNom())
+                            .champ(article.getCategorie())
+                            .champMontant(article.getPrix())
+                            .champ(article.getQuantiteStock())
+                            .champ(perissable != null ? "Périssable" : "Non périssable")
+                            .champ(perissable != null ? perissable.getDateExpiration() : null);
+                    ligneEcrite(encodeur);
+                }
+            }
+        };
+    }
+}
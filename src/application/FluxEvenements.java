@@ -0,0 +1,73 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Change stream shared by the inventory and the caisse.
+ *
+ * Events published in a burst (a whole sale, a batch of catalog articles) are
+ * buffered and handed to subscribers as one list, through a single task on the
+ * delivery executor. In the application that executor is the FX thread, so
+ * subscribers can update their tables directly. Publishing with no subscriber
+ * is a no-op.
+ */
+public class FluxEvenements {
+
+    /**
+     * Handle returned by {@link #abonner}; closing it stops the delivery.
+     */
+    public interface Abonnement extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Executor livraison;
+    private final List<Consumer<List<EvenementMagasin>>> abonnes = new CopyOnWriteArrayList<>();
+    private List<EvenementMagasin> enAttente = new ArrayList<>();
+    private boolean livraisonPlanifiee;
+
+    public FluxEvenements(Executor livraison) {
+        this.livraison = livraison;
+    }
+
+    public void publier(EvenementMagasin evenement) {
+        if (abonnes.isEmpty()) return;
+
+        boolean planifier;
+        synchronized (this) {
+            enAttente.add(evenement);
+            planifier = !livraisonPlanifiee;
+            livraisonPlanifiee = true;
+        }
+        if (planifier) {
+            livraison.execute(this::livrer);
+        }
+    }
+
+    public Abonnement abonner(Consumer<List<EvenementMagasin>> abonne) {
+        abonnes.add(abonne);
+        return () -> abonnes.remove(abonne);
+    }
+
+    private void livrer() {
+        List<EvenementMagasin> lot;
+        synchronized (this) {
+            lot = Collections.unmodifiableList(enAttente);
+            enAttente = new ArrayList<>();
+            livraisonPlanifiee = false;
+        }
+        for (Consumer<List<EvenementMagasin>> abonne : abonnes) {
+            try {
+                abonne.accept(lot);
+            } catch (RuntimeException e) {
+                // One failing window must not starve the others
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package application;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import javafx.stage.FileChooser;
+
+/**
+ * File formats offered by the exports, each with its gzip variant.
+ */
+public enum FormatExport {
+
+    CSV("CSV", ".csv", false),
+    CSV_GZIP("CSV compressé", ".csv.gz", true),
+    JSONL("JSON Lines", ".jsonl", false),
+    JSONL_GZIP("JSON Lines compressé", ".jsonl.gz", true);
+
+    private final String libelle;
+    private final String extension;
+    private final boolean compresse;
+
+    FormatExport(String libelle, String extension, boolean compresse) {
+        this.libelle = libelle;
+        this.extension = extension;
+        this.compresse = compresse;
+    }
+
+    public String getLibelle() { return libelle; }
+    public String getExtension() { return extension; }
+    public boolean isCompresse() { return compresse; }
+
+    public FileChooser.ExtensionFilter filtre() {
+        return new FileChooser.ExtensionFilter(libelle + " (*" + extension + ")", "*" + extension);
+    }
+
+    /**
+     * Row encoder writing this format to {@code canal}. Compressed variants
+     * compress their chunks on {@code calcul} when given.
+     *
+     * @param cles column keys, used by JSON Lines
+     * @param libelles column titles, used by the CSV header
+     */
+    public EncodeurLignes ouvrir(WritableByteChannel canal, String[] cles, String[] libelles,
+                                 CalculRapports calcul) throws IOException {
+        WritableByteChannel sortie = compresse ? new CanalGzip(canal, calcul) : canal;
+        return this == CSV || this == CSV_GZIP
+            ? new EncodeurCsv(sortie, cles, libelles)
+            : new EncodeurJsonLignes(sortie, cles);
+    }
+
+    /**
+     * Format whose extension ends {@code nomFichier}, or null.
+     */
+    public static FormatExport depuisNom(String nomFichier) {
+        for (FormatExport format : values()) {
+            if (nomFichier.endsWith(format.extension)) return format;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,353 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticleNonPerissable;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.Inventaire;
+
+/**
+ * Deterministic generator of realistic catalogs and sales histories.
+ *
+ * Catalogs mix perishable and non-perishable articles across the usual French
+ * grocery departments, with prices and shelf lives typical of each. Article
+ * popularity follows a Zipf law over a shuffled order, so a few hundred
+ * articles make most of the sales whatever their ids. Histories span any
+ * number of years with weekly and yearly seasonality, a slow growth, opening
+ * hours with a lunch and an evening peak, and baskets of a few lines.
+ *
+ * The same seed always gives the same data.
+ *
+ * Usage: {@code java application.GenerateurDonnees [articles] [years] [sales/day] [seed] [directory]}
+ * writes {@code catalogue.snap} and one archive per month into the directory
+ * (defaults: 5,000 articles, 2 years, 800 sales a day, seed 42, {@code ./donnees-synthetiques}).
+ * Copying them into {@code ~/.groco} and {@code ~/.groco/archives} makes the
+ * application start on that data.
+ */
+public class GenerateurDonnees {
+
+    /**
+     * Receives the generated sales, in chronological order.
+     */
+    public interface VisiteurVente {
+        void vente(LocalDate jour, JournalVentes.EnregistrementVente vente) throws IOException;
+    }
+
+    private static class Rayon {
+        final String categorie;
+        final String[] produits;
+        final double prixMin;
+        final double prixMax;
+        final boolean perissable;
+        // Days to expiry for perishables, shelf life otherwise
+        final int joursMin;
+        final int joursMax;
+        final double part;
+
+        Rayon(String categorie, String[] produits, double prixMin, double prixMax, boolean perissable,
+              int joursMin, int joursMax, double part) {
+            this.categorie = categorie;
+            this.produits = produits;
+            this.prixMin = prixMin;
+            this.prixMax = prixMax;
+            this.perissable = perissable;
+            this.joursMin = joursMin;
+            this.joursMax = joursMax;
+            this.part = part;
+        }
+    }
+
+    private static final Rayon[] RAYONS = {
+        new Rayon("Produits laitiers", new String[] {"Lait demi-écrémé", "Yaourt nature", "Beurre doux", "Crème fraîche",
+            "Comté", "Camembert", "Fromage blanc", "Emmental râpé"}, 0.8, 9.0, true, 5, 30, 0.12),
+        new Rayon("Boulangerie", new String[] {"Baguette tradition", "Pain complet", "Croissant", "Pain au chocolat",
+            "Brioche", "Pain de mie"}, 0.9, 4.5, true, 1, 5, 0.06),
+        new Rayon("Fruits et légumes", new String[] {"Pommes Golden", "Bananes", "Tomates grappe", "Carottes",
+            "Pommes de terre", "Salade batavia", "Courgettes", "Oranges"}, 0.9, 6.0, true, 3, 14, 0.12),
+        new Rayon("Boucherie", new String[] {"Steak haché", "Escalope de poulet", "Saucisses de Toulouse",
+            "Rôti de porc", "Jambon blanc"}, 2.5, 18.0, true, 2, 8, 0.07),
+        new Rayon("Traiteur", new String[] {"Taboulé", "Quiche lorraine", "Salade piémontaise", "Hachis parmentier"},
+            2.0, 8.0, true, 2, 7, 0.04),
+        new Rayon("Épicerie salée", new String[] {"Pâtes penne", "Riz basmati", "Lentilles vertes", "Huile d'olive",
+            "Sauce tomate", "Thon au naturel", "Moutarde de Dijon"}, 0.7, 9.0, false, 365, 1095, 0.17),
+        new Rayon("Épicerie sucrée", new String[] {"Chocolat noir", "Confiture d'abricot", "Biscuits sablés",
+            "Sucre en poudre", "Café moulu", "Céréales"}, 0.9, 7.5, false, 180, 540, 0.12),
+        new Rayon("Boissons", new String[] {"Eau minérale", "Eau gazeuse", "Jus d'orange", "Limonade", "Bière blonde",
+            "Vin rouge"}, 0.4, 15.0, false, 180, 730, 0.11),
+        new Rayon("Surgelés", new String[] {"Épinards hachés", "Frites", "Glace vanille", "Poisson pané", "Pizza"},
+            1.5, 8.0, false, 90, 365, 0.05),
+        new Rayon("Hygiène", new String[] {"Savon doux", "Shampoing", "Dentifrice", "Gel douche"},
+            1.2, 6.5, false, 720, 1095, 0.02),
+        new Rayon("Entretien", new String[] {"Liquide vaisselle", "Éponges", "Lessive", "Essuie-tout"},
+            1.0, 12.0, false, 720, 1095, 0.02),
+    };
+
+    private static final String[] FORMATS = {"", " bio", " 500g", " 1kg", " x6", " format familial", " marque distributeur"};
+
+    // Monday to Sunday
+    private static final double[] FACTEURS_JOUR = {0.85, 0.9, 1.0, 0.95, 1.15, 1.35, 0.6};
+    private static final double CROISSANCE_ANNUELLE = 0.03;
+    private static final double EXPOSANT_ZIPF = 1.07;
+    private static final int OUVERTURE_MINUTES = 8 * 60;
+    private static final int FERMETURE_MINUTES = 20 * 60;
+
+    private final long graine;
+
+    public GenerateurDonnees(long graine) {
+        this.graine = graine;
+    }
+
+    /**
+     * {@code nombre} articles with ids {@code G0000000} and up. Expiry dates
+     * are counted from {@code aujourdHui}; about 3% of the perishables are
+     * already past it and 2% of the articles are out of stock.
+     */
+    public List<ArticleEpicerie> catalogue(int nombre, LocalDate aujourdHui) {
+        Random aleatoire = new Random(graine);
+        double[] partsCumulees = new double[RAYONS.length];
+        double cumul = 0;
+        for (int r = 0; r < RAYONS.length; r++) {
+            cumul += RAYONS[r].part;
+            partsCumulees[r] = cumul;
+        }
+
+        List<ArticleEpicerie> articles = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            int indiceRayon = Arrays.binarySearch(partsCumulees, aleatoire.nextDouble() * cumul);
+            Rayon rayon = RAYONS[indiceRayon < 0 ? Math.min(-indiceRayon - 1, RAYONS.length - 1) : indiceRayon];
+            String id = String.format("G%07d", i);
+            String nom = rayon.produits[aleatoire.nextInt(rayon.produits.length)]
+                + FORMATS[aleatoire.nextInt(FORMATS.length)];
+            // Prices lean towards the cheap end of the department
+            double u = aleatoire.nextDouble();
+            double prix = Math.round((rayon.prixMin + u * u * (rayon.prixMax - rayon.prixMin)) * 100) / 100.0;
+            int stock = aleatoire.nextInt(50) == 0 ? 0 : 5 + (int) (Math.abs(aleatoire.nextGaussian()) * 60);
+            int jours = rayon.joursMin + aleatoire.nextInt(rayon.joursMax - rayon.joursMin + 1);
+
+            if (rayon.perissable) {
+                LocalDate expiration = aleatoire.nextInt(33) == 0
+                    ? aujourdHui.minusDays(1 + aleatoire.nextInt(5))
+                    : aujourdHui.plusDays(jours);
+                articles.add(new ArticlePerissable(id, nom, prix, stock, rayon.categorie, expiration));
+            } else {
+                articles.add(new ArticleNonPerissable(id, nom, prix, stock, rayon.categorie, jours));
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Zipf popularity over the articles of {@code catalogue}, in an order
+     * shuffled by the seed.
+     */
+    public Popularite popularite(List<ArticleEpicerie> catalogue) {
+        return new Popularite(catalogue, new Random(graine ^ 0x5DEECE66DL), EXPOSANT_ZIPF);
+    }
+
+    /**
+     * Generates the sales from {@code debut} to {@code fin}, about
+     * {@code ventesParJour} on an average day of the first year.
+     *
+     * @return the number of sales generated
+     */
+    public long historique(List<ArticleEpicerie> catalogue, LocalDate debut, LocalDate fin, int ventesParJour,
+                           VisiteurVente visiteur) throws IOException {
+        Random aleatoire = new Random(graine * 31 + debut.toEpochDay());
+        Popularite popularite = popularite(catalogue);
+        ZoneId zone = ZoneId.systemDefault();
+        long sequence = 0;
+        long[] minutes = new long[0];
+
+        for (LocalDate jour = debut; !jour.isAfter(fin); jour = jour.plusDays(1)) {
+            int nombre = ventesDuJour(aleatoire, jour, debut, ventesParJour);
+            if (minutes.length < nombre) {
+                minutes = new long[nombre];
+            }
+            for (int v = 0; v < nombre; v++) {
+                minutes[v] = minuteDeVente(aleatoire);
+            }
+            Arrays.sort(minutes, 0, nombre);
+
+            long minuit = jour.atStartOfDay(zone).toInstant().toEpochMilli();
+            for (int v = 0; v < nombre; v++) {
+                long horodatage = minuit + minutes[v] * 60_000 + aleatoire.nextInt(60_000);
+                visiteur.vente(jour, new JournalVentes.EnregistrementVente(++sequence, horodatage,
+                    panier(aleatoire, catalogue, popularite)));
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes the history into one {@link ArchiveVentes} file per month of
+     * {@code repertoire}.
+     *
+     * @return the number of sales archived
+     */
+    public long archiverHistorique(List<ArticleEpicerie> catalogue, LocalDate debut, LocalDate fin, int ventesParJour,
+                                   Path repertoire) throws IOException {
+        ArchiveVentes.Ecrivain[] ecrivain = {null};
+        YearMonth[] mois = {null};
+        try {
+            long nombre = historique(catalogue, debut, fin, ventesParJour, (jour, vente) -> {
+                YearMonth moisVente = YearMonth.from(jour);
+                if (!moisVente.equals(mois[0])) {
+                    if (ecrivain[0] != null) {
+                        ecrivain[0].close();
+                    }
+                    ecrivain[0] = new ArchiveVentes.Ecrivain(ArchiveVentes.fichierDuMois(repertoire, moisVente));
+                    mois[0] = moisVente;
+                }
+                ecrivain[0].ajouter(jour, vente);
+            });
+            if (ecrivain[0] != null) {
+                ecrivain[0].close();
+            }
+            return nombre;
+        } catch (IOException | RuntimeException e) {
+            if (ecrivain[0] != null) {
+                ecrivain[0].abandonner();
+                ecrivain[0].close();
+            }
+            throw e;
+        }
+    }
+
+    private static int ventesDuJour(Random aleatoire, LocalDate jour, LocalDate debut, int ventesParJour) {
+        double annees = (jour.toEpochDay() - debut.toEpochDay()) / 365.25;
+        double moyenne = ventesParJour
+            * FACTEURS_JOUR[jour.getDayOfWeek().getValue() - 1]
+            * facteurSaison(jour)
+            * Math.pow(1 + CROISSANCE_ANNUELLE, annees);
+        if (jour.getMonthValue() == 5 && jour.getDayOfMonth() == 1
+                || jour.getMonthValue() == 12 && jour.getDayOfMonth() == 25
+                || jour.getMonthValue() == 1 && jour.getDayOfMonth() == 1) {
+            return 0; // Closed
+        }
+        // Roughly Poisson around the day's mean
+        return Math.max(0, (int) Math.round(moyenne + aleatoire.nextGaussian() * Math.sqrt(moyenne)));
+    }
+
+    private static double facteurSaison(LocalDate jour) {
+        switch (jour.getMonth()) {
+            case DECEMBER: return jour.getDayOfMonth() >= 15 ? 1.4 : 1.15;
+            case JULY:
+            case AUGUST: return 0.85;
+            case JANUARY: return 0.92;
+            default: return 1.0;
+        }
+    }
+
+    // Minute of the day, around a lunch and an evening peak
+    private static long minuteDeVente(Random aleatoire) {
+        double tirage = aleatoire.nextDouble();
+        double minute;
+        if (tirage < 0.35) {
+            minute = 12.5 * 60 + aleatoire.nextGaussian() * 50;
+        } else if (tirage < 0.75) {
+            minute = 18 * 60 + aleatoire.nextGaussian() * 60;
+        } else {
+            minute = OUVERTURE_MINUTES + aleatoire.nextDouble() * (FERMETURE_MINUTES - OUVERTURE_MINUTES);
+        }
+        return Math.max(OUVERTURE_MINUTES, Math.min(FERMETURE_MINUTES - 1, (long) minute));
+    }
+
+    private static List<JournalVentes.LigneJournal> panier(Random aleatoire, List<ArticleEpicerie> catalogue,
+                                                           Popularite popularite) {
+        // Geometric number of lines, 4 on average
+        int lignes = 1;
+        while (lignes < 40 && aleatoire.nextDouble() < 0.75) {
+            lignes++;
+        }
+        List<JournalVentes.LigneJournal> panier = new ArrayList<>(lignes);
+        for (int l = 0; l < lignes; l++) {
+            ArticleEpicerie article = catalogue.get(popularite.tirer(aleatoire));
+            int quantite = aleatoire.nextInt(10) < 7 ? 1 : 2 + aleatoire.nextInt(3);
+            panier.add(new JournalVentes.LigneJournal(article.getId(), quantite, Math.round(article.getPrix() * 100)));
+        }
+        return panier;
+    }
+
+    /**
+     * Draws article indexes with Zipf-distributed popularity.
+     */
+    public static class Popularite {
+        private final int[] ordre;
+        private final double[] cumuls;
+
+        Popularite(List<ArticleEpicerie> catalogue, Random aleatoire, double exposant) {
+            int nombre = catalogue.size();
+            ordre = new int[nombre];
+            for (int i = 0; i < nombre; i++) {
+                ordre[i] = i;
+            }
+            for (int i = nombre - 1; i > 0; i--) {
+                int j = aleatoire.nextInt(i + 1);
+                int echange = ordre[i];
+                ordre[i] = ordre[j];
+                ordre[j] = echange;
+            }
+            cumuls = new double[nombre];
+            double cumul = 0;
+            for (int rang = 0; rang < nombre; rang++) {
+                cumul += 1 / Math.pow(rang + 1, exposant);
+                cumuls[rang] = cumul;
+            }
+        }
+
+        /**
+         * Index in the catalog of a randomly drawn article.
+         */
+        public int tirer(Random aleatoire) {
+            int rang = Arrays.binarySearch(cumuls, aleatoire.nextDouble() * cumuls[cumuls.length - 1]);
+            return ordre[rang < 0 ? Math.min(-rang - 1, cumuls.length - 1) : rang];
+        }
+
+        /**
+         * Index in the catalog of the article of popularity rank {@code rang}, 0 being the best seller.
+         */
+        public int article(int rang) {
+            return ordre[rang];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int nombreArticles = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int annees = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int ventesParJour = args.length > 2 ? Integer.parseInt(args[2]) : 800;
+        long graine = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Path repertoire = Paths.get(args.length > 4 ? args[4] : "donnees-synthetiques");
+
+        GenerateurDonnees generateur = new GenerateurDonnees(graine);
+        LocalDate aujourdHui = LocalDate.now();
+        long debut = System.nanoTime();
+        List<ArticleEpicerie> catalogue = generateur.catalogue(nombreArticles, aujourdHui);
+        Inventaire inventaire = new Inventaire();
+        for (ArticleEpicerie article : catalogue) {
+            inventaire.ajouterArticle(article);
+        }
+        Files.createDirectories(repertoire);
+        InstantaneCatalogue.ecrire(inventaire, repertoire.resolve("catalogue.snap"), null, 0);
+
+        // Up to the end of last month, the current month being the live journal's
+        LocalDate fin = aujourdHui.withDayOfMonth(1).minusDays(1);
+        LocalDate premierJour = fin.plusDays(1).minusYears(annees);
+        long ventes = generateur.archiverHistorique(catalogue, premierJour, fin, ventesParJour,
+            repertoire.resolve("archives"));
+
+        System.out.println(String.format("%,d articles et %,d ventes du %s au %s écrits dans %s en %d ms (graine %d)",
+            nombreArticles, ventes, premierJour, fin, repertoire.toAbsolutePath(),
+            (System.nanoTime() - debut) / 1_000_000, graine));
+    }
+}
@@ -0,0 +1,184 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import InventaireArticle.ArticleEpicerie;
+
+/**
+ * Bitmap indexes behind the category and stock filters.
+ *
+ * Categories are dictionary-encoded to int ids in order of first appearance.
+ * Each article gets a slot; every category and every stock state has a
+ * {@link BitmapCompresse} of the slots it contains, so a combined filter is a
+ * single bitmap AND and the category list is read in O(number of categories).
+ * Stock states use each article's reorder point, so the FAIBLE and RUPTURE
+ * bitmaps are the at-risk and out-of-stock sets, kept current as stock moves.
+ */
+public class IndexFiltres {
+
+    public static final int SEUIL_STOCK_FAIBLE = PointsCommande.POINT_COMMANDE_PAR_DEFAUT;
+
+    public enum EtatStock {
+        EN_STOCK, FAIBLE, RUPTURE;
+
+        public static EtatStock de(int quantite) {
+            return de(quantite, SEUIL_STOCK_FAIBLE);
+        }
+
+        public static EtatStock de(int quantite, int pointCommande) {
+            if (quantite <= 0) return RUPTURE;
+            if (quantite <= pointCommande) return FAIBLE;
+            return EN_STOCK;
+        }
+    }
+
+    private final PointsCommande pointsCommande;
+
+    private final Map<String, Integer> categorieParNom = new HashMap<>();
+    private final List<String> categories = new ArrayList<>();
+    private final List<BitmapCompresse> parCategorie = new ArrayList<>();
+    private final BitmapCompresse[] parEtat = new BitmapCompresse[EtatStock.values().length];
+    private final BitmapCompresse tous = new BitmapCompresse();
+
+    private final Map<String, Integer> slotParId = new HashMap<>();
+    private final List<ArticleEpicerie> articles = new ArrayList<>();
+    private final List<Integer> slotsLibres = new ArrayList<>();
+    private int[] categorieDuSlot = new int[16];
+    private EtatStock[] etatDuSlot = new EtatStock[16];
+
+    public IndexFiltres() {
+        this(new PointsCommande());
+    }
+
+    /**
+     * @param pointsCommande reorder points deciding which articles are in the
+     *        "stock faible" state; after changing one, call {@link #mettreAJour}
+     */
+    public IndexFiltres(PointsCommande pointsCommande) {
+        this.pointsCommande = pointsCommande;
+        for (int i = 0; i < parEtat.length; i++) {
+            parEtat[i] = new BitmapCompresse();
+        }
+    }
+
+    public synchronized void ajouter(ArticleEpicerie article) {
+        Integer slot = slotParId.get(article.getId());
+        if (slot != null) {
+            retirerDesBitmaps(slot);
+            articles.set(slot, article);
+        } else {
+            if (slotsLibres.isEmpty()) {
+                slot = articles.size();
+                articles.add(article);
+            } else {
+                slot = slotsLibres.remove(slotsLibres.size() - 1);
+                articles.set(slot, article);
+            }
+            slotParId.put(article.getId(), slot);
+            agrandirSlots(slot);
+        }
+        placer(slot, article);
+    }
+
+    public synchronized void retirer(String id) {
+        Integer slot = slotParId.remove(id);
+        if (slot != null) {
+            retirerDesBitmaps(slot);
+            articles.set(slot, null);
+            slotsLibres.add(slot);
+        }
+    }
+
+    /**
+     * Moves an article between bitmaps after its category, stock or reorder
+     * point changed.
+     */
+    public synchronized void mettreAJour(ArticleEpicerie article) {
+        Integer slot = slotParId.get(article.getId());
+        if (slot == null) {
+            ajouter(article);
+            return;
+        }
+        int categorie = idCategorie(article.getCategorie());
+        EtatStock etat = pointsCommande.etat(article.getId(), article.getQuantiteStock());
+        if (categorie != categorieDuSlot[slot] || etat != etatDuSlot[slot]) {
+            retirerDesBitmaps(slot);
+            placer(slot, article);
+        }
+    }
+
+    /**
+     * Categories in order of first appearance. Categories whose articles were
+     * all removed stay listed, which keeps their ids stable.
+     */
+    public synchronized List<String> getCategories() {
+        return Collections.unmodifiableList(new ArrayList<>(categories));
+    }
+
+    /**
+     * Articles matching both filters; a null filter matches everything.
+     */
+    public synchronized List<ArticleEpicerie> filtrer(String categorie, EtatStock etat) {
+        BitmapCompresse resultat = bitmap(categorie, etat);
+        List<ArticleEpicerie> selection = new ArrayList<>(resultat.cardinalite());
+        resultat.pourChaque(slot -> selection.add(articles.get(slot)));
+        return selection;
+    }
+
+    public synchronized int compter(String categorie, EtatStock etat) {
+        return bitmap(categorie, etat).cardinalite();
+    }
+
+    private BitmapCompresse bitmap(String categorie, EtatStock etat) {
+        BitmapCompresse resultat = tous;
+        if (categorie != null) {
+            Integer id = categorieParNom.get(categorie);
+            if (id == null) return new BitmapCompresse();
+            resultat = parCategorie.get(id);
+        }
+        if (etat != null) {
+            resultat = resultat.et(parEtat[etat.ordinal()]);
+        }
+        return resultat;
+    }
+
+    private void placer(int slot, ArticleEpicerie article) {
+        int categorie = idCategorie(article.getCategorie());
+        EtatStock etat = pointsCommande.etat(article.getId(), article.getQuantiteStock());
+        categorieDuSlot[slot] = categorie;
+        etatDuSlot[slot] = etat;
+        parCategorie.get(categorie).ajouter(slot);
+        parEtat[etat.ordinal()].ajouter(slot);
+        tous.ajouter(slot);
+    }
+
+    private void retirerDesBitmaps(int slot) {
+        parCategorie.get(categorieDuSlot[slot]).retirer(slot);
+        parEtat[etatDuSlot[slot].ordinal()].retirer(slot);
+        tous.retirer(slot);
+    }
+
+    private int idCategorie(String categorie) {
+        Integer id = categorieParNom.get(categorie);
+        if (id == null) {
+            id = categories.size();
+            categorieParNom.put(categorie, id);
+            categories.add(categorie);
+            parCategorie.add(new BitmapCompresse());
+        }
+        return id;
+    }
+
+    private void agrandirSlots(int slot) {
+        if (slot >= categorieDuSlot.length) {
+            int taille = Math.max(slot + 1, categorieDuSlot.length * 2);
+            categorieDuSlot = Arrays.copyOf(categorieDuSlot, taille);
+            etatDuSlot = Arrays.copyOf(etatDuSlot, taille);
+        }
+    }
+}
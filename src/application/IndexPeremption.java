@@ -0,0 +1,165 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticlePerissable;
+
+/**
+ * Index of the perishable articles by expiry day.
+ *
+ * Articles are kept in day buckets ordered by expiry date, so the expired
+ * articles are the head of the map and the articles expiring soon a range of
+ * it: both lists cost the number of results, not the size of the catalog. The
+ * index has its own notion of today, moved forward by {@link #balayer}, which
+ * also returns the articles that expired or came close to expiry since the
+ * previous sweep.
+ */
+public class IndexPeremption {
+
+    public enum Etat {
+        NON_PERISSABLE, PERIME, BIENTOT_PERIME, FRAIS
+    }
+
+    private final int joursAvantPeremption;
+    private final TreeMap<Long, Map<String, ArticlePerissable>> parJour = new TreeMap<>();
+    private final Map<String, Long> jourParArticle = new HashMap<>();
+    private long aujourdHui;
+
+    public IndexPeremption() {
+        this(CalculRapports.JOURS_AVANT_PEREMPTION, LocalDate.now());
+    }
+
+    /**
+     * @param joursAvantPeremption an article expiring within that many days is "bientôt périmé"
+     * @param aujourdHui the day the index starts from
+     */
+    public IndexPeremption(int joursAvantPeremption, LocalDate aujourdHui) {
+        this.joursAvantPeremption = joursAvantPeremption;
+        this.aujourdHui = aujourdHui.toEpochDay();
+    }
+
+    /**
+     * Adds a perishable article, or moves it if its expiry date changed; other
+     * articles are ignored.
+     */
+    public synchronized void ajouter(ArticleEpicerie article) {
+        retirer(article.getId());
+        if (!(article instanceof ArticlePerissable perissable)) return;
+
+        long jour = perissable.getDateExpiration().toEpochDay();
+        parJour.computeIfAbsent(jour, j -> new HashMap<>()).put(perissable.getId(), perissable);
+        jourParArticle.put(perissable.getId(), jour);
+    }
+
+    public void mettreAJour(ArticleEpicerie article) {
+        ajouter(article);
+    }
+
+    public synchronized void retirer(String id) {
+        Long jour = jourParArticle.remove(id);
+        if (jour == null) return;
+
+        Map<String, ArticlePerissable> articlesDuJour = parJour.get(jour);
+        articlesDuJour.remove(id);
+        if (articlesDuJour.isEmpty()) {
+            parJour.remove(jour);
+        }
+    }
+
+    public synchronized LocalDate getAujourdHui() {
+        return LocalDate.ofEpochDay(aujourdHui);
+    }
+
+    public int getJoursAvantPeremption() {
+        return joursAvantPeremption;
+    }
+
+    /**
+     * Articles whose expiry date is before today, oldest first.
+     */
+    public synchronized List<ArticlePerissable> perimes() {
+        return lister(parJour.headMap(aujourdHui, false));
+    }
+
+    /**
+     * Articles expiring from today to today + {@link #getJoursAvantPeremption()}.
+     */
+    public synchronized List<ArticlePerissable> bientotPerimes() {
+        return lister(parJour.subMap(aujourdHui, true, aujourdHui + joursAvantPeremption, true));
+    }
+
+    public synchronized int compterPerimes() {
+        return compter(parJour.headMap(aujourdHui, false));
+    }
+
+    public synchronized int compterBientotPerimes() {
+        return compter(parJour.subMap(aujourdHui, true, aujourdHui + joursAvantPeremption, true));
+    }
+
+    /**
+     * Expiry state of an article as of the index's today.
+     */
+    public Etat etat(ArticleEpicerie article) {
+        return etat(article, joursAvantPeremption);
+    }
+
+    /**
+     * Same as {@link #etat(ArticleEpicerie)} with a warning window of
+     * {@code joursAlerte} days instead of the index's own.
+     */
+    public synchronized Etat etat(ArticleEpicerie article, int joursAlerte) {
+        Long jour = jourParArticle.get(article.getId());
+        if (jour == null) {
+            if (!(article instanceof ArticlePerissable perissable)) return Etat.NON_PERISSABLE;
+            jour = perissable.getDateExpiration().toEpochDay();
+        }
+        if (jour < aujourdHui) return Etat.PERIME;
+        if (jour <= aujourdHui + joursAlerte) return Etat.BIENTOT_PERIME;
+        return Etat.FRAIS;
+    }
+
+    /**
+     * Moves today forward to {@code jour} and returns an event for every
+     * article that expired, or entered the "bientôt périmé" window, in between.
+     * Nothing happens if {@code jour} is not after the current today.
+     */
+    public synchronized List<EvenementMagasin> balayer(LocalDate jour) {
+        List<EvenementMagasin> evenements = new ArrayList<>();
+        long nouveauJour = jour.toEpochDay();
+        if (nouveauJour <= aujourdHui) return evenements;
+
+        for (ArticlePerissable article : lister(parJour.subMap(aujourdHui, true, nouveauJour, false))) {
+            evenements.add(EvenementMagasin.articlePerime(article));
+        }
+        // Window before: [aujourdHui, aujourdHui + N]; after: [nouveauJour, nouveauJour + N]
+        long dejaSignales = Math.max(aujourdHui + joursAvantPeremption, nouveauJour - 1);
+        for (ArticlePerissable article
+                : lister(parJour.subMap(dejaSignales, false, nouveauJour + joursAvantPeremption, true))) {
+            evenements.add(EvenementMagasin.peremptionProche(article));
+        }
+        aujourdHui = nouveauJour;
+        return evenements;
+    }
+
+    private static List<ArticlePerissable> lister(Map<Long, Map<String, ArticlePerissable>> jours) {
+        List<ArticlePerissable> articles = new ArrayList<>();
+        for (Map<String, ArticlePerissable> articlesDuJour : jours.values()) {
+            articles.addAll(articlesDuJour.values());
+        }
+        return articles;
+    }
+
+    private static int compter(Map<Long, Map<String, ArticlePerissable>> jours) {
+        int nombre = 0;
+        for (Map<String, ArticlePerissable> articlesDuJour : jours.values()) {
+            nombre += articlesDuJour.size();
+        }
+        return nombre;
+    }
+}
@@ -0,0 +1,325 @@
+package application;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import InventaireArticle.ArticleEpicerie;
+
+/**
+ * Incremental trigram index over article names and ids.
+ *
+ * Text is folded character by character (lower case, accents removed), so
+ * neither indexing nor searching allocates a lower-case copy of an article.
+ * A query of three characters or more intersects the posting lists of its
+ * trigrams and only checks the few remaining candidates; shorter queries fall
+ * back to an allocation-free scan.
+ *
+ * Removed or modified articles leave a tombstone behind; the index is rebuilt
+ * once tombstones outnumber live entries. All methods are synchronized so the
+ * index can be queried off the FX thread.
+ */
+public class IndexTrigrammes {
+
+    private static final char[] REPLIEMENT = new char[0x250];
+
+    static {
+        for (char c = 0; c < REPLIEMENT.length; c++) {
+            String decompose = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            REPLIEMENT[c] = Character.toLowerCase(decompose.charAt(0));
+        }
+    }
+
+    // Separates the name from the id so that no trigram spans both
+    private static final char SEPARATEUR = '\u0001';
+
+    private final TableTrigrammes postings = new TableTrigrammes();
+    private final Map<String, Integer> documentParId = new HashMap<>();
+    private final List<ArticleEpicerie> documents = new ArrayList<>();
+    private final BitSet supprimes = new BitSet();
+    private int nombreSupprimes;
+
+    public synchronized void ajouter(ArticleEpicerie article) {
+        Integer ancien = documentParId.get(article.getId());
+        if (ancien != null) {
+            marquerSupprime(ancien);
+        }
+
+        int document = documents.size();
+        documents.add(article);
+        documentParId.put(article.getId(), document);
+        indexer(document, article);
+        reconstruireSiNecessaire();
+    }
+
+    public synchronized void retirer(String id) {
+        Integer document = documentParId.remove(id);
+        if (document != null) {
+            marquerSupprime(document);
+            reconstruireSiNecessaire();
+        }
+    }
+
+    /**
+     * Re-indexes an article whose name or id may have changed.
+     */
+    public synchronized void mettreAJour(ArticleEpicerie article) {
+        ajouter(article);
+    }
+
+    public synchronized int taille() {
+        return documentParId.size();
+    }
+
+    /**
+     * Returns the articles whose name or id contains {@code terme}, ignoring case and accents.
+     */
+    public List<ArticleEpicerie> rechercher(String terme) {
+        return rechercher(terme, false);
+    }
+
+    /**
+     * Same as {@link #rechercher(String)}, restricted to article names.
+     */
+    public List<ArticleEpicerie> rechercherParNom(String terme) {
+        return rechercher(terme, true);
+    }
+
+    private synchronized List<ArticleEpicerie> rechercher(String terme, boolean nomSeulement) {
+        char[] requete = replier(terme);
+        List<ArticleEpicerie> resultats = new ArrayList<>();
+
+        if (requete.length < 3) {
+            for (int document = 0; document < documents.size(); document++) {
+                if (!supprimes.get(document) && correspond(documents.get(document), requete, nomSeulement)) {
+                    resultats.add(documents.get(document));
+                }
+            }
+            return resultats;
+        }
+
+        // Collect the posting lists of every trigram, shortest first
+        ListeEntiers[] listes = new ListeEntiers[requete.length - 2];
+        for (int i = 0; i < listes.length; i++) {
+            listes[i] = postings.get(cle(requete[i], requete[i + 1], requete[i + 2]));
+            if (listes[i] == null) {
+                return resultats;
+            }
+        }
+        Arrays.sort(listes, (a, b) -> Integer.compare(a.taille, b.taille));
+
+        // Intersect progressively: the candidate set only shrinks
+        int[] candidats = Arrays.copyOf(listes[0].valeurs, listes[0].taille);
+        int nombreCandidats = candidats.length;
+        for (int j = 1; j < listes.length && nombreCandidats > 0; j++) {
+            nombreCandidats = listes[j].intersecter(candidats, nombreCandidats);
+        }
+
+        for (int i = 0; i < nombreCandidats; i++) {
+            int document = candidats[i];
+            // The trigrams may appear in a different order: confirm the substring
+            if (!supprimes.get(document) && correspond(documents.get(document), requete, nomSeulement)) {
+                resultats.add(documents.get(document));
+            }
+        }
+        return resultats;
+    }
+
+    private void indexer(int document, ArticleEpicerie article) {
+        String nom = article.getNom();
+        String id = article.getId();
+        int longueur = nom.length() + 1 + id.length();
+
+        char a = 0;
+        char b = 0;
+        for (int i = 0; i < longueur; i++) {
+            char c = i < nom.length() ? replier(nom.charAt(i))
+                   : i == nom.length() ? SEPARATEUR
+                   : replier(id.charAt(i - nom.length() - 1));
+            if (i >= 2 && a != SEPARATEUR && b != SEPARATEUR && c != SEPARATEUR) {
+                ListeEntiers liste = postings.obtenirOuCreer(cle(a, b, c));
+                // Document ids only grow, so a repeated trigram is always the last entry
+                if (liste.taille == 0 || liste.valeurs[liste.taille - 1] != document) {
+                    liste.ajouter(document);
+                }
+            }
+            a = b;
+            b = c;
+        }
+    }
+
+    private void marquerSupprime(int document) {
+        if (!supprimes.get(document)) {
+            supprimes.set(document);
+            nombreSupprimes++;
+        }
+    }
+
+    private void reconstruireSiNecessaire() {
+        if (nombreSupprimes > documentParId.size()) {
+            reconstruire();
+        }
+    }
+
+    private void reconstruire() {
+        List<ArticleEpicerie> vivants = new ArrayList<>(documentParId.size());
+        for (int document = 0; document < documents.size(); document++) {
+            if (!supprimes.get(document)) {
+                vivants.add(documents.get(document));
+            }
+        }
+        postings.clear();
+        documentParId.clear();
+        documents.clear();
+        supprimes.clear();
+        nombreSupprimes = 0;
+        for (ArticleEpicerie article : vivants) {
+            ajouter(article);
+        }
+    }
+
+    private static boolean correspond(ArticleEpicerie article, char[] requete, boolean nomSeulement) {
+        return contient(article.getNom(), requete) || (!nomSeulement && contient(article.getId(), requete));
+    }
+
+    /**
+     * Folded substring test that does not allocate.
+     */
+    static boolean contient(String texte, char[] requete) {
+        int fin = texte.length() - requete.length;
+        for (int debut = 0; debut <= fin; debut++) {
+            int i = 0;
+            while (i < requete.length && replier(texte.charAt(debut + i)) == requete[i]) {
+                i++;
+            }
+            if (i == requete.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static char replier(char c) {
+        return c < REPLIEMENT.length ? REPLIEMENT[c] : Character.toLowerCase(c);
+    }
+
+    static char[] replier(String texte) {
+        char[] resultat = new char[texte.length()];
+        for (int i = 0; i < resultat.length; i++) {
+            resultat[i] = replier(texte.charAt(i));
+        }
+        return resultat;
+    }
+
+    private static long cle(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // Growable sorted list of document ids
+    private static class ListeEntiers {
+        private int[] valeurs = new int[4];
+        private int taille;
+
+        void ajouter(int valeur) {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, taille * 2);
+            }
+            valeurs[taille++] = valeur;
+        }
+
+        /**
+         * Keeps in {@code candidats} the values also present in this list and
+         * returns how many are left. Uses a galloping search since the
+         * candidates are usually far fewer than the entries of this list.
+         */
+        int intersecter(int[] candidats, int nombre) {
+            int conserves = 0;
+            int debut = 0;
+            for (int i = 0; i < nombre && debut < taille; i++) {
+                int valeur = candidats[i];
+                int pas = 1;
+                int fin = debut;
+                while (fin < taille && valeurs[fin] < valeur) {
+                    debut = fin + 1;
+                    fin += pas;
+                    pas <<= 1;
+                }
+                int position = Arrays.binarySearch(valeurs, debut, Math.min(fin + 1, taille), valeur);
+                if (position >= 0) {
+                    candidats[conserves++] = valeur;
+                    debut = position + 1;
+                } else {
+                    debut = -position - 1;
+                }
+            }
+            return conserves;
+        }
+    }
+
+    // Open-addressing map from a trigram key to its posting list, without boxing
+    private static class TableTrigrammes {
+        private long[] cles = new long[1024];
+        private ListeEntiers[] listes = new ListeEntiers[1024];
+        private int taille;
+
+        ListeEntiers get(long cle) {
+            int masque = cles.length - 1;
+            for (int i = hacher(cle) & masque; listes[i] != null; i = (i + 1) & masque) {
+                if (cles[i] == cle) {
+                    return listes[i];
+                }
+            }
+            return null;
+        }
+
+        ListeEntiers obtenirOuCreer(long cle) {
+            int masque = cles.length - 1;
+            int i = hacher(cle) & masque;
+            for (; listes[i] != null; i = (i + 1) & masque) {
+                if (cles[i] == cle) {
+                    return listes[i];
+                }
+            }
+            ListeEntiers liste = new ListeEntiers();
+            cles[i] = cle;
+            listes[i] = liste;
+            if (++taille * 2 > cles.length) {
+                agrandir();
+            }
+            return liste;
+        }
+
+        void clear() {
+            Arrays.fill(cles, 0);
+            Arrays.fill(listes, null);
+            taille = 0;
+        }
+
+        private void agrandir() {
+            long[] anciennesCles = cles;
+            ListeEntiers[] anciennesListes = listes;
+            cles = new long[anciennesCles.length * 2];
+            listes = new ListeEntiers[anciennesListes.length * 2];
+            int masque = cles.length - 1;
+            for (int j = 0; j < anciennesCles.length; j++) {
+                if (anciennesListes[j] != null) {
+                    int i = hacher(anciennesCles[j]) & masque;
+                    while (listes[i] != null) {
+                        i = (i + 1) & masque;
+                    }
+                    cles[i] = anciennesCles[j];
+                    listes[i] = anciennesListes[j];
+                }
+            }
+        }
+
+        private static int hacher(long cle) {
+            long h = cle * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
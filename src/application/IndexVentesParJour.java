@@ -0,0 +1,303 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Sales partitioned by day, with prefix sums of revenue, transactions and
+ * lines per day.
+ *
+ * Days are stored in an array indexed by their distance to the first day, so
+ * a range lookup finds its partitions directly. Totals over any date range
+ * are two prefix-sum reads, whatever the number of sales; listing the sales
+ * of a range only touches the partitions inside it.
+ *
+ * Each day also keeps a rollup per article (quantity and revenue), updated as
+ * sales are recorded, so per-article figures for a range merge one rollup per
+ * day instead of reading every sale line.
+ *
+ * Appending a sale to the latest day is O(1). A sale dated earlier updates
+ * the prefix sums of the following days, which is O(days).
+ */
+public class IndexVentesParJour {
+
+    /**
+     * Totals of a date range.
+     */
+    public static class Totaux {
+        private final long chiffreAffairesCentimes;
+        private final int nombreVentes;
+        private final long nombreLignes;
+
+        Totaux(long chiffreAffairesCentimes, int nombreVentes, long nombreLignes) {
+            this.chiffreAffairesCentimes = chiffreAffairesCentimes;
+            this.nombreVentes = nombreVentes;
+            this.nombreLignes = nombreLignes;
+        }
+
+        public double getChiffreAffaires() { return chiffreAffairesCentimes / 100.0; }
+        public int getNombreVentes() { return nombreVentes; }
+        public long getNombreLignes() { return nombreLignes; }
+
+        public double getPanierMoyen() {
+            return nombreVentes > 0 ? getChiffreAffaires() / nombreVentes : 0.0;
+        }
+    }
+
+    /**
+     * Quantity and revenue of one article, for a day or merged over a range.
+     */
+    public static class CumulArticle {
+        private final String idArticle;
+        private final String nom;
+        private int quantite;
+        private long chiffreAffairesCentimes;
+
+        CumulArticle(String idArticle, String nom) {
+            this.idArticle = idArticle;
+            this.nom = nom;
+        }
+
+        CumulArticle(String idArticle, String nom, int quantite, long chiffreAffairesCentimes) {
+            this(idArticle, nom);
+            this.quantite = quantite;
+            this.chiffreAffairesCentimes = chiffreAffairesCentimes;
+        }
+
+        void ajouter(int quantite, long chiffreAffairesCentimes) {
+            this.quantite += quantite;
+            this.chiffreAffairesCentimes += chiffreAffairesCentimes;
+        }
+
+        public String getIdArticle() { return idArticle; }
+        public String getNom() { return nom; }
+        public int getQuantite() { return quantite; }
+        public long getChiffreAffairesCentimes() { return chiffreAffairesCentimes; }
+        public double getChiffreAffaires() { return chiffreAffairesCentimes / 100.0; }
+    }
+
+    private static class Partition {
+        final List<Vente> ventes = new ArrayList<>();
+        final Map<String, CumulArticle> parArticle = new HashMap<>();
+    }
+
+    public static final int MAX_JOURS_CLASSEMENT_EXACT = 366;
+
+    private long premierJour;
+    private int nombreJours;
+    private Partition[] partitions = new Partition[16];
+    // Cumulated up to and including each day
+    private long[] chiffreAffairesCumule = new long[16];
+    private int[] ventesCumulees = new int[16];
+    private long[] lignesCumulees = new long[16];
+
+    public synchronized void ajouter(Vente vente) {
+        long jour = vente.getDate().toEpochDay();
+        if (nombreJours == 0) {
+            premierJour = jour;
+        } else if (jour < premierJour) {
+            decaler((int) (premierJour - jour));
+        }
+
+        int index = (int) (jour - premierJour);
+        if (index >= nombreJours) {
+            etendre(index + 1);
+        }
+        if (partitions[index] == null) {
+            partitions[index] = new Partition();
+        }
+        Partition partition = partitions[index];
+        partition.ventes.add(vente);
+        for (LigneVente ligne : vente.getArticles()) {
+            ArticleEpicerie article = ligne.getArticle();
+            CumulArticle cumul = partition.parArticle.computeIfAbsent(
+                article.getId(), id -> new CumulArticle(id, article.getNom()));
+            cumul.ajouter(ligne.getQuantite(), VenteRejouee.montantCentimes(vente, ligne));
+        }
+
+        long montant = Math.round(vente.getTotal() * 100);
+        int lignes = vente.getArticles().size();
+        for (int i = index; i < nombreJours; i++) {
+            chiffreAffairesCumule[i] += montant;
+            ventesCumulees[i]++;
+            lignesCumulees[i] += lignes;
+        }
+    }
+
+    public synchronized void ajouterTout(Collection<Vente> ventes) {
+        for (Vente vente : ventes) {
+            ajouter(vente);
+        }
+    }
+
+    /**
+     * Sales from {@code debut} to {@code fin} inclusive, in day order.
+     */
+    public synchronized List<Vente> ventesEntre(LocalDate debut, LocalDate fin) {
+        int[] bornes = bornes(debut, fin);
+        if (bornes == null) return new ArrayList<>();
+
+        List<Vente> resultat = new ArrayList<>(cumulVentes(bornes[1]) - cumulVentes(bornes[0] - 1));
+        for (int i = bornes[0]; i <= bornes[1]; i++) {
+            if (partitions[i] != null) {
+                resultat.addAll(partitions[i].ventes);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Sales of one day, as a copy, so a long reader such as an export does not
+     * hold the lock for more than one day at a time.
+     */
+    public synchronized List<Vente> ventesDuJour(LocalDate jour) {
+        int[] bornes = bornes(jour, jour);
+        if (bornes == null || partitions[bornes[0]] == null) return new ArrayList<>();
+        return new ArrayList<>(partitions[bornes[0]].ventes);
+    }
+
+    /**
+     * Per-article quantity and revenue from {@code debut} to {@code fin}
+     * inclusive, merged from the daily rollups. The result is a fresh copy.
+     */
+    public synchronized Collection<CumulArticle> cumulsArticlesEntre(LocalDate debut, LocalDate fin) {
+        int[] bornes = bornes(debut, fin);
+        if (bornes == null) return new ArrayList<>();
+
+        Map<String, CumulArticle> fusion = new HashMap<>();
+        for (int i = bornes[0]; i <= bornes[1]; i++) {
+            if (partitions[i] == null) continue;
+            for (CumulArticle cumulJour : partitions[i].parArticle.values()) {
+                CumulArticle cumul = fusion.computeIfAbsent(
+                    cumulJour.idArticle, id -> new CumulArticle(id, cumulJour.nom));
+                cumul.ajouter(cumulJour.quantite, cumulJour.chiffreAffairesCentimes);
+            }
+        }
+        return fusion.values();
+    }
+
+    /**
+     * Top {@code k} articles by revenue from {@code debut} to {@code fin}.
+     * Ranges up to {@link #MAX_JOURS_CLASSEMENT_EXACT} days are ranked exactly;
+     * longer ones stream the daily rollups into a fixed-size sketch and report
+     * its error bounds.
+     */
+    public synchronized ClassementArticles.Classement meilleursArticles(LocalDate debut, LocalDate fin, int k) {
+        int[] bornes = bornes(debut, fin);
+        if (bornes == null) return ClassementArticles.meilleurs(new ArrayList<>(), k);
+
+        if (bornes[1] - bornes[0] + 1 <= MAX_JOURS_CLASSEMENT_EXACT) {
+            return ClassementArticles.meilleurs(cumulsArticlesEntre(debut, fin), k);
+        }
+        ClassementArticles.Esquisse esquisse = new ClassementArticles.Esquisse();
+        for (int i = bornes[0]; i <= bornes[1]; i++) {
+            if (partitions[i] == null) continue;
+            for (CumulArticle cumulJour : partitions[i].parArticle.values()) {
+                esquisse.ajouter(cumulJour);
+            }
+        }
+        return esquisse.classement(k);
+    }
+
+    /**
+     * Totals from {@code debut} to {@code fin} inclusive, in constant time.
+     */
+    public synchronized Totaux totauxEntre(LocalDate debut, LocalDate fin) {
+        int[] bornes = bornes(debut, fin);
+        if (bornes == null) return new Totaux(0, 0, 0);
+
+        int avant = bornes[0] - 1;
+        return new Totaux(
+            cumulChiffreAffaires(bornes[1]) - cumulChiffreAffaires(avant),
+            cumulVentes(bornes[1]) - cumulVentes(avant),
+            cumulLignes(bornes[1]) - cumulLignes(avant));
+    }
+
+    public synchronized int getNombreVentes() {
+        return nombreJours == 0 ? 0 : ventesCumulees[nombreJours - 1];
+    }
+
+    public synchronized boolean estVide() {
+        return getNombreVentes() == 0;
+    }
+
+    /**
+     * Day of the oldest sale, or null when there is none.
+     */
+    public synchronized LocalDate getPremierJour() {
+        return nombreJours == 0 ? null : LocalDate.ofEpochDay(premierJour);
+    }
+
+    /**
+     * Day of the latest sale, or null when there is none.
+     */
+    public synchronized LocalDate getDernierJour() {
+        return nombreJours == 0 ? null : LocalDate.ofEpochDay(premierJour + nombreJours - 1);
+    }
+
+    // Clamps the range to the stored days; null when they do not overlap
+    private int[] bornes(LocalDate debut, LocalDate fin) {
+        if (nombreJours == 0 || debut == null || fin == null) return null;
+        long premier = Math.max(debut.toEpochDay(), premierJour);
+        long dernier = Math.min(fin.toEpochDay(), premierJour + nombreJours - 1);
+        if (premier > dernier) return null;
+        return new int[] {(int) (premier - premierJour), (int) (dernier - premierJour)};
+    }
+
+    private long cumulChiffreAffaires(int index) {
+        return index < 0 ? 0 : chiffreAffairesCumule[index];
+    }
+
+    private int cumulVentes(int index) {
+        return index < 0 ? 0 : ventesCumulees[index];
+    }
+
+    private long cumulLignes(int index) {
+        return index < 0 ? 0 : lignesCumulees[index];
+    }
+
+    // Adds days after the last one; their cumulated totals equal the last day's
+    private void etendre(int nouveauNombreJours) {
+        if (nouveauNombreJours > partitions.length) {
+            int capacite = Math.max(nouveauNombreJours, partitions.length * 2);
+            partitions = Arrays.copyOf(partitions, capacite);
+            chiffreAffairesCumule = Arrays.copyOf(chiffreAffairesCumule, capacite);
+            ventesCumulees = Arrays.copyOf(ventesCumulees, capacite);
+            lignesCumulees = Arrays.copyOf(lignesCumulees, capacite);
+        }
+        for (int i = nombreJours; i < nouveauNombreJours; i++) {
+            chiffreAffairesCumule[i] = cumulChiffreAffaires(i - 1);
+            ventesCumulees[i] = cumulVentes(i - 1);
+            lignesCumulees[i] = cumulLignes(i - 1);
+        }
+        nombreJours = nouveauNombreJours;
+    }
+
+    // Adds empty days before the first one
+    private void decaler(int jours) {
+        int capacite = Math.max(nombreJours + jours, partitions.length);
+        Partition[] nouvelles = new Partition[capacite];
+        long[] chiffreAffaires = new long[capacite];
+        int[] ventes = new int[capacite];
+        long[] lignes = new long[capacite];
+        System.arraycopy(partitions, 0, nouvelles, jours, nombreJours);
+        System.arraycopy(chiffreAffairesCumule, 0, chiffreAffaires, jours, nombreJours);
+        System.arraycopy(ventesCumulees, 0, ventes, jours, nombreJours);
+        System.arraycopy(lignesCumulees, 0, lignes, jours, nombreJours);
+        partitions = nouvelles;
+        chiffreAffairesCumule = chiffreAffaires;
+        ventesCumulees = ventes;
+        lignesCumulees = lignes;
+        premierJour -= jours;
+        nombreJours += jours;
+    }
+}
@@ -0,0 +1,228 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticleNonPerissable;
+import InventaireArticle.ArticlePerissable;
+import InventaireArticle.Inventaire;
+
+/**
+ * Compact binary snapshot of the catalog, read through a memory-mapped file.
+ *
+ * Layout: a 64-byte header, a fixed-width article table (32 bytes per article)
+ * and a string dictionary shared by ids, names and categories. Strings are only
+ * decoded the first time an article references them, so categories are decoded
+ * once and shared by every article.
+ *
+ * The header also records the sales journal position the snapshot includes, so
+ * that startup only re-applies the sales written after the checkpoint.
+ */
+public class InstantaneCatalogue {
+
+    public static final Path FICHIER_PAR_DEFAUT =
+        Paths.get(System.getProperty("user.home"), ".groco", "catalogue.snap");
+
+    private static final int MAGIC = 0x47524353; // "GRCS"
+    private static final int VERSION = 1;
+    private static final int TAILLE_ENTETE = 64;
+    private static final int TAILLE_ARTICLE = 32;
+
+    private static final int TYPE_PERISSABLE = 0;
+    private static final int TYPE_NON_PERISSABLE = 1;
+
+    private final ByteBuffer tampon;
+    private final int nombreArticles;
+    private final int nombreChaines;
+    private final LocalDate jourJournal;
+    private final long sequenceJournal;
+    private final int debutIndexChaines;
+    private final int debutDonneesChaines;
+    private final String[] chaines;
+
+    private InstantaneCatalogue(ByteBuffer tampon) throws IOException {
+        this.tampon = tampon;
+        if (tampon.limit() < TAILLE_ENTETE || tampon.getInt(0) != MAGIC) {
+            throw new IOException("Fichier d'instantané du catalogue invalide");
+        }
+        if (tampon.getInt(4) != VERSION) {
+            throw new IOException("Version d'instantané non supportée: " + tampon.getInt(4));
+        }
+        nombreArticles = tampon.getInt(8);
+        nombreChaines = tampon.getInt(12);
+        long jour = tampon.getLong(16);
+        jourJournal = jour < 0 ? null : LocalDate.ofEpochDay(jour);
+        sequenceJournal = tampon.getLong(24);
+        debutIndexChaines = TAILLE_ENTETE + nombreArticles * TAILLE_ARTICLE;
+        debutDonneesChaines = debutIndexChaines + (nombreChaines + 1) * 4;
+        chaines = new String[nombreChaines];
+    }
+
+    /**
+     * Maps a snapshot file. The file is only read when articles are decoded.
+     */
+    public static InstantaneCatalogue ouvrir(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Instantané du catalogue trop volumineux: " + canal.size() + " octets");
+            }
+            return new InstantaneCatalogue(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    public int getNombreArticles() {
+        return nombreArticles;
+    }
+
+    /**
+     * Day of the sales journal this snapshot was taken against, or null if unknown.
+     */
+    public LocalDate getJourJournal() {
+        return jourJournal;
+    }
+
+    /**
+     * Last journal sequence whose stock changes are already included in the snapshot.
+     */
+    public long getSequenceJournal() {
+        return sequenceJournal;
+    }
+
+    public ArticleEpicerie lireArticle(int index) {
+        int position = TAILLE_ENTETE + index * TAILLE_ARTICLE;
+        String id = chaine(tampon.getInt(position));
+        String nom = chaine(tampon.getInt(position + 4));
+        String categorie = chaine(tampon.getInt(position + 8));
+        int stock = tampon.getInt(position + 12);
+        double prix = tampon.getLong(position + 16) / 100.0;
+        int type = tampon.getInt(position + 24);
+        int complement = tampon.getInt(position + 28);
+
+        if (type == TYPE_PERISSABLE) {
+            return new ArticlePerissable(id, nom, prix, stock, categorie, LocalDate.ofEpochDay(complement));
+        }
+        return new ArticleNonPerissable(id, nom, prix, stock, categorie, complement);
+    }
+
+    /**
+     * Decodes articles in batches of {@code tailleLot}, handing each batch to {@code lot}.
+     */
+    public void lireParLots(int tailleLot, Consumer<List<ArticleEpicerie>> lot) {
+        List<ArticleEpicerie> courant = new ArrayList<>(tailleLot);
+        for (int i = 0; i < nombreArticles; i++) {
+            courant.add(lireArticle(i));
+            if (courant.size() == tailleLot) {
+                lot.accept(courant);
+                courant = new ArrayList<>(tailleLot);
+            }
+        }
+        if (!courant.isEmpty()) {
+            lot.accept(courant);
+        }
+    }
+
+    private String chaine(int reference) {
+        String valeur = chaines[reference];
+        if (valeur == null) {
+            int debut = tampon.getInt(debutIndexChaines + reference * 4);
+            int fin = tampon.getInt(debutIndexChaines + (reference + 1) * 4);
+            byte[] octets = new byte[fin - debut];
+            tampon.get(debutDonneesChaines + debut, octets);
+            valeur = new String(octets, StandardCharsets.UTF_8);
+            chaines[reference] = valeur;
+        }
+        return valeur;
+    }
+
+    /**
+     * Checkpoints the live inventory. The file is written next to the target,
+     * forced to disk and atomically moved into place, so a crash never leaves a
+     * half-written snapshot.
+     *
+     * @param jourJournal day of the sales journal the inventory reflects, or null
+     * @param sequenceJournal last journal sequence already applied to the stock
+     */
+    public static void ecrire(Inventaire inventaire, Path fichier, LocalDate jourJournal, long sequenceJournal) throws IOException {
+        List<ArticleEpicerie> articles = new ArrayList<>(inventaire.getArticles().values());
+        Map<String, Integer> dictionnaire = new HashMap<>();
+        List<byte[]> chaines = new ArrayList<>();
+        int[] lignes = new int[articles.size() * 3];
+
+        for (int i = 0; i < articles.size(); i++) {
+            ArticleEpicerie article = articles.get(i);
+            lignes[i * 3] = referencer(article.getId(), dictionnaire, chaines);
+            lignes[i * 3 + 1] = referencer(article.getNom(), dictionnaire, chaines);
+            lignes[i * 3 + 2] = referencer(article.getCategorie(), dictionnaire, chaines);
+        }
+
+        Path parent = fichier.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaire = Files.createTempFile(parent, "catalogue", ".tmp");
+
+        try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16))) {
+            sortie.writeInt(MAGIC);
+            sortie.writeInt(VERSION);
+            sortie.writeInt(articles.size());
+            sortie.writeInt(chaines.size());
+            sortie.writeLong(jourJournal != null ? jourJournal.toEpochDay() : -1);
+            sortie.writeLong(sequenceJournal);
+            sortie.write(new byte[TAILLE_ENTETE - 32]);
+
+            for (int i = 0; i < articles.size(); i++) {
+                ArticleEpicerie article = articles.get(i);
+                sortie.writeInt(lignes[i * 3]);
+                sortie.writeInt(lignes[i * 3 + 1]);
+                sortie.writeInt(lignes[i * 3 + 2]);
+                sortie.writeInt(article.getQuantiteStock());
+                sortie.writeLong(Math.round(article.getPrix() * 100));
+                if (article instanceof ArticlePerissable perissable) {
+                    sortie.writeInt(TYPE_PERISSABLE);
+                    sortie.writeInt((int) perissable.getDateExpiration().toEpochDay());
+                } else {
+                    sortie.writeInt(TYPE_NON_PERISSABLE);
+                    sortie.writeInt(((ArticleNonPerissable) article).getDureeConservation());
+                }
+            }
+
+            int decalage = 0;
+            for (byte[] chaine : chaines) {
+                sortie.writeInt(decalage);
+                decalage += chaine.length;
+            }
+            sortie.writeInt(decalage);
+            for (byte[] chaine : chaines) {
+                sortie.write(chaine);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+
+        EcritureAtomique.remplacer(temporaire, fichier);
+    }
+
+    private static int referencer(String valeur, Map<String, Integer> dictionnaire, List<byte[]> chaines) {
+        Integer reference = dictionnaire.get(valeur);
+        if (reference == null) {
+            reference = chaines.size();
+            dictionnaire.put(valeur, reference);
+            chaines.add(valeur.getBytes(StandardCharsets.UTF_8));
+        }
+        return reference;
+    }
+}
@@ -0,0 +1,216 @@
+package application;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Inventaire;
+
+/**
+ * Inventaire that keeps its search and filter indexes up to date as articles
+ * are added, modified or removed.
+ *
+ * Changes made through the jar's Administrateur go through
+ * {@link #ajouterArticle} and {@link #supprimerArticle}; a modification done in
+ * place on an article must be reported with {@link #articleModifie(String)},
+ * and a stock change with {@link #stockModifie(String, int)}. Every change is
+ * also published on the {@link FluxEvenements} given at construction.
+ *
+ * Once {@link #demarrerBalayage()} is called, the expiry index is swept at
+ * every day change and the articles that expired or are about to are
+ * published as well.
+ */
+public class InventaireIndexe extends Inventaire {
+
+    // One thread sweeps the expiry index of every inventory
+    private static final ScheduledExecutorService BALAYEUR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "balayage-peremption");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Also sweep at least hourly, in case the machine slept through midnight
+    private static final long DELAI_MAX_BALAYAGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final IndexTrigrammes indexRecherche = new IndexTrigrammes();
+    private final PointsCommande pointsCommande;
+    private final IndexFiltres indexFiltres;
+    private final IndexPeremption indexPeremption = new IndexPeremption();
+    private final FluxEvenements fluxEvenements;
+    private ScheduledFuture<?> balayage;
+    private boolean balayageArrete;
+
+    public InventaireIndexe() {
+        this(new FluxEvenements(Runnable::run));
+    }
+
+    public InventaireIndexe(FluxEvenements fluxEvenements) {
+        this(fluxEvenements, new PointsCommande());
+    }
+
+    public InventaireIndexe(FluxEvenements fluxEvenements, PointsCommande pointsCommande) {
+        this.fluxEvenements = fluxEvenements;
+        this.pointsCommande = pointsCommande;
+        this.indexFiltres = new IndexFiltres(pointsCommande);
+    }
+
+    @Override
+    public void ajouterArticle(ArticleEpicerie article) {
+        super.ajouterArticle(article);
+        indexRecherche.ajouter(article);
+        indexFiltres.ajouter(article);
+        indexPeremption.ajouter(article);
+        fluxEvenements.publier(EvenementMagasin.articleAjoute(article));
+    }
+
+    @Override
+    public void supprimerArticle(String id) {
+        ArticleEpicerie article = getArticle(id);
+        super.supprimerArticle(id);
+        indexRecherche.retirer(id);
+        indexFiltres.retirer(id);
+        indexPeremption.retirer(id);
+        if (article != null) {
+            fluxEvenements.publier(EvenementMagasin.articleSupprime(article));
+        }
+    }
+
+    /**
+     * Re-indexes an article after its name, category, price or stock changed.
+     */
+    public void articleModifie(String id) {
+        ArticleEpicerie article = getArticle(id);
+        if (article != null) {
+            indexRecherche.mettreAJour(article);
+            indexFiltres.mettreAJour(article);
+            indexPeremption.mettreAJour(article);
+            fluxEvenements.publier(EvenementMagasin.articleModifie(article));
+        }
+    }
+
+    /**
+     * Lighter variant of {@link #articleModifie(String)} when only the stock
+     * changed, by {@code deltaStock} units. Called while nothing else can change
+     * that stock, so the event carries the exact stock after the change.
+     */
+    public void stockModifie(String id, int deltaStock) {
+        ArticleEpicerie article = getArticle(id);
+        if (article != null) {
+            indexFiltres.mettreAJour(article);
+            fluxEvenements.publier(EvenementMagasin.stockModifie(article, deltaStock, article.getQuantiteStock()));
+        }
+    }
+
+    public FluxEvenements getFluxEvenements() {
+        return fluxEvenements;
+    }
+
+    public PointsCommande getPointsCommande() {
+        return pointsCommande;
+    }
+
+    /**
+     * Sets the reorder point and safety stock of an article; null goes back to
+     * the defaults. The article moves between the stock states right away.
+     */
+    public void definirSeuils(String id, PointsCommande.Seuils seuils) {
+        if (seuils != null) {
+            pointsCommande.definir(id, seuils);
+        } else {
+            pointsCommande.reinitialiser(id);
+        }
+        articleModifie(id);
+    }
+
+    public IndexPeremption getIndexPeremption() {
+        return indexPeremption;
+    }
+
+    /**
+     * Sweeps the expiry index shortly after every midnight. The sweep only holds
+     * a weak reference to the inventory, so an inventory that is dropped (the
+     * main menu reloads its own) stops being swept.
+     */
+    public synchronized void demarrerBalayage() {
+        if (balayage != null || balayageArrete) return;
+        planifierBalayage(new WeakReference<>(this));
+    }
+
+    public synchronized void arreterBalayage() {
+        balayageArrete = true;
+        if (balayage != null) {
+            balayage.cancel(false);
+            balayage = null;
+        }
+    }
+
+    /**
+     * Brings the expiry index to today and publishes the articles that expired
+     * or entered the warning window since the previous sweep.
+     */
+    public void balayerPeremptions() {
+        for (EvenementMagasin evenement : indexPeremption.balayer(LocalDate.now())) {
+            fluxEvenements.publier(evenement);
+        }
+    }
+
+    private static void planifierBalayage(WeakReference<InventaireIndexe> reference) {
+        InventaireIndexe inventaire = reference.get();
+        if (inventaire == null) return;
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        long jusquAMinuit = Duration.between(maintenant, maintenant.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        long delai = Math.min(jusquAMinuit + 1000, DELAI_MAX_BALAYAGE_MILLIS);
+        synchronized (inventaire) {
+            if (inventaire.balayageArrete) return;
+            inventaire.balayage = BALAYEUR.schedule(() -> {
+                InventaireIndexe cible = reference.get();
+                if (cible == null) return;
+                try {
+                    cible.balayerPeremptions();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                planifierBalayage(reference);
+            }, delai, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public List<ArticleEpicerie> rechercherParNom(String nom) {
+        return indexRecherche.rechercherParNom(nom);
+    }
+
+    /**
+     * Substring search on article names and ids, ignoring case and accents.
+     */
+    public List<ArticleEpicerie> rechercher(String terme) {
+        return indexRecherche.rechercher(terme);
+    }
+
+    /**
+     * Categories in order of first appearance, read from the category dictionary.
+     */
+    public List<String> getCategories() {
+        return indexFiltres.getCategories();
+    }
+
+    /**
+     * Articles in the given category and stock state; null matches everything.
+     * With {@code FAIBLE} or {@code RUPTURE} and no category, this reads the
+     * at-risk or out-of-stock set directly.
+     */
+    public List<ArticleEpicerie> filtrer(String categorie, IndexFiltres.EtatStock etat) {
+        return indexFiltres.filtrer(categorie, etat);
+    }
+
+    public int compter(String categorie, IndexFiltres.EtatStock etat) {
+        return indexFiltres.compter(categorie, etat);
+    }
+}
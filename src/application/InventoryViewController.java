@@ -1,5 +1,6 @@
 package application;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
@@ -8,7 +9,15 @@ import javafx.collections.ObservableList;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import InventaireArticle.ArticleEpicerie;
 import InventaireArticle.ArticlePerissable;
@@ -40,9 +49,25 @@ public class InventoryViewController implements Initializable {
     @FXML private Button refreshButton;
     @FXML private Button backButton;
 
+    // An article expiring within that many days is shown in yellow
+    private static final int EXPIRY_WARNING_DAYS = 3;
+
     private Inventaire inventaire;
     private ObservableList<ArticleEpicerie> allArticles;
     private ObservableList<ArticleEpicerie> filteredArticles;
+    private FluxEvenements.Abonnement storeSubscription;
+    private SuiviExport exportTracker;
+    // Filtering runs off the FX thread; store events meanwhile make its result stale
+    private ServiceCatalogue serviceCatalogue;
+    private long filterGeneration;
+    private boolean filterPending;
+    private boolean filterStale;
+    // Value of the filtered articles, moved by the stock events; a full sum runs on the report pool
+    // only when the filter or the articles themselves change
+    private long filteredValueCents;
+    private long statisticsGeneration;
+    private boolean statisticsPending;
+    private boolean statisticsStale;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -50,6 +75,7 @@ public class InventoryViewController implements Initializable {
         setupTableColumns();
         setupFilters();
         initializeComboBoxes();
+        exportTracker = new SuiviExport(exportButton, null, null);
         
         // If inventory was set before initialize, load data
         if (inventaire != null) {
@@ -59,12 +85,156 @@ public class InventoryViewController implements Initializable {
 
     public void setInventaire(Inventaire inventaire) {
         this.inventaire = inventaire;
+        this.serviceCatalogue = new ServiceCatalogue(inventaire);
         System.out.println("Inventaire set with " + (inventaire != null ? inventaire.getArticles().size() : 0) + " articles"); // Debug
         
         // If UI is already initialized, load data immediately
         if (inventoryTable != null) {
             loadInventoryData();
         }
+
+        dispose();
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            storeSubscription = inventaireIndexe.getFluxEvenements().abonner(this::applyStoreEvents);
+        }
+    }
+
+    /**
+     * Stops the live updates; called when the window is closed.
+     */
+    public void dispose() {
+        if (storeSubscription != null) {
+            storeSubscription.close();
+            storeSubscription = null;
+        }
+        if (exportTracker != null) {
+            exportTracker.annuler();
+        }
+    }
+
+    /**
+     * Applies a batch of inventory changes to the table without reloading it.
+     */
+    private void applyStoreEvents(List<EvenementMagasin> events) {
+        if (allArticles == null) return;
+        filterStale |= filterPending;
+        statisticsStale |= statisticsPending;
+
+        Set<ArticleEpicerie> removed = new HashSet<>();
+        Set<ArticleEpicerie> touched = new LinkedHashSet<>();
+        // Per article: the stock before the batch's first move and after its last
+        Map<ArticleEpicerie, int[]> stockMoves = new LinkedHashMap<>();
+        boolean refresh = false;
+        // Added, edited or removed articles have no known previous value: sum again
+        boolean rescan = !serviceCatalogue.estIndexe();
+        long valueDelta = 0;
+
+        for (EvenementMagasin event : events) {
+            ArticleEpicerie article = event.getArticle();
+            switch (event.getType()) {
+                case ARTICLE_AJOUTE:
+                    allArticles.add(article);
+                    if (!categoryFilter.getItems().contains(article.getCategorie())) {
+                        categoryFilter.getItems().add(article.getCategorie());
+                    }
+                    touched.add(article);
+                    rescan = true;
+                    break;
+                case ARTICLE_SUPPRIME:
+                    allArticles.remove(article);
+                    removed.add(article);
+                    touched.remove(article);
+                    rescan = true;
+                    break;
+                case ARTICLE_MODIFIE:
+                    // The article may enter or leave the current filter
+                    removed.add(article);
+                    touched.add(article);
+                    rescan = true;
+                    break;
+                case STOCK_MODIFIE: {
+                    int[] move = stockMoves.get(article);
+                    if (move == null) {
+                        stockMoves.put(article, new int[] {event.getStockApres() - event.getDeltaStock(), event.getStockApres()});
+                    } else {
+                        move[1] = event.getStockApres();
+                    }
+                    break;
+                }
+                case ARTICLE_PERIME:
+                case PEREMPTION_PROCHE:
+                    // Only the colour of the expiry cell changes
+                    refresh = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Stock moves: compare the filter before and after the whole batch, using the stock the
+        // events carry; sales committed since then are in a later batch
+        List<ArticleEpicerie> added = new ArrayList<>();
+        for (Map.Entry<ArticleEpicerie, int[]> entry : stockMoves.entrySet()) {
+            ArticleEpicerie article = entry.getKey();
+            if (removed.contains(article) || touched.contains(article)) continue;
+
+            boolean before = matchesFilters(article, entry.getValue()[0]);
+            boolean after = matchesFilters(article, entry.getValue()[1]);
+            long priceCents = Math.round(article.getPrix() * 100);
+            if (before) {
+                valueDelta -= priceCents * entry.getValue()[0];
+            }
+            if (after) {
+                valueDelta += priceCents * entry.getValue()[1];
+            }
+            if (before && !after) {
+                removed.add(article);
+            } else if (!before && after) {
+                added.add(article);
+            } else if (after) {
+                refresh = true;
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            filteredArticles.removeAll(removed);
+        }
+        for (ArticleEpicerie article : touched) {
+            if (matchesFilters(article, article.getQuantiteStock())) {
+                added.add(article);
+            }
+        }
+        if (!added.isEmpty()) {
+            filteredArticles.addAll(added);
+        }
+        if (refresh) {
+            inventoryTable.refresh();
+        }
+
+        if (rescan) {
+            updateStatistics();
+        } else if (!filterPending && !statisticsPending) {
+            // A pending sum already reads the stock these events moved
+            filteredValueCents += valueDelta;
+            showStatistics(serviceCatalogue.statistiques(filteredArticles.size(), filteredValueCents,
+                selectedCategory(), toStockState(stockFilter.getValue())));
+        }
+        updateSummary();
+    }
+
+    private boolean matchesFilters(ArticleEpicerie article, int quantity) {
+        return serviceCatalogue.correspondFiltres(article, quantity, selectedCategory(), toStockState(stockFilter.getValue()));
+    }
+
+    // The services take null for every category
+    private String selectedCategory() {
+        String selectedCategory = categoryFilter.getValue();
+        return selectedCategory == null || selectedCategory.equals("Toutes les catégories") ? null : selectedCategory;
+    }
+
+    // Stock state against the article's own reorder point when the inventory has them
+    private IndexFiltres.EtatStock stockState(ArticleEpicerie article, int quantity) {
+        return serviceCatalogue.etatStock(article, quantity);
     }
 
     private void initializeComboBoxes() {
@@ -83,65 +253,12 @@ public class InventoryViewController implements Initializable {
         priceColumn.setCellValueFactory(new PropertyValueFactory<>("prix"));
         quantityColumn.setCellValueFactory(new PropertyValueFactory<>("quantiteStock"));
 
-        priceColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, Double>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if (empty || price == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", price));
-                }
-            }
-        });
+        priceColumn.setCellFactory(CellulesTableau.montants());
 
-        quantityColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, Integer>() {
-            @Override
-            protected void updateItem(Integer quantity, boolean empty) {
-                super.updateItem(quantity, empty);
-                if (empty || quantity == null) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    setText(quantity.toString());
-                    // Color coding
-                    if (quantity == 0) {
-                        setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                    } else if (quantity <= 10) {
-                        setStyle("-fx-text-fill: #ecc94b; -fx-font-weight: bold;");
-                    } else {
-                        setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                    }
-                }
-            }
-        });
+        quantityColumn.setCellFactory(CellulesTableau.stocks(this::stockState));
 
         // Status column
-        statusColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
-            @Override
-            protected void updateItem(String item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    ArticleEpicerie article = getTableView().getItems().get(getIndex());
-                    if (article != null) {
-                        int stock = article.getQuantiteStock();
-                        if (stock == 0) {
-                            setText("RUPTURE");
-                            setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                        } else if (stock <= 10) {
-                            setText("FAIBLE");
-                            setStyle("-fx-text-fill: #ecc94b; -fx-font-weight: bold;");
-                        } else {
-                            setText("OK");
-                            setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                        }
-                    }
-                }
-            }
-        });
+        statusColumn.setCellFactory(CellulesTableau.etatsStock(article -> stockState(article, article.getQuantiteStock())));
 
         // Type column
         typeColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
@@ -160,33 +277,16 @@ public class InventoryViewController implements Initializable {
         });
 
         // Expiry column
-        expiryColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
-            @Override
-            protected void updateItem(String item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    ArticleEpicerie article = getTableView().getItems().get(getIndex());
-                    if (article instanceof ArticlePerissable) {
-                        ArticlePerissable perissable = (ArticlePerissable) article;
-                        setText(perissable.getDateExpiration().toString());
-                        
-                        if (perissable.estPerime()) {
-                            setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                        } else if (perissable.getJoursRestants() <= 3) {
-                            setStyle("-fx-text-fill: #ecc94b; -fx-font-weight: bold;");
-                        } else {
-                            setStyle("-fx-text-fill: #27ae60;");
-                        }
-                    } else {
-                        setText("N/A");
-                        setStyle("-fx-text-fill: #718096;");
-                    }
-                }
-            }
-        });
+        expiryColumn.setCellFactory(CellulesTableau.peremptions(this::expiryState));
+    }
+
+    private IndexPeremption.Etat expiryState(ArticlePerissable article) {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            return inventaireIndexe.getIndexPeremption().etat(article, EXPIRY_WARNING_DAYS);
+        }
+        if (article.estPerime()) return IndexPeremption.Etat.PERIME;
+        return article.getJoursRestants() <= EXPIRY_WARNING_DAYS
+            ? IndexPeremption.Etat.BIENTOT_PERIME : IndexPeremption.Etat.FRAIS;
     }
 
     public void setupFilters() {
@@ -212,12 +312,7 @@ public class InventoryViewController implements Initializable {
         // Populate category filter
         ObservableList<String> categories = FXCollections.observableArrayList();
         categories.add("Toutes les catégories");
-        for (ArticleEpicerie article : allArticles) {
-            String category = article.getCategorie();
-            if (!categories.contains(category)) {
-                categories.add(category);
-            }
-        }
+        categories.addAll(listCategories());
         categoryFilter.setItems(categories);
         categoryFilter.getSelectionModel().selectFirst();
         
@@ -230,38 +325,53 @@ public class InventoryViewController implements Initializable {
     public void applyFilters() {
         if (allArticles == null) return;
 
-        filteredArticles.clear();
-        
-        String selectedCategory = categoryFilter.getValue();
-        String selectedStock = stockFilter.getValue();
-
-        for (ArticleEpicerie article : allArticles) {
-            boolean categoryMatch = selectedCategory == null || 
-                                  selectedCategory.equals("Toutes les catégories") || 
-                                  article.getCategorie().equals(selectedCategory);
-            
-            boolean stockMatch = true;
-            if (selectedStock != null) {
-                switch (selectedStock) {
-                    case "En stock":
-                        stockMatch = article.getQuantiteStock() > 10;
-                        break;
-                    case "Stock faible":
-                        stockMatch = article.getQuantiteStock() > 0 && article.getQuantiteStock() <= 10;
-                        break;
-                    case "Rupture de stock":
-                        stockMatch = article.getQuantiteStock() == 0;
-                        break;
+        String category = selectedCategory();
+        IndexFiltres.EtatStock state = toStockState(stockFilter.getValue());
+        // Without indexes the articles are scanned from a copy; the live list belongs to the FX thread
+        List<ArticleEpicerie> catalogue = serviceCatalogue.estIndexe() ? null : new ArrayList<>(allArticles);
+
+        long generation = ++filterGeneration;
+        filterPending = true;
+        filterStale = false;
+        serviceCatalogue.filtrerAsync(category, state, catalogue).whenComplete((filtrage, error) ->
+            Platform.runLater(() -> {
+                if (generation != filterGeneration) return;
+                filterPending = false;
+                if (error != null) {
+                    showError("Erreur lors du filtrage : " + error.getMessage());
+                    error.printStackTrace();
+                    return;
                 }
-            }
+                if (filterStale) {
+                    // The inventory changed while filtering: the result may miss those changes
+                    applyFilters();
+                    return;
+                }
+                filteredArticles.setAll(filtrage.getArticles());
+                // Supersedes any sum still running on the previous filter
+                statisticsGeneration++;
+                statisticsPending = false;
+                showStatistics(filtrage.getStatistiques());
+                updateSummary();
+            }));
+    }
 
-            if (categoryMatch && stockMatch) {
-                filteredArticles.add(article);
-            }
+    private IndexFiltres.EtatStock toStockState(String selectedStock) {
+        if (selectedStock == null) return null;
+        switch (selectedStock) {
+            case "En stock":
+                return IndexFiltres.EtatStock.EN_STOCK;
+            case "Stock faible":
+                return IndexFiltres.EtatStock.FAIBLE;
+            case "Rupture de stock":
+                return IndexFiltres.EtatStock.RUPTURE;
+            default:
+                return null;
         }
-        
-        updateStatistics();
-        updateSummary();
+    }
+
+    private Collection<String> listCategories() {
+        return serviceCatalogue.categories(allArticles);
     }
 
     public void clearFilters() {
@@ -270,27 +380,40 @@ public class InventoryViewController implements Initializable {
         applyFilters();
     }
 
+    /**
+     * Sums the statistics of the filtered articles again, on the report pool.
+     */
     public void updateStatistics() {
         if (filteredArticles == null) return;
 
-        int totalItems = filteredArticles.size();
-        double totalValue = 0;
-        int lowStockCount = 0;
-        int outOfStockCount = 0;
-
-        for (ArticleEpicerie article : filteredArticles) {
-            totalValue += article.getPrix() * article.getQuantiteStock();
-            if (article.getQuantiteStock() == 0) {
-                outOfStockCount++;
-            } else if (article.getQuantiteStock() <= 10) {
-                lowStockCount++;
-            }
-        }
+        // Summed from a copy; the live list belongs to the FX thread
+        List<ArticleEpicerie> articles = new ArrayList<>(filteredArticles);
+        long generation = ++statisticsGeneration;
+        statisticsPending = true;
+        statisticsStale = false;
+        serviceCatalogue.statistiquesAsync(articles, selectedCategory(), toStockState(stockFilter.getValue()))
+            .whenComplete((statistics, error) -> Platform.runLater(() -> {
+                if (generation != statisticsGeneration) return;
+                statisticsPending = false;
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
+                if (statisticsStale) {
+                    // Stock moved while summing: the sum may or may not include those moves
+                    updateStatistics();
+                    return;
+                }
+                showStatistics(statistics);
+            }));
+    }
 
-        totalItemsLabel.setText(String.valueOf(totalItems));
-        totalValueLabel.setText(String.format("%.2f€", totalValue));
-        lowStockLabel.setText(String.valueOf(lowStockCount));
-        outOfStockLabel.setText(String.valueOf(outOfStockCount));
+    private void showStatistics(ServiceCatalogue.Statistiques statistics) {
+        filteredValueCents = Math.round(statistics.getValeur() * 100);
+        totalItemsLabel.setText(String.valueOf(statistics.getNombreArticles()));
+        totalValueLabel.setText(String.format("%.2f€", statistics.getValeur()));
+        lowStockLabel.setText(String.valueOf(statistics.getNombreStockFaible()));
+        outOfStockLabel.setText(String.valueOf(statistics.getNombreRuptures()));
     }
 
     public void updateSummary() {
@@ -302,7 +425,27 @@ public class InventoryViewController implements Initializable {
 
     @FXML
     public void handleExportButton() {
-        showInformation("Export", "Fonctionnalité d'export à implémenter");
+        if (exportTracker.isEnCours()) {
+            exportTracker.annuler();
+            return;
+        }
+        if (filteredArticles == null || filteredArticles.isEmpty()) {
+            showInformation("Export", "Aucun article à exporter");
+            return;
+        }
+        SuiviExport.Destination destination = exportTracker.choisirDestination("Exporter l'inventaire", "inventaire");
+        if (destination == null) return;
+
+        // The articles shown, as filtered; rows are written on a background thread
+        List<ArticleEpicerie> articles = new ArrayList<>(filteredArticles);
+        exportTracker.lancer(ExportRapport.articles(destination.getFichier(), destination.getFormat(), articles),
+            done -> showSuccess(done.getValue() + " article(s) exporté(s) vers\n" + done.getFichier().toAbsolutePath()),
+            error -> {
+                showError("Erreur lors de l'exportation : " + (error != null ? error.getMessage() : ""));
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            });
     }
 
     @FXML
@@ -313,6 +456,7 @@ public class InventoryViewController implements Initializable {
 
     @FXML
     public void handleBackButton() {
+        dispose();
         Stage stage = (Stage) backButton.getScene().getWindow();
         stage.close();
     }
@@ -332,4 +476,12 @@ public class InventoryViewController implements Initializable {
         alert.setContentText(message);
         alert.showAndWait();
     }
-}
\ No newline at end of file
+
+    public void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Erreur");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -0,0 +1,365 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Append-only journal of finalized sales.
+ *
+ * Each day gets its own directory of fixed-size, memory-mapped segments. A sale
+ * is copied into the current segment and made durable by a batched fsync every
+ * few milliseconds: it survives an application crash as soon as {@link #ajouter}
+ * returns, and an OS crash after the next fsync.
+ *
+ * Record layout: [length int][crc32 int][sequence long][timestamp long]
+ * [line count int] then, per line, [UTF-8 id prefixed by a short length]
+ * [quantity int][unit price in cents long]. A zero length marks the end of a segment.
+ */
+public class JournalVentes implements AutoCloseable {
+
+    public static final Path REPERTOIRE_RACINE =
+        Paths.get(System.getProperty("user.home"), ".groco", "journal");
+
+    private static final int TAILLE_SEGMENT = 4 * 1024 * 1024;
+    private static final int TAILLE_ENTETE = 8;
+    private static final long INTERVALLE_SYNCHRO_MS = 20;
+
+    private static final Map<Path, JournalVentes> OUVERTS = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(JournalVentes::fermerTous, "journal-ventes-arret"));
+    }
+
+    private final Path repertoire;
+    private final LocalDate jour;
+    private final ScheduledExecutorService synchroniseur;
+
+    private FileChannel canal;
+    private MappedByteBuffer segment;
+    private int numeroSegment;
+    private long prochaineSequence = 1;
+    private boolean modifie;
+    private boolean ferme;
+
+    /**
+     * Opens (or reuses) today's journal. Only one journal is open per directory,
+     * even when the main menu is reloaded several times.
+     */
+    public static JournalVentes ouvrirDuJour() throws IOException {
+        return ouvrir(repertoireDuJour(LocalDate.now()));
+    }
+
+    public static Path repertoireDuJour(LocalDate jour) {
+        return REPERTOIRE_RACINE.resolve(jour.toString());
+    }
+
+    public static synchronized JournalVentes ouvrir(Path repertoire) throws IOException {
+        Path cle = repertoire.toAbsolutePath().normalize();
+        JournalVentes journal = OUVERTS.get(cle);
+        if (journal == null || journal.ferme) {
+            journal = new JournalVentes(cle);
+            OUVERTS.put(cle, journal);
+        }
+        return journal;
+    }
+
+    private static synchronized void fermerTous() {
+        for (JournalVentes journal : OUVERTS.values()) {
+            journal.close();
+        }
+        OUVERTS.clear();
+    }
+
+    private JournalVentes(Path repertoire) throws IOException {
+        this.repertoire = repertoire;
+        this.jour = jourDuRepertoire(repertoire);
+        Files.createDirectories(repertoire);
+
+        // Find the end of the last valid segment and the last sequence written
+        List<Path> segments = listerSegments(repertoire);
+        int position = 0;
+        numeroSegment = 0;
+        for (Path fichier : segments) {
+            numeroSegment = numeroSegment(fichier);
+            position = parcourirSegment(fichier, enregistrement ->
+                prochaineSequence = enregistrement.getSequence() + 1);
+        }
+        ouvrirSegment(numeroSegment, position);
+
+        synchroniseur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-ventes-fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        synchroniseur.scheduleWithFixedDelay(this::synchroniserSiModifie,
+            INTERVALLE_SYNCHRO_MS, INTERVALLE_SYNCHRO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends a sale and returns its sequence number.
+     * This is only a memory copy; the fsync happens in the background.
+     */
+    public synchronized long ajouter(Vente vente) throws IOException {
+        if (ferme) {
+            throw new IOException("Journal des ventes fermé");
+        }
+
+        List<LigneVente> lignes = vente.getArticles();
+        byte[][] ids = new byte[lignes.size()][];
+        int taille = TAILLE_ENTETE + 8 + 8 + 4;
+        for (int i = 0; i < lignes.size(); i++) {
+            ids[i] = lignes.get(i).getArticle().getId().getBytes(StandardCharsets.UTF_8);
+            taille += 2 + ids[i].length + 4 + 8;
+        }
+        if (taille > TAILLE_SEGMENT) {
+            throw new IOException("Vente trop volumineuse pour un segment du journal: " + taille + " octets");
+        }
+        if (segment.remaining() < taille + 4) {
+            // Keep at least 4 zero bytes to mark the end of the segment
+            basculerSegment();
+        }
+
+        long sequence = prochaineSequence++;
+        int debut = segment.position();
+        segment.position(debut + TAILLE_ENTETE);
+        segment.putLong(sequence);
+        segment.putLong(System.currentTimeMillis());
+        segment.putInt(lignes.size());
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneVente ligne = lignes.get(i);
+            segment.putShort((short) ids[i].length);
+            segment.put(ids[i]);
+            segment.putInt(ligne.getQuantite());
+            segment.putLong(Math.round(ligne.getArticle().getPrix() * 100));
+        }
+        int fin = segment.position();
+
+        CRC32 crc = new CRC32();
+        crc.update(segment.duplicate().position(debut + TAILLE_ENTETE).limit(fin));
+        segment.putInt(debut + 4, (int) crc.getValue());
+        // Length is written last so a partially written record stays invisible
+        segment.putInt(debut, fin - debut);
+
+        modifie = true;
+        return sequence;
+    }
+
+    /**
+     * Reads back every valid sale in write order.
+     * Reading a segment stops at its first truncated or corrupted record.
+     */
+    public void rejouer(Consumer<EnregistrementVente> consommateur) throws IOException {
+        List<Path> segments;
+        synchronized (this) {
+            segments = listerSegments(repertoire);
+        }
+        for (Path fichier : segments) {
+            parcourirSegment(fichier, consommateur);
+        }
+    }
+
+    /**
+     * Reads back a journal directory without opening it for writing,
+     * e.g. the journal of a previous day.
+     */
+    public static void relire(Path repertoire, Consumer<EnregistrementVente> consommateur) throws IOException {
+        if (!Files.isDirectory(repertoire)) return;
+        for (Path fichier : listerSegments(repertoire)) {
+            parcourirSegment(fichier, consommateur);
+        }
+    }
+
+    /**
+     * Forces the sales appended so far to disk right away.
+     */
+    public void synchroniser() {
+        MappedByteBuffer aForcer;
+        synchronized (this) {
+            if (ferme) return;
+            modifie = false;
+            aForcer = segment;
+        }
+        aForcer.force();
+    }
+
+    public synchronized long getDerniereSequence() {
+        return prochaineSequence - 1;
+    }
+
+    public Path getRepertoire() {
+        return repertoire;
+    }
+
+    /**
+     * Day covered by this journal, or null when it was opened on a custom directory.
+     */
+    public LocalDate getJour() {
+        return jour;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (ferme) return;
+            ferme = true;
+        }
+        synchroniseur.shutdown();
+        segment.force();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void synchroniserSiModifie() {
+        boolean aSynchroniser;
+        synchronized (this) {
+            aSynchroniser = modifie;
+        }
+        if (aSynchroniser) {
+            synchroniser();
+        }
+    }
+
+    private void basculerSegment() throws IOException {
+        segment.force();
+        canal.close();
+        ouvrirSegment(numeroSegment + 1, 0);
+    }
+
+    private void ouvrirSegment(int numero, int position) throws IOException {
+        numeroSegment = numero;
+        canal = FileChannel.open(cheminSegment(numero),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAILLE_SEGMENT);
+        segment.position(position);
+    }
+
+    private static List<Path> listerSegments(Path repertoire) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            fichiers.filter(f -> f.getFileName().toString().matches("segment-\\d+\\.log"))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private Path cheminSegment(int numero) {
+        return repertoire.resolve(String.format("segment-%06d.log", numero));
+    }
+
+    private static LocalDate jourDuRepertoire(Path repertoire) {
+        try {
+            return LocalDate.parse(repertoire.getFileName().toString());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int numeroSegment(Path fichier) {
+        String nom = fichier.getFileName().toString();
+        return Integer.parseInt(nom.substring("segment-".length(), nom.length() - ".log".length()));
+    }
+
+    /**
+     * Reads the valid records of a segment and returns the end position.
+     */
+    private static int parcourirSegment(Path fichier, Consumer<EnregistrementVente> consommateur) throws IOException {
+        try (FileChannel lecture = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            ByteBuffer tampon = lecture.map(FileChannel.MapMode.READ_ONLY, 0, lecture.size());
+            CRC32 crc = new CRC32();
+            int position = 0;
+
+            while (position + TAILLE_ENTETE <= tampon.limit()) {
+                int longueur = tampon.getInt(position);
+                if (longueur <= TAILLE_ENTETE || position + longueur > tampon.limit()) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(tampon.duplicate().position(position + TAILLE_ENTETE).limit(position + longueur));
+                if ((int) crc.getValue() != tampon.getInt(position + 4)) {
+                    System.err.println("Journal des ventes: enregistrement corrompu ignoré dans " + fichier);
+                    break;
+                }
+
+                tampon.position(position + TAILLE_ENTETE);
+                consommateur.accept(lireEnregistrement(tampon));
+                position += longueur;
+            }
+            return position;
+        }
+    }
+
+    private static EnregistrementVente lireEnregistrement(ByteBuffer tampon) {
+        long sequence = tampon.getLong();
+        long horodatage = tampon.getLong();
+        int nombreLignes = tampon.getInt();
+        List<LigneJournal> lignes = new ArrayList<>(nombreLignes);
+        for (int i = 0; i < nombreLignes; i++) {
+            byte[] id = new byte[tampon.getShort()];
+            tampon.get(id);
+            int quantite = tampon.getInt();
+            long prixCentimes = tampon.getLong();
+            lignes.add(new LigneJournal(new String(id, StandardCharsets.UTF_8), quantite, prixCentimes));
+        }
+        return new EnregistrementVente(sequence, horodatage, lignes);
+    }
+
+    // Sale as read back from the journal
+    public static class EnregistrementVente {
+        private final long sequence;
+        private final long horodatage;
+        private final List<LigneJournal> lignes;
+
+        public EnregistrementVente(long sequence, long horodatage, List<LigneJournal> lignes) {
+            this.sequence = sequence;
+            this.horodatage = horodatage;
+            this.lignes = lignes;
+        }
+
+        public long getSequence() { return sequence; }
+        public long getHorodatage() { return horodatage; }
+        public List<LigneJournal> getLignes() { return lignes; }
+    }
+
+    public static class LigneJournal {
+        private final String idArticle;
+        private final int quantite;
+        private final long prixCentimes;
+
+        public LigneJournal(String idArticle, int quantite, long prixCentimes) {
+            this.idArticle = idArticle;
+            this.quantite = quantite;
+            this.prixCentimes = prixCentimes;
+        }
+
+        public String getIdArticle() { return idArticle; }
+        public int getQuantite() { return quantite; }
+        public long getPrixCentimes() { return prixCentimes; }
+    }
+}
@@ -26,6 +26,9 @@ public class Main extends Application {
             Image appIcon = new Image(getClass().getResourceAsStream("logo1.png"));
             primaryStage.getIcons().add(appIcon);
             primaryStage.show();
+
+            // Stall detector on the FX thread; Ctrl+Shift+F shows its overlay
+            SurveillanceFx.installer();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -1,10 +1,18 @@
 package application;
 
+import InventaireArticle.ArticleEpicerie;
 import InventaireArticle.ArticleNonPerissable;
 import InventaireArticle.ArticlePerissable;
 import InventaireArticle.Caisse;
 import InventaireArticle.Inventaire;
 import InventaireArticle.Vente;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -21,12 +29,200 @@ public class MainController {
     @FXML
     private Button quitButton;
 
-    private Inventaire inventaire = new Inventaire();
-    private Caisse caisse = new Caisse(500.0);
+    // One inventory and caisse for the whole run: the menu is reloaded on every "back",
+    // and a second pair would sell from its own copy of the stock next to the windows
+    // still open on the first one. The fields are only assigned on the FX thread.
+    private static FluxEvenements fluxEvenements;
+    private static InventaireIndexe inventaire;
+    private static CaisseJournalisee caisse;
+    private static boolean catalogueCharge = false;
+
+    // Articles handed to the FX thread per pulse while the snapshot loads
+    private static final int TAILLE_LOT_CHARGEMENT = 5000;
 
     @FXML
     private void initialize() {
-        initialiserDonnees();
+        // Closing the window any other way than Quit also writes the snapshot
+        adminButton.sceneProperty().addListener((obs, ancienne, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((obsFenetre, ancienneFenetre, fenetre) -> {
+                    if (fenetre != null) {
+                        fenetre.setOnCloseRequest(e -> sauvegarderCatalogue());
+                    }
+                });
+            }
+        });
+        if (inventaire != null) {
+            // Menu reloaded: keep the store already running
+            adminButton.setDisable(!catalogueCharge);
+            return;
+        }
+
+        // Changes are delivered to the open windows in batches on the FX thread
+        fluxEvenements = new FluxEvenements(Platform::runLater);
+        inventaire = new InventaireIndexe(fluxEvenements, chargerPointsCommande());
+        caisse = new CaisseJournalisee(500.0, ouvrirJournal(), fluxEvenements);
+        archiverMoisTermines();
+        inventaire.demarrerBalayage();
+        caisse.getPrevision().demarrer(inventaire.getPointsCommande());
+        if (Files.exists(InstantaneCatalogue.FICHIER_PAR_DEFAUT)) {
+            chargerInstantane(InstantaneCatalogue.FICHIER_PAR_DEFAUT);
+        } else {
+            initialiserDonnees();
+            // Re-apply today's journaled sales once the catalog is loaded
+            rejouerJournal(0);
+            catalogueCharge = true;
+        }
+    }
+
+    /**
+     * Decodes the catalog snapshot on a background thread. Articles are added to
+     * the inventory in batches on the FX thread, so the menu shows right away and
+     * articles are only ever added or removed on the FX thread; checkouts change
+     * their stock on the "encaissement" thread of ServiceVentes, under the
+     * caisse's per-article locks. The admin entry, which leads to the sales
+     * window, stays disabled until the journal is replayed.
+     */
+    private void chargerInstantane(Path fichier) {
+        long debut = System.nanoTime();
+        // No sale before the journal is replayed: it would be replayed on top of itself
+        adminButton.setDisable(true);
+        Thread chargeur = new Thread(() -> {
+            try {
+                InstantaneCatalogue instantane = InstantaneCatalogue.ouvrir(fichier);
+                instantane.lireParLots(TAILLE_LOT_CHARGEMENT, lot -> Platform.runLater(() -> {
+                    for (ArticleEpicerie article : lot) {
+                        inventaire.ajouterArticle(article);
+                    }
+                }));
+                Platform.runLater(() -> {
+                    terminerChargement(instantane.getJourJournal(), instantane.getSequenceJournal());
+                    System.out.println("Catalogue chargé: " + instantane.getNombreArticles() + " articles en "
+                        + (System.nanoTime() - debut) / 1_000_000 + " ms");
+                });
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    showError("Impossible de charger le catalogue: " + e.getMessage());
+                    rejouerJournal(0);
+                    catalogueCharge = true;
+                    adminButton.setDisable(false);
+                });
+            }
+        }, "chargement-catalogue");
+        chargeur.setDaemon(true);
+        chargeur.start();
+    }
+
+    /**
+     * Compacts the journals of the past months into columnar archives on a
+     * background thread; months already archived are skipped.
+     */
+    private static void archiverMoisTermines() {
+        Thread archiveur = new Thread(() -> {
+            try {
+                long debut = System.nanoTime();
+                List<YearMonth> mois = ArchiveVentes.archiverMoisTermines(ArchiveVentes.REPERTOIRE_PAR_DEFAUT);
+                if (!mois.isEmpty()) {
+                    System.out.println("Ventes archivées: " + mois + " en " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Impossible d'archiver les ventes des mois passés: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, "archivage-ventes");
+        archiveur.setDaemon(true);
+        archiveur.setPriority(Thread.MIN_PRIORITY);
+        archiveur.start();
+    }
+
+    private void terminerChargement(LocalDate jourInstantane, long sequenceInstantane) {
+        JournalVentes journal = caisse.getJournal();
+        LocalDate jourJournal = journal != null ? journal.getJour() : null;
+        // Saved with the snapshot, so it only misses the sales journaled after it
+        restaurerPrevision(jourInstantane, sequenceInstantane);
+
+        if (jourInstantane != null && jourInstantane.equals(jourJournal)) {
+            rejouerJournal(sequenceInstantane);
+        } else {
+            // Snapshot from a previous day: catch up on the sales made after it and on every
+            // day journaled since, then replay today
+            if (jourInstantane != null) {
+                CaisseJournalisee.rattraperStocks(JournalVentes.repertoireDuJour(jourInstantane), inventaire,
+                    sequenceInstantane, caisse.getPrevision());
+                LocalDate aujourdhui = jourJournal != null ? jourJournal : LocalDate.now();
+                for (LocalDate jour = jourInstantane.plusDays(1); jour.isBefore(aujourdhui); jour = jour.plusDays(1)) {
+                    CaisseJournalisee.rattraperStocks(JournalVentes.repertoireDuJour(jour), inventaire, 0,
+                        caisse.getPrevision());
+                }
+            }
+            rejouerJournal(0);
+        }
+        catalogueCharge = true;
+        adminButton.setDisable(false);
+    }
+
+    private void rejouerJournal(long sequenceDejaAppliquee) {
+        caisse.rejouerJournal(inventaire, sequenceDejaAppliquee);
+        List<Long> rejetees = caisse.getSequencesRejetees();
+        if (!rejetees.isEmpty()) {
+            // Shown once the menu is up, this can run while it is being loaded
+            Platform.runLater(() -> showError(rejetees.size() + " vente(s) du journal n'ont pas pu être rejouées"
+                + " faute de stock (séquences " + rejetees + "). Elles restent dans le journal mais pas dans la caisse."));
+        }
+    }
+
+    private void restaurerPrevision(LocalDate jourInstantane, long sequenceInstantane) {
+        try {
+            if (!caisse.getPrevision().restaurer(PrevisionDemande.FICHIER_PAR_DEFAUT, jourInstantane, sequenceInstantane, inventaire)) {
+                System.out.println("Prévision de la demande absente ou périmée, elle repart des ventes à venir");
+            }
+        } catch (IOException e) {
+            System.err.println("Impossible de relire la prévision de la demande: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the live inventory and the demand forecast, both
+     * tagged with the journal position they include.
+     */
+    public void sauvegarderCatalogue() {
+        if (!catalogueCharge) return;
+
+        try {
+            // No sale lands between reading the journal position and writing the stock
+            caisse.pointDeControle((jourJournal, sequenceJournal) -> {
+                InstantaneCatalogue.ecrire(inventaire, InstantaneCatalogue.FICHIER_PAR_DEFAUT, jourJournal, sequenceJournal);
+                try {
+                    caisse.getPrevision().sauvegarder(PrevisionDemande.FICHIER_PAR_DEFAUT, jourJournal, sequenceJournal);
+                } catch (IOException e) {
+                    System.err.println("Impossible d'écrire la prévision de la demande: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Impossible d'écrire l'instantané du catalogue: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static PointsCommande chargerPointsCommande() {
+        try {
+            return PointsCommande.charger(PointsCommande.FICHIER_PAR_DEFAUT);
+        } catch (IOException e) {
+            System.err.println("Points de commande illisibles, les seuils par défaut s'appliquent: " + e.getMessage());
+            return new PointsCommande();
+        }
+    }
+
+    private static JournalVentes ouvrirJournal() {
+        try {
+            return JournalVentes.ouvrirDuJour();
+        } catch (IOException e) {
+            System.err.println("Journal des ventes indisponible, les ventes ne seront pas persistées: " + e.getMessage());
+            return null;
+        }
     }
 
     @FXML
@@ -49,6 +245,7 @@ public class MainController {
     @FXML
     private void handleQuitButton() {
         System.out.println("\n   Merci d'avoir utilisé Notre System!");
+        sauvegarderCatalogue();
         Stage stage = (Stage) quitButton.getScene().getWindow();
         stage.close();
     }
@@ -0,0 +1,199 @@
+package application;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Panier;
+
+/**
+ * Cart of the sales screen, keyed by article id.
+ *
+ * Each change touches a single line: the line is found through a hash map,
+ * its table row is updated in place, and the subtotal is kept as a running
+ * sum in cents adjusted by the change. The list-backed {@link Panier} is only
+ * built at checkout, by {@link #creerPanier()}, so large baskets cost the
+ * same per scan as small ones.
+ *
+ * When given a {@link ReservationsStock}, every line holds its quantity for
+ * this cart until the line is removed, the cart is emptied or the hold expires.
+ */
+public class PanierCaisse {
+
+    public static final double TAUX_TVA = 0.20;
+
+    private final Map<String, SalesController.CartItem> lignesParId = new HashMap<>();
+    private final Map<String, ArticleEpicerie> articlesParId = new HashMap<>();
+    private final ObservableList<SalesController.CartItem> lignes = FXCollections.observableArrayList();
+    private long sousTotalCentimes;
+    private int nombreArticles;
+    private ReservationsStock reservations;
+
+    public void setReservations(ReservationsStock reservations) {
+        if (this.reservations != null && this.reservations != reservations) {
+            this.reservations.libererTout(this);
+        }
+        this.reservations = reservations;
+        if (reservations != null) {
+            for (SalesController.CartItem ligne : lignes) {
+                ArticleEpicerie article = articlesParId.get(ligne.getProductId());
+                reservations.reserver(this, article, ligne.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Stock this cart may still take: the live stock minus other carts' holds.
+     */
+    public int getDisponible(ArticleEpicerie article) {
+        return reservations != null ? reservations.getDisponible(this, article) : article.getQuantiteStock();
+    }
+
+    /**
+     * Drops the holds without touching the cart, e.g. when its window closes.
+     */
+    public void libererReservations() {
+        if (reservations != null) {
+            reservations.libererTout(this);
+        }
+    }
+
+    /**
+     * A new basket with the lines of the cart, in cart order, to hand to the
+     * register. The holds stay owned by this cart, which is passed to
+     * {@link CaisseJournalisee} as the owner of the sale. Later changes to the
+     * cart do not affect the basket.
+     */
+    public Panier creerPanier() {
+        Panier panier = new Panier();
+        for (SalesController.CartItem ligne : lignes) {
+            panier.ajouterArticle(articlesParId.get(ligne.getProductId()), ligne.getQuantity());
+        }
+        return panier;
+    }
+
+    /**
+     * Rows of the cart table, updated in place.
+     */
+    public ObservableList<SalesController.CartItem> getLignes() {
+        return lignes;
+    }
+
+    public SalesController.CartItem getLigne(String idArticle) {
+        return lignesParId.get(idArticle);
+    }
+
+    public int getQuantite(String idArticle) {
+        SalesController.CartItem ligne = lignesParId.get(idArticle);
+        return ligne != null ? ligne.getQuantity() : 0;
+    }
+
+    /**
+     * Adds {@code quantite} units, creating the line if needed, and returns the
+     * new quantity of the line.
+     */
+    public int ajouter(ArticleEpicerie article, int quantite) {
+        int nouvelleQuantite = getQuantite(article.getId()) + quantite;
+        modifierQuantite(article, nouvelleQuantite);
+        return nouvelleQuantite;
+    }
+
+    /**
+     * Sets the quantity of a line; zero or less removes it.
+     */
+    public void modifierQuantite(ArticleEpicerie article, int quantite) {
+        if (quantite <= 0) {
+            retirer(article.getId());
+            return;
+        }
+
+        SalesController.CartItem ligne = lignesParId.get(article.getId());
+        if (ligne == null) {
+            ligne = new SalesController.CartItem(
+                article.getId(), article.getNom(), quantite, article.getPrix(), article.getPrix() * quantite);
+            lignesParId.put(article.getId(), ligne);
+            articlesParId.put(article.getId(), article);
+            lignes.add(ligne);
+            sousTotalCentimes += prixCentimes(ligne) * quantite;
+            nombreArticles += quantite;
+            reserver(article, quantite);
+            return;
+        }
+
+        int delta = quantite - ligne.getQuantity();
+        // Touching a line renews its hold even when the quantity is unchanged
+        reserver(article, quantite);
+        if (delta == 0) return;
+        ligne.setQuantity(quantite);
+        sousTotalCentimes += prixCentimes(ligne) * delta;
+        nombreArticles += delta;
+    }
+
+    public boolean retirer(String idArticle) {
+        SalesController.CartItem ligne = lignesParId.remove(idArticle);
+        if (ligne == null) return false;
+
+        lignes.remove(ligne);
+        articlesParId.remove(idArticle);
+        if (reservations != null) {
+            reservations.liberer(this, idArticle);
+        }
+        sousTotalCentimes -= prixCentimes(ligne) * ligne.getQuantity();
+        nombreArticles -= ligne.getQuantity();
+        return true;
+    }
+
+    public void vider() {
+        libererReservations();
+        lignesParId.clear();
+        articlesParId.clear();
+        lignes.clear();
+        sousTotalCentimes = 0;
+        nombreArticles = 0;
+    }
+
+    // The price the line was created at: the subtotal moves by the same amount a row shows,
+    // even if the article's price is edited while it is in the cart
+    private static long prixCentimes(SalesController.CartItem ligne) {
+        return Math.round(ligne.getUnitPrice() * 100);
+    }
+
+    private void reserver(ArticleEpicerie article, int quantite) {
+        if (reservations != null) {
+            reservations.reserver(this, article, quantite);
+        }
+    }
+
+    public boolean estVide() {
+        return lignesParId.isEmpty();
+    }
+
+    /**
+     * Number of distinct articles in the cart.
+     */
+    public int getNombreLignes() {
+        return lignesParId.size();
+    }
+
+    /**
+     * Total number of units in the cart.
+     */
+    public int getNombreArticles() {
+        return nombreArticles;
+    }
+
+    public double getSousTotal() {
+        return sousTotalCentimes / 100.0;
+    }
+
+    public double getTva() {
+        return Math.round(sousTotalCentimes * TAUX_TVA) / 100.0;
+    }
+
+    public double getTotal() {
+        return getSousTotal() + getTva();
+    }
+}
@@ -0,0 +1,206 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Vente;
+
+/**
+ * Headless load driver: simulated cashiers selling a generated catalog through
+ * the same classes as the sales window, without a JavaFX toolkit.
+ *
+ * Each cashier scans a basket article by article into a {@link PanierCaisse}
+ * holding stock in the shared {@link ReservationsStock}, then records it on a
+ * shared {@link CaisseJournalisee} writing a real journal. Articles come from
+ * {@link GenerateurDonnees}, with its skewed popularity, so registers compete
+ * for the best sellers. Stocks are raised at the start so the run measures
+ * throughput rather than stock-outs; refusals are still counted.
+ *
+ * Reported: sales and lines per second, and the latency percentiles of the
+ * checkout (recording the sale) and of the whole basket (scans included).
+ * With a scan delay, every cashier waits that long between two articles, which
+ * gives the load of a real store opening instead of the saturation point.
+ *
+ * Usage: {@code java application.PiloteCaisses [cashiers] [articles] [seconds] [scan delay ms] [seed] [journal dir|-]}
+ * (defaults: 8 cashiers, 20,000 articles, 10 s, no delay, seed 42, a temporary journal)
+ */
+public class PiloteCaisses {
+
+    private static final int STOCK_INITIAL = 10_000_000;
+
+    private static class Mesures {
+        long[] encaissements = new long[1 << 14];
+        long[] paniers = new long[1 << 14];
+        int nombre;
+        long lignes;
+        long refusees;
+
+        void ajouter(long encaissement, long panier, int lignesVente) {
+            if (nombre == encaissements.length) {
+                encaissements = Arrays.copyOf(encaissements, nombre * 2);
+                paniers = Arrays.copyOf(paniers, nombre * 2);
+            }
+            encaissements[nombre] = encaissement;
+            paniers[nombre] = panier;
+            nombre++;
+            lignes += lignesVente;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int caissiers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int nombreArticles = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int secondes = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long delaiScanMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long graine = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        String cheminJournal = args.length > 5 ? args[5] : null;
+
+        GenerateurDonnees generateur = new GenerateurDonnees(graine);
+        List<ArticleEpicerie> catalogue = generateur.catalogue(nombreArticles, LocalDate.now());
+        GenerateurDonnees.Popularite popularite = generateur.popularite(catalogue);
+        InventaireIndexe inventaire = new InventaireIndexe();
+        for (ArticleEpicerie article : catalogue) {
+            article.setQuantiteStock(STOCK_INITIAL);
+            inventaire.ajouterArticle(article);
+        }
+
+        JournalVentes journal = null;
+        Path repertoireTemporaire = null;
+        if (!"-".equals(cheminJournal)) {
+            Path repertoire = cheminJournal != null ? Paths.get(cheminJournal)
+                : (repertoireTemporaire = Files.createTempDirectory("pilote-caisses"));
+            journal = JournalVentes.ouvrir(repertoire);
+        }
+        CaisseJournalisee caisse = new CaisseJournalisee(0.0, journal);
+
+        Mesures[] mesures = new Mesures[caissiers];
+        AtomicLong anomalies = new AtomicLong();
+        CountDownLatch depart = new CountDownLatch(1);
+        CountDownLatch termine = new CountDownLatch(caissiers);
+        long[] fin = new long[1];
+
+        for (int c = 0; c < caissiers; c++) {
+            Mesures mesuresCaissier = mesures[c] = new Mesures();
+            // One seed per cashier: the baskets are the same from run to run
+            Random aleatoire = new Random(graine * 1_000_003 + c);
+            Thread thread = new Thread(() -> {
+                PanierCaisse panierCaisse = new PanierCaisse();
+                panierCaisse.setReservations(caisse.getReservations());
+                try {
+                    depart.await();
+                    while (System.nanoTime() < fin[0]) {
+                        long debutPanier = System.nanoTime();
+                        int lignes = 1;
+                        while (lignes < 40 && aleatoire.nextDouble() < 0.75) {
+                            lignes++;
+                        }
+                        for (int l = 0; l < lignes; l++) {
+                            if (delaiScanMillis > 0) {
+                                Thread.sleep(delaiScanMillis);
+                            }
+                            ArticleEpicerie article = catalogue.get(popularite.tirer(aleatoire));
+                            panierCaisse.ajouter(article, aleatoire.nextInt(10) < 7 ? 1 : 2 + aleatoire.nextInt(3));
+                        }
+
+                        long debutEncaissement = System.nanoTime();
+                        try {
+                            Vente vente = caisse.enregistrerVente(panierCaisse.creerPanier(), inventaire, panierCaisse);
+                            long maintenant = System.nanoTime();
+                            if (vente == null) {
+                                anomalies.incrementAndGet();
+                            } else {
+                                mesuresCaissier.ajouter(maintenant - debutEncaissement, maintenant - debutPanier,
+                                    vente.getArticles().size());
+                            }
+                        } catch (StockInsuffisantException e) {
+                            mesuresCaissier.refusees++;
+                        }
+                        panierCaisse.vider();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    termine.countDown();
+                }
+            }, "caissier-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long debut = System.nanoTime();
+        fin[0] = debut + secondes * 1_000_000_000L;
+        depart.countDown();
+        termine.await();
+        double duree = (System.nanoTime() - debut) / 1e9;
+        if (journal != null) {
+            journal.close();
+        }
+
+        int total = 0;
+        long lignes = 0;
+        long refusees = 0;
+        for (Mesures m : mesures) {
+            total += m.nombre;
+            lignes += m.lignes;
+            refusees += m.refusees;
+        }
+        long[] encaissements = new long[total];
+        long[] paniers = new long[total];
+        int position = 0;
+        for (Mesures m : mesures) {
+            System.arraycopy(m.encaissements, 0, encaissements, position, m.nombre);
+            System.arraycopy(m.paniers, 0, paniers, position, m.nombre);
+            position += m.nombre;
+        }
+        Arrays.sort(encaissements);
+        Arrays.sort(paniers);
+
+        System.out.println(String.format("%d caissier(s), %,d articles, %.1f s, scan toutes les %d ms, %d cœur(s), journal %s",
+            caissiers, nombreArticles, duree, delaiScanMillis, Runtime.getRuntime().availableProcessors(),
+            journal != null ? journal.getRepertoire() : "désactivé"));
+        System.out.println(String.format("Ventes: %,d (%,.0f/s), lignes: %,d (%,.0f/s), refusées: %d, anomalies: %d",
+            total, total / duree, lignes, lignes / duree, refusees, anomalies.get()));
+        System.out.println(String.format("%-12s %10s %10s %10s %10s %10s", "latence", "p50", "p90", "p99", "p99.9", "max"));
+        System.out.println(percentiles("encaissement", encaissements));
+        System.out.println(percentiles("panier", paniers));
+
+        boolean coherent = caisse.getVentesJournalieres().size() == total && anomalies.get() == 0;
+        if (repertoireTemporaire != null) {
+            supprimer(repertoireTemporaire);
+        }
+        System.out.println(coherent ? "OK" : "ÉCHEC: ventes en caisse incohérentes");
+        System.exit(coherent ? 0 : 1);
+    }
+
+    private static String percentiles(String nom, long[] triees) {
+        if (triees.length == 0) return nom + ": aucune vente";
+        return String.format("%-12s %10s %10s %10s %10s %10s", nom,
+            duree(triees[(int) (triees.length * 0.5)]), duree(triees[(int) (triees.length * 0.9)]),
+            duree(triees[(int) (triees.length * 0.99)]), duree(triees[(int) (triees.length * 0.999)]),
+            duree(triees[triees.length - 1]));
+    }
+
+    private static String duree(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.1fµs", nanos / 1e3);
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    private static void supprimer(Path repertoire) throws IOException {
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            for (Path fichier : (Iterable<Path>) fichiers::iterator) {
+                Files.delete(fichier);
+            }
+        }
+        Files.delete(repertoire);
+    }
+}
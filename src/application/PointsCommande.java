@@ -0,0 +1,126 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reorder point and safety stock of each article.
+ *
+ * An article is at risk ("stock faible") once its stock falls to its reorder
+ * point, and below its safety stock it is critical. Articles without their own
+ * settings use {@link #POINT_COMMANDE_PAR_DEFAUT} and
+ * {@link #STOCK_SECURITE_PAR_DEFAUT}. The settings are stored in a small text
+ * file, one line per article: {@code id;reorder point;safety stock}.
+ */
+public class PointsCommande {
+
+    public static final Path FICHIER_PAR_DEFAUT =
+        Paths.get(System.getProperty("user.home"), ".groco", "points-commande.txt");
+
+    public static final int POINT_COMMANDE_PAR_DEFAUT = 10;
+    public static final int STOCK_SECURITE_PAR_DEFAUT = 3;
+
+    public static final Seuils PAR_DEFAUT = new Seuils(POINT_COMMANDE_PAR_DEFAUT, STOCK_SECURITE_PAR_DEFAUT);
+
+    public static class Seuils {
+        private final int pointCommande;
+        private final int stockSecurite;
+
+        public Seuils(int pointCommande, int stockSecurite) {
+            if (stockSecurite < 0 || pointCommande < stockSecurite) {
+                throw new IllegalArgumentException("Le point de commande (" + pointCommande
+                    + ") doit être supérieur ou égal au stock de sécurité (" + stockSecurite + "), lui-même positif");
+            }
+            this.pointCommande = pointCommande;
+            this.stockSecurite = stockSecurite;
+        }
+
+        public int getPointCommande() { return pointCommande; }
+        public int getStockSecurite() { return stockSecurite; }
+
+        public IndexFiltres.EtatStock etat(int quantite) {
+            return IndexFiltres.EtatStock.de(quantite, pointCommande);
+        }
+
+        public boolean estSousStockSecurite(int quantite) {
+            return quantite < stockSecurite;
+        }
+    }
+
+    private final Map<String, Seuils> parArticle = new HashMap<>();
+
+    /**
+     * Settings of an article, or the defaults.
+     */
+    public synchronized Seuils get(String idArticle) {
+        return parArticle.getOrDefault(idArticle, PAR_DEFAUT);
+    }
+
+    public synchronized boolean estPersonnalise(String idArticle) {
+        return parArticle.containsKey(idArticle);
+    }
+
+    public synchronized void definir(String idArticle, Seuils seuils) {
+        parArticle.put(idArticle, seuils);
+    }
+
+    /**
+     * Goes back to the default settings for this article.
+     */
+    public synchronized void reinitialiser(String idArticle) {
+        parArticle.remove(idArticle);
+    }
+
+    public IndexFiltres.EtatStock etat(String idArticle, int quantite) {
+        return get(idArticle).etat(quantite);
+    }
+
+    /**
+     * Reads the settings file; a missing file means every article uses the defaults.
+     */
+    public static PointsCommande charger(Path fichier) throws IOException {
+        PointsCommande points = new PointsCommande();
+        if (!Files.exists(fichier)) return points;
+
+        try (BufferedReader lecteur = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+            String ligne;
+            int numero = 0;
+            while ((ligne = lecteur.readLine()) != null) {
+                numero++;
+                if (ligne.isBlank()) continue;
+                String[] champs = ligne.split(";");
+                try {
+                    points.definir(champs[0], new Seuils(Integer.parseInt(champs[1].trim()), Integer.parseInt(champs[2].trim())));
+                } catch (RuntimeException e) {
+                    throw new IOException("Ligne " + numero + " invalide dans " + fichier + ": " + ligne, e);
+                }
+            }
+        }
+        return points;
+    }
+
+    public synchronized void sauvegarder(Path fichier) throws IOException {
+        Path parent = fichier.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaire = Files.createTempFile(parent, "points-commande", ".tmp");
+        try {
+            try (BufferedWriter ecrivain = Files.newBufferedWriter(temporaire, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Seuils> entree : parArticle.entrySet()) {
+                    ecrivain.write(entree.getKey() + ";" + entree.getValue().getPointCommande()
+                        + ";" + entree.getValue().getStockSecurite());
+                    ecrivain.newLine();
+                }
+            }
+            EcritureAtomique.remplacer(temporaire, fichier);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Inventaire;
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Online demand forecast per article, and the replenishment plan derived from it.
+ *
+ * Each article has a smoothed daily demand level and seven day-of-week factors
+ * (multiplicative Holt-Winters without trend). A sale only adds its quantity to
+ * the article's open day; the day is folded into the level and factors when the
+ * article next sells on a later day or when a plan is computed, so recording a
+ * sale is O(1) and the sales history is never scanned again. State is kept in
+ * parallel arrays indexed by slot, about 60 bytes per article.
+ *
+ * A plan projects each article's stock with the forecast: days until stockout,
+ * and an order-up-to quantity covering the delivery delay and the review
+ * period plus the article's safety stock ({@link PointsCommande}). Once
+ * {@link #demarrer} is called, the plan is recomputed periodically in the
+ * background.
+ */
+public class PrevisionDemande {
+
+    public static final Path FICHIER_PAR_DEFAUT =
+        Paths.get(System.getProperty("user.home"), ".groco", "prevision.bin");
+
+    // Smoothing of the level and of the day-of-week factors
+    private static final double ALPHA = 0.2;
+    private static final double GAMMA = 0.1;
+    private static final float FACTEUR_MIN = 0.05f;
+    private static final float FACTEUR_MAX = 7f;
+    // Beyond that many days without sales, the level decays in closed form
+    private static final int JOURS_VIDES_DETAILLES = 28;
+
+    public static final int DELAI_LIVRAISON_JOURS = 2;
+    public static final int PERIODE_REVUE_JOURS = 7;
+    private static final long PERIODE_PLAN_MINUTES = 15;
+
+    private static final int MAGIC = 0x47525044; // "GRPD"
+    private static final int VERSION = 1;
+    // Slots handled per lock acquisition while a plan is computed
+    private static final int SLOTS_PAR_LOT = 4096;
+
+    private static final ScheduledExecutorService PLANIFICATEUR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "prevision-demande");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Replenishment suggestion for one article.
+     */
+    public static class Suggestion {
+        private final ArticleEpicerie article;
+        private final int stock;
+        private final double demandeJournaliere;
+        private final int joursAvantRupture;
+        private final int quantiteSuggeree;
+
+        Suggestion(ArticleEpicerie article, int stock, double demandeJournaliere, int joursAvantRupture, int quantiteSuggeree) {
+            this.article = article;
+            this.stock = stock;
+            this.demandeJournaliere = demandeJournaliere;
+            this.joursAvantRupture = joursAvantRupture;
+            this.quantiteSuggeree = quantiteSuggeree;
+        }
+
+        public ArticleEpicerie getArticle() { return article; }
+        public int getStock() { return stock; }
+        // Average forecast over the next seven days
+        public double getDemandeJournaliere() { return demandeJournaliere; }
+        // Integer.MAX_VALUE when no demand is forecast
+        public int getJoursAvantRupture() { return joursAvantRupture; }
+        public int getQuantiteSuggeree() { return quantiteSuggeree; }
+    }
+
+    /**
+     * Articles to reorder, the most urgent first.
+     */
+    public static class Plan {
+        private final List<Suggestion> suggestions;
+        private final int nombreArticlesSuivis;
+        private final long calculeLeMillis;
+
+        Plan(List<Suggestion> suggestions, int nombreArticlesSuivis, long calculeLeMillis) {
+            this.suggestions = suggestions;
+            this.nombreArticlesSuivis = nombreArticlesSuivis;
+            this.calculeLeMillis = calculeLeMillis;
+        }
+
+        public List<Suggestion> getSuggestions() { return suggestions; }
+        public int getNombreArticlesSuivis() { return nombreArticlesSuivis; }
+        public long getCalculeLeMillis() { return calculeLeMillis; }
+
+        public int getNombreRupturesAvantLivraison() {
+            int nombre = 0;
+            for (Suggestion suggestion : suggestions) {
+                if (suggestion.joursAvantRupture <= DELAI_LIVRAISON_JOURS) {
+                    nombre++;
+                }
+            }
+            return nombre;
+        }
+
+        public double getCoutCommande() {
+            long centimes = 0;
+            for (Suggestion suggestion : suggestions) {
+                centimes += Math.round(suggestion.article.getPrix() * 100) * suggestion.quantiteSuggeree;
+            }
+            return centimes / 100.0;
+        }
+    }
+
+    private final Map<String, Integer> slotParId = new HashMap<>();
+    private ArticleEpicerie[] articles = new ArticleEpicerie[1024];
+    private String[] ids = new String[1024];
+    private double[] niveau = new double[1024];
+    private float[] facteurs = new float[1024 * 7];
+    private int[] jourOuvert = new int[1024];
+    private int[] quantiteOuverte = new int[1024];
+    private int[] joursObserves = new int[1024];
+    private int nombreSlots;
+
+    private volatile Plan plan;
+    private ScheduledFuture<?> tachePlan;
+
+    /**
+     * Adds the lines of a recorded sale to the demand of their articles.
+     */
+    public void enregistrer(Vente vente) {
+        LocalDate jour = vente.getDate();
+        for (LigneVente ligne : vente.getArticles()) {
+            enregistrer(ligne.getArticle(), ligne.getQuantite(), jour);
+        }
+    }
+
+    public synchronized void enregistrer(ArticleEpicerie article, int quantite, LocalDate jour) {
+        int slot = slot(article.getId());
+        articles[slot] = article;
+        int epoque = (int) jour.toEpochDay();
+        // A late sale for an already closed day counts in the open day
+        if (epoque > jourOuvert[slot]) {
+            avancer(slot, epoque);
+        }
+        quantiteOuverte[slot] += quantite;
+    }
+
+    public synchronized int getNombreArticlesSuivis() {
+        return nombreSlots;
+    }
+
+    /**
+     * Forecast demand of an article for {@code jour}, from today on; 0 if it
+     * never sold.
+     */
+    public synchronized double prevoir(String idArticle, LocalDate jour) {
+        Integer slot = slotParId.get(idArticle);
+        if (slot == null) return 0;
+        // Only days up to today are closed, later ones are still to come
+        int aujourdHui = (int) LocalDate.now().toEpochDay();
+        if (aujourdHui > jourOuvert[slot]) {
+            avancer(slot, aujourdHui);
+        }
+        return niveau[slot] * facteurs[slot * 7 + jourSemaine(jour.toEpochDay())];
+    }
+
+    /**
+     * Last plan computed, or null.
+     */
+    public Plan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Projects every followed article from today and keeps those to reorder.
+     * Articles are handled a few thousand at a time, so sales are not held up
+     * while a large catalog is planned.
+     */
+    public Plan calculerPlan(PointsCommande pointsCommande) {
+        long debut = System.currentTimeMillis();
+        int aujourdHui = (int) LocalDate.now().toEpochDay();
+        List<Suggestion> suggestions = new ArrayList<>();
+        int suivis;
+        synchronized (this) {
+            suivis = nombreSlots;
+        }
+        for (int lot = 0; lot < suivis; lot += SLOTS_PAR_LOT) {
+            synchronized (this) {
+                int fin = Math.min(lot + SLOTS_PAR_LOT, nombreSlots);
+                for (int slot = lot; slot < fin; slot++) {
+                    Suggestion suggestion = suggerer(slot, aujourdHui, pointsCommande);
+                    if (suggestion != null) {
+                        suggestions.add(suggestion);
+                    }
+                }
+            }
+        }
+        suggestions.sort(Comparator.comparingInt(Suggestion::getJoursAvantRupture)
+            .thenComparing(s -> s.getArticle().getId()));
+        Plan nouveau = new Plan(suggestions, suivis, debut);
+        plan = nouveau;
+        return nouveau;
+    }
+
+    /**
+     * Recomputes the plan every {@value #PERIODE_PLAN_MINUTES} minutes in the
+     * background. The application starts it once, with its single caisse;
+     * like the expiry sweep, the task only holds a weak reference, so a
+     * forecast dropped with its caisse stops being planned.
+     */
+    public synchronized void demarrer(PointsCommande pointsCommande) {
+        if (tachePlan != null) return;
+        planifier(new WeakReference<>(this), pointsCommande, 1);
+    }
+
+    private static void planifier(WeakReference<PrevisionDemande> reference, PointsCommande pointsCommande, long delaiMinutes) {
+        PrevisionDemande prevision = reference.get();
+        if (prevision == null) return;
+
+        synchronized (prevision) {
+            prevision.tachePlan = PLANIFICATEUR.schedule(() -> {
+                PrevisionDemande cible = reference.get();
+                if (cible == null) return;
+                try {
+                    cible.calculerPlan(pointsCommande);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                planifier(reference, pointsCommande, PERIODE_PLAN_MINUTES);
+            }, delaiMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Writes the model, tagged with the journal position it includes, so that
+     * startup only feeds it the sales journaled after that position.
+     */
+    public synchronized void sauvegarder(Path fichier, LocalDate jourJournal, long sequenceJournal) throws IOException {
+        Path parent = fichier.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaire = Files.createTempFile(parent, "prevision", ".tmp");
+        try {
+            try (DataOutputStream sortie = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16))) {
+                sortie.writeInt(MAGIC);
+                sortie.writeInt(VERSION);
+                sortie.writeLong(jourJournal != null ? jourJournal.toEpochDay() : Long.MIN_VALUE);
+                sortie.writeLong(sequenceJournal);
+                sortie.writeInt(nombreSlots);
+                for (int slot = 0; slot < nombreSlots; slot++) {
+                    sortie.writeUTF(ids[slot]);
+                    sortie.writeDouble(niveau[slot]);
+                    for (int j = 0; j < 7; j++) {
+                        sortie.writeFloat(facteurs[slot * 7 + j]);
+                    }
+                    sortie.writeInt(jourOuvert[slot]);
+                    sortie.writeInt(quantiteOuverte[slot]);
+                    sortie.writeInt(joursObserves[slot]);
+                }
+            }
+            EcritureAtomique.remplacer(temporaire, fichier);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /**
+     * Replaces the model with the one saved in {@code fichier}, provided it was
+     * saved at the same journal position as the catalog just loaded. Articles
+     * are attached from {@code inventaire}.
+     *
+     * @return false, leaving the model untouched, if the file is missing or
+     *         was saved at another position
+     */
+    public synchronized boolean restaurer(Path fichier, LocalDate jourJournal, long sequenceJournal,
+                                          Inventaire inventaire) throws IOException {
+        if (!Files.exists(fichier)) return false;
+
+        try (DataInputStream entree = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichier), 1 << 16))) {
+            if (entree.readInt() != MAGIC || entree.readInt() != VERSION) {
+                throw new IOException("Fichier de prévision invalide: " + fichier);
+            }
+            long jour = entree.readLong();
+            long sequence = entree.readLong();
+            long jourAttendu = jourJournal != null ? jourJournal.toEpochDay() : Long.MIN_VALUE;
+            if (jour != jourAttendu || sequence != sequenceJournal) return false;
+
+            int nombre = entree.readInt();
+            slotParId.clear();
+            nombreSlots = 0;
+            agrandir(nombre);
+            for (int slot = 0; slot < nombre; slot++) {
+                String id = entree.readUTF();
+                slotParId.put(id, slot);
+                ids[slot] = id;
+                articles[slot] = inventaire.getArticle(id);
+                niveau[slot] = entree.readDouble();
+                for (int j = 0; j < 7; j++) {
+                    facteurs[slot * 7 + j] = entree.readFloat();
+                }
+                jourOuvert[slot] = entree.readInt();
+                quantiteOuverte[slot] = entree.readInt();
+                joursObserves[slot] = entree.readInt();
+            }
+            nombreSlots = nombre;
+        }
+        return true;
+    }
+
+    private int slot(String id) {
+        Integer slot = slotParId.get(id);
+        if (slot != null) return slot;
+
+        int nouveau = nombreSlots;
+        agrandir(nouveau + 1);
+        slotParId.put(id, nouveau);
+        ids[nouveau] = id;
+        niveau[nouveau] = 0;
+        Arrays.fill(facteurs, nouveau * 7, nouveau * 7 + 7, 1f);
+        jourOuvert[nouveau] = Integer.MIN_VALUE;
+        quantiteOuverte[nouveau] = 0;
+        joursObserves[nouveau] = 0;
+        nombreSlots++;
+        return nouveau;
+    }
+
+    private void agrandir(int taille) {
+        if (taille <= niveau.length) return;
+        int capacite = Math.max(taille, niveau.length * 2);
+        articles = Arrays.copyOf(articles, capacite);
+        ids = Arrays.copyOf(ids, capacite);
+        niveau = Arrays.copyOf(niveau, capacite);
+        facteurs = Arrays.copyOf(facteurs, capacite * 7);
+        jourOuvert = Arrays.copyOf(jourOuvert, capacite);
+        quantiteOuverte = Arrays.copyOf(quantiteOuverte, capacite);
+        joursObserves = Arrays.copyOf(joursObserves, capacite);
+    }
+
+    /**
+     * Closes the open day of {@code slot} and the days without sales up to
+     * {@code jour}, which becomes the open day.
+     */
+    private void avancer(int slot, int jour) {
+        int ouvert = jourOuvert[slot];
+        if (ouvert != Integer.MIN_VALUE) {
+            fermerJour(slot, ouvert, quantiteOuverte[slot]);
+            long joursVides = (long) jour - ouvert - 1;
+            long detailles = Math.min(joursVides, JOURS_VIDES_DETAILLES);
+            for (int j = 1; j <= detailles; j++) {
+                fermerJour(slot, ouvert + j, 0);
+            }
+            if (joursVides > detailles) {
+                // The factors have converged by now; only the level keeps decaying
+                niveau[slot] *= Math.pow(1 - ALPHA, joursVides - detailles);
+                joursObserves[slot] += (int) (joursVides - detailles);
+            }
+        }
+        jourOuvert[slot] = jour;
+        quantiteOuverte[slot] = 0;
+    }
+
+    private void fermerJour(int slot, long jour, int quantite) {
+        int indice = slot * 7 + jourSemaine(jour);
+        float facteur = facteurs[indice];
+        if (joursObserves[slot] == 0) {
+            niveau[slot] = quantite;
+        } else {
+            niveau[slot] = ALPHA * quantite / facteur + (1 - ALPHA) * niveau[slot];
+        }
+        if (niveau[slot] > 0) {
+            double nouveau = GAMMA * quantite / niveau[slot] + (1 - GAMMA) * facteur;
+            facteurs[indice] = (float) Math.max(FACTEUR_MIN, Math.min(FACTEUR_MAX, nouveau));
+        }
+        joursObserves[slot]++;
+    }
+
+    private Suggestion suggerer(int slot, int aujourdHui, PointsCommande pointsCommande) {
+        ArticleEpicerie article = articles[slot];
+        if (article == null) return null;
+        if (aujourdHui > jourOuvert[slot]) {
+            avancer(slot, aujourdHui);
+        }
+        double niveauSlot = niveau[slot];
+        if (niveauSlot <= 0) return null;
+
+        int stock = Math.max(0, article.getQuantiteStock());
+        int base = slot * 7;
+        double semaine = 0;
+        for (int j = 0; j < 7; j++) {
+            semaine += facteurs[base + j];
+        }
+        semaine *= niveauSlot;
+        // What is left of today's forecast once today's sales are counted
+        double restantAujourdHui = Math.max(0, niveauSlot * facteurs[base + jourSemaine(aujourdHui)] - quantiteOuverte[slot]);
+
+        int joursAvantRupture = joursAvantRupture(base, niveauSlot, semaine, aujourdHui, stock, restantAujourdHui);
+        PointsCommande.Seuils seuils = pointsCommande.get(article.getId());
+        double demandeDelai = demandeSur(base, niveauSlot, semaine, aujourdHui, DELAI_LIVRAISON_JOURS, restantAujourdHui);
+        boolean aCommander = joursAvantRupture <= DELAI_LIVRAISON_JOURS + PERIODE_REVUE_JOURS
+            || stock - demandeDelai <= seuils.getPointCommande();
+        if (!aCommander) return null;
+
+        // Order up to the demand until the next delivery after this one, plus the safety stock
+        double besoin = demandeSur(base, niveauSlot, semaine, aujourdHui, DELAI_LIVRAISON_JOURS + PERIODE_REVUE_JOURS,
+            restantAujourdHui) + seuils.getStockSecurite();
+        int quantite = (int) Math.ceil(besoin - stock);
+        if (quantite <= 0) return null;
+        return new Suggestion(article, stock, semaine / 7, joursAvantRupture, quantite);
+    }
+
+    // Forecast demand from now to the end of day aujourdHui + jours - 1
+    private double demandeSur(int base, double niveauSlot, double semaine, int aujourdHui, int jours, double restantAujourdHui) {
+        double demande = restantAujourdHui;
+        int suivants = jours - 1;
+        demande += semaine * (suivants / 7);
+        for (int j = 1; j <= suivants % 7; j++) {
+            demande += niveauSlot * facteurs[base + jourSemaine(aujourdHui + j)];
+        }
+        return demande;
+    }
+
+    private int joursAvantRupture(int base, double niveauSlot, double semaine, int aujourdHui, int stock,
+                                  double restantAujourdHui) {
+        double restant = stock - restantAujourdHui;
+        if (restant < 0) return 0;
+        long semainesPleines = (long) (restant / semaine);
+        if (semainesPleines > Integer.MAX_VALUE / 7) return Integer.MAX_VALUE;
+        restant -= semainesPleines * semaine;
+        int jours = (int) semainesPleines * 7;
+        for (int j = 1; j <= 7; j++) {
+            restant -= niveauSlot * facteurs[base + jourSemaine(aujourdHui + jours + j)];
+            if (restant < 0) return jours + j;
+        }
+        return jours + 7;
+    }
+
+    // 0 for Monday, 6 for Sunday; epoch day 0 was a Thursday
+    private static int jourSemaine(long jour) {
+        return (int) Math.floorMod(jour + 3, 7L);
+    }
+
+    static LocalDate jourDe(long horodatage) {
+        return Instant.ofEpochMilli(horodatage).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
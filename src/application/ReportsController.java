@@ -1,22 +1,23 @@
 package application;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import java.net.URL;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 import InventaireArticle.ArticleEpicerie;
-import InventaireArticle.ArticlePerissable;
 import InventaireArticle.Caisse;
 import InventaireArticle.Inventaire;
 import InventaireArticle.Vente;
@@ -30,6 +31,7 @@ public class ReportsController implements Initializable {
     @FXML private RadioButton inventoryReportRadio;
     @FXML private RadioButton expiredReportRadio;
     @FXML private RadioButton lowStockReportRadio;
+    @FXML private RadioButton replenishmentReportRadio;
 
     // Date Filters
     @FXML private DatePicker startDateField;
@@ -61,6 +63,8 @@ public class ReportsController implements Initializable {
 
     // Export Button
     @FXML private Button exportReportButton;
+    @FXML private ProgressBar exportProgressBar;
+    @FXML private Label exportStatusLabel;
 
     // Back Button
     @FXML private Button backButton;
@@ -69,6 +73,20 @@ public class ReportsController implements Initializable {
     private Caisse caisse;
     private Administrateur admin;
 
+    private FluxEvenements.Abonnement storeSubscription;
+    // Generator of the report on screen, re-run when the inventory changes
+    private Runnable displayedReport;
+    private boolean salesReportDisplayed;
+    private double displayedSalesTotal;
+    private int displayedSalesCount;
+
+    // Reports are computed off the FX thread; only the latest request is shown
+    private ServiceRapports reportService;
+    private long reportGeneration;
+    private boolean reportPending;
+
+    private SuiviExport exportTracker;
+
     // Custom class for inventory items display
     public static class InventoryTableItem {
         private String id;
@@ -98,17 +116,106 @@ public class ReportsController implements Initializable {
         System.out.println("ReportsController initialized!");
         setupTableColumns();
         setupEventHandlers();
+        exportTracker = new SuiviExport(exportReportButton, exportProgressBar, exportStatusLabel);
         initializeDateFilters();
     }
 
     public void setInventaire(Inventaire inventaire) {
         this.inventaire = inventaire;
+        this.reportService = new ServiceRapports(inventaire, caisse);
         System.out.println("Inventaire set with " + (inventaire != null ? inventaire.getArticles().size() : 0) + " articles");
+        subscribeToStoreEvents();
     }
 
     public void setCaisse(Caisse caisse) {
         this.caisse = caisse;
+        this.reportService = new ServiceRapports(inventaire, caisse);
         System.out.println("Caisse set with " + (caisse != null ? caisse.getVentesJournalieres().size() : 0) + " sales");
+        subscribeToStoreEvents();
+    }
+
+    private void subscribeToStoreEvents() {
+        dispose();
+        FluxEvenements flux = null;
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            flux = inventaireIndexe.getFluxEvenements();
+        } else if (caisse instanceof CaisseJournalisee caisseJournalisee) {
+            flux = caisseJournalisee.getFluxEvenements();
+        }
+        if (flux != null) {
+            storeSubscription = flux.abonner(this::applyStoreEvents);
+        }
+    }
+
+    /**
+     * Stops the live updates; called when the window is closed.
+     */
+    public void dispose() {
+        if (storeSubscription != null) {
+            storeSubscription.close();
+            storeSubscription = null;
+        }
+        if (exportTracker != null) {
+            exportTracker.annuler();
+        }
+    }
+
+    /**
+     * Keeps the report on screen current. New sales are appended to a sales
+     * report; inventory reports are regenerated once per batch.
+     */
+    private void applyStoreEvents(List<EvenementMagasin> events) {
+        if (displayedReport == null) return;
+
+        if (salesReportDisplayed) {
+            if (reportPending) {
+                // The pending report was computed from an older snapshot
+                for (EvenementMagasin event : events) {
+                    if (event.getType() == EvenementMagasin.Type.VENTE_ENREGISTREE) {
+                        displayedReport.run();
+                        return;
+                    }
+                }
+                return;
+            }
+            appendNewSales(events);
+            return;
+        }
+        for (EvenementMagasin event : events) {
+            if (event.concerneArticle()) {
+                displayedReport.run();
+                return;
+            }
+        }
+    }
+
+    private void appendNewSales(List<EvenementMagasin> events) {
+        LocalDate startDate = startDateField.getValue();
+        LocalDate endDate = endDateField.getValue();
+        if (startDate == null || endDate == null) return;
+
+        List<Object> added = new ArrayList<>();
+        for (EvenementMagasin event : events) {
+            if (event.getType() != EvenementMagasin.Type.VENTE_ENREGISTREE) continue;
+            Vente vente = event.getVente();
+            LocalDate saleDate = vente.getDate();
+            if (!saleDate.isBefore(startDate) && !saleDate.isAfter(endDate)) {
+                added.add(vente);
+                displayedSalesTotal += vente.getTotal();
+                displayedSalesCount++;
+            }
+        }
+        if (added.isEmpty()) return;
+
+        salesTable.getItems().addAll(added);
+        updateSalesTotals();
+    }
+
+    private void updateSalesTotals() {
+        double averageSale = displayedSalesCount > 0 ? displayedSalesTotal / displayedSalesCount : 0.0;
+        totalSalesLabel.setText(String.format("%.2f €", displayedSalesTotal));
+        transactionCountLabel.setText(String.valueOf(displayedSalesCount));
+        averageSaleLabel.setText(String.format("%.2f €", averageSale));
     }
 
     private void setupTableColumns() {
@@ -120,48 +227,13 @@ public class ReportsController implements Initializable {
 
 
         // Format total column
-        saleTotalColumn.setCellFactory(column -> new TableCell<Object, Double>() {
-            @Override
-            protected void updateItem(Double total, boolean empty) {
-                super.updateItem(total, empty);
-                if (empty || total == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", total));
-                    setStyle("-fx-font-weight: bold; -fx-text-fill: #27ae60;");
-                }
-            }
-        });
+        saleTotalColumn.setCellFactory(CellulesTableau.montants(CellulesTableau.STYLE_MONTANT_FORT));
 
         // Format items column
-        saleItemsColumn.setCellFactory(column -> new TableCell<Object, Integer>() {
-            @Override
-            protected void updateItem(Integer items, boolean empty) {
-                super.updateItem(items, empty);
-                if (empty || items == null) {
-                    setText(null);
-                } else {
-                    setText(items.toString());
-                    setStyle("-fx-font-weight: bold;");
-                }
-            }
-        });
+        saleItemsColumn.setCellFactory(CellulesTableau.entiers(CellulesTableau.STYLE_FORT));
 
         // Format name/date column
-        saleDateColumn.setCellFactory(column -> new TableCell<Object, LocalDate>() {
-            @Override
-            protected void updateItem(LocalDate date, boolean empty) {
-                super.updateItem(date, empty);
-                if (empty || date == null) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    // Format LocalDate as string
-                    setText(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-                    setStyle("-fx-font-weight: bold;");
-                }
-            }
-        });
+        saleDateColumn.setCellFactory(CellulesTableau.dates(CellulesTableau.STYLE_FORT));
         
     }
     
@@ -194,63 +266,89 @@ public class ReportsController implements Initializable {
         reportResultsSection.setVisible(true);
         
         if (salesReportRadio.isSelected()) {
-            generateSalesReport();
+            displayedReport = this::generateSalesReport;
         } else if (inventoryReportRadio.isSelected()) {
-            generateInventoryReport();
+            displayedReport = this::generateInventoryReport;
         } else if (expiredReportRadio.isSelected()) {
-            generateExpiredReport();
+            displayedReport = this::generateExpiredReport;
         } else if (lowStockReportRadio.isSelected()) {
-            generateLowStockReport();
+            displayedReport = this::generateLowStockReport;
+        } else if (replenishmentReportRadio.isSelected()) {
+            displayedReport = this::generateReplenishmentReport;
+        }
+        salesReportDisplayed = salesReportRadio.isSelected();
+        if (displayedReport != null) {
+            displayedReport.run();
         }
     }
 
     private void generateSalesReport() {
+        cancelPendingReport();
         reportTitle.setText("Rapport des ventes");
         showReportSection(salesReportContent);
         updateTableColumnsForSales(); // Set columns for sales data
 
-        if (caisse == null || caisse.getVentesJournalieres().isEmpty()) {
-            showNoDataMessage("Aucune vente enregistrée");
-            salesTable.setItems(FXCollections.observableArrayList());
-            return;
-        }
+        displayedSalesTotal = 0.0;
+        displayedSalesCount = 0;
 
+        IndexVentesParJour indexVentes = reportService.getIndexVentes();
         LocalDate startDate = startDateField.getValue();
         LocalDate endDate = endDateField.getValue();
 
+        if (reportService.aucuneVente()) {
+            salesTable.setItems(FXCollections.observableArrayList());
+            if (indexVentes == null || startDate == null || endDate == null) {
+                showNoDataMessage("Aucune vente enregistrée");
+                return;
+            }
+            // Past months may still have archived sales
+            updateSalesTotals();
+            addArchivedTotals(startDate, endDate, null);
+            return;
+        }
+
         if (startDate == null || endDate == null) {
             showError("Veuillez sélectionner une période valide");
             return;
         }
 
-        List<Vente> ventes = caisse.getVentesJournalieres();
-        ObservableList<Vente> filteredSales = FXCollections.observableArrayList();
-
-        double totalSales = 0.0;
-        int transactionCount = 0;
-
-        for (Vente vente : ventes) {
-            LocalDate saleDate = vente.getDate();
-
-            if ((saleDate.isEqual(startDate) || saleDate.isAfter(startDate)) &&
-                (saleDate.isEqual(endDate) || saleDate.isBefore(endDate))) {
-
-                filteredSales.add(vente);
-                totalSales += vente.getTotal();
-                transactionCount++;
+        // From the day index when there is one, otherwise filtered and summed in parallel
+        LocalDate firstLiveDay = indexVentes != null ? indexVentes.getPremierJour() : null;
+        runReport(reportService.statistiquesVentes(startDate, endDate, 0), statistiques -> {
+            displayedSalesTotal = statistiques.getChiffreAffaires();
+            displayedSalesCount = statistiques.getNombreVentes();
+            updateSalesTotals();
+            salesTable.setItems(FXCollections.observableArrayList(statistiques.getVentes()));
+            if (indexVentes != null) {
+                addArchivedTotals(startDate, endDate, firstLiveDay);
             }
-        }
-
-        double averageSale = transactionCount > 0 ? totalSales / transactionCount : 0.0;
-
-        totalSalesLabel.setText(String.format("%.2f €", totalSales));
-        transactionCountLabel.setText(String.valueOf(transactionCount));
-        averageSaleLabel.setText(String.format("%.2f €", averageSale));
+        });
+    }
 
-        salesTable.setItems(FXCollections.observableArrayList(filteredSales));
+    /**
+     * Adds the archived sales of the range, up to the first day still held in
+     * memory, to the totals on screen. Only the indexes of the monthly archives
+     * are read, and the day journals of the current month, which is not
+     * archived yet; those sales are not listed in the table.
+     */
+    private void addArchivedTotals(LocalDate startDate, LocalDate endDate, LocalDate firstLiveDay) {
+        boolean noLiveSales = firstLiveDay == null;
+        LocalDate archivedEnd = !noLiveSales && !firstLiveDay.isAfter(endDate) ? firstLiveDay.minusDays(1) : endDate;
+        if (archivedEnd.isBefore(startDate)) return;
+
+        runReport(reportService.totauxArchives(startDate, archivedEnd), totaux -> {
+            if (noLiveSales && totaux.getNombreVentes() == 0) {
+                showNoDataMessage("Aucune vente enregistrée");
+                return;
+            }
+            displayedSalesTotal += totaux.getChiffreAffaires();
+            displayedSalesCount += totaux.getNombreVentes();
+            updateSalesTotals();
+        });
     }
 
     private void generateInventoryReport() {
+        cancelPendingReport();
         reportTitle.setText("Rapport d'inventaire");
         showReportSection(salesReportContent); // Use the same section with table
         updateTableColumnsForInventory(); // Set columns for inventory data
@@ -261,37 +359,20 @@ public class ReportsController implements Initializable {
             return;
         }
 
-        ObservableList<Object> inventoryItems = FXCollections.observableArrayList();
-        int totalItems = inventaire.getArticles().size();
-        double totalValue = 0;
-        int lowStockCount = 0;
-
-        for (ArticleEpicerie article : inventaire.getArticles().values()) {
-            double itemTotalValue = article.getPrix() * article.getQuantiteStock();
-            inventoryItems.add(new InventoryTableItem(
-                article.getId(),
-                article.getNom(),
-                article.getQuantiteStock(),
-                article.getPrix(),
-                itemTotalValue
-            ));
-            totalValue += itemTotalValue;
-            if (article.getQuantiteStock() <= 10) {
-                lowStockCount++;
-            }
-        }
+        runReport(reportService.rapportInventaire(), rapport -> {
+            // Update statistics
+            totalItemsLabel.setText(String.valueOf(rapport.getNombreArticles()));
+            totalValueLabel.setText(String.format("%.2f€", rapport.getValeur()));
+            lowStockCountLabel.setText(String.valueOf(rapport.getNombreStockFaible()));
 
-        // Update statistics
-        totalItemsLabel.setText(String.valueOf(totalItems));
-        totalValueLabel.setText(String.format("%.2f€", totalValue));
-        lowStockCountLabel.setText(String.valueOf(lowStockCount));
-
-        // Set table data
-        salesTable.setItems(inventoryItems);
+            // Set table data
+            salesTable.setItems(FXCollections.observableArrayList(rapport.getLignes()));
+        });
     }
 
     @FXML
     private void generateExpiredReport() {
+        cancelPendingReport();
         reportTitle.setText("Articles périmés");
         showReportSection(salesReportContent); // Use the same section with table
         updateTableColumnsForInventory(); // Set columns for inventory data
@@ -302,41 +383,21 @@ public class ReportsController implements Initializable {
             return;
         }
 
-        ObservableList<Object> expiredItems = FXCollections.observableArrayList();
-        int expiredCount = 0;
-        int expiringSoonCount = 0;
-        double totalValue = 0;
-
-        for (ArticleEpicerie article : inventaire.getArticles().values()) {
-            if (article instanceof ArticlePerissable) {
-                ArticlePerissable perissable = (ArticlePerissable) article;
-                if (perissable.estPerime()) {
-                    expiredCount++;
-                    double itemValue = article.getPrix() * article.getQuantiteStock();
-                    totalValue += itemValue;
-                    expiredItems.add(new InventoryTableItem(
-                        article.getId(),
-                        article.getNom() + " (Expiré: " + perissable.getDateExpiration() + ")",
-                        article.getQuantiteStock(),
-                        article.getPrix(),
-                        itemValue
-                    ));
-                } else if (perissable.getJoursRestants() <= 7) {
-                    expiringSoonCount++;
-                }
-            }
-        }
+        runReport(reportService.rapportPerimes(), this::showExpiredReport);
+    }
 
+    private void showExpiredReport(CalculRapports.RapportPerimes rapport) {
         // Update statistics for expired items
-        totalSalesLabel.setText(String.valueOf(expiredCount));
-        transactionCountLabel.setText(String.valueOf(expiringSoonCount));
-        averageSaleLabel.setText(String.format("%.2f€", totalValue));
+        totalSalesLabel.setText(String.valueOf(rapport.getNombrePerimes()));
+        transactionCountLabel.setText(String.valueOf(rapport.getNombreBientotPerimes()));
+        averageSaleLabel.setText(String.format("%.2f€", rapport.getValeur()));
 
         // Set table data
-        salesTable.setItems(expiredItems);
+        salesTable.setItems(FXCollections.observableArrayList(rapport.getLignes()));
     }
 
     private void generateLowStockReport() {
+        cancelPendingReport();
         reportTitle.setText("Articles à faible stock");
         showReportSection(salesReportContent); // Use the same section with table
         updateTableColumnsForInventory(); // Set columns for inventory data
@@ -347,43 +408,82 @@ public class ReportsController implements Initializable {
             return;
         }
 
-        ObservableList<Object> lowStockItems = FXCollections.observableArrayList();
-        int lowStockCount = 0;
-        int outOfStockCount = 0;
-        double totalValueAtRisk = 0;
-
-        for (ArticleEpicerie article : inventaire.getArticles().values()) {
-            if (article.getQuantiteStock() == 0) {
-                outOfStockCount++;
-                double itemValue = article.getPrix() * article.getQuantiteStock();
-                lowStockItems.add(new InventoryTableItem(
-                    article.getId(),
-                    article.getNom() + " (RUPTURE DE STOCK)",
-                    article.getQuantiteStock(),
-                    article.getPrix(),
-                    itemValue
-                ));
-            } else if (article.getQuantiteStock() <= 10) {
-                lowStockCount++;
-                double itemValue = article.getPrix() * article.getQuantiteStock();
-                totalValueAtRisk += itemValue;
-                lowStockItems.add(new InventoryTableItem(
-                    article.getId(),
-                    article.getNom() + " (Stock faible: " + article.getQuantiteStock() + ")",
-                    article.getQuantiteStock(),
-                    article.getPrix(),
-                    itemValue
-                ));
-            }
-        }
+        runReport(reportService.rapportStockFaible(), this::showLowStockReport);
+    }
 
+    private void showLowStockReport(CalculRapports.RapportStockFaible rapport) {
         // Update statistics
-        totalItemsLabel.setText(String.valueOf(lowStockCount));
-        totalValueLabel.setText(String.format("%.2f€", totalValueAtRisk));
-        lowStockCountLabel.setText(String.valueOf(outOfStockCount));
+        totalItemsLabel.setText(String.valueOf(rapport.getNombreStockFaible()));
+        totalValueLabel.setText(String.format("%.2f€", rapport.getValeur()));
+        lowStockCountLabel.setText(String.valueOf(rapport.getNombreRuptures()));
 
         // Set table data
-        salesTable.setItems(lowStockItems);
+        salesTable.setItems(FXCollections.observableArrayList(rapport.getLignes()));
+    }
+
+    private void generateReplenishmentReport() {
+        cancelPendingReport();
+        reportTitle.setText("Réapprovisionnement suggéré");
+        showReportSection(salesReportContent); // Use the same section with table
+        updateTableColumnsForReplenishment();
+
+        PrevisionDemande prevision = reportService.getPrevision();
+        if (prevision == null) {
+            showNoDataMessage("Aucune prévision de la demande disponible");
+            salesTable.setItems(FXCollections.observableArrayList());
+            return;
+        }
+
+        // Show the plan computed in the background right away, then a fresh one
+        PrevisionDemande.Plan plan = prevision.getPlan();
+        if (plan != null) {
+            showReplenishmentReport(plan);
+        }
+        runReport(reportService.planReapprovisionnement(), this::showReplenishmentReport);
+    }
+
+    private void showReplenishmentReport(PrevisionDemande.Plan plan) {
+        // Update statistics
+        totalItemsLabel.setText(String.valueOf(plan.getSuggestions().size()));
+        totalValueLabel.setText(String.format("%.2f€", plan.getCoutCommande()));
+        lowStockCountLabel.setText(String.valueOf(plan.getNombreRupturesAvantLivraison()));
+
+        List<InventoryTableItem> rows = new ArrayList<>(plan.getSuggestions().size());
+        for (PrevisionDemande.Suggestion suggestion : plan.getSuggestions()) {
+            ArticleEpicerie article = suggestion.getArticle();
+            String stockout = suggestion.getJoursAvantRupture() == 0 ? "rupture aujourd'hui"
+                : "rupture dans " + suggestion.getJoursAvantRupture() + " j";
+            String name = String.format("%s (stock %d, ~%.1f/j, %s)", article.getNom(), suggestion.getStock(),
+                suggestion.getDemandeJournaliere(), stockout);
+            rows.add(new InventoryTableItem(article.getId(), name, suggestion.getQuantiteSuggeree(), article.getPrix(),
+                article.getPrix() * suggestion.getQuantiteSuggeree()));
+        }
+        salesTable.setItems(FXCollections.observableArrayList(rows));
+    }
+
+    /**
+     * Shows a report computed by the report service on the FX thread, unless
+     * another report was requested in the meantime.
+     */
+    private <R> void runReport(CompletableFuture<R> computation, Consumer<R> display) {
+        long generation = reportGeneration;
+        reportPending = true;
+        computation.whenComplete((rapport, error) -> Platform.runLater(() -> {
+            if (generation != reportGeneration) return;
+            reportPending = false;
+            if (error != null) {
+                showError("Erreur lors de la génération du rapport : " + error.getMessage());
+                error.printStackTrace();
+                return;
+            }
+            display.accept(rapport);
+        }));
+    }
+
+    // A report shown from now on supersedes any result still being computed
+    private void cancelPendingReport() {
+        reportGeneration++;
+        reportPending = false;
     }
 
     private void updateTableColumnsForSales() {
@@ -400,6 +500,13 @@ public class ReportsController implements Initializable {
         saleTotalColumn.setText("Valeur Totale");
     }
 
+    private void updateTableColumnsForReplenishment() {
+        saleIdColumn.setText("ID Article");
+        saleDateColumn.setText("Article (prévision)");
+        saleItemsColumn.setText("À commander");
+        saleTotalColumn.setText("Coût");
+    }
+
     private void showReportSection(VBox sectionToShow) {
         // Hide all report sections
         salesReportContent.setVisible(false);
@@ -419,62 +526,52 @@ public class ReportsController implements Initializable {
 
     @FXML
     private void exportReport() {
+        if (exportTracker.isEnCours()) {
+            // The button doubles as cancel while an export runs
+            exportTracker.annuler();
+            return;
+        }
         if (salesTable.getItems().isEmpty()) {
             showError("Aucune donnée à exporter !");
             return;
         }
 
-        // Choose file location using FileChooser
-        javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
-        fileChooser.setTitle("Exporter le rapport en CSV");
-        fileChooser.getExtensionFilters().add(new javafx.stage.FileChooser.ExtensionFilter("CSV Files", "*.csv"));
-        java.io.File file = fileChooser.showSaveDialog(exportReportButton.getScene().getWindow());
-
-        if (file == null) {
+        SuiviExport.Destination destination = exportTracker.choisirDestination("Exporter le rapport", "rapport");
+        if (destination == null) {
             return; // User cancelled
         }
 
-        try (java.io.PrintWriter writer = new java.io.PrintWriter(file)) {
-            // Write header based on selected report type
-            if (salesReportRadio.isSelected()) {
-                writer.println("ID Vente,Date,Nombre Articles,Total");
-                for (Object obj : salesTable.getItems()) {
-                    if (obj instanceof Vente vente) {
-                        String line = String.format("%s,%s,%d,%.2f",
-                                vente.getIdVente(),
-                                vente.getDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                                vente.getNombreArticles(),
-                                vente.getTotal());
-                        writer.println(line);
-                    }
-                }
-            } else { // Inventory, expired, low stock reports
-                writer.println("ID Article,Nom,Quantité,Prix,Valeur Totale");
-                for (Object obj : salesTable.getItems()) {
-                    if (obj instanceof InventoryTableItem item) {
-                        String line = String.format("%s,%s,%d,%.2f,%.2f",
-                                item.getId(),
-                                item.getName(),
-                                item.getQuantity(),
-                                item.getPrice(),
-                                item.getTotalValue());
-                        writer.println(line);
-                    }
+        // Rows are streamed from the source data on a background thread
+        ExportRapport export;
+        if (salesReportDisplayed) {
+            IndexVentesParJour indexVentes = caisse instanceof CaisseJournalisee caisseJournalisee
+                ? caisseJournalisee.getIndexVentes() : null;
+            List<Vente> ventes = indexVentes != null ? null : new ArrayList<>(caisse.getVentesJournalieres());
+            export = ExportRapport.ventes(destination.getFichier(), destination.getFormat(), indexVentes, ventes,
+                startDateField.getValue(), endDateField.getValue());
+        } else {
+            List<InventoryTableItem> items = new ArrayList<>();
+            for (Object obj : salesTable.getItems()) {
+                if (obj instanceof InventoryTableItem item) {
+                    items.add(item);
                 }
             }
-
-            showInformation("Export réussi", "Rapport exporté avec succès :\n" + file.getAbsolutePath());
-
-        } catch (Exception e) {
-            showError("Erreur lors de l'exportation : " + e.getMessage());
-            e.printStackTrace();
+            export = ExportRapport.lignesRapport(destination.getFichier(), destination.getFormat(), items);
         }
+        exportTracker.lancer(export,
+            done -> showInformation("Export réussi", "Rapport exporté avec succès (" + done.getValue() + " lignes) :\n"
+                + done.getFichier().toAbsolutePath()),
+            error -> {
+                showError("Erreur lors de l'exportation : " + (error != null ? error.getMessage() : ""));
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            });
     }
 
-    
-
     @FXML
     private void goBack() {
+        dispose();
         Stage stage = (Stage) backButton.getScene().getWindow();
         stage.close();
     }
@@ -0,0 +1,207 @@
+package application;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import InventaireArticle.ArticleEpicerie;
+
+/**
+ * Soft stock reservations held by open carts.
+ *
+ * A cart (identified by its {@link PanierCaisse} or any other owner object)
+ * holds at most one reservation per article. Each reservation expires after
+ * a TTL that is renewed whenever the cart touches the line; expiry is driven
+ * by a {@link RoueTemporelle}, so tens of thousands of open holds cost nothing
+ * until they fire. Totals per article are maintained incrementally, so the
+ * stock available to a cart is an O(1) lookup.
+ *
+ * By default every instance shares one wheel, whose deadlines only hold weak
+ * references: a dropped instance leaves no thread behind and can be collected.
+ *
+ * Reservations are soft: the sale commit still checks the real stock, it only
+ * counts the other carts' holds as unavailable.
+ */
+public class ReservationsStock {
+
+    public static final long TTL_PAR_DEFAUT_MILLIS = 15 * 60 * 1000L;
+
+    // One ticking thread for every caisse, however many menus were opened
+    private static final RoueTemporelle ROUE_COMMUNE = new RoueTemporelle(1000, 512, "expiration-reservations");
+
+    private static class Reservation {
+        final Object proprietaire;
+        final ArticleEpicerie article;
+        int quantite;
+        // Incremented on each renewal so that a stale expiry is ignored
+        int generation;
+        RoueTemporelle.Echeance echeance;
+
+        Reservation(Object proprietaire, ArticleEpicerie article) {
+            this.proprietaire = proprietaire;
+            this.article = article;
+        }
+    }
+
+    private final Map<Object, Map<String, Reservation>> parProprietaire = new IdentityHashMap<>();
+    private final Map<String, Integer> totalParArticle = new HashMap<>();
+    private final RoueTemporelle roue;
+    private final long ttlMillis;
+    private final FluxEvenements fluxEvenements;
+    private int nombreReservations;
+
+    public ReservationsStock(FluxEvenements fluxEvenements) {
+        this(fluxEvenements, TTL_PAR_DEFAUT_MILLIS, ROUE_COMMUNE);
+    }
+
+    public ReservationsStock(FluxEvenements fluxEvenements, long ttlMillis, RoueTemporelle roue) {
+        this.fluxEvenements = fluxEvenements;
+        this.ttlMillis = ttlMillis;
+        this.roue = roue;
+    }
+
+    /**
+     * Sets the quantity {@code proprietaire} holds on {@code article} and
+     * renews its TTL. Zero or less releases the hold.
+     */
+    public void reserver(Object proprietaire, ArticleEpicerie article, int quantite) {
+        if (quantite <= 0) {
+            liberer(proprietaire, article.getId());
+            return;
+        }
+
+        int delta;
+        synchronized (this) {
+            Map<String, Reservation> reservations = parProprietaire.computeIfAbsent(proprietaire, p -> new HashMap<>());
+            Reservation reservation = reservations.get(article.getId());
+            if (reservation == null) {
+                reservation = new Reservation(proprietaire, article);
+                reservations.put(article.getId(), reservation);
+                nombreReservations++;
+            } else {
+                reservation.echeance.annuler();
+            }
+            delta = quantite - reservation.quantite;
+            reservation.quantite = quantite;
+            ajusterTotal(article.getId(), delta);
+
+            reservation.echeance = planifierExpiration(reservation, ++reservation.generation);
+        }
+        signaler(article, delta);
+    }
+
+    public void liberer(Object proprietaire, String idArticle) {
+        Reservation reservation;
+        synchronized (this) {
+            Map<String, Reservation> reservations = parProprietaire.get(proprietaire);
+            if (reservations == null) return;
+            reservation = reservations.remove(idArticle);
+            if (reservation == null) return;
+            if (reservations.isEmpty()) {
+                parProprietaire.remove(proprietaire);
+            }
+            nombreReservations--;
+            reservation.echeance.annuler();
+            ajusterTotal(idArticle, -reservation.quantite);
+        }
+        signaler(reservation.article, -reservation.quantite);
+    }
+
+    /**
+     * Releases every hold of {@code proprietaire}, e.g. when its cart is
+     * emptied, cancelled or turned into a sale.
+     */
+    public void libererTout(Object proprietaire) {
+        List<Reservation> liberees;
+        synchronized (this) {
+            Map<String, Reservation> reservations = parProprietaire.remove(proprietaire);
+            if (reservations == null) return;
+            liberees = new ArrayList<>(reservations.values());
+            nombreReservations -= liberees.size();
+            for (Reservation reservation : liberees) {
+                reservation.echeance.annuler();
+                ajusterTotal(reservation.article.getId(), -reservation.quantite);
+            }
+        }
+        for (Reservation reservation : liberees) {
+            signaler(reservation.article, -reservation.quantite);
+        }
+    }
+
+    /**
+     * Total quantity held on an article by every cart.
+     */
+    public synchronized int getQuantiteReservee(String idArticle) {
+        return totalParArticle.getOrDefault(idArticle, 0);
+    }
+
+    /**
+     * Quantity held on an article by carts other than {@code proprietaire}.
+     */
+    public synchronized int getQuantiteReserveeParAutres(Object proprietaire, String idArticle) {
+        int total = totalParArticle.getOrDefault(idArticle, 0);
+        Map<String, Reservation> reservations = parProprietaire.get(proprietaire);
+        Reservation propre = reservations != null ? reservations.get(idArticle) : null;
+        return propre != null ? total - propre.quantite : total;
+    }
+
+    /**
+     * Stock {@code proprietaire} may still put in its cart: the live stock
+     * minus what the other carts hold.
+     */
+    public int getDisponible(Object proprietaire, ArticleEpicerie article) {
+        return Math.max(0, article.getQuantiteStock() - getQuantiteReserveeParAutres(proprietaire, article.getId()));
+    }
+
+    public synchronized int getNombreReservations() {
+        return nombreReservations;
+    }
+
+    // The wheel may be shared: its deadline must not keep this instance or the hold reachable
+    private RoueTemporelle.Echeance planifierExpiration(Reservation reservation, int generation) {
+        WeakReference<ReservationsStock> stock = new WeakReference<>(this);
+        WeakReference<Reservation> expiree = new WeakReference<>(reservation);
+        return roue.planifier(ttlMillis, () -> {
+            ReservationsStock reservations = stock.get();
+            Reservation aExpirer = expiree.get();
+            if (reservations != null && aExpirer != null) {
+                reservations.expirer(aExpirer, generation);
+            }
+        });
+    }
+
+    private void expirer(Reservation reservation, int generation) {
+        synchronized (this) {
+            Map<String, Reservation> reservations = parProprietaire.get(reservation.proprietaire);
+            // The hold may have been released or renewed just before firing
+            if (reservations == null || reservations.get(reservation.article.getId()) != reservation
+                    || reservation.generation != generation) return;
+            reservations.remove(reservation.article.getId());
+            if (reservations.isEmpty()) {
+                parProprietaire.remove(reservation.proprietaire);
+            }
+            nombreReservations--;
+            ajusterTotal(reservation.article.getId(), -reservation.quantite);
+        }
+        signaler(reservation.article, -reservation.quantite);
+    }
+
+    private void ajusterTotal(String idArticle, int delta) {
+        if (delta == 0) return;
+        int total = totalParArticle.getOrDefault(idArticle, 0) + delta;
+        if (total == 0) {
+            totalParArticle.remove(idArticle);
+        } else {
+            totalParArticle.put(idArticle, total);
+        }
+    }
+
+    private void signaler(ArticleEpicerie article, int delta) {
+        if (delta != 0 && fluxEvenements != null) {
+            fluxEvenements.publier(EvenementMagasin.reservationModifiee(article, delta));
+        }
+    }
+}
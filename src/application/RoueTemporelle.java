@@ -0,0 +1,144 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel for large numbers of coarse timeouts.
+ *
+ * Each slot holds a doubly linked list of deadlines; a background thread
+ * advances one slot per tick and fires the deadlines whose remaining rounds
+ * reached zero. Scheduling and cancelling are O(1) whatever the number of
+ * pending deadlines, and a tick only touches one slot. Deadlines fire with
+ * the precision of one tick, which is plenty for timeouts of minutes.
+ */
+public class RoueTemporelle {
+
+    /**
+     * A scheduled action; cancel it with {@link #annuler()}.
+     */
+    public final class Echeance {
+        private final Runnable action;
+        private long toursRestants;
+        private int position;
+        private Echeance precedente;
+        private Echeance suivante;
+        private boolean active = true;
+
+        private Echeance(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * Returns false if the action already fired or was cancelled.
+         */
+        public boolean annuler() {
+            synchronized (RoueTemporelle.this) {
+                if (!active) return false;
+                active = false;
+                detacher(this);
+                nombreEcheances--;
+                return true;
+            }
+        }
+    }
+
+    private final long dureeTickMillis;
+    private final Echeance[] cases;
+    private final ScheduledExecutorService horloge;
+    private int caseCourante;
+    private int nombreEcheances;
+
+    /**
+     * @param dureeTickMillis resolution of the wheel
+     * @param nombreCases number of slots; one turn lasts {@code nombreCases} ticks
+     * @param nomThread name of the ticking thread
+     */
+    public RoueTemporelle(long dureeTickMillis, int nombreCases, String nomThread) {
+        this.dureeTickMillis = dureeTickMillis;
+        this.cases = new Echeance[nombreCases];
+        this.horloge = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, nomThread);
+            thread.setDaemon(true);
+            return thread;
+        });
+        horloge.scheduleAtFixedRate(this::avancer, dureeTickMillis, dureeTickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code action} on the wheel thread after about {@code delaiMillis}.
+     */
+    public synchronized Echeance planifier(long delaiMillis, Runnable action) {
+        long ticks = Math.max(1, (delaiMillis + dureeTickMillis - 1) / dureeTickMillis);
+        Echeance echeance = new Echeance(action);
+        echeance.toursRestants = (ticks - 1) / cases.length;
+        echeance.position = (int) ((caseCourante + ticks) % cases.length);
+        attacher(echeance);
+        nombreEcheances++;
+        return echeance;
+    }
+
+    public synchronized int getNombreEcheances() {
+        return nombreEcheances;
+    }
+
+    public void arreter() {
+        horloge.shutdownNow();
+    }
+
+    // Package-private so the wheel can be driven by hand
+    void avancer() {
+        List<Runnable> aExecuter = new ArrayList<>();
+        synchronized (this) {
+            caseCourante = (caseCourante + 1) % cases.length;
+            Echeance echeance = cases[caseCourante];
+            while (echeance != null) {
+                Echeance suivante = echeance.suivante;
+                if (echeance.toursRestants == 0) {
+                    echeance.active = false;
+                    detacher(echeance);
+                    nombreEcheances--;
+                    aExecuter.add(echeance.action);
+                } else {
+                    echeance.toursRestants--;
+                }
+                echeance = suivante;
+            }
+        }
+
+        // Run outside the lock so actions may schedule or cancel deadlines
+        for (Runnable action : aExecuter) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Échéance en erreur: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void attacher(Echeance echeance) {
+        Echeance tete = cases[echeance.position];
+        echeance.suivante = tete;
+        if (tete != null) {
+            tete.precedente = echeance;
+        }
+        cases[echeance.position] = echeance;
+    }
+
+    private void detacher(Echeance echeance) {
+        if (echeance.precedente != null) {
+            echeance.precedente.suivante = echeance.suivante;
+        } else {
+            cases[echeance.position] = echeance.suivante;
+        }
+        if (echeance.suivante != null) {
+            echeance.suivante.precedente = echeance.precedente;
+        }
+        echeance.precedente = null;
+        echeance.suivante = null;
+    }
+}
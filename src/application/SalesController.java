@@ -1,5 +1,15 @@
 package application;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
@@ -7,14 +17,25 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import InventaireArticle.ArticleEpicerie;
 import InventaireArticle.Caisse;
 import InventaireArticle.Inventaire;
-import InventaireArticle.LignePanier;
-import InventaireArticle.Panier;
 import InventaireArticle.Vente;
 import UtilisateurApplication.Administrateur;
 
@@ -38,6 +59,9 @@ public class SalesController implements Initializable {
     @FXML private TextField addProductIdField;
     @FXML private TextField addQuantityField;
     @FXML private Button addToCartButton;
+    @FXML private CheckBox scanModeCheckBox;
+    @FXML private Label scanRateLabel;
+    @FXML private Label scanStatusLabel;
 
     // Cart Section
     @FXML private TableView<CartItem> cartTable;
@@ -60,14 +84,45 @@ public class SalesController implements Initializable {
     @FXML private Button clearCartButton;
     @FXML private Button cancelSaleButton;
 
-    private Panier panierVente = new Panier();
+    private final PanierCaisse panierCaisse = new PanierCaisse();
     private Inventaire inventaire;
     private Caisse caisse;
     private Administrateur admin;
     
     private ObservableList<ArticleEpicerie> allProducts;
+    // Immutable copy of allProducts for the search thread, dropped when products are added or removed
+    private List<ArticleEpicerie> productSnapshot;
     private ObservableList<ArticleEpicerie> filteredProducts;
-    private ObservableList<CartItem> cartItems;
+
+    // Catalog queries and cart checks; this controller only renders their results
+    private ServiceCatalogue serviceCatalogue;
+    private ServiceVentes serviceVentes;
+    private boolean checkoutPending;
+
+    // Search-as-you-type: queries run off the FX thread, newest keystroke wins
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+    private Future<?> pendingSearch;
+    private long searchGeneration;
+    private String lastSearchTerm;
+    private String lastSearchCategory;
+    private List<ArticleEpicerie> lastSearchResults;
+
+    // Live updates from the inventory and the other registers
+    private FluxEvenements.Abonnement storeSubscription;
+
+    // Scan mode: codes from the barcode reader are queued in scan order and
+    // resolved in one batch per pulse, with non-blocking feedback
+    private static final int SCAN_QUEUE_CAPACITY = 512;
+    private static final int MAX_REJECTED_SHOWN = 5;
+    private final BlockingQueue<String> scanQueue = new ArrayBlockingQueue<>(SCAN_QUEUE_CAPACITY);
+    private final AtomicBoolean scanDrainScheduled = new AtomicBoolean();
+    private final AtomicLong scansRefused = new AtomicLong();
+    private long scansReceived;
+    private long scansAdded;
+    private long scansRejected;
+    private final CompteurDebit scanRate = new CompteurDebit(10, 500);
+    private final Timeline scanRateRefresh = new Timeline(new KeyFrame(Duration.millis(500), e -> updateScanRate()));
+    private final PauseTransition statusFade = new PauseTransition(Duration.seconds(4));
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -80,12 +135,138 @@ public class SalesController implements Initializable {
 
     public void setInventaire(Inventaire inventaire) {
         this.inventaire = inventaire;
+        this.serviceCatalogue = new ServiceCatalogue(inventaire);
+        this.serviceVentes = new ServiceVentes(caisse, inventaire);
         System.out.println("Inventaire set with " + (inventaire != null ? inventaire.getArticles().size() : 0) + " articles");
         loadAvailableProducts();
+        subscribeToStoreEvents();
+    }
+
+    private void subscribeToStoreEvents() {
+        dispose();
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            storeSubscription = inventaireIndexe.getFluxEvenements().abonner(this::applyStoreEvents);
+        }
+    }
+
+    /**
+     * Stops the live updates; called when the window is closed.
+     */
+    public void dispose() {
+        if (storeSubscription != null) {
+            storeSubscription.close();
+            storeSubscription = null;
+        }
+        scanRateRefresh.stop();
+        panierCaisse.libererReservations();
+    }
+
+    /**
+     * Applies a batch of inventory changes to the product lists without reloading them.
+     */
+    private void applyStoreEvents(List<EvenementMagasin> events) {
+        if (allProducts == null) return;
+
+        Set<ArticleEpicerie> removed = new HashSet<>();
+        // A set: an article added then modified in the same batch must show once
+        Set<ArticleEpicerie> added = new LinkedHashSet<>();
+        boolean refresh = false;
+
+        for (EvenementMagasin event : events) {
+            ArticleEpicerie article = event.getArticle();
+            switch (event.getType()) {
+                case ARTICLE_AJOUTE:
+                    allProducts.add(article);
+                    productSnapshot = null;
+                    addCategory(article.getCategorie());
+                    if (matchesCurrentSearch(article)) {
+                        added.add(article);
+                    }
+                    // New articles are not in the previous results, so they cannot be narrowed
+                    lastSearchResults = null;
+                    break;
+                case ARTICLE_SUPPRIME:
+                    allProducts.remove(article);
+                    productSnapshot = null;
+                    removed.add(article);
+                    added.remove(article);
+                    break;
+                case ARTICLE_MODIFIE:
+                    addCategory(article.getCategorie());
+                    removed.add(article);
+                    if (matchesCurrentSearch(article)) {
+                        added.add(article);
+                    }
+                    lastSearchResults = null;
+                    break;
+                case STOCK_MODIFIE:
+                    if (article.getQuantiteStock() <= 0) {
+                        removed.add(article);
+                    } else {
+                        refresh = true;
+                    }
+                    break;
+                case RESERVATION_MODIFIEE:
+                    // Only the available stock column changes
+                    refresh = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            filteredProducts.removeAll(removed);
+        }
+        // Later events of the batch may have emptied the stock of an added article
+        added.removeIf(article -> !matchesCurrentSearch(article));
+        if (!added.isEmpty()) {
+            filteredProducts.addAll(added);
+        }
+        if (refresh) {
+            availableProductsTable.refresh();
+        }
+        updateSaleSummary();
+    }
+
+    private boolean matchesCurrentSearch(ArticleEpicerie article) {
+        return serviceCatalogue.correspondRecherche(article, lastSearchTerm, selectedCategory());
+    }
+
+    // The services take null for every category
+    private String selectedCategory() {
+        String category = searchCategoryFilter.getValue();
+        return category == null || category.equals("Toutes catégories") ? null : category;
+    }
+
+    private void addCategory(String category) {
+        if (!searchCategoryFilter.getItems().contains(category)) {
+            searchCategoryFilter.getItems().add(category);
+        }
     }
 
     public void setCaisse(Caisse caisse) {
         this.caisse = caisse;
+        this.serviceVentes = new ServiceVentes(caisse, inventaire);
+        if (caisse instanceof CaisseJournalisee caisseJournalisee) {
+            panierCaisse.setReservations(caisseJournalisee.getReservations());
+        }
+    }
+
+    /**
+     * Stock left for sale: the live stock minus what every open cart holds.
+     */
+    private int availableStock(ArticleEpicerie article) {
+        if (caisse instanceof CaisseJournalisee caisseJournalisee) {
+            return Math.max(0, article.getQuantiteStock()
+                - caisseJournalisee.getReservations().getQuantiteReservee(article.getId()));
+        }
+        return article.getQuantiteStock();
+    }
+
+    // Colour of the available stock, against the article's own reorder point
+    private IndexFiltres.EtatStock stockState(ArticleEpicerie article, int quantity) {
+        return serviceCatalogue.etatStock(article, quantity);
     }
 
     public void setAdmin(Administrateur admin) {
@@ -98,41 +279,13 @@ public class SalesController implements Initializable {
         availableNameColumn.setCellValueFactory(new PropertyValueFactory<>("nom"));
         availableCategoryColumn.setCellValueFactory(new PropertyValueFactory<>("categorie"));
         availablePriceColumn.setCellValueFactory(new PropertyValueFactory<>("prix"));
-        availableStockColumn.setCellValueFactory(new PropertyValueFactory<>("quantiteStock"));
+        availableStockColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(availableStock(cell.getValue())));
 
         // Format price column
-        availablePriceColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, Double>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if (empty || price == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", price));
-                }
-            }
-        });
+        availablePriceColumn.setCellFactory(CellulesTableau.montants());
 
         // Format stock column with color coding
-        availableStockColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, Integer>() {
-            @Override
-            protected void updateItem(Integer quantity, boolean empty) {
-                super.updateItem(quantity, empty);
-                if (empty || quantity == null) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    setText(quantity.toString());
-                    if (quantity == 0) {
-                        setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                    } else if (quantity <= 10) {
-                        setStyle("-fx-text-fill: #ecc94b; -fx-font-weight: bold;");
-                    } else {
-                        setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                    }
-                }
-            }
-        });
+        availableStockColumn.setCellFactory(CellulesTableau.stocks(this::stockState));
 
         // Add to cart button column
         availableAddColumn.setCellFactory(column -> new TableCell<ArticleEpicerie, String>() {
@@ -172,30 +325,9 @@ public class SalesController implements Initializable {
         cartTotalPriceColumn.setCellValueFactory(new PropertyValueFactory<>("totalPrice"));
 
         // Format price columns
-        cartUnitPriceColumn.setCellFactory(column -> new TableCell<CartItem, Double>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if (empty || price == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", price));
-                }
-            }
-        });
+        cartUnitPriceColumn.setCellFactory(CellulesTableau.montants());
 
-        cartTotalPriceColumn.setCellFactory(column -> new TableCell<CartItem, Double>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if (empty || price == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", price));
-                    setStyle("-fx-font-weight: bold; -fx-text-fill: #27ae60;");
-                }
-            }
-        });
+        cartTotalPriceColumn.setCellFactory(CellulesTableau.montants(CellulesTableau.STYLE_MONTANT_FORT));
 
         // Actions column (remove button)
         cartActionsColumn.setCellFactory(column -> new TableCell<CartItem, String>() {
@@ -222,8 +354,7 @@ public class SalesController implements Initializable {
             }
         });
 
-        cartItems = FXCollections.observableArrayList();
-        cartTable.setItems(cartItems);
+        cartTable.setItems(panierCaisse.getLignes());
     }
 
     private void setupEventHandlers() {
@@ -234,6 +365,25 @@ public class SalesController implements Initializable {
         clearCartButton.setOnAction(e -> clearCart());
         modifyCartButton.setOnAction(e -> showModifyCartDialog());
         cancelSaleButton.setOnAction(e -> cancelSale());
+
+        // Barcode readers type the code followed by Enter
+        addProductIdField.setOnAction(e -> {
+            if (scanModeCheckBox.isSelected()) {
+                String code = addProductIdField.getText();
+                addProductIdField.clear();
+                submitScan(code);
+            } else {
+                addToCartByID();
+            }
+        });
+        scanModeCheckBox.selectedProperty().addListener((obs, oldVal, enabled) -> setScanMode(enabled));
+        scanRateRefresh.setCycleCount(Animation.INDEFINITE);
+        statusFade.setOnFinished(e -> scanStatusLabel.setText(""));
+
+        // Live filtering while the cashier types, debounced
+        searchDebounce.setOnFinished(e -> searchProducts());
+        productSearchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
+        searchCategoryFilter.valueProperty().addListener((obs, oldVal, newVal) -> searchProducts());
     }
 
     private void initializeFilters() {
@@ -244,22 +394,19 @@ public class SalesController implements Initializable {
         if (inventaire == null) return;
 
         allProducts = FXCollections.observableArrayList(inventaire.getArticles().values());
+        productSnapshot = null;
         filteredProducts = FXCollections.observableArrayList(allProducts);
         
         // Filter out out-of-stock products initially
         filteredProducts.removeIf(article -> article.getQuantiteStock() <= 0);
         
         availableProductsTable.setItems(filteredProducts);
+        lastSearchResults = null;
         
         // Populate category filter
         ObservableList<String> categories = FXCollections.observableArrayList();
         categories.add("Toutes catégories");
-        for (ArticleEpicerie article : allProducts) {
-            String category = article.getCategorie();
-            if (!categories.contains(category)) {
-                categories.add(category);
-            }
-        }
+        categories.addAll(serviceCatalogue.categories(allProducts));
         searchCategoryFilter.setItems(categories);
         searchCategoryFilter.getSelectionModel().selectFirst();
         
@@ -269,27 +416,43 @@ public class SalesController implements Initializable {
     public void searchProducts() {
         if (allProducts == null) return;
 
-        String searchTerm = productSearchField.getText().toLowerCase();
+        searchDebounce.stop();
+        String searchTerm = productSearchField.getText().trim();
         String selectedCategory = searchCategoryFilter.getValue();
+        // The search thread reads an immutable copy, only taken again after products were added or removed
+        if (searchTerm.isEmpty() && productSnapshot == null) {
+            productSnapshot = List.copyOf(allProducts);
+        }
+        List<ArticleEpicerie> products = searchTerm.isEmpty() ? productSnapshot : null;
 
-        filteredProducts.clear();
-
-        for (ArticleEpicerie article : allProducts) {
-            boolean matchesSearch = searchTerm.isEmpty() || 
-                                  article.getNom().toLowerCase().contains(searchTerm) ||
-                                  article.getId().toLowerCase().contains(searchTerm);
-            
-            boolean matchesCategory = selectedCategory == null || 
-                                    selectedCategory.equals("Toutes catégories") || 
-                                    article.getCategorie().equals(selectedCategory);
-            
-            boolean inStock = article.getQuantiteStock() > 0;
-
-            if (matchesSearch && matchesCategory && inStock) {
-                filteredProducts.add(article);
-            }
+        // A newer search makes any running one obsolete
+        long generation = ++searchGeneration;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
         }
-        
+
+        // When the cashier keeps typing, only the previous results can still match
+        List<ArticleEpicerie> previousResults = canNarrow(searchTerm, selectedCategory) ? lastSearchResults : null;
+
+        pendingSearch = serviceCatalogue.rechercherEnStockAsync(searchTerm, selectedCategory(), products, previousResults,
+            results -> Platform.runLater(() -> publishSearchResults(generation, searchTerm, selectedCategory, results)));
+    }
+
+    private boolean canNarrow(String searchTerm, String selectedCategory) {
+        return lastSearchResults != null
+            && Objects.equals(selectedCategory, lastSearchCategory)
+            && ServiceCatalogue.peutAffiner(searchTerm, lastSearchTerm);
+    }
+
+    private void publishSearchResults(long generation, String searchTerm, String selectedCategory, List<ArticleEpicerie> results) {
+        if (generation != searchGeneration) return;
+
+        lastSearchTerm = searchTerm;
+        lastSearchCategory = selectedCategory;
+        lastSearchResults = results;
+
+        // One change event for the whole result set
+        filteredProducts.setAll(results);
         updateSaleSummary();
     }
 
@@ -300,121 +463,188 @@ public class SalesController implements Initializable {
     }
 
     public void addToCartByID() {
-        String productId = addProductIdField.getText().trim();
-        String quantityStr = addQuantityField.getText().trim();
-
-        if (productId.isEmpty()) {
-            showError("Veuillez entrer un ID de produit!");
+        if (checkoutPending) {
+            showStatus("Encaissement en cours, le panier est verrouillé", true);
             return;
         }
-
-        ArticleEpicerie article = inventaire.getArticle(productId);
-        if (article == null) {
-            showError("Produit non trouvé!");
+        ServiceVentes.Controle controle = serviceVentes.controlerAjout(panierCaisse,
+            addProductIdField.getText().trim(), addQuantityField.getText().trim());
+        if (!controle.estAccepte()) {
+            showError(controle.getErreur());
             return;
         }
 
-        if (article.getQuantiteStock() <= 0) {
-            showError("Ce produit n'est plus en stock!");
-            return;
+        applyToCart(controle);
+        addProductIdField.clear();
+        addQuantityField.setText("1");
+    }
+
+    private void setScanMode(boolean enabled) {
+        addQuantityField.setDisable(enabled);
+        if (enabled) {
+            scansReceived = 0;
+            scansAdded = 0;
+            scansRejected = 0;
+            scansRefused.set(0);
+            scanRate.reinitialiser();
+            scanRateRefresh.play();
+            updateScanRate();
+            showStatus("Mode scan actif: scannez les articles", false);
+            addProductIdField.requestFocus();
+        } else {
+            scanRateRefresh.stop();
+            scanRateLabel.setText("");
         }
+    }
 
-        int quantity;
-        try {
-            quantity = Integer.parseInt(quantityStr);
-        } catch (NumberFormatException e) {
-            showError("Quantité invalide!");
-            return;
+    /**
+     * Queues a scanned code; safe to call from any thread. Codes are added to
+     * the cart in the order they were submitted. Returns false if the queue is
+     * full, in which case the code is refused and reported, never lost silently.
+     */
+    public boolean submitScan(String code) {
+        String trimmed = code == null ? "" : code.trim();
+        if (trimmed.isEmpty()) return true;
+
+        if (!scanQueue.offer(trimmed)) {
+            scansRefused.incrementAndGet();
+            Platform.runLater(() -> showStatus("✖ Trop de scans en attente, code refusé: " + trimmed, true));
+            return false;
+        }
+        if (scanDrainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drainScans);
         }
+        return true;
+    }
 
-        if (quantity <= 0) {
-            showError("Quantité invalide!");
+    private void drainScans() {
+        // Clear the flag first so that a code queued during the drain schedules another one
+        scanDrainScheduled.set(false);
+        if (checkoutPending) {
+            // Kept in the queue, they are drained into the next cart when the checkout ends
+            showStatus("Encaissement en cours: " + scanQueue.size() + " scan(s) en attente du panier suivant", false);
             return;
         }
+        List<String> batch = new ArrayList<>();
+        scanQueue.drainTo(batch);
+        if (batch.isEmpty()) return;
+
+        int added = 0;
+        ArticleEpicerie lastAdded = null;
+        List<String> rejected = new ArrayList<>();
+        for (String code : batch) {
+            if (serviceVentes == null) {
+                rejected.add(code + " (inconnu)");
+                continue;
+            }
+            ServiceVentes.Controle controle = serviceVentes.controlerScan(panierCaisse, code);
+            if (controle.estAccepte()) {
+                panierCaisse.ajouter(controle.getArticle(), 1);
+                lastAdded = controle.getArticle();
+                added++;
+            } else {
+                rejected.add(controle.getErreur());
+            }
+        }
 
-        if (quantity > article.getQuantiteStock()) {
-            showError("Stock insuffisant! Stock disponible: " + article.getQuantiteStock());
-            return;
+        scansReceived += batch.size();
+        scansAdded += added;
+        scansRejected += rejected.size();
+        scanRate.enregistrer(batch.size());
+
+        if (added > 0) {
+            updateCartDisplay();
         }
+        showScanFeedback(added, lastAdded, rejected);
+        updateScanRate();
+    }
 
-        addProductToCart(article, quantity);
-        addProductIdField.clear();
-        addQuantityField.setText("1");
+    private void showScanFeedback(int added, ArticleEpicerie lastAdded, List<String> rejected) {
+        StringBuilder message = new StringBuilder();
+        if (added == 1) {
+            message.append("✔ ").append(lastAdded.getNom()).append(" ajouté");
+        } else if (added > 1) {
+            message.append("✔ ").append(added).append(" articles ajoutés (dernier: ")
+                   .append(lastAdded.getNom()).append(")");
+        }
+        if (!rejected.isEmpty()) {
+            if (message.length() > 0) message.append("  ·  ");
+            message.append("✖ ").append(rejected.size()).append(" refusé(s): ")
+                   .append(String.join(", ", rejected.subList(0, Math.min(rejected.size(), MAX_REJECTED_SHOWN))));
+            if (rejected.size() > MAX_REJECTED_SHOWN) {
+                message.append("…");
+            }
+        }
+        showStatus(message.toString(), !rejected.isEmpty());
+    }
+
+    private void updateScanRate() {
+        if (!scanModeCheckBox.isSelected()) return;
+        scanRateLabel.setText(String.format("%.1f scans/s (pic %.1f) | %d reçus, %d ajoutés, %d refusés",
+            scanRate.parSeconde(), scanRate.getPic(), scansReceived + scansRefused.get(),
+            scansAdded, scansRejected + scansRefused.get()));
+    }
+
+    /**
+     * Non-blocking feedback line under the quick-add field; consecutive
+     * messages replace each other and the line clears itself after a while.
+     */
+    private void showStatus(String message, boolean error) {
+        scanStatusLabel.setText(message);
+        scanStatusLabel.setStyle(error
+            ? "-fx-text-fill: #e53e3e; -fx-font-weight: bold;"
+            : "-fx-text-fill: #27ae60; -fx-font-weight: bold;");
+        statusFade.playFromStart();
     }
 
     public void addProductToCart(ArticleEpicerie article, int quantity) {
-        // Check if product is already in cart
-        for (CartItem cartItem : cartItems) {
-            if (cartItem.getProductId().equals(article.getId())) {
-                // Update quantity if product exists
-                int newQuantity = cartItem.getQuantity() + quantity;
-                if (newQuantity > article.getQuantiteStock()) {
-                    showError("Stock insuffisant! Stock disponible: " + article.getQuantiteStock());
-                    return;
-                }
-                cartItem.setQuantity(newQuantity);
-                updateCartInPanier();
-                updateCartDisplay();
-                showSuccess("Quantité mise à jour: " + article.getNom());
-                return;
-            }
+        if (checkoutPending) return;
+        ServiceVentes.Controle controle = serviceVentes.controlerAjout(panierCaisse, article, quantity);
+        if (!controle.estAccepte()) {
+            showError(controle.getErreur());
+            return;
         }
+        applyToCart(controle);
+    }
 
-        // Add new product to cart
-        panierVente.ajouterArticle(article, quantity);
-        
-        CartItem newItem = new CartItem(
-            article.getId(),
-            article.getNom(),
-            quantity,
-            article.getPrix(),
-            article.getPrix() * quantity
-        );
-        
-        cartItems.add(newItem);
+    private void applyToCart(ServiceVentes.Controle controle) {
+        ArticleEpicerie article = controle.getArticle();
+        int quantity = controle.getQuantite() - panierCaisse.getQuantite(article.getId());
+        boolean alreadyInCart = panierCaisse.getLigne(article.getId()) != null;
+
+        panierCaisse.modifierQuantite(article, controle.getQuantite());
         updateCartDisplay();
-        showSuccess(quantity + " x " + article.getNom() + " ajouté(s) au panier!");
+        if (alreadyInCart) {
+            showStatus("Quantité mise à jour: " + article.getNom(), false);
+        } else {
+            showStatus(quantity + " x " + article.getNom() + " ajouté(s) au panier", false);
+        }
     }
 
     public void removeFromCart(String productId) {
-        cartItems.removeIf(item -> item.getProductId().equals(productId));
-        panierVente.supprimerArticle(productId);
+        panierCaisse.retirer(productId);
         updateCartDisplay();
-        showSuccess("Produit retiré du panier");
-    }
-
-    private void updateCartInPanier() {
-        panierVente.vider();
-        for (CartItem item : cartItems) {
-            ArticleEpicerie article = inventaire.getArticle(item.getProductId());
-            if (article != null) {
-                panierVente.ajouterArticle(article, item.getQuantity());
-            }
-        }
+        showStatus("Produit retiré du panier", false);
     }
 
     private void updateCartDisplay() {
-        double sousTotal = panierVente.getTotal();
-        double tva = sousTotal * 0.20;
-        double totalAvecTVA = sousTotal + tva;
-
-        subtotalLabel.setText(String.format("%.2f€", sousTotal));
-        taxLabel.setText(String.format("%.2f€", tva));
-        totalLabel.setText(String.format("%.2f€", totalAvecTVA));
-        cartItemsCountLabel.setText(String.valueOf(cartItems.size()));
+        subtotalLabel.setText(String.format("%.2f€", panierCaisse.getSousTotal()));
+        taxLabel.setText(String.format("%.2f€", panierCaisse.getTva()));
+        totalLabel.setText(String.format("%.2f€", panierCaisse.getTotal()));
+        cartItemsCountLabel.setText(String.valueOf(panierCaisse.getNombreLignes()));
 
         updateSaleSummary();
     }
 
     private void updateSaleSummary() {
         int availableProducts = filteredProducts != null ? filteredProducts.size() : 0;
-        int cartItemsCount = cartItems.size();
+        int cartItemsCount = panierCaisse.getNombreLignes();
         
         saleSummaryLabel.setText(cartItemsCount + " article(s) dans le panier | " + availableProducts + " produit(s) disponible(s)");
     }
 
     public void showModifyCartDialog() {
-        if (cartItems.isEmpty()) {
+        if (panierCaisse.estVide()) {
             showError("Le panier est vide!");
             return;
         }
@@ -426,10 +656,7 @@ public class SalesController implements Initializable {
         dialog.setContentText("ID Produit:");
 
         dialog.showAndWait().ifPresent(productId -> {
-            CartItem cartItem = cartItems.stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .orElse(null);
+            CartItem cartItem = panierCaisse.getLigne(productId);
 
             if (cartItem == null) {
                 showError("Produit non trouvé dans le panier!");
@@ -450,13 +677,13 @@ public class SalesController implements Initializable {
             quantityDialog.showAndWait().ifPresent(quantityStr -> {
                 try {
                     int newQuantity = Integer.parseInt(quantityStr);
+                    ServiceVentes.Controle controle = serviceVentes.controlerQuantite(panierCaisse, article, newQuantity);
                     if (newQuantity <= 0) {
                         removeFromCart(productId);
-                    } else if (newQuantity > article.getQuantiteStock()) {
-                        showError("Stock insuffisant! Stock disponible: " + article.getQuantiteStock());
+                    } else if (!controle.estAccepte()) {
+                        showError(controle.getErreur());
                     } else {
-                        cartItem.setQuantity(newQuantity);
-                        updateCartInPanier();
+                        panierCaisse.modifierQuantite(article, newQuantity);
                         updateCartDisplay();
                         showSuccess("Quantité modifiée pour: " + cartItem.getProductName());
                     }
@@ -468,7 +695,7 @@ public class SalesController implements Initializable {
     }
 
     public void clearCart() {
-        if (cartItems.isEmpty()) {
+        if (panierCaisse.estVide()) {
             showError("Le panier est déjà vide!");
             return;
         }
@@ -479,46 +706,39 @@ public class SalesController implements Initializable {
         confirmation.setContentText("Êtes-vous sûr de vouloir vider tout le panier?");
 
         if (confirmation.showAndWait().get() == ButtonType.OK) {
-            cartItems.clear();
-            panierVente.vider();
+            panierCaisse.vider();
             updateCartDisplay();
             showSuccess("Panier vidé");
         }
     }
 
     public void finalizeSale() {
-        if (panierVente.estVide()) {
+        if (checkoutPending) return;
+        if (panierCaisse.estVide()) {
             showError("Le panier est vide. Ajoutez des produits avant de finaliser la vente.");
             return;
         }
 
+        // The cart is locked from the summary to the end of the checkout, so the sale is
+        // exactly what the cashier confirmed; scans meanwhile wait for the next cart
+        setCheckoutPending(true);
+
         // Check stock availability
-        boolean stockInsuffisant = false;
-        StringBuilder messageErreur = new StringBuilder();
-
-        for (LignePanier ligne : panierVente.getLignes()) {
-            ArticleEpicerie article = inventaire.getArticle(ligne.getArticle().getId());
-            if (article == null || !article.estDisponible(ligne.getQuantite())) {
-                stockInsuffisant = true;
-                if (article != null) {
-                    messageErreur.append("✗ ").append(article.getNom())
-                                 .append(": Stock insuffisant (disponible: ")
-                                 .append(article.getQuantiteStock()).append(")\n");
-                } else {
-                    messageErreur.append("✗ Article introuvable dans l'inventaire\n");
-                }
+        List<StockInsuffisantException.Manque> shortages = serviceVentes.verifierStock(panierCaisse);
+        if (!shortages.isEmpty()) {
+            StringBuilder messageErreur = new StringBuilder();
+            for (StockInsuffisantException.Manque manque : shortages) {
+                messageErreur.append(manque).append("\n");
             }
-        }
-
-        if (stockInsuffisant) {
+            setCheckoutPending(false);
             showError("Impossible de finaliser la vente:\n" + messageErreur.toString());
             return;
         }
 
         // Show confirmation with summary
-        double sousTotal = panierVente.getTotal();
-        double tva = sousTotal * 0.20;
-        double totalAvecTVA = sousTotal + tva;
+        double sousTotal = panierCaisse.getSousTotal();
+        double tva = panierCaisse.getTva();
+        double totalAvecTVA = panierCaisse.getTotal();
 
         String confirmationMessage = String.format(
             "RÉCAPITULATIF DE LA VENTE:\n\n" +
@@ -527,7 +747,7 @@ public class SalesController implements Initializable {
             "TVA (20%%): %.2f€\n" +
             "TOTAL À PAYER: %.2f€\n\n" +
             "Confirmer et finaliser la vente?",
-            cartItems.size(), sousTotal, tva, totalAvecTVA
+            panierCaisse.getNombreLignes(), sousTotal, tva, totalAvecTVA
         );
 
         Alert confirmation = new Alert(Alert.AlertType.CONFIRMATION);
@@ -536,25 +756,59 @@ public class SalesController implements Initializable {
         confirmation.setContentText(confirmationMessage);
 
         if (confirmation.showAndWait().get() == ButtonType.OK) {
-            Vente vente = caisse.enregistrerVente(panierVente, inventaire);
-            
-            if (vente == null) {
-                showError("Erreur lors de l'enregistrement de la vente!");
-                return;
-            }
+            // The journal write happens off the FX thread on a copy of the basket
+            serviceVentes.encaisser(panierCaisse).whenComplete((vente, error) ->
+                Platform.runLater(() -> completeSale(vente, error)));
+        } else {
+            setCheckoutPending(false);
+        }
+    }
 
-            showSuccess("Vente finalisée avec succès!\n\n" + vente.genererFacture());
-            
-            // Clear cart and refresh available products
-            cartItems.clear();
-            panierVente.vider();
+    private void setCheckoutPending(boolean pending) {
+        checkoutPending = pending;
+        finalizeSaleButton.setDisable(pending);
+        clearCartButton.setDisable(pending);
+        modifyCartButton.setDisable(pending);
+        cancelSaleButton.setDisable(pending);
+        addToCartButton.setDisable(pending);
+        availableProductsTable.setDisable(pending);
+        cartTable.setDisable(pending);
+        if (!pending && !scanQueue.isEmpty()) {
+            drainScans();
+        }
+    }
+
+    private void completeSale(Vente vente, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null && vente != null) {
+            // Cleared before unlocking, so the scans held during the checkout start the next cart
+            // Stock changes reach the product list through the event stream
+            panierCaisse.vider();
             updateCartDisplay();
+        }
+        setCheckoutPending(false);
+        // Another register may have sold the same articles while the dialog was open
+        if (cause instanceof StockInsuffisantException) {
+            showError("Impossible de finaliser la vente:\n" + cause.getMessage());
+            return;
+        }
+        if (cause != null) {
+            cause.printStackTrace();
+        }
+        if (vente == null) {
+            showError("Erreur lors de l'enregistrement de la vente!");
+            return;
+        }
+
+        showSuccess("Vente finalisée avec succès!\n\n" + vente.genererFacture());
+
+        if (storeSubscription == null) {
             loadAvailableProducts();
         }
     }
 
     public void cancelSale() {
-        if (!cartItems.isEmpty()) {
+        if (!panierCaisse.estVide()) {
             Alert confirmation = new Alert(Alert.AlertType.CONFIRMATION);
             confirmation.setTitle("Confirmation");
             confirmation.setHeaderText("Annuler la vente");
@@ -565,6 +819,7 @@ public class SalesController implements Initializable {
             }
         }
 
+        dispose();
         Stage stage = (Stage) cancelSaleButton.getScene().getWindow();
         stage.close();
     }
@@ -573,29 +828,33 @@ public class SalesController implements Initializable {
     public static class CartItem {
         private final String productId;
         private final String productName;
-        private int quantity;
+        private final IntegerProperty quantity;
         private final double unitPrice;
-        private double totalPrice;
+        private final DoubleProperty totalPrice;
 
         public CartItem(String productId, String productName, int quantity, double unitPrice, double totalPrice) {
             this.productId = productId;
             this.productName = productName;
-            this.quantity = quantity;
+            this.quantity = new SimpleIntegerProperty(quantity);
             this.unitPrice = unitPrice;
-            this.totalPrice = totalPrice;
+            this.totalPrice = new SimpleDoubleProperty(totalPrice);
         }
 
         // Getters
         public String getProductId() { return productId; }
         public String getProductName() { return productName; }
-        public int getQuantity() { return quantity; }
+        public int getQuantity() { return quantity.get(); }
         public double getUnitPrice() { return unitPrice; }
-        public double getTotalPrice() { return totalPrice; }
+        public double getTotalPrice() { return totalPrice.get(); }
+
+        // Observed by the cart table, so a quantity change only redraws its row
+        public IntegerProperty quantityProperty() { return quantity; }
+        public DoubleProperty totalPriceProperty() { return totalPrice; }
 
         // Setters
         public void setQuantity(int quantity) {
-            this.quantity = quantity;
-            this.totalPrice = this.unitPrice * quantity;
+            this.quantity.set(quantity);
+            this.totalPrice.set(this.unitPrice * quantity);
         }
     }
 
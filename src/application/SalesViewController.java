@@ -1,5 +1,6 @@
 package application;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
@@ -49,32 +50,80 @@ public class SalesViewController implements Initializable {
     private ObservableList<Vente> allSales;
     private ObservableList<Vente> filteredSales;
     private ObservableList<TopProduct> topProducts;
+    private FluxEvenements.Abonnement storeSubscription;
+    private SuiviExport exportTracker;
+    // Totals and best sellers of the range, computed off the FX thread
+    private ServiceRapports reportService;
+    private long statisticsGeneration;
+    // Recomputes requested during the same pulse run once
+    private boolean refreshScheduled;
+    private boolean rangeChanged;
+    private ClassementArticles.Classement topProductsRanking;
+
+    private static final int TOP_PRODUCTS = 10;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupTableColumns();
         setupDateFilters();
+        exportTracker = new SuiviExport(exportButton, null, null);
     }
 
     public void setCaisse(Caisse caisse) {
         this.caisse = caisse;
+        reportService = new ServiceRapports(null, caisse);
         loadSalesData();
+
+        dispose();
+        if (caisse instanceof CaisseJournalisee caisseJournalisee) {
+            storeSubscription = caisseJournalisee.getFluxEvenements().abonner(this::applyStoreEvents);
+        }
+    }
+
+    /**
+     * Stops the live updates; called when the window is closed.
+     */
+    public void dispose() {
+        if (storeSubscription != null) {
+            storeSubscription.close();
+            storeSubscription = null;
+        }
+        if (exportTracker != null) {
+            exportTracker.annuler();
+        }
+    }
+
+    /**
+     * Adds the sales recorded since the window opened, once per batch.
+     */
+    private void applyStoreEvents(List<EvenementMagasin> events) {
+        if (allSales == null) return;
+
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
+        List<Vente> added = new ArrayList<>();
+        List<Vente> shown = new ArrayList<>();
+        for (EvenementMagasin event : events) {
+            if (event.getType() != EvenementMagasin.Type.VENTE_ENREGISTREE) continue;
+            Vente vente = event.getVente();
+            added.add(vente);
+            if (startDate != null && endDate != null
+                    && !vente.getDate().isBefore(startDate) && !vente.getDate().isAfter(endDate)) {
+                shown.add(vente);
+            }
+        }
+        if (added.isEmpty()) return;
+
+        allSales.addAll(added);
+        if (!shown.isEmpty()) {
+            filteredSales.addAll(shown);
+            requestRefresh(false);
+        }
     }
 
     private void setupTableColumns() {
         // Format sales table columns
-        saleTotalColumn.setCellFactory(column -> new TableCell<Vente, Double>() {
-            @Override
-            protected void updateItem(Double total, boolean empty) {
-                super.updateItem(total, empty);
-                if (empty || total == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", total));
-                    setStyle("-fx-font-weight: bold; -fx-text-fill: #27ae60;");
-                }
-            }
-        });
+        saleTotalColumn.setCellFactory(CellulesTableau.montants(CellulesTableau.STYLE_MONTANT_FORT));
 
         saleDetailsColumn.setCellFactory(column -> new TableCell<Vente, String>() {
             private final Button detailsButton = new Button("📋 Détails");
@@ -101,31 +150,9 @@ public class SalesViewController implements Initializable {
         });
 
         // Format top products table
-        revenueColumn.setCellFactory(column -> new TableCell<TopProduct, Double>() {
-            @Override
-            protected void updateItem(Double revenue, boolean empty) {
-                super.updateItem(revenue, empty);
-                if (empty || revenue == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f€", revenue));
-                    setStyle("-fx-font-weight: bold; -fx-text-fill: #27ae60;");
-                }
-            }
-        });
+        revenueColumn.setCellFactory(CellulesTableau.montants(CellulesTableau.STYLE_MONTANT_FORT));
 
-        quantitySoldColumn.setCellFactory(column -> new TableCell<TopProduct, Integer>() {
-            @Override
-            protected void updateItem(Integer quantity, boolean empty) {
-                super.updateItem(quantity, empty);
-                if (empty || quantity == null) {
-                    setText(null);
-                } else {
-                    setText(quantity.toString());
-                    setStyle("-fx-font-weight: bold; -fx-text-fill: #3182ce;");
-                }
-            }
-        });
+        quantitySoldColumn.setCellFactory(CellulesTableau.entiers(CellulesTableau.STYLE_QUANTITE_FORTE));
     }
 
     private void setupDateFilters() {
@@ -136,9 +163,9 @@ public class SalesViewController implements Initializable {
         applyDateFilterButton.setOnAction(e -> applyDateFilter());
         todayButton.setOnAction(e -> setTodayFilter());
 
-        // Auto-apply filter when dates change
-        startDatePicker.valueProperty().addListener((obs, oldVal, newVal) -> applyDateFilter());
-        endDatePicker.valueProperty().addListener((obs, oldVal, newVal) -> applyDateFilter());
+        // Auto-apply filter when dates change; both pickers changing together apply once
+        startDatePicker.valueProperty().addListener((obs, oldVal, newVal) -> requestRefresh(true));
+        endDatePicker.valueProperty().addListener((obs, oldVal, newVal) -> requestRefresh(true));
     }
 
     private void loadSalesData() {
@@ -150,9 +177,8 @@ public class SalesViewController implements Initializable {
         filteredSales = FXCollections.observableArrayList(allSales);
         
         salesTable.setItems(filteredSales);
-        calculateTopProducts();
-        updateStatistics();
-        updateSummary();
+        // The list is narrowed to the selected range once the statistics are in
+        refreshStatistics(true);
     }
     @FXML
     private void applyDateFilter() {
@@ -160,81 +186,89 @@ public class SalesViewController implements Initializable {
             return;
         }
 
-        filteredSales.clear();
-        LocalDate startDate = startDatePicker.getValue();
-        LocalDate endDate = endDatePicker.getValue();
-
-        for (Vente vente : allSales) {
-            LocalDate saleDate = vente.getDate();  // Assuming getDate() returns LocalDate
-
-            // No parsing needed!
-            if (!saleDate.isBefore(startDate) && !saleDate.isAfter(endDate)) {
-                filteredSales.add(vente);
-            }
-        }
-
-        calculateTopProducts();
-        updateStatistics();
-        updateSummary();
+        refreshStatistics(true);
     }
     @FXML
     private void setTodayFilter() {
         startDatePicker.setValue(LocalDate.now());
         endDatePicker.setValue(LocalDate.now());
-        applyDateFilter();
+        requestRefresh(true);
     }
 
-    private void calculateTopProducts() {
-        if (filteredSales == null) return;
-
-        Map<String, TopProduct> productSales = new HashMap<>();
-
-        for (Vente vente : filteredSales) {
-            for (LigneVente ligne : vente.getArticles()) {
-                String productName = ligne.getArticle().getNom();
-                int quantity = ligne.getQuantite();
-                double revenue = ligne.getArticle().getPrix() * quantity;
-
-                TopProduct topProduct = productSales.getOrDefault(productName, 
-                    new TopProduct(productName, 0, 0.0));
-                
-                topProduct.setQuantiteVendue(topProduct.getQuantiteVendue() + quantity);
-                topProduct.setChiffreAffaires(topProduct.getChiffreAffaires() + revenue);
-                
-                productSales.put(productName, topProduct);
+    /**
+     * Schedules one recompute for the end of the pulse, however many times it
+     * is requested before then. {@code reloadRange} also reloads the sales list.
+     */
+    private void requestRefresh(boolean reloadRange) {
+        rangeChanged |= reloadRange;
+        if (refreshScheduled) return;
+        refreshScheduled = true;
+        Platform.runLater(() -> {
+            refreshScheduled = false;
+            boolean reload = rangeChanged;
+            rangeChanged = false;
+            if (reload) {
+                applyDateFilter();
+            } else {
+                refreshStatistics(false);
             }
-        }
-
-        // Convert to list and sort by revenue descending
-        List<TopProduct> topProductsList = new ArrayList<>(productSales.values());
-        topProductsList.sort((p1, p2) -> Double.compare(p2.getChiffreAffaires(), p1.getChiffreAffaires()));
-
-        // Take top 10 products
-        topProducts = FXCollections.observableArrayList(
-            topProductsList.subList(0, Math.min(topProductsList.size(), 10))
-        );
-        
-        topProductsTable.setItems(topProducts);
+        });
     }
 
-    private void updateStatistics() {
-        if (filteredSales == null) return;
-
-        double totalSales = 0;
-        int transactionCount = filteredSales.size();
-        int totalItemsSold = 0;
+    /**
+     * Recomputes the statistics of the selected range off the FX thread.
+     * {@code reloadList} also replaces the sales list by the range's sales.
+     */
+    private void refreshStatistics(boolean reloadList) {
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
+        if (reportService == null || filteredSales == null || startDate == null || endDate == null) return;
+
+        // Only the latest request is shown
+        long generation = ++statisticsGeneration;
+        reportService.statistiquesVentes(startDate, endDate, TOP_PRODUCTS).whenComplete((statistics, error) ->
+            Platform.runLater(() -> {
+                if (generation != statisticsGeneration) return;
+                if (error != null) {
+                    showError("Erreur lors du calcul des statistiques : " + error.getMessage());
+                    error.printStackTrace();
+                    return;
+                }
+                if (reloadList) {
+                    filteredSales.setAll(statistics.getVentes());
+                }
+                showTopProducts(statistics.getClassement());
+                updateStatistics(statistics);
+                updateSummary();
+            }));
+    }
 
-        for (Vente vente : filteredSales) {
-            totalSales += vente.getTotal();
-            totalItemsSold += vente.getArticles().size();
+    private void showTopProducts(ClassementArticles.Classement ranking) {
+        List<TopProduct> topProductsList = new ArrayList<>(ranking.getArticles().size());
+        for (IndexVentesParJour.CumulArticle cumul : ranking.getArticles()) {
+            topProductsList.add(new TopProduct(cumul.getNom(), cumul.getQuantite(), cumul.getChiffreAffaires()));
         }
+        topProductsRanking = ranking;
+        topProducts = FXCollections.observableArrayList(topProductsList);
+        topProductsTable.setItems(topProducts);
 
-        double averageSale = transactionCount > 0 ? totalSales / transactionCount : 0;
+        if (ranking.isApproche()) {
+            topProductsTable.setTooltip(new Tooltip(String.format(
+                "Classement estimé sur une longue période :\n"
+                    + "chiffre d'affaires surestimé d'au plus %.2f€,\n"
+                    + "quantités surestimées d'au plus %d (probabilité %.0f%%)",
+                ranking.getErreurChiffreAffaires(), ranking.getErreurQuantite(),
+                ranking.getConfianceQuantite() * 100)));
+        } else {
+            topProductsTable.setTooltip(null);
+        }
+    }
 
-        totalSalesLabel.setText(String.format("%.2f€", totalSales));
-        transactionCountLabel.setText(String.valueOf(transactionCount));
-        averageSaleLabel.setText(String.format("%.2f€", averageSale));
-        totalItemsSoldLabel.setText(String.valueOf(totalItemsSold));
+    private void updateStatistics(ServiceRapports.StatistiquesVentes statistics) {
+        totalSalesLabel.setText(String.format("%.2f€", statistics.getChiffreAffaires()));
+        transactionCountLabel.setText(String.valueOf(statistics.getNombreVentes()));
+        averageSaleLabel.setText(String.format("%.2f€", statistics.getPanierMoyen()));
+        totalItemsSoldLabel.setText(String.valueOf(statistics.getNombreLignes()));
     }
 
     private void updateSummary() {
@@ -251,6 +285,9 @@ public class SalesViewController implements Initializable {
                 startDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) + " au " +
                 endDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
         }
+        if (topProductsRanking != null && topProductsRanking.isApproche()) {
+            summaryLabel.setText(summaryLabel.getText() + " (meilleurs produits estimés)");
+        }
     }
     //bouton details
     private void showSaleDetails(Vente vente) {
@@ -264,7 +301,7 @@ public class SalesViewController implements Initializable {
             details.append(String.format("- %s x%d: %.2f€\n", 
                 ligne.getArticle().getNom(), 
                 ligne.getQuantite(), 
-                ligne.getArticle().getPrix() * ligne.getQuantite()));
+                VenteRejouee.montantCentimes(vente, ligne) / 100.0));
         }
         
         details.append("\nSOUS-TOTAL: ").append(String.format("%.2f€", vente.getTotal())).append("\n");
@@ -281,7 +318,31 @@ public class SalesViewController implements Initializable {
 
     @FXML
     private void handleExportButton() {
-        showInformation("Export", "Fonctionnalité d'export des ventes à implémenter");
+        if (exportTracker.isEnCours()) {
+            exportTracker.annuler();
+            return;
+        }
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
+        if (caisse == null || startDate == null || endDate == null || filteredSales == null || filteredSales.isEmpty()) {
+            showInformation("Export", "Aucune vente à exporter sur la période");
+            return;
+        }
+        SuiviExport.Destination destination = exportTracker.choisirDestination("Exporter les ventes", "ventes");
+        if (destination == null) return;
+
+        // The sales of the selected range, streamed from the day index when there is one
+        IndexVentesParJour salesIndex = reportService.getIndexVentes();
+        List<Vente> ventes = salesIndex != null ? null : new ArrayList<>(allSales);
+        exportTracker.lancer(
+            ExportRapport.ventes(destination.getFichier(), destination.getFormat(), salesIndex, ventes, startDate, endDate),
+            done -> showSuccess(done.getValue() + " vente(s) exportée(s) vers\n" + done.getFichier().toAbsolutePath()),
+            error -> {
+                showError("Erreur lors de l'exportation : " + (error != null ? error.getMessage() : ""));
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            });
     }
 
     @FXML
@@ -297,6 +358,7 @@ public class SalesViewController implements Initializable {
 
     @FXML
     private void handleBackButton() {
+        dispose();
         Stage stage = (Stage) backButton.getScene().getWindow();
         stage.close();
     }
@@ -309,6 +371,14 @@ public class SalesViewController implements Initializable {
         alert.showAndWait();
     }
 
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Erreur");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
     private void showSuccess(String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Succès");
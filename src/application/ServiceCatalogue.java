@@ -0,0 +1,277 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Inventaire;
+
+/**
+ * Catalog queries of the sales and inventory windows, without any UI.
+ *
+ * The methods may be called from any thread. An indexed inventory is queried
+ * through its indexes, which are synchronized; otherwise the articles are
+ * scanned from {@code catalogue}, a copy the caller takes on the thread that
+ * owns the inventory. Returned lists are unmodifiable. A null category or
+ * stock state matches every article.
+ */
+public class ServiceCatalogue {
+
+    // Search-as-you-type: queries run one at a time, a newer one cancels the previous
+    private static final ExecutorService RECHERCHES = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "recherche-produits");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Figures of the inventory view for the filtered articles.
+     */
+    public static class Statistiques {
+        private final int nombreArticles;
+        private final double valeur;
+        private final int nombreStockFaible;
+        private final int nombreRuptures;
+
+        Statistiques(int nombreArticles, double valeur, int nombreStockFaible, int nombreRuptures) {
+            this.nombreArticles = nombreArticles;
+            this.valeur = valeur;
+            this.nombreStockFaible = nombreStockFaible;
+            this.nombreRuptures = nombreRuptures;
+        }
+
+        public int getNombreArticles() { return nombreArticles; }
+        public double getValeur() { return valeur; }
+        public int getNombreStockFaible() { return nombreStockFaible; }
+        public int getNombreRuptures() { return nombreRuptures; }
+    }
+
+    /**
+     * Filtered articles with their statistics, computed together.
+     */
+    public static class Filtrage {
+        private final List<ArticleEpicerie> articles;
+        private final Statistiques statistiques;
+
+        Filtrage(List<ArticleEpicerie> articles, Statistiques statistiques) {
+            this.articles = articles;
+            this.statistiques = statistiques;
+        }
+
+        public List<ArticleEpicerie> getArticles() { return articles; }
+        public Statistiques getStatistiques() { return statistiques; }
+    }
+
+    private final Inventaire inventaire;
+
+    public ServiceCatalogue(Inventaire inventaire) {
+        this.inventaire = inventaire;
+    }
+
+    /**
+     * Whether queries are answered from the indexes; {@code catalogue} is then
+     * only read by a search for an empty term and may otherwise be null.
+     */
+    public boolean estIndexe() {
+        return inventaire instanceof InventaireIndexe;
+    }
+
+    /**
+     * Stock state against the article's own reorder point when the inventory has them.
+     */
+    public IndexFiltres.EtatStock etatStock(ArticleEpicerie article, int quantite) {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            return inventaireIndexe.getPointsCommande().etat(article.getId(), quantite);
+        }
+        return IndexFiltres.EtatStock.de(quantite);
+    }
+
+    /**
+     * Categories in order of first appearance.
+     */
+    public List<String> categories(Collection<ArticleEpicerie> catalogue) {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            return Collections.unmodifiableList(new ArrayList<>(inventaireIndexe.getCategories()));
+        }
+        Set<String> categories = new LinkedHashSet<>();
+        for (ArticleEpicerie article : catalogue) {
+            categories.add(article.getCategorie());
+        }
+        return Collections.unmodifiableList(new ArrayList<>(categories));
+    }
+
+    /**
+     * Whether a newer search for {@code terme} only needs to filter the results
+     * of {@code termePrecedent}: every match of the former matches the latter.
+     */
+    public static boolean peutAffiner(String terme, String termePrecedent) {
+        return termePrecedent != null && !termePrecedent.isEmpty()
+            && new String(IndexTrigrammes.replier(terme)).contains(new String(IndexTrigrammes.replier(termePrecedent)));
+    }
+
+    /**
+     * Articles in stock whose name or id contains {@code terme}, ignoring case
+     * and accents. {@code precedents}, when given, are the results of a search
+     * this one narrows (see {@link #peutAffiner}); only they are checked.
+     *
+     * @throws CancellationException if the thread is interrupted meanwhile
+     */
+    public List<ArticleEpicerie> rechercherEnStock(String terme, String categorie, List<ArticleEpicerie> catalogue,
+                                                   List<ArticleEpicerie> precedents) {
+        List<ArticleEpicerie> candidats;
+        char[] termeReplie = null;
+        if (precedents != null) {
+            candidats = precedents;
+            termeReplie = IndexTrigrammes.replier(terme);
+        } else if (terme.isEmpty()) {
+            candidats = catalogue;
+        } else if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            // The trigram index already narrows the candidates to name/id matches
+            candidats = inventaireIndexe.rechercher(terme);
+        } else {
+            candidats = inventaire.rechercherParNom(terme);
+        }
+
+        List<ArticleEpicerie> resultats = new ArrayList<>();
+        for (int i = 0; i < candidats.size(); i++) {
+            if ((i & 1023) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            ArticleEpicerie article = candidats.get(i);
+            boolean correspond = termeReplie == null
+                || IndexTrigrammes.contient(article.getNom(), termeReplie)
+                || IndexTrigrammes.contient(article.getId(), termeReplie);
+            if (correspond && (categorie == null || article.getCategorie().equals(categorie))
+                    && article.getQuantiteStock() > 0) {
+                resultats.add(article);
+            }
+        }
+        return Collections.unmodifiableList(resultats);
+    }
+
+    /**
+     * Runs {@link #rechercherEnStock} on the search thread and hands the results
+     * to {@code resultat} there. Cancelling the returned future with
+     * interruption stops the scan early; {@code resultat} is then not called.
+     */
+    public Future<?> rechercherEnStockAsync(String terme, String categorie, List<ArticleEpicerie> catalogue,
+                                           List<ArticleEpicerie> precedents, Consumer<List<ArticleEpicerie>> resultat) {
+        return RECHERCHES.submit(() -> {
+            try {
+                resultat.accept(rechercherEnStock(terme, categorie, catalogue, precedents));
+            } catch (CancellationException e) {
+                // A newer search replaced this one
+            }
+        });
+    }
+
+    /**
+     * Whether an article in stock belongs to the results of a search for
+     * {@code terme} in {@code categorie}.
+     */
+    public boolean correspondRecherche(ArticleEpicerie article, String terme, String categorie) {
+        if (article.getQuantiteStock() <= 0) return false;
+        if (categorie != null && !article.getCategorie().equals(categorie)) return false;
+        if (terme == null || terme.isEmpty()) return true;
+
+        char[] termeReplie = IndexTrigrammes.replier(terme);
+        return IndexTrigrammes.contient(article.getNom(), termeReplie) || IndexTrigrammes.contient(article.getId(), termeReplie);
+    }
+
+    /**
+     * Whether the article, with {@code quantite} in stock, passes the inventory view filters.
+     */
+    public boolean correspondFiltres(ArticleEpicerie article, int quantite, String categorie, IndexFiltres.EtatStock etat) {
+        if (categorie != null && !article.getCategorie().equals(categorie)) return false;
+        return etat == null || etat == etatStock(article, quantite);
+    }
+
+    /**
+     * Articles in {@code categorie} and stock state {@code etat}.
+     */
+    public List<ArticleEpicerie> filtrer(String categorie, IndexFiltres.EtatStock etat, Collection<ArticleEpicerie> catalogue) {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            // Category and stock filters are a single bitmap AND
+            return Collections.unmodifiableList(new ArrayList<>(inventaireIndexe.filtrer(categorie, etat)));
+        }
+        List<ArticleEpicerie> articles = new ArrayList<>();
+        for (ArticleEpicerie article : catalogue) {
+            if (correspondFiltres(article, article.getQuantiteStock(), categorie, etat)) {
+                articles.add(article);
+            }
+        }
+        return Collections.unmodifiableList(articles);
+    }
+
+    /**
+     * Statistics of {@code articles}, the result of filtering on {@code categorie} and {@code etat}.
+     */
+    public Statistiques statistiques(Collection<ArticleEpicerie> articles, String categorie, IndexFiltres.EtatStock etat) {
+        long valeurCentimes = 0;
+        for (ArticleEpicerie article : articles) {
+            valeurCentimes += Math.round(article.getPrix() * 100) * article.getQuantiteStock();
+        }
+
+        if (inventaire instanceof InventaireIndexe) {
+            return statistiques(articles.size(), valeurCentimes, categorie, etat);
+        }
+        int nombreStockFaible = 0;
+        int nombreRuptures = 0;
+        for (ArticleEpicerie article : articles) {
+            IndexFiltres.EtatStock etatArticle = etatStock(article, article.getQuantiteStock());
+            if (etatArticle == IndexFiltres.EtatStock.RUPTURE) {
+                nombreRuptures++;
+            } else if (etatArticle == IndexFiltres.EtatStock.FAIBLE) {
+                nombreStockFaible++;
+            }
+        }
+        return new Statistiques(articles.size(), valeurCentimes / 100.0, nombreStockFaible, nombreRuptures);
+    }
+
+    /**
+     * Statistics of a filtered list whose size and value are already known, e.g.
+     * kept up to date from stock moves. The counts are read from the at-risk and
+     * out-of-stock bitmaps of the category, so this needs an indexed inventory.
+     */
+    public Statistiques statistiques(int nombreArticles, long valeurCentimes, String categorie, IndexFiltres.EtatStock etat) {
+        InventaireIndexe inventaireIndexe = (InventaireIndexe) inventaire;
+        int nombreStockFaible = 0;
+        int nombreRuptures = 0;
+        if (etat == null || etat == IndexFiltres.EtatStock.FAIBLE) {
+            nombreStockFaible = inventaireIndexe.compter(categorie, IndexFiltres.EtatStock.FAIBLE);
+        }
+        if (etat == null || etat == IndexFiltres.EtatStock.RUPTURE) {
+            nombreRuptures = inventaireIndexe.compter(categorie, IndexFiltres.EtatStock.RUPTURE);
+        }
+        return new Statistiques(nombreArticles, valeurCentimes / 100.0, nombreStockFaible, nombreRuptures);
+    }
+
+    /**
+     * Computes the statistics of {@code articles} on the report pool.
+     */
+    public CompletableFuture<Statistiques> statistiquesAsync(Collection<ArticleEpicerie> articles, String categorie,
+                                                             IndexFiltres.EtatStock etat) {
+        return CalculRapports.commun().lancer(() -> statistiques(articles, categorie, etat));
+    }
+
+    /**
+     * Filters and computes the statistics on the report pool.
+     */
+    public CompletableFuture<Filtrage> filtrerAsync(String categorie, IndexFiltres.EtatStock etat,
+                                                    Collection<ArticleEpicerie> catalogue) {
+        return CalculRapports.commun().lancer(() -> {
+            List<ArticleEpicerie> articles = filtrer(categorie, etat, catalogue);
+            return new Filtrage(articles, statistiques(articles, categorie, etat));
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Caisse;
+import InventaireArticle.Inventaire;
+import InventaireArticle.Vente;
+
+/**
+ * Reports of the sales and report windows, without any UI.
+ *
+ * Methods are called on the thread that owns the inventory and the caisse:
+ * they copy what they need right away and compute on the report pool, so the
+ * returned futures complete on a pool thread. Reports served by an index
+ * (expiry, reorder points) are ready at once.
+ */
+public class ServiceRapports {
+
+    /**
+     * Sales of a date range with their totals and best sellers.
+     */
+    public static class StatistiquesVentes {
+        private final List<Vente> ventes;
+        private final double chiffreAffaires;
+        private final int nombreVentes;
+        private final long nombreLignes;
+        private final ClassementArticles.Classement classement;
+
+        StatistiquesVentes(List<Vente> ventes, double chiffreAffaires, int nombreVentes, long nombreLignes,
+                           ClassementArticles.Classement classement) {
+            this.ventes = Collections.unmodifiableList(ventes);
+            this.chiffreAffaires = chiffreAffaires;
+            this.nombreVentes = nombreVentes;
+            this.nombreLignes = nombreLignes;
+            this.classement = classement;
+        }
+
+        public List<Vente> getVentes() { return ventes; }
+        public double getChiffreAffaires() { return chiffreAffaires; }
+        public int getNombreVentes() { return nombreVentes; }
+        public long getNombreLignes() { return nombreLignes; }
+        /** Best sellers, or null when none were asked for. */
+        public ClassementArticles.Classement getClassement() { return classement; }
+
+        public double getPanierMoyen() {
+            return nombreVentes > 0 ? chiffreAffaires / nombreVentes : 0.0;
+        }
+    }
+
+    private final Inventaire inventaire;
+    private final Caisse caisse;
+    private final CalculRapports calcul;
+
+    public ServiceRapports(Inventaire inventaire, Caisse caisse) {
+        this(inventaire, caisse, CalculRapports.commun());
+    }
+
+    public ServiceRapports(Inventaire inventaire, Caisse caisse, CalculRapports calcul) {
+        this.inventaire = inventaire;
+        this.caisse = caisse;
+        this.calcul = calcul;
+    }
+
+    /**
+     * Per-day partitions of the caisse, or null when it does not keep them.
+     */
+    public IndexVentesParJour getIndexVentes() {
+        return caisse instanceof CaisseJournalisee caisseJournalisee ? caisseJournalisee.getIndexVentes() : null;
+    }
+
+    public boolean aucuneVente() {
+        IndexVentesParJour indexVentes = getIndexVentes();
+        return indexVentes != null ? indexVentes.estVide() : caisse == null || caisse.getVentesJournalieres().isEmpty();
+    }
+
+    /**
+     * Sales dated from {@code debut} to {@code fin} inclusive, with the
+     * {@code meilleurs} best sellers (none if 0). The day index answers from
+     * the days in range only; otherwise the caisse's sales are filtered and
+     * summed in parallel.
+     */
+    public CompletableFuture<StatistiquesVentes> statistiquesVentes(LocalDate debut, LocalDate fin, int meilleurs) {
+        IndexVentesParJour indexVentes = getIndexVentes();
+        if (indexVentes != null) {
+            return calcul.lancer(() -> {
+                // Prefix sums: independent of the number of sales
+                IndexVentesParJour.Totaux totaux = indexVentes.totauxEntre(debut, fin);
+                ClassementArticles.Classement classement = meilleurs > 0
+                    ? indexVentes.meilleursArticles(debut, fin, meilleurs) : null;
+                return new StatistiquesVentes(indexVentes.ventesEntre(debut, fin), totaux.getChiffreAffaires(),
+                    totaux.getNombreVentes(), totaux.getNombreLignes(), classement);
+            });
+        }
+
+        List<Vente> ventes = caisse != null ? new ArrayList<>(caisse.getVentesJournalieres()) : new ArrayList<>();
+        return calcul.lancer(() -> {
+            CalculRapports.RapportVentes rapport = calcul.rapportVentes(ventes, debut, fin);
+            ClassementArticles.Classement classement = meilleurs > 0
+                ? ClassementArticles.meilleurs(rapport.getCumulsArticles(), meilleurs) : null;
+            return new StatistiquesVentes(rapport.getVentes(), rapport.getChiffreAffaires(),
+                rapport.getNombreVentes(), rapport.getNombreLignes(), classement);
+        });
+    }
+
+    /**
+     * Totals of the range from the monthly archives, or from the day journals
+     * for the current month, which is not archived yet.
+     */
+    public CompletableFuture<IndexVentesParJour.Totaux> totauxArchives(LocalDate debut, LocalDate fin) {
+        return calcul.lancer(() -> {
+            try {
+                return ArchiveVentes.totauxEntre(ArchiveVentes.REPERTOIRE_PAR_DEFAUT, debut, fin);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public CompletableFuture<CalculRapports.RapportInventaire> rapportInventaire() {
+        List<ArticleEpicerie> articles = new ArrayList<>(inventaire.getArticles().values());
+        PointsCommande pointsCommande = inventaire instanceof InventaireIndexe inventaireIndexe
+            ? inventaireIndexe.getPointsCommande() : new PointsCommande();
+        return calcul.lancer(() -> calcul.rapportInventaire(articles, pointsCommande));
+    }
+
+    public CompletableFuture<CalculRapports.RapportPerimes> rapportPerimes() {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            // The expiry index holds the expired articles already: no pass over the catalog
+            return CompletableFuture.completedFuture(CalculRapports.rapportPerimes(inventaireIndexe.getIndexPeremption()));
+        }
+        List<ArticleEpicerie> articles = new ArrayList<>(inventaire.getArticles().values());
+        return calcul.lancer(() -> calcul.rapportPerimes(articles));
+    }
+
+    public CompletableFuture<CalculRapports.RapportStockFaible> rapportStockFaible() {
+        if (inventaire instanceof InventaireIndexe inventaireIndexe) {
+            // The at-risk and out-of-stock sets are maintained by the inventory
+            return CompletableFuture.completedFuture(CalculRapports.rapportStockFaible(inventaireIndexe));
+        }
+        List<ArticleEpicerie> articles = new ArrayList<>(inventaire.getArticles().values());
+        return calcul.lancer(() -> calcul.rapportStockFaible(articles));
+    }
+
+    /**
+     * The demand forecast, when the caisse keeps one and the inventory has reorder points.
+     */
+    public PrevisionDemande getPrevision() {
+        return caisse instanceof CaisseJournalisee caisseJournalisee && inventaire instanceof InventaireIndexe
+            ? caisseJournalisee.getPrevision() : null;
+    }
+
+    /**
+     * A freshly computed replenishment plan; see {@link PrevisionDemande#getPlan()}
+     * for the last one computed in the background.
+     */
+    public CompletableFuture<PrevisionDemande.Plan> planReapprovisionnement() {
+        PrevisionDemande prevision = getPrevision();
+        if (prevision == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        PointsCommande pointsCommande = ((InventaireIndexe) inventaire).getPointsCommande();
+        return calcul.lancer(() -> prevision.calculerPlan(pointsCommande));
+    }
+}
@@ -0,0 +1,175 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.Caisse;
+import InventaireArticle.Inventaire;
+import InventaireArticle.Panier;
+import InventaireArticle.Vente;
+
+/**
+ * Cart checks and checkout of the sales window, without any UI.
+ *
+ * The checks return a {@link Controle} the caller applies to its cart and
+ * shows as it likes; they read the cart, so they run on the thread that owns it.
+ * A {@link CaisseJournalisee} records sales from any thread, so the checkout
+ * (stock check, journal write) runs on a background thread; a plain
+ * {@link Caisse} is not thread-safe and records on the caller's thread.
+ */
+public class ServiceVentes {
+
+    // One checkout at a time: the journal writes in order anyway
+    private static final ExecutorService ENCAISSEMENTS = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "encaissement");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Outcome of a cart check: the article and the cart quantity to set, or
+     * the reason for refusing it.
+     */
+    public static class Controle {
+        private final ArticleEpicerie article;
+        private final int quantite;
+        private final String erreur;
+
+        private Controle(ArticleEpicerie article, int quantite, String erreur) {
+            this.article = article;
+            this.quantite = quantite;
+            this.erreur = erreur;
+        }
+
+        static Controle accepte(ArticleEpicerie article, int quantite) {
+            return new Controle(article, quantite, null);
+        }
+
+        static Controle refuse(ArticleEpicerie article, String erreur) {
+            return new Controle(article, 0, erreur);
+        }
+
+        public boolean estAccepte() { return erreur == null; }
+        public ArticleEpicerie getArticle() { return article; }
+        /** New quantity of the article's cart line. */
+        public int getQuantite() { return quantite; }
+        public String getErreur() { return erreur; }
+    }
+
+    private final Caisse caisse;
+    private final Inventaire inventaire;
+
+    public ServiceVentes(Caisse caisse, Inventaire inventaire) {
+        this.caisse = caisse;
+        this.inventaire = inventaire;
+    }
+
+    /**
+     * Checks the quick-add field: an article id and a typed quantity.
+     */
+    public Controle controlerAjout(PanierCaisse panier, String idArticle, String quantiteSaisie) {
+        if (idArticle.isEmpty()) {
+            return Controle.refuse(null, "Veuillez entrer un ID de produit!");
+        }
+
+        ArticleEpicerie article = inventaire.getArticle(idArticle);
+        if (article == null) {
+            return Controle.refuse(null, "Produit non trouvé!");
+        }
+        if (panier.getDisponible(article) <= 0) {
+            return Controle.refuse(article, "Ce produit n'est plus en stock!");
+        }
+
+        int quantite;
+        try {
+            quantite = Integer.parseInt(quantiteSaisie);
+        } catch (NumberFormatException e) {
+            return Controle.refuse(article, "Quantité invalide!");
+        }
+        if (quantite <= 0) {
+            return Controle.refuse(article, "Quantité invalide!");
+        }
+        return controlerAjout(panier, article, quantite);
+    }
+
+    /**
+     * Checks adding {@code quantite} of the article on top of what the cart holds.
+     */
+    public Controle controlerAjout(PanierCaisse panier, ArticleEpicerie article, int quantite) {
+        return controlerQuantite(panier, article, panier.getQuantite(article.getId()) + quantite);
+    }
+
+    /**
+     * Checks setting the article's cart line to {@code quantite}.
+     */
+    public Controle controlerQuantite(PanierCaisse panier, ArticleEpicerie article, int quantite) {
+        int disponible = panier.getDisponible(article);
+        if (quantite > disponible) {
+            return Controle.refuse(article, "Stock insuffisant! Stock disponible: " + disponible);
+        }
+        return Controle.accepte(article, quantite);
+    }
+
+    /**
+     * Checks one scanned code, which adds a single unit. The refusal reason is
+     * the short form shown in the scan feedback line.
+     */
+    public Controle controlerScan(PanierCaisse panier, String code) {
+        ArticleEpicerie article = inventaire.getArticle(code);
+        if (article == null) {
+            return Controle.refuse(null, code + " (inconnu)");
+        }
+        int quantite = panier.getQuantite(code) + 1;
+        if (quantite > panier.getDisponible(article)) {
+            return Controle.refuse(article, article.getNom() + " (stock)");
+        }
+        return Controle.accepte(article, quantite);
+    }
+
+    /**
+     * Lines of the cart the stock cannot serve right now, net of the holds of
+     * the other carts. The checkout checks again atomically; this is the early
+     * answer before confirming.
+     */
+    public List<StockInsuffisantException.Manque> verifierStock(PanierCaisse panierCaisse) {
+        List<StockInsuffisantException.Manque> manques = new ArrayList<>();
+        for (SalesController.CartItem ligne : panierCaisse.getLignes()) {
+            String idArticle = ligne.getProductId();
+            ArticleEpicerie article = inventaire.getArticle(idArticle);
+            if (article == null) {
+                manques.add(new StockInsuffisantException.Manque(idArticle, null, ligne.getQuantity(), 0));
+                continue;
+            }
+            // Other carts' holds count as taken, as they do when the sale is recorded
+            int disponible = panierCaisse.getDisponible(article);
+            if (disponible < ligne.getQuantity()) {
+                manques.add(new StockInsuffisantException.Manque(idArticle, article.getNom(), ligne.getQuantity(), disponible));
+            }
+        }
+        return Collections.unmodifiableList(manques);
+    }
+
+    /**
+     * Records the cart as a sale. The basket is copied right away, on the
+     * caller's thread. The future fails with a {@link StockInsuffisantException}
+     * if another register took the stock meanwhile, and completes with null if
+     * the caisse refused the sale.
+     */
+    public CompletableFuture<Vente> encaisser(PanierCaisse panierCaisse) {
+        Panier panier = panierCaisse.creerPanier();
+        if (caisse instanceof CaisseJournalisee caisseJournalisee) {
+            return CompletableFuture.supplyAsync(
+                () -> caisseJournalisee.enregistrerVente(panier, inventaire, panierCaisse), ENCAISSEMENTS);
+        }
+        try {
+            return CompletableFuture.completedFuture(caisse.enregistrerVente(panier, inventaire));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a sale cannot be recorded because some lines exceed the stock.
+ * Nothing has been committed: the exception lists every failing line.
+ */
+public class StockInsuffisantException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static class Manque {
+        private final String idArticle;
+        private final String nom;
+        private final int quantiteDemandee;
+        private final int quantiteDisponible;
+
+        public Manque(String idArticle, String nom, int quantiteDemandee, int quantiteDisponible) {
+            this.idArticle = idArticle;
+            this.nom = nom;
+            this.quantiteDemandee = quantiteDemandee;
+            this.quantiteDisponible = quantiteDisponible;
+        }
+
+        public String getIdArticle() { return idArticle; }
+        public String getNom() { return nom; }
+        public int getQuantiteDemandee() { return quantiteDemandee; }
+        public int getQuantiteDisponible() { return quantiteDisponible; }
+
+        @Override
+        public String toString() {
+            if (nom == null) {
+                return "✗ Article " + idArticle + " introuvable dans l'inventaire";
+            }
+            return "✗ " + nom + ": Stock insuffisant (demandé: " + quantiteDemandee
+                + ", disponible: " + quantiteDisponible + ")";
+        }
+    }
+
+    private final List<Manque> manques;
+
+    public StockInsuffisantException(List<Manque> manques) {
+        super(decrire(manques));
+        this.manques = Collections.unmodifiableList(new ArrayList<>(manques));
+    }
+
+    public List<Manque> getManques() {
+        return manques;
+    }
+
+    private static String decrire(List<Manque> manques) {
+        StringBuilder message = new StringBuilder();
+        for (Manque manque : manques) {
+            message.append(manque).append('\n');
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import InventaireArticle.ArticleEpicerie;
+import InventaireArticle.ArticleNonPerissable;
+import InventaireArticle.LigneVente;
+import InventaireArticle.Panier;
+import InventaireArticle.Vente;
+
+/**
+ * Headless stress run of several registers sharing one inventory and caisse.
+ *
+ * Each simulated register records random baskets as fast as it can, with most
+ * lines drawn from a small set of popular articles so that registers keep
+ * competing for the same stock until it runs out. At the end every article's
+ * stock is checked against the quantities actually sold.
+ *
+ * Usage: {@code java application.StressCaisses [registers] [articles] [stock] [seconds]}
+ */
+public class StressCaisses {
+
+    public static void main(String[] args) throws InterruptedException {
+        int caisses = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int nombreArticles = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int stockInitial = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int secondes = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        InventaireIndexe inventaire = new InventaireIndexe();
+        List<ArticleEpicerie> articles = new ArrayList<>(nombreArticles);
+        for (int i = 0; i < nombreArticles; i++) {
+            ArticleEpicerie article = new ArticleNonPerissable(
+                String.format("S%05d", i), "Article " + i, 1.0 + i % 10, stockInitial, "Stress", 365);
+            inventaire.ajouterArticle(article);
+            articles.add(article);
+        }
+        CaisseJournalisee caisse = new CaisseJournalisee(0.0, null);
+
+        int populaires = Math.max(1, nombreArticles / 10);
+        long[][] vendus = new long[caisses][nombreArticles];
+        AtomicLong validees = new AtomicLong();
+        AtomicLong refusees = new AtomicLong();
+        AtomicLong anomalies = new AtomicLong();
+        long fin = System.nanoTime() + secondes * 1_000_000_000L;
+        CountDownLatch depart = new CountDownLatch(1);
+        CountDownLatch termine = new CountDownLatch(caisses);
+
+        for (int c = 0; c < caisses; c++) {
+            long[] vendusCaisse = vendus[c];
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+                try {
+                    depart.await();
+                    while (System.nanoTime() < fin) {
+                        Panier panier = new Panier();
+                        int lignes = 1 + aleatoire.nextInt(5);
+                        for (int l = 0; l < lignes; l++) {
+                            // Four lines out of five hit the popular articles
+                            int index = aleatoire.nextInt(5) < 4 ? aleatoire.nextInt(populaires) : aleatoire.nextInt(nombreArticles);
+                            panier.ajouterArticle(articles.get(index), 1 + aleatoire.nextInt(3));
+                        }
+                        try {
+                            Vente vente = caisse.enregistrerVente(panier, inventaire);
+                            if (vente == null) {
+                                anomalies.incrementAndGet();
+                                continue;
+                            }
+                            for (LigneVente ligne : vente.getArticles()) {
+                                vendusCaisse[indexArticle(ligne.getArticle())] += ligne.getQuantite();
+                            }
+                            validees.incrementAndGet();
+                        } catch (StockInsuffisantException e) {
+                            refusees.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    termine.countDown();
+                }
+            }, "caisse-" + c);
+            thread.start();
+        }
+
+        long debut = System.nanoTime();
+        depart.countDown();
+        termine.await();
+        double duree = (System.nanoTime() - debut) / 1e9;
+
+        int surventes = 0;
+        int ecarts = 0;
+        for (int i = 0; i < nombreArticles; i++) {
+            long total = 0;
+            for (long[] vendusCaisse : vendus) {
+                total += vendusCaisse[i];
+            }
+            int stock = articles.get(i).getQuantiteStock();
+            if (stock < 0) {
+                surventes++;
+            }
+            if (stockInitial - total != stock) {
+                ecarts++;
+                System.err.println("Écart sur " + articles.get(i).getId() + ": vendu " + total + ", stock " + stock);
+            }
+        }
+        boolean ventesCoherentes = caisse.getVentesJournalieres().size() == validees.get();
+
+        System.out.println(String.format("%d caisses, %d articles (%d populaires), stock initial %d, %.1f s",
+            caisses, nombreArticles, populaires, stockInitial, duree));
+        System.out.println(String.format("Ventes validées: %d (%.0f/s), refusées pour stock: %d, anomalies: %d",
+            validees.get(), validees.get() / duree, refusees.get(), anomalies.get()));
+        System.out.println("Articles survendus: " + surventes + ", écarts de stock: " + ecarts
+            + ", ventes en caisse cohérentes: " + ventesCoherentes);
+
+        boolean ok = surventes == 0 && ecarts == 0 && anomalies.get() == 0 && ventesCoherentes;
+        System.out.println(ok ? "OK: aucune survente" : "ÉCHEC");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static int indexArticle(ArticleEpicerie article) {
+        return Integer.parseInt(article.getId().substring(1));
+    }
+}
@@ -0,0 +1,130 @@
+package application;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import javafx.beans.binding.Bindings;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.FileChooser;
+
+/**
+ * Export controls of a window: the save dialog with the available formats,
+ * and the export button, which shows the progress and cancels the running
+ * export while there is one. The progress bar and status label are optional;
+ * without a bar the progress is shown on the button.
+ */
+public class SuiviExport {
+
+    /**
+     * File and format chosen in the save dialog.
+     */
+    public static class Destination {
+        private final Path fichier;
+        private final FormatExport format;
+
+        Destination(Path fichier, FormatExport format) {
+            this.fichier = fichier;
+            this.format = format;
+        }
+
+        public Path getFichier() { return fichier; }
+        public FormatExport getFormat() { return format; }
+    }
+
+    private final Button bouton;
+    private final ProgressBar barre;
+    private final Label statut;
+    private final String texteBouton;
+    private ExportRapport enCours;
+
+    public SuiviExport(Button bouton, ProgressBar barre, Label statut) {
+        this.bouton = bouton;
+        this.barre = barre;
+        this.statut = statut;
+        this.texteBouton = bouton.getText();
+    }
+
+    public boolean isEnCours() {
+        return enCours != null;
+    }
+
+    public void annuler() {
+        if (enCours != null) {
+            enCours.cancel();
+        }
+    }
+
+    /**
+     * Shows the save dialog; returns null if the user cancels. The format is
+     * the selected filter, or the one matching the extension typed.
+     */
+    public Destination choisirDestination(String titre, String nomParDefaut) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(titre);
+        fileChooser.setInitialFileName(nomParDefaut);
+        for (FormatExport format : FormatExport.values()) {
+            fileChooser.getExtensionFilters().add(format.filtre());
+        }
+        File file = fileChooser.showSaveDialog(bouton.getScene().getWindow());
+        if (file == null) return null;
+
+        FormatExport format = FormatExport.depuisNom(file.getName());
+        if (format == null) {
+            int index = fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter());
+            format = FormatExport.values()[Math.max(0, index)];
+            file = new File(file.getParentFile(), file.getName() + format.getExtension());
+        }
+        return new Destination(file.toPath(), format);
+    }
+
+    /**
+     * Runs {@code export} on a background thread. Exactly one of the callbacks
+     * is called on the FX thread when it ends, except on cancellation.
+     */
+    public void lancer(ExportRapport export, Consumer<ExportRapport> succes, Consumer<Throwable> echec) {
+        enCours = export;
+        if (barre != null) {
+            bouton.setText("✖ Annuler l'export");
+            barre.progressProperty().bind(export.progressProperty());
+            barre.setVisible(true);
+        } else {
+            bouton.textProperty().bind(Bindings.createStringBinding(
+                () -> String.format("✖ Annuler (%.0f%%)", Math.max(0, export.getProgress()) * 100),
+                export.progressProperty()));
+        }
+        if (statut != null) {
+            statut.textProperty().bind(export.messageProperty());
+        }
+
+        export.setOnSucceeded(e -> {
+            terminer("");
+            succes.accept(export);
+        });
+        export.setOnCancelled(e -> terminer("Export annulé"));
+        export.setOnFailed(e -> {
+            terminer("");
+            echec.accept(export.getException());
+        });
+
+        Thread thread = new Thread(export, "export-" + export.getFichier().getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void terminer(String message) {
+        enCours = null;
+        bouton.textProperty().unbind();
+        bouton.setText(texteBouton);
+        if (barre != null) {
+            barre.progressProperty().unbind();
+            barre.setVisible(false);
+        }
+        if (statut != null) {
+            statut.textProperty().unbind();
+            statut.setText(message);
+        }
+    }
+}
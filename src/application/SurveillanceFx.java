@@ -0,0 +1,518 @@
+package application;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.event.ActionEvent;
+import javafx.event.Event;
+import javafx.event.EventDispatchChain;
+import javafx.event.EventDispatcher;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.Labeled;
+import javafx.scene.control.MenuItem;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Modality;
+import javafx.stage.Popup;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+/**
+ * Watches the JavaFX application thread of every window.
+ *
+ * <ul>
+ * <li>Event handlers: each event dispatched to a scene is timed, inclusive of
+ * the events it fires (a button's action runs inside its mouse release).
+ * Time spent waiting on a modal window it opened, e.g. an alert's
+ * showAndWait, is left out: the FX thread runs other events meanwhile.
+ * Actions are named after their control, other events after their type.</li>
+ * <li>Pulses: the CSS and layout pass of each scene is timed.</li>
+ * <li>Stalls: a watchdog thread posts a task to the FX thread every
+ * {@value #PERIODE_VEILLE_MS} ms. When one waits longer than the threshold,
+ * it samples the FX thread's stack; once the thread is free again the stall
+ * is logged on System.err with its length, the handler that was running and
+ * the sample, and kept for a minute.</li>
+ * <li>Ctrl+Shift+F shows an overlay with the frame rate, the longest pulse
+ * of the last second, the worst stalls of the last minute and the slowest
+ * handlers.</li>
+ * </ul>
+ *
+ * The threshold is {@code -Dgroco.fx.seuil} in milliseconds (default
+ * {@value #SEUIL_PAR_DEFAUT_MS}); {@code -Dgroco.fx.superposition=true}
+ * shows the overlay at startup.
+ */
+public class SurveillanceFx {
+
+    public static final long SEUIL_PAR_DEFAUT_MS = 250;
+
+    private static final long PERIODE_VEILLE_MS = 50;
+    private static final long FENETRE_BLOCAGES_NANOS = 60_000_000_000L;
+    private static final int PROFONDEUR_PILE = 15;
+    private static final int BLOCAGES_AFFICHES = 5;
+    private static final int GESTIONNAIRES_AFFICHES = 3;
+    private static final String CLE_NOM = "surveillanceFx.nom";
+    private static final KeyCombination RACCOURCI_SUPERPOSITION =
+        new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+    private static final DateTimeFormatter HEURE = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static SurveillanceFx instance;
+
+    /**
+     * One stall of the FX thread.
+     */
+    public static class Blocage {
+        private final long fin;
+        private final LocalTime heure;
+        private final long dureeNanos;
+        private final String contexte;
+        private final StackTraceElement[] pile;
+
+        Blocage(long fin, long dureeNanos, String contexte, StackTraceElement[] pile) {
+            this.fin = fin;
+            this.heure = LocalTime.now();
+            this.dureeNanos = dureeNanos;
+            this.contexte = contexte;
+            this.pile = pile;
+        }
+
+        public LocalTime getHeure() { return heure; }
+        public long getDureeMillis() { return dureeNanos / 1_000_000; }
+        /** Handler or pulse phase running when the stack was sampled. */
+        public String getContexte() { return contexte; }
+        public List<StackTraceElement> getPile() { return Collections.unmodifiableList(Arrays.asList(pile)); }
+
+        @Override
+        public String toString() {
+            StringBuilder texte = new StringBuilder();
+            texte.append("[FX] ").append(heure.format(HEURE)).append(" thread JavaFX bloqué ")
+                 .append(getDureeMillis()).append(" ms (").append(contexte).append(")");
+            for (StackTraceElement element : pile) {
+                texte.append("\n    at ").append(element);
+            }
+            return texte.toString();
+        }
+    }
+
+    /**
+     * Time spent dispatching one kind of event, inclusive of nested events and
+     * exclusive of the modal windows it waited on.
+     */
+    public static class Gestionnaire {
+        private final String nom;
+        private long nombre;
+        private long totalNanos;
+        private long maxNanos;
+
+        Gestionnaire(String nom) {
+            this.nom = nom;
+        }
+
+        Gestionnaire(Gestionnaire autre) {
+            this(autre.nom);
+            this.nombre = autre.nombre;
+            this.totalNanos = autre.totalNanos;
+            this.maxNanos = autre.maxNanos;
+        }
+
+        void ajouter(long nanos) {
+            nombre++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public String getNom() { return nom; }
+        public long getNombre() { return nombre; }
+        public double getTotalMillis() { return totalNanos / 1e6; }
+        public double getMaxMillis() { return maxNanos / 1e6; }
+        public double getMoyenneMillis() { return nombre > 0 ? totalNanos / 1e6 / nombre : 0.0; }
+    }
+
+    private final Thread threadFx;
+    private final long seuilNanos;
+
+    // FX thread only
+    private final Map<String, Gestionnaire> gestionnaires = new HashMap<>();
+    private final ArrayDeque<String> contextes = new ArrayDeque<>();
+    private final ArrayDeque<Blocage> blocages = new ArrayDeque<>();
+    // Dispatches in progress, outermost first, as parallel arrays so that timing allocates nothing
+    private long[] numerosEnCours = new long[16];
+    private long[] suspendusEnCours = new long[16];
+    private int profondeur;
+    private long prochainNumero;
+    // Modal windows opened during a dispatch: shown at, depth, dispatch number
+    private final Map<Window, long[]> modalesOuvertes = new HashMap<>();
+    private long debutPasse;
+    private long passeMaxNanos;
+    private long passeMaxAffichee;
+    private int images;
+    private Popup superposition;
+    private Label texteSuperposition;
+    private Timeline rafraichissement;
+    private AnimationTimer compteurImages;
+    private long debutComptage;
+    private double imagesParSeconde;
+
+    // Shared with the watchdog
+    private volatile String contexteCourant;
+    private volatile long pingEnvoye;
+    private volatile boolean pingEnAttente;
+    private volatile StackTraceElement[] echantillon;
+    private volatile long pingEchantillonne;
+    private volatile String contexteEchantillon;
+
+    private SurveillanceFx(Thread threadFx, long seuilNanos) {
+        this.threadFx = threadFx;
+        this.seuilNanos = seuilNanos;
+    }
+
+    /**
+     * Starts watching every window, present and future. Called once on the FX
+     * thread; later calls return the same instance.
+     */
+    public static synchronized SurveillanceFx installer() {
+        if (instance != null) return instance;
+
+        long seuilMillis = Long.getLong("groco.fx.seuil", SEUIL_PAR_DEFAUT_MS);
+        instance = new SurveillanceFx(Thread.currentThread(), seuilMillis * 1_000_000);
+        instance.demarrer();
+        if (Boolean.getBoolean("groco.fx.superposition")) {
+            instance.afficherSuperposition(true);
+        }
+        return instance;
+    }
+
+    private void demarrer() {
+        for (Window fenetre : Window.getWindows()) {
+            surveiller(fenetre);
+        }
+        Window.getWindows().addListener((ListChangeListener<Window>) changement -> {
+            while (changement.next()) {
+                for (Window fenetre : changement.getRemoved()) {
+                    modaleFermee(fenetre);
+                }
+                for (Window fenetre : changement.getAddedSubList()) {
+                    surveiller(fenetre);
+                    modaleOuverte(fenetre);
+                }
+            }
+        });
+
+        Thread veille = new Thread(this::veiller, "surveillance-fx");
+        veille.setDaemon(true);
+        veille.start();
+    }
+
+    private void surveiller(Window fenetre) {
+        if (fenetre.getScene() != null) {
+            surveiller(fenetre.getScene());
+        }
+        fenetre.sceneProperty().addListener((obs, ancienne, scene) -> {
+            if (scene != null) {
+                surveiller(scene);
+            }
+        });
+    }
+
+    private void surveiller(Scene scene) {
+        if (scene.getEventDispatcher() instanceof Chronometre) return;
+
+        scene.setEventDispatcher(new Chronometre(scene.getEventDispatcher()));
+        scene.addPreLayoutPulseListener(() -> {
+            debutPasse = System.nanoTime();
+            contextes.push("pulse: CSS et mise en page");
+            contexteCourant = contextes.peek();
+        });
+        scene.addPostLayoutPulseListener(() -> {
+            passeMaxNanos = Math.max(passeMaxNanos, System.nanoTime() - debutPasse);
+            contextes.pop();
+            contexteCourant = contextes.peek();
+        });
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (RACCOURCI_SUPERPOSITION.match(e)) {
+                afficherSuperposition(superposition == null || !superposition.isShowing());
+                e.consume();
+            }
+        });
+    }
+
+    /**
+     * Times the whole dispatch of each event reaching the scene, handlers
+     * included, minus the time spent waiting on modal windows.
+     */
+    private final class Chronometre implements EventDispatcher {
+        private final EventDispatcher delegue;
+
+        Chronometre(EventDispatcher delegue) {
+            this.delegue = delegue;
+        }
+
+        @Override
+        public Event dispatchEvent(Event event, EventDispatchChain tail) {
+            String nom = nomGestionnaire(event);
+            contextes.push(nom);
+            contexteCourant = nom;
+            int niveau = entrer();
+            long debut = System.nanoTime();
+            try {
+                return delegue.dispatchEvent(event, tail);
+            } finally {
+                long duree = System.nanoTime() - debut - suspendusEnCours[niveau];
+                profondeur = niveau;
+                contextes.pop();
+                contexteCourant = contextes.peek();
+                gestionnaires.computeIfAbsent(nom, Gestionnaire::new).ajouter(duree);
+            }
+        }
+    }
+
+    private int entrer() {
+        if (profondeur == numerosEnCours.length) {
+            numerosEnCours = Arrays.copyOf(numerosEnCours, profondeur * 2);
+            suspendusEnCours = Arrays.copyOf(suspendusEnCours, profondeur * 2);
+        }
+        numerosEnCours[profondeur] = ++prochainNumero;
+        suspendusEnCours[profondeur] = 0;
+        return profondeur++;
+    }
+
+    // A modal window shown during a dispatch may be a showAndWait blocking it
+    private void modaleOuverte(Window fenetre) {
+        if (profondeur > 0 && fenetre instanceof Stage stage && stage.getModality() != Modality.NONE) {
+            modalesOuvertes.put(fenetre, new long[] {System.nanoTime(), profondeur, numerosEnCours[profondeur - 1]});
+        }
+    }
+
+    /**
+     * When a modal window closes while the dispatch that opened it is still
+     * running, that dispatch and the ones around it were blocked in its nested
+     * event loop: the time it was open is taken off their duration. Dispatches
+     * already blocked by an older modal window get that window's time instead,
+     * so nested dialogs are not counted twice.
+     */
+    private void modaleFermee(Window fenetre) {
+        long[] ouverture = modalesOuvertes.remove(fenetre);
+        if (ouverture == null || !enCours(ouverture)) return;
+
+        int niveau = (int) ouverture[1];
+        int borne = 0;
+        for (long[] autre : modalesOuvertes.values()) {
+            if (autre[1] < niveau && autre[0] < ouverture[0] && enCours(autre)) {
+                borne = Math.max(borne, (int) autre[1]);
+            }
+        }
+        long attente = System.nanoTime() - ouverture[0];
+        for (int i = borne; i < niveau; i++) {
+            suspendusEnCours[i] += attente;
+        }
+    }
+
+    // Whether the dispatch that opened a modal window is still running
+    private boolean enCours(long[] ouverture) {
+        int niveau = (int) ouverture[1];
+        return profondeur >= niveau && numerosEnCours[niveau - 1] == ouverture[2];
+    }
+
+    // Actions are named once per control; other events share their type's name
+    private static String nomGestionnaire(Event event) {
+        if (!(event instanceof ActionEvent)) {
+            return event.getEventType().getName();
+        }
+        Object cible = event.getTarget();
+        if (cible instanceof Node noeud) {
+            return (String) noeud.getProperties().computeIfAbsent(CLE_NOM, cle -> "action " + decrire(noeud));
+        }
+        if (cible instanceof MenuItem element) {
+            return (String) element.getProperties().computeIfAbsent(CLE_NOM, cle -> "action menu « " + element.getText() + " »");
+        }
+        return "action " + (cible != null ? cible.getClass().getSimpleName() : "?");
+    }
+
+    private static String decrire(Node noeud) {
+        if (noeud.getId() != null) {
+            return "#" + noeud.getId();
+        }
+        if (noeud instanceof Labeled libelle && libelle.getText() != null && !libelle.getText().isEmpty()) {
+            return noeud.getClass().getSimpleName() + " « " + libelle.getText() + " »";
+        }
+        return noeud.getClass().getSimpleName();
+    }
+
+    // Watchdog thread: one ping in flight at a time
+    private void veiller() {
+        while (true) {
+            try {
+                Thread.sleep(PERIODE_VEILLE_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long maintenant = System.nanoTime();
+            long ping = pingEnvoye;
+            if (!pingEnAttente) {
+                pingEnvoye = maintenant;
+                pingEnAttente = true;
+                Platform.runLater(this::recevoirPing);
+            } else if (pingEchantillonne != ping && maintenant - ping > seuilNanos) {
+                // Sampled while the FX thread is still stuck, so the stack shows the culprit
+                contexteEchantillon = contexteCourant;
+                StackTraceElement[] pile = threadFx.getStackTrace();
+                echantillon = Arrays.copyOf(pile, Math.min(pile.length, PROFONDEUR_PILE));
+                pingEchantillonne = ping;
+            }
+        }
+    }
+
+    private void recevoirPing() {
+        long maintenant = System.nanoTime();
+        long attente = maintenant - pingEnvoye;
+        // A sample taken for an earlier ping is ignored
+        StackTraceElement[] pile = pingEchantillonne == pingEnvoye ? echantillon : null;
+        String contexte = contexteEchantillon;
+        pingEnAttente = false;
+
+        if (pile == null || attente <= seuilNanos) return;
+        Blocage blocage = new Blocage(maintenant, attente, contexte != null ? contexte : "tâche hors événement", pile);
+        blocages.addLast(blocage);
+        oublierAnciensBlocages(maintenant);
+        System.err.println(blocage);
+    }
+
+    private void oublierAnciensBlocages(long maintenant) {
+        while (!blocages.isEmpty() && maintenant - blocages.peekFirst().fin > FENETRE_BLOCAGES_NANOS) {
+            blocages.removeFirst();
+        }
+    }
+
+    public long getSeuilMillis() {
+        return seuilNanos / 1_000_000;
+    }
+
+    /**
+     * Stalls of the last minute, longest first. FX thread only.
+     */
+    public List<Blocage> getBlocages() {
+        oublierAnciensBlocages(System.nanoTime());
+        List<Blocage> liste = new ArrayList<>(blocages);
+        liste.sort(Comparator.comparingLong((Blocage b) -> b.dureeNanos).reversed());
+        return Collections.unmodifiableList(liste);
+    }
+
+    /**
+     * A copy of the handler timings since startup, slowest single dispatch first. FX thread only.
+     */
+    public List<Gestionnaire> getGestionnaires() {
+        List<Gestionnaire> liste = new ArrayList<>(gestionnaires.size());
+        for (Gestionnaire gestionnaire : gestionnaires.values()) {
+            liste.add(new Gestionnaire(gestionnaire));
+        }
+        liste.sort(Comparator.comparingLong((Gestionnaire g) -> g.maxNanos).reversed());
+        return Collections.unmodifiableList(liste);
+    }
+
+    /**
+     * Shows or hides the overlay on the focused window. FX thread only.
+     */
+    public void afficherSuperposition(boolean afficher) {
+        if (!afficher) {
+            if (superposition != null) {
+                superposition.hide();
+                rafraichissement.stop();
+                compteurImages.stop();
+            }
+            return;
+        }
+
+        Window fenetre = fenetreActive();
+        if (fenetre == null) return;
+        if (superposition == null) {
+            creerSuperposition();
+        }
+        debutComptage = System.nanoTime();
+        images = 0;
+        // The timer keeps pulses coming, so the rate drops only when the FX thread is busy
+        compteurImages.start();
+        rafraichissement.play();
+        mettreAJourSuperposition();
+        superposition.show(fenetre, fenetre.getX() + Math.max(0, fenetre.getWidth() - 380), fenetre.getY() + 30);
+    }
+
+    private Window fenetreActive() {
+        Window repli = null;
+        for (Window fenetre : Window.getWindows()) {
+            if (fenetre == superposition || fenetre instanceof Popup) continue;
+            if (fenetre.isFocused()) return fenetre;
+            if (fenetre.isShowing()) repli = fenetre;
+        }
+        return repli;
+    }
+
+    private void creerSuperposition() {
+        texteSuperposition = new Label();
+        texteSuperposition.getStyleClass().add("surveillance-fx");
+        texteSuperposition.getStylesheets().add(SurveillanceFx.class.getResource("/application/application.css").toExternalForm());
+        texteSuperposition.setMouseTransparent(true);
+        superposition = new Popup();
+        superposition.getContent().add(texteSuperposition);
+
+        compteurImages = new AnimationTimer() {
+            @Override
+            public void handle(long maintenant) {
+                images++;
+            }
+        };
+        rafraichissement = new Timeline(new KeyFrame(Duration.millis(500), e -> mettreAJourSuperposition()));
+        rafraichissement.setCycleCount(Animation.INDEFINITE);
+    }
+
+    private void mettreAJourSuperposition() {
+        long maintenant = System.nanoTime();
+        double secondes = (maintenant - debutComptage) / 1e9;
+        if (secondes >= 1.0) {
+            imagesParSeconde = images / secondes;
+            images = 0;
+            debutComptage = maintenant;
+            passeMaxAffichee = passeMaxNanos;
+            passeMaxNanos = 0;
+        }
+
+        StringBuilder texte = new StringBuilder();
+        texte.append(String.format("%.0f i/s · passe CSS/layout max %.1f ms · seuil %d ms",
+            imagesParSeconde, passeMaxAffichee / 1e6, getSeuilMillis()));
+
+        List<Blocage> pires = getBlocages();
+        texte.append("\nBlocages (1 min) : ").append(pires.isEmpty() ? "aucun" : pires.size());
+        Iterator<Blocage> blocage = pires.iterator();
+        for (int i = 0; i < BLOCAGES_AFFICHES && blocage.hasNext(); i++) {
+            Blocage b = blocage.next();
+            texte.append(String.format("\n  %5d ms  %s  %s", b.getDureeMillis(), b.getHeure().format(HEURE), b.getContexte()));
+        }
+
+        texte.append("\nGestionnaires les plus lents :");
+        List<Gestionnaire> lents = getGestionnaires();
+        for (int i = 0; i < GESTIONNAIRES_AFFICHES && i < lents.size(); i++) {
+            Gestionnaire g = lents.get(i);
+            texte.append(String.format("\n  %7.1f ms max, %6.2f ms moy. ×%d  %s",
+                g.getMaxMillis(), g.getMoyenneMillis(), g.getNombre(), g.getNom()));
+        }
+        texteSuperposition.setText(texte.toString());
+    }
+}
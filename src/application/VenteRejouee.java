@@ -0,0 +1,90 @@
+package application;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import InventaireArticle.LigneVente;
+import InventaireArticle.Vente;
+
+/**
+ * Sale rebuilt from the journal. The base caisse dates a sale to today and
+ * prices it from the articles' current prices; this one keeps the day and
+ * the unit prices that were journaled when the sale was made.
+ */
+public class VenteRejouee extends Vente {
+
+    private final Vente vente;
+    private final LocalDate date;
+    private final Map<String, Long> prixCentimes = new HashMap<>();
+    private final long totalCentimes;
+
+    /**
+     * @param vente the sale the base caisse recorded for the replayed basket,
+     *        which provides the lines
+     */
+    public VenteRejouee(Vente vente, JournalVentes.EnregistrementVente enregistrement) {
+        super(vente.getIdVente());
+        this.vente = vente;
+        this.date = PrevisionDemande.jourDe(enregistrement.getHorodatage());
+        for (JournalVentes.LigneJournal ligne : enregistrement.getLignes()) {
+            prixCentimes.putIfAbsent(ligne.getIdArticle(), ligne.getPrixCentimes());
+        }
+        long total = 0;
+        for (LigneVente ligne : vente.getArticles()) {
+            total += getPrixCentimes(ligne.getArticle().getId()) * ligne.getQuantite();
+        }
+        this.totalCentimes = total;
+    }
+
+    /**
+     * Unit price in cents of a line: the journaled one for a replayed sale,
+     * the article's price otherwise.
+     */
+    public static long prixCentimes(Vente vente, LigneVente ligne) {
+        return vente instanceof VenteRejouee rejouee
+            ? rejouee.getPrixCentimes(ligne.getArticle().getId())
+            : Math.round(ligne.getArticle().getPrix() * 100);
+    }
+
+    /**
+     * Line amount in cents, priced like {@link #prixCentimes}.
+     */
+    public static long montantCentimes(Vente vente, LigneVente ligne) {
+        return prixCentimes(vente, ligne) * ligne.getQuantite();
+    }
+
+    /**
+     * Journaled unit price of an article of this sale.
+     */
+    public long getPrixCentimes(String idArticle) {
+        Long prix = prixCentimes.get(idArticle);
+        return prix != null ? prix : 0;
+    }
+
+    @Override
+    public LocalDate getDate() {
+        return date;
+    }
+
+    @Override
+    public double getTotal() {
+        return totalCentimes / 100.0;
+    }
+
+    @Override
+    public List<LigneVente> getArticles() {
+        return vente.getArticles();
+    }
+
+    @Override
+    public int getNombreArticles() {
+        return vente.getNombreArticles();
+    }
+
+    @Override
+    public String genererFacture() {
+        return vente.genererFacture();
+    }
+}
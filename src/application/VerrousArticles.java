@@ -0,0 +1,74 @@
+package application;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by article id.
+ *
+ * A basket locks the stripes of all its articles at once, always in
+ * increasing stripe order, so two registers can never deadlock and baskets
+ * that share no stripe proceed in parallel.
+ */
+public class VerrousArticles {
+
+    public interface Verrouillage extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] verrous;
+
+    /**
+     * @param nombre number of stripes, rounded up to a power of two
+     */
+    public VerrousArticles(int nombre) {
+        int taille = Integer.highestOneBit(Math.max(1, nombre - 1)) << 1;
+        verrous = new ReentrantLock[taille];
+        for (int i = 0; i < taille; i++) {
+            verrous[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Locks every stripe covering {@code idsArticles}; close the result to release them.
+     */
+    public Verrouillage verrouiller(Collection<String> idsArticles) {
+        int[] indices = new int[idsArticles.size()];
+        int n = 0;
+        for (String id : idsArticles) {
+            indices[n++] = indice(id);
+        }
+        Arrays.sort(indices);
+
+        int[] acquis = new int[n];
+        int nombreAcquis = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && indices[i] == indices[i - 1]) continue;
+                verrous[indices[i]].lock();
+                acquis[nombreAcquis++] = indices[i];
+            }
+        } catch (RuntimeException | Error e) {
+            liberer(acquis, nombreAcquis);
+            throw e;
+        }
+
+        int[] aLiberer = acquis;
+        int nombre = nombreAcquis;
+        return () -> liberer(aLiberer, nombre);
+    }
+
+    private void liberer(int[] acquis, int nombre) {
+        for (int i = nombre - 1; i >= 0; i--) {
+            verrous[acquis[i]].unlock();
+        }
+    }
+
+    private int indice(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        return h & (verrous.length - 1);
+    }
+}